@@ -43,6 +43,9 @@ import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
  * as "the" "the-quick" has a term.type() of "gram"</li>
  * 
  * </ul>
+ * Exact {@link org.apache.lucene.search.PhraseQuery phrase queries} can use
+ * these bigrams on their own if the field type records the same common words
+ * with {@link org.apache.lucene.search.PhraseQuery#setCommonWords}.
  */
 
 /*
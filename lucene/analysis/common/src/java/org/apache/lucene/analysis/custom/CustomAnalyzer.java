@@ -33,8 +33,12 @@ import java.util.function.Predicate;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.LowerCaseFilterFactory;
+import org.apache.lucene.analysis.core.StopFilterFactory;
 import org.apache.lucene.analysis.miscellaneous.ConditionalTokenFilter;
 import org.apache.lucene.analysis.miscellaneous.ConditionalTokenFilterFactory;
+import org.apache.lucene.analysis.standard.StandardLowerCaseStopTokenizer;
+import org.apache.lucene.analysis.standard.StandardTokenizerFactory;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.util.AbstractAnalysisFactory;
 import org.apache.lucene.analysis.util.CharFilterFactory;
@@ -149,14 +153,34 @@ public final class CustomAnalyzer extends Analyzer {
 
   @Override
   protected TokenStreamComponents createComponents(String fieldName) {
-    final Tokenizer tk = tokenizer.create(attributeFactory(fieldName));
+    final Tokenizer tk;
+    int firstFilter = 0;
+    if (isStandardLowerCaseStop()) {
+      // fuse the tokenizer and the first two filters, this produces the same tokens
+      final StandardLowerCaseStopTokenizer fused = new StandardLowerCaseStopTokenizer(
+          attributeFactory(fieldName), ((StopFilterFactory) tokenFilters[1]).getStopWords());
+      fused.setMaxTokenLength(((StandardTokenizerFactory) tokenizer).getMaxTokenLength());
+      tk = fused;
+      firstFilter = 2;
+    } else {
+      tk = tokenizer.create(attributeFactory(fieldName));
+    }
     TokenStream ts = tk;
-    for (final TokenFilterFactory filter : tokenFilters) {
-      ts = filter.create(ts);
+    for (int i = firstFilter; i < tokenFilters.length; ++i) {
+      ts = tokenFilters[i].create(ts);
     }
     return new TokenStreamComponents(tk, ts);
   }
 
+  /** Whether this analyzer starts with the chain that {@link StandardLowerCaseStopTokenizer} implements. */
+  private boolean isStandardLowerCaseStop() {
+    // exact classes since sub-classes might change what the factories create
+    return tokenizer.getClass() == StandardTokenizerFactory.class
+        && tokenFilters.length >= 2
+        && tokenFilters[0].getClass() == LowerCaseFilterFactory.class
+        && tokenFilters[1].getClass() == StopFilterFactory.class;
+  }
+
   @Override
   protected TokenStream normalize(String fieldName, TokenStream in) {
     TokenStream result = in;
@@ -45,6 +45,11 @@ public class StandardTokenizerFactory extends TokenizerFactory {
     }
   }
 
+  /** Returns the maximum token length of created tokenizers. */
+  public int getMaxTokenLength() {
+    return maxTokenLength;
+  }
+
   @Override
   public StandardTokenizer create(AttributeFactory factory) {
     StandardTokenizer tokenizer = new StandardTokenizer(factory);
@@ -18,9 +18,6 @@
 package org.apache.lucene.analysis.synonym;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
 
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
@@ -31,9 +28,12 @@ import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
 import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.AttributeSource;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
 import org.apache.lucene.util.CharsRefBuilder;
+import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.lucene.util.RollingBuffer;
 import org.apache.lucene.util.fst.FST;
 
@@ -76,6 +76,11 @@ import org.apache.lucene.util.fst.FST;
  *  <p><b>NOTE</b>: this cannot consume an incoming graph; results will
  *  be undefined.
  *
+ *  <p>Matching reuses its buffers across tokens and matches, so that
+ *  only captured input tokens cause allocations.  Pass a
+ *  {@link SynonymMetrics} to track the number of lookups and the time
+ *  spent applying synonyms.
+ *
  *  @lucene.experimental */
 
 public final class SynonymGraphFilter extends TokenFilter {
@@ -97,8 +102,24 @@ public final class SynonymGraphFilter extends TokenFilter {
   private final FST.Arc<BytesRef> scratchArc;
   private final ByteArrayDataInput bytesReader = new ByteArrayDataInput();
   private final BytesRef scratchBytes = new BytesRef();
-  private final CharsRefBuilder scratchChars = new CharsRefBuilder();
-  private final LinkedList<BufferedOutputToken> outputBuffer = new LinkedList<>();
+  private final BytesRefBuilder pendingOutput = new BytesRefBuilder();
+  private final BytesRefBuilder matchOutput = new BytesRefBuilder();
+
+  // Decoded synonym outputs of the current match, and their number of words:
+  private CharsRefBuilder[] paths = new CharsRefBuilder[0];
+  private int[] pathLengths = new int[0];
+
+  // Pending output tokens, reused across matches:
+  private BufferedOutputToken[] outputBuffer = new BufferedOutputToken[0];
+  private int outputBufferSize;
+  private int outputBufferUpto;
+
+  private final SynonymMetrics metrics;
+  // Metrics of the current stream, published on end():
+  private long lookupCount;
+  private long matchCount;
+  private long synonymCount;
+  private long timeNanos;
 
   private int nextNodeOut;
   private int lastNodeOut;
@@ -144,20 +165,14 @@ public final class SynonymGraphFilter extends TokenFilter {
   }
 
   static class BufferedOutputToken {
-    final String term;
+    // Only used if this is a synonym:
+    final CharsRefBuilder term = new CharsRefBuilder();
 
     // Non-null if this was an incoming token:
-    final State state;
-
-    final int startNode;
-    final int endNode;
+    State state;
 
-    public BufferedOutputToken(State state, String term, int startNode, int endNode) {
-      this.state = state;
-      this.term = term;
-      this.startNode = startNode;
-      this.endNode = endNode;
-    }
+    int startNode;
+    int endNode;
   }
 
   /**
@@ -169,7 +184,23 @@ public final class SynonymGraphFilter extends TokenFilter {
    *                   the input entries when you create the {@link SynonymMap}
    */
   public SynonymGraphFilter(TokenStream input, SynonymMap synonyms, boolean ignoreCase) {
+    this(input, synonyms, ignoreCase, null);
+  }
+
+  /**
+   * Apply previously built synonyms to incoming tokens, and record
+   * metrics about synonym matching.
+   * @param input input tokenstream
+   * @param synonyms synonym map
+   * @param ignoreCase case-folds input for matching with {@link Character#toLowerCase(int)}.
+   *                   Note, if you set this to true, it's your responsibility to lowercase
+   *                   the input entries when you create the {@link SynonymMap}
+   * @param metrics metrics that are updated on {@link #end()}, or {@code null}
+   *                to not record metrics
+   */
+  public SynonymGraphFilter(TokenStream input, SynonymMap synonyms, boolean ignoreCase, SynonymMetrics metrics) {
     super(input);
+    this.metrics = metrics;
     this.synonyms = synonyms;
     this.fst = synonyms.fst;
     if (fst == null) {
@@ -186,7 +217,7 @@ public final class SynonymGraphFilter extends TokenFilter {
 
     assert lastNodeOut <= nextNodeOut;
       
-    if (outputBuffer.isEmpty() == false) {
+    if (outputBufferUpto < outputBufferSize) {
       // We still have pending outputs from a prior synonym match:
       releaseBufferedToken();
       //System.out.println("  syn: ret buffered=" + this);
@@ -250,7 +281,10 @@ public final class SynonymGraphFilter extends TokenFilter {
   private void releaseBufferedToken() throws IOException {
     //System.out.println("  releaseBufferedToken");
 
-    BufferedOutputToken token = outputBuffer.pollFirst();
+    BufferedOutputToken token = outputBuffer[outputBufferUpto++];
+    if (outputBufferUpto == outputBufferSize) {
+      outputBufferUpto = outputBufferSize = 0;
+    }
 
     if (token.state != null) {
       // This is an original input token (keepOrig=true case):
@@ -260,7 +294,7 @@ public final class SynonymGraphFilter extends TokenFilter {
     } else {
       clearAttributes();
       //System.out.println("    no state");
-      termAtt.append(token.term);
+      termAtt.copyBuffer(token.term.chars(), 0, token.term.length());
 
       // We better have a match already:
       assert matchStartOffset != -1;
@@ -283,11 +317,15 @@ public final class SynonymGraphFilter extends TokenFilter {
   private boolean parse() throws IOException {
     // System.out.println(Thread.currentThread().getName() + ": S: parse: " + System.identityHashCode(this));
 
-    // Holds the longest match we've seen so far:
-    BytesRef matchOutput = null;
+    long startNanos = metrics == null ? 0L : System.nanoTime();
+
+    // Holds the longest match we've seen so far; outputs are
+    // concatenated byte sequences, so we accumulate them in place
+    // rather than through fst.outputs.add:
+    boolean hasMatch = false;
     int matchInputLength = 0;
 
-    BytesRef pendingOutput = fst.outputs.getNoOutput();
+    pendingOutput.clear();
     fst.getFirstArc(scratchArc);
 
     assert scratchArc.output == fst.outputs.getNoOutput();
@@ -329,7 +367,16 @@ public final class SynonymGraphFilter extends TokenFilter {
         if (finished) {
           //System.out.println("    break: finished");
           break;
-        } else if (input.incrementToken()) {
+        }
+        if (metrics != null) {
+          // don't account for the time spent in the input stream
+          timeNanos += System.nanoTime() - startNanos;
+        }
+        final boolean hasToken = input.incrementToken();
+        if (metrics != null) {
+          startNanos = System.nanoTime();
+        }
+        if (hasToken) {
           //System.out.println("    input.incrToken");
           liveToken = true;
           buffer = termAtt.buffer();
@@ -360,7 +407,7 @@ public final class SynonymGraphFilter extends TokenFilter {
         }
 
         // Accum the output
-        pendingOutput = fst.outputs.add(pendingOutput, scratchArc.output);
+        pendingOutput.append(scratchArc.output);
         bufUpto += Character.charCount(codePoint);
       }
 
@@ -369,7 +416,9 @@ public final class SynonymGraphFilter extends TokenFilter {
       // OK, entire token matched; now see if this is a final
       // state in the FST (a match):
       if (scratchArc.isFinal()) {
-        matchOutput = fst.outputs.add(pendingOutput, scratchArc.nextFinalOutput);
+        matchOutput.copyBytes(pendingOutput);
+        matchOutput.append(scratchArc.nextFinalOutput);
+        hasMatch = true;
         matchInputLength = matchLength;
         matchEndOffset = inputEndOffset;
         //System.out.println("    ** match");
@@ -385,7 +434,7 @@ public final class SynonymGraphFilter extends TokenFilter {
       } else {
         // More matching is possible -- accum the output (if
         // any) of the WORD_SEP arc:
-        pendingOutput = fst.outputs.add(pendingOutput, scratchArc.output);
+        pendingOutput.append(scratchArc.output);
         doFinalCapture = true;
         if (liveToken) {
           capture();
@@ -393,12 +442,16 @@ public final class SynonymGraphFilter extends TokenFilter {
       }
     }
 
+    if (matchLength > 0) {
+      lookupCount++;
+    }
+
     if (doFinalCapture && liveToken && finished == false) {
       // Must capture the final token if we captured any prior tokens:
       capture();
     }
 
-    if (matchOutput != null) {
+    if (hasMatch) {
 
       if (liveToken) {
         // Single input token synonym; we must buffer it now:
@@ -406,17 +459,21 @@ public final class SynonymGraphFilter extends TokenFilter {
       }
 
       // There is a match!
-      bufferOutputTokens(matchOutput, matchInputLength);
+      bufferOutputTokens(matchOutput.get(), matchInputLength);
       lookaheadNextRead += matchInputLength;
       //System.out.println("  precmatch; set lookaheadNextRead=" + lookaheadNextRead + " now max=" + lookahead.getMaxPos());
       lookahead.freeBefore(lookaheadNextRead);
       //System.out.println("  match; set lookaheadNextRead=" + lookaheadNextRead + " now max=" + lookahead.getMaxPos());
-      return true;
+      matchCount++;
     } else {
       //System.out.println("  no match; lookaheadNextRead=" + lookaheadNextRead);
-      return false;
     }
 
+    if (metrics != null) {
+      timeNanos += System.nanoTime() - startNanos;
+    }
+    return hasMatch;
+
     //System.out.println("  parse done inputSkipCount=" + inputSkipCount + " nextRead=" + nextRead + " nextWrite=" + nextWrite);
   }
 
@@ -446,25 +503,31 @@ public final class SynonymGraphFilter extends TokenFilter {
     // TODO: we could encode this instead into the FST:
 
     // 1st pass: count how many new nodes we need
-    List<List<String>> paths = new ArrayList<>();
+    if (paths.length < count) {
+      CharsRefBuilder[] newPaths = new CharsRefBuilder[ArrayUtil.oversize(count, RamUsageEstimator.NUM_BYTES_OBJECT_REF)];
+      System.arraycopy(paths, 0, newPaths, 0, paths.length);
+      for (int i = paths.length; i < newPaths.length; i++) {
+        newPaths[i] = new CharsRefBuilder();
+      }
+      paths = newPaths;
+      pathLengths = new int[paths.length];
+    }
     for(int outputIDX=0;outputIDX<count;outputIDX++) {
       int wordID = bytesReader.readVInt();
       synonyms.words.get(wordID, scratchBytes);
-      scratchChars.copyUTF8Bytes(scratchBytes);
-      int lastStart = 0;
-
-      List<String> path = new ArrayList<>();
-      paths.add(path);
-      int chEnd = scratchChars.length();
-      for(int chUpto=0; chUpto<=chEnd; chUpto++) {
-        if (chUpto == chEnd || scratchChars.charAt(chUpto) == SynonymMap.WORD_SEPARATOR) {
-          path.add(new String(scratchChars.chars(), lastStart, chUpto - lastStart));
-          lastStart = 1 + chUpto;
+      CharsRefBuilder path = paths[outputIDX];
+      path.copyUTF8Bytes(scratchBytes);
+
+      int pathLength = 1;
+      final char[] chars = path.chars();
+      final int chEnd = path.length();
+      for(int chUpto=0; chUpto<chEnd; chUpto++) {
+        if (chars[chUpto] == SynonymMap.WORD_SEPARATOR) {
+          pathLength++;
         }
       }
-
-      assert path.size() > 0;
-      totalPathNodes += path.size() - 1;
+      pathLengths[outputIDX] = pathLength;
+      totalPathNodes += pathLength - 1;
     }
     //System.out.println("  totalPathNodes=" + totalPathNodes);
 
@@ -476,24 +539,27 @@ public final class SynonymGraphFilter extends TokenFilter {
     // We "spawn" a side-path for each of the outputs for this matched
     // synonym, all ending back at this end node:
 
+    assert outputBufferSize == 0;
+
     int startNode = nextNodeOut;
 
     int endNode = startNode + totalPathNodes + 1;
-    //System.out.println("  " + paths.size() + " new side-paths");
+    //System.out.println("  " + count + " new side-paths");
 
     // First, fanout all tokens departing start node for these new side paths:
     int newNodeCount = 0;
-    for(List<String> path : paths) {
+    for(int pathID=0;pathID<count;pathID++) {
       int pathEndNode;
-      //System.out.println("    path size=" + path.size());
-      if (path.size() == 1) {
+      //System.out.println("    path size=" + pathLengths[pathID]);
+      if (pathLengths[pathID] == 1) {
         // Single token output, so there are no intermediate nodes:
         pathEndNode = endNode;
       } else {
         pathEndNode = nextNodeOut + newNodeCount + 1;
-        newNodeCount += path.size() - 1;
+        newNodeCount += pathLengths[pathID] - 1;
       }
-      outputBuffer.add(new BufferedOutputToken(null, path.get(0), startNode, pathEndNode));
+      final CharsRefBuilder path = paths[pathID];
+      addSynonymToken(path.chars(), 0, wordEnd(path, 0), startNode, pathEndNode);
     }
 
     // We must do the original tokens last, else the offsets "go backwards":
@@ -509,44 +575,88 @@ public final class SynonymGraphFilter extends TokenFilter {
 
       //System.out.println("    keepOrig first token: " + token.term);
 
-      outputBuffer.add(new BufferedOutputToken(token.state, token.term.toString(), startNode, inputEndNode));
+      addInputToken(token.state, startNode, inputEndNode);
     }
 
     nextNodeOut = endNode;
 
     // Do full side-path for each syn output:
-    for(int pathID=0;pathID<paths.size();pathID++) {
-      List<String> path = paths.get(pathID);
-      if (path.size() > 1) {
-        int lastNode = outputBuffer.get(pathID).endNode;
-        for(int i=1;i<path.size()-1;i++) {
-          outputBuffer.add(new BufferedOutputToken(null, path.get(i), lastNode, lastNode+1));
+    for(int pathID=0;pathID<count;pathID++) {
+      if (pathLengths[pathID] > 1) {
+        final CharsRefBuilder path = paths[pathID];
+        int lastNode = outputBuffer[pathID].endNode;
+        int wordStart = wordEnd(path, 0) + 1;
+        for(int i=1;i<pathLengths[pathID]-1;i++) {
+          final int wordEnd = wordEnd(path, wordStart);
+          addSynonymToken(path.chars(), wordStart, wordEnd, lastNode, lastNode+1);
+          wordStart = wordEnd + 1;
           lastNode++;
         }
-        outputBuffer.add(new BufferedOutputToken(null, path.get(path.size()-1), lastNode, endNode));
+        addSynonymToken(path.chars(), wordStart, path.length(), lastNode, endNode);
       }
     }
 
     if (keepOrig && matchInputLength > 1) {
       // Do full "side path" with the original tokens:
-      int lastNode = outputBuffer.get(paths.size()).endNode;
+      int lastNode = outputBuffer[count].endNode;
       for(int i=1;i<matchInputLength-1;i++) {
         BufferedInputToken token = lookahead.get(lookaheadNextRead + i);
-        outputBuffer.add(new BufferedOutputToken(token.state, token.term.toString(), lastNode, lastNode+1));
+        addInputToken(token.state, lastNode, lastNode+1);
         lastNode++;
       }
       BufferedInputToken token = lookahead.get(lookaheadNextRead + matchInputLength - 1);
-      outputBuffer.add(new BufferedOutputToken(token.state, token.term.toString(), lastNode, endNode));
+      addInputToken(token.state, lastNode, endNode);
     }
 
     /*
-    System.out.println("  after buffer: " + outputBuffer.size() + " tokens:");
-    for(BufferedOutputToken token : outputBuffer) {
+    System.out.println("  after buffer: " + outputBufferSize + " tokens:");
+    for(int i=0;i<outputBufferSize;i++) {
+      BufferedOutputToken token = outputBuffer[i];
       System.out.println("    tok: " + token.term + " startNode=" + token.startNode + " endNode=" + token.endNode);
     }
     */
   }
 
+  /** Returns the end of the word of the given synonym output that starts at {@code wordStart}. */
+  private static int wordEnd(CharsRefBuilder path, int wordStart) {
+    final char[] chars = path.chars();
+    final int chEnd = path.length();
+    int chUpto = wordStart;
+    while (chUpto < chEnd && chars[chUpto] != SynonymMap.WORD_SEPARATOR) {
+      chUpto++;
+    }
+    return chUpto;
+  }
+
+  /** Returns the next free output token, to be filled by the caller. */
+  private BufferedOutputToken nextOutputToken(int startNode, int endNode) {
+    if (outputBufferSize == outputBuffer.length) {
+      BufferedOutputToken[] newBuffer = new BufferedOutputToken[ArrayUtil.oversize(outputBufferSize + 1, RamUsageEstimator.NUM_BYTES_OBJECT_REF)];
+      System.arraycopy(outputBuffer, 0, newBuffer, 0, outputBufferSize);
+      for (int i = outputBufferSize; i < newBuffer.length; i++) {
+        newBuffer[i] = new BufferedOutputToken();
+      }
+      outputBuffer = newBuffer;
+    }
+    BufferedOutputToken token = outputBuffer[outputBufferSize++];
+    token.startNode = startNode;
+    token.endNode = endNode;
+    return token;
+  }
+
+  private void addSynonymToken(char[] chars, int start, int end, int startNode, int endNode) {
+    BufferedOutputToken token = nextOutputToken(startNode, endNode);
+    token.state = null;
+    token.term.copyChars(chars, start, end - start);
+    synonymCount++;
+  }
+
+  private void addInputToken(State state, int startNode, int endNode) {
+    BufferedOutputToken token = nextOutputToken(startNode, endNode);
+    token.state = state;
+    token.term.clear();
+  }
+
   /** Buffers the current input token into lookahead buffer. */
   private void capture() {
     assert liveToken;
@@ -578,11 +688,30 @@ public final class SynonymGraphFilter extends TokenFilter {
     matchEndOffset = -1;
     finished = false;
     liveToken = false;
-    outputBuffer.clear();
+    outputBufferSize = 0;
+    outputBufferUpto = 0;
     maxLookaheadUsed = 0;
+    lookupCount = 0;
+    matchCount = 0;
+    synonymCount = 0;
+    timeNanos = 0;
     //System.out.println("S: reset");
   }
 
+  @Override
+  public void end() throws IOException {
+    super.end();
+    if (metrics != null) {
+      metrics.record(lookupCount, matchCount, synonymCount, timeNanos);
+      lookupCount = matchCount = synonymCount = timeNanos = 0;
+    }
+  }
+
+  // for testing
+  SynonymMap getSynonymMap() {
+    return synonyms;
+  }
+
   // for testing
   int getCaptureCount() {
     return captureCount;
@@ -18,7 +18,9 @@
 package org.apache.lucene.analysis.synonym;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.lang.ref.WeakReference;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
@@ -37,6 +39,11 @@ import org.apache.lucene.analysis.util.ResourceLoader;
 import org.apache.lucene.analysis.util.ResourceLoaderAware;
 import org.apache.lucene.analysis.util.TokenFilterFactory;
 import org.apache.lucene.analysis.util.TokenizerFactory;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.InputStreamDataInput;
+import org.apache.lucene.util.StringHelper;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.OnHeapFSTStore;
 
 /**
  * Factory for {@link SynonymGraphFilter}.
@@ -70,6 +77,17 @@ import org.apache.lucene.analysis.util.TokenizerFactory;
  *   <li><code>boolean expand</code> - true if conflation groups should be expanded, false if they are one-directional</li>
  *   <li><code>{@link Analyzer} analyzer</code> - an analyzer used for each raw synonym</li>
  * </ul>
+ * <p>
+ * The {@code compiled} format loads a single file that has been written
+ * with {@link SynonymMap#save}, which avoids parsing synonyms and building
+ * the FST. Compiled maps are shared: all factories that load the same
+ * saved map, across analyzers and resource loaders, use a single instance
+ * of it as long as any of them is in use. The {@code tokenizerFactory},
+ * {@code analyzer} and {@code expand} parameters are ignored with this
+ * format, since they were applied when the map was built.
+ * <p>
+ * If the optional {@code metrics} parameter is true, all filters created
+ * by this factory record {@link #getMetrics() metrics}.
  * @see SolrSynonymParser SolrSynonymParser: default format
  *
  * @lucene.experimental
@@ -83,6 +101,10 @@ public class SynonymGraphFilterFactory extends TokenFilterFactory implements Res
   private final boolean expand;
   private final String analyzerName;
   private final Map<String, String> tokArgs = new HashMap<>();
+  private final SynonymMetrics metrics;
+
+  /** Compiled maps that have been loaded, by id. */
+  private static final Map<String, WeakReference<SynonymMap>> COMPILED_MAPS = new HashMap<>();
 
   private SynonymMap map;
   
@@ -92,6 +114,7 @@ public class SynonymGraphFilterFactory extends TokenFilterFactory implements Res
     synonyms = require(args, "synonyms");
     format = get(args, "format");
     expand = getBoolean(args, "expand", true);
+    metrics = getBoolean(args, "metrics", false) ? new SynonymMetrics() : null;
 
     analyzerName = get(args, "analyzer");
     tokenizerFactory = get(args, "tokenizerFactory");
@@ -117,11 +140,22 @@ public class SynonymGraphFilterFactory extends TokenFilterFactory implements Res
   public TokenStream create(TokenStream input) {
     // if the fst is null, it means there's actually no synonyms... just return the original stream
     // as there is nothing to do here.
-    return map.fst == null ? input : new SynonymGraphFilter(input, map, ignoreCase);
+    return map.fst == null ? input : new SynonymGraphFilter(input, map, ignoreCase, metrics);
+  }
+
+  /** Returns the metrics of the filters that this factory created, or
+   *  {@code null} if metrics are not enabled. */
+  public SynonymMetrics getMetrics() {
+    return metrics;
   }
 
   @Override
   public void inform(ResourceLoader loader) throws IOException {
+    if ("compiled".equals(format)) {
+      map = loadCompiledSynonyms(loader);
+      return;
+    }
+
     final TokenizerFactory factory = tokenizerFactory == null ? null : loadTokenizerFactory(loader, tokenizerFactory);
     Analyzer analyzer;
     
@@ -176,6 +210,32 @@ public class SynonymGraphFilterFactory extends TokenFilterFactory implements Res
     return parser.build();
   }
   
+  /**
+   * Load a synonym map that has been written with {@link SynonymMap#save},
+   * or return the already loaded instance of this map.
+   */
+  private SynonymMap loadCompiledSynonyms(ResourceLoader loader) throws IOException {
+    List<String> files = splitFileNames(synonyms);
+    if (files.size() != 1) {
+      throw new IllegalArgumentException("The compiled format requires a single synonyms file, got: " + synonyms);
+    }
+    try (InputStream stream = loader.openResource(files.get(0))) {
+      DataInput in = new InputStreamDataInput(stream);
+      String id = StringHelper.idToString(SynonymMap.readHeader(in));
+      synchronized (COMPILED_MAPS) {
+        WeakReference<SynonymMap> ref = COMPILED_MAPS.get(id);
+        SynonymMap map = ref == null ? null : ref.get();
+        if (map == null) {
+          map = SynonymMap.readBody(in, new OnHeapFSTStore(FST.DEFAULT_MAX_BLOCK_BITS));
+          // prune maps that are no longer used
+          COMPILED_MAPS.values().removeIf(r -> r.get() == null);
+          COMPILED_MAPS.put(id, new WeakReference<>(map));
+        }
+        return map;
+      }
+    }
+  }
+
   // (there are no tests for this functionality)
   private TokenizerFactory loadTokenizerFactory(ResourceLoader loader, String cname) throws IOException {
     Class<? extends TokenizerFactory> clazz = loader.findClass(cname, TokenizerFactory.class);
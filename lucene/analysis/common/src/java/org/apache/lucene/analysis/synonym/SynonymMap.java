@@ -30,22 +30,39 @@ import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.codecs.CodecUtil;
 import org.apache.lucene.store.ByteArrayDataOutput;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.BytesRefBuilder;
 import org.apache.lucene.util.BytesRefHash;
 import org.apache.lucene.util.CharsRef;
 import org.apache.lucene.util.CharsRefBuilder;
 import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.StringHelper;
 import org.apache.lucene.util.fst.ByteSequenceOutputs;
 import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.FSTStore;
+import org.apache.lucene.util.fst.OffHeapFSTStore;
+import org.apache.lucene.util.fst.OnHeapFSTStore;
 import org.apache.lucene.util.fst.Util;
 
 /**
  * A map of synonyms, keys and values are phrases.
+ * <p>
+ * Maps are immutable once built, so a single instance can be shared by
+ * all analyzers that apply the same synonyms. Large maps can be built
+ * once, {@link #save saved}, and then {@link #load(IndexInput, boolean) loaded}
+ * without being rebuilt, optionally leaving the FST off-heap.
  * @lucene.experimental
  */
 public class SynonymMap {
+  static final String CODEC_NAME = "SynonymMap";
+  static final int VERSION_START = 0;
+  static final int VERSION_CURRENT = VERSION_START;
+
   /** for multiword support, you must separate words with this separator */
   public static final char WORD_SEPARATOR = 0;
   /** map&lt;input word, list&lt;ord&gt;&gt; */
@@ -60,6 +77,83 @@ public class SynonymMap {
     this.words = words;
     this.maxHorizontalContext = maxHorizontalContext;
   }
+
+  /**
+   * Writes this map to the given output, so that it can be loaded with
+   * {@link #load(DataInput)} or {@link #load(IndexInput, boolean)}.
+   * Every call writes a new random id in the header, which identifies
+   * this saved map.
+   */
+  public void save(DataOutput out) throws IOException {
+    CodecUtil.writeIndexHeader(out, CODEC_NAME, VERSION_CURRENT, StringHelper.randomId(), "");
+    out.writeVInt(maxHorizontalContext);
+    final int numWords = words.size();
+    out.writeVInt(numWords);
+    final BytesRef scratch = new BytesRef();
+    for (int ord = 0; ord < numWords; ord++) {
+      words.get(ord, scratch);
+      out.writeVInt(scratch.length);
+      out.writeBytes(scratch.bytes, scratch.offset, scratch.length);
+    }
+    if (fst == null) {
+      out.writeByte((byte) 0);
+    } else {
+      out.writeByte((byte) 1);
+      fst.save(out);
+    }
+  }
+
+  /**
+   * Loads a map that has been written with {@link #save}.
+   */
+  public static SynonymMap load(DataInput in) throws IOException {
+    readHeader(in);
+    return readBody(in, new OnHeapFSTStore(FST.DEFAULT_MAX_BLOCK_BITS));
+  }
+
+  /**
+   * Loads a map that has been written with {@link #save}. If
+   * {@code offHeap} is true, the FST is not copied to the heap but read
+   * from {@code in} when matching, so {@code in} must stay open for as
+   * long as the map is used. This is typically used with a memory-mapped
+   * input.
+   */
+  public static SynonymMap load(IndexInput in, boolean offHeap) throws IOException {
+    readHeader(in);
+    return readBody(in, offHeap ? new OffHeapFSTStore() : new OnHeapFSTStore(FST.DEFAULT_MAX_BLOCK_BITS));
+  }
+
+  /** Reads the header of a saved map, and returns its id. */
+  static byte[] readHeader(DataInput in) throws IOException {
+    CodecUtil.checkHeader(in, CODEC_NAME, VERSION_START, VERSION_CURRENT);
+    final byte[] id = new byte[StringHelper.ID_LENGTH];
+    in.readBytes(id, 0, id.length);
+    CodecUtil.checkIndexHeaderSuffix(in, "");
+    return id;
+  }
+
+  /** Reads a saved map whose header has already been read. */
+  static SynonymMap readBody(DataInput in, FSTStore fstStore) throws IOException {
+    final int maxHorizontalContext = in.readVInt();
+    final int numWords = in.readVInt();
+    final BytesRefHash words = new BytesRefHash();
+    final BytesRefBuilder scratch = new BytesRefBuilder();
+    for (int ord = 0; ord < numWords; ord++) {
+      final int length = in.readVInt();
+      scratch.grow(length);
+      in.readBytes(scratch.bytes(), 0, length);
+      scratch.setLength(length);
+      final int added = words.add(scratch.get());
+      assert added == ord;
+    }
+    final FST<BytesRef> fst;
+    if (in.readByte() == 0) {
+      fst = null;
+    } else {
+      fst = new FST<>(in, ByteSequenceOutputs.getSingleton(), fstStore);
+    }
+    return new SynonymMap(fst, words, maxHorizontalContext);
+  }
   
   /**
    * Builds an FSTSynonymMap.
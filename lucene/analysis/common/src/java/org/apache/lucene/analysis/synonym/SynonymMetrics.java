@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.analysis.synonym;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics about the application of synonyms, which may be shared by
+ * any number of {@link SynonymGraphFilter}s, including across threads.
+ * Filters publish their metrics when their stream is
+ * {@link SynonymGraphFilter#end() ended}.
+ * @lucene.experimental
+ */
+public final class SynonymMetrics {
+
+  private final LongAdder lookupCount = new LongAdder();
+  private final LongAdder matchCount = new LongAdder();
+  private final LongAdder synonymCount = new LongAdder();
+  private final LongAdder timeNanos = new LongAdder();
+
+  /** Sole constructor. */
+  public SynonymMetrics() {}
+
+  void record(long lookups, long matches, long synonyms, long nanos) {
+    lookupCount.add(lookups);
+    matchCount.add(matches);
+    synonymCount.add(synonyms);
+    timeNanos.add(nanos);
+  }
+
+  /** Returns the number of positions at which a synonym was looked up. */
+  public long getLookupCount() {
+    return lookupCount.sum();
+  }
+
+  /** Returns the number of lookups that matched a synonym. */
+  public long getMatchCount() {
+    return matchCount.sum();
+  }
+
+  /** Returns the number of synonym tokens that were produced. */
+  public long getSynonymCount() {
+    return synonymCount.sum();
+  }
+
+  /** Returns the time spent looking up and expanding synonyms, in
+   *  nanoseconds. This excludes the time spent in the input stream. */
+  public long getTimeNanos() {
+    return timeNanos.sum();
+  }
+
+  /** Returns the number of lookups per second of time spent applying
+   *  synonyms, or 0 if no lookups were recorded. */
+  public double getLookupsPerSecond() {
+    final long nanos = getTimeNanos();
+    return nanos == 0 ? 0 : getLookupCount() * 1_000_000_000d / nanos;
+  }
+
+  @Override
+  public String toString() {
+    return "SynonymMetrics(lookups=" + getLookupCount() + ", matches=" + getMatchCount()
+        + ", synonyms=" + getSynonymCount() + ", timeNanos=" + getTimeNanos() + ")";
+  }
+}
@@ -27,6 +27,19 @@ import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.core.WhitespaceTokenizer;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.TestUtil;
 
 /**
  * Tests CommonGrams(Query)Filter
@@ -322,6 +335,58 @@ public class CommonGramsFilterTest extends BaseTokenStreamTestCase {
     assertTokenStreamContents(nsf, new String[] { "the_of" });
   }
   
+  public void testPhraseQueriesOnCommonGrams() throws Exception {
+    Analyzer a = new Analyzer() {
+      @Override
+      protected TokenStreamComponents createComponents(String fieldName) {
+        Tokenizer t = new MockTokenizer(MockTokenizer.WHITESPACE, false);
+        if (fieldName.equals("grams")) {
+          return new TokenStreamComponents(t, new CommonGramsFilter(t, commonWords));
+        }
+        return new TokenStreamComponents(t);
+      }
+    };
+    FieldType gramsType = new FieldType(TextField.TYPE_NOT_STORED);
+    PhraseQuery.setCommonWords(gramsType, Arrays.asList("s", "a", "b", "c", "d", "the", "of"));
+    String[] vocabulary = new String[] { "the", "of", "a", "s", "x", "y", "z" };
+
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, a);
+    int numDocs = atLeast(200);
+    for (int i = 0; i < numDocs; ++i) {
+      StringBuilder text = new StringBuilder();
+      int length = TestUtil.nextInt(random(), 1, 20);
+      for (int j = 0; j < length; ++j) {
+        text.append(vocabulary[random().nextInt(vocabulary.length)]).append(' ');
+      }
+      Document doc = new Document();
+      doc.add(new TextField("plain", text.toString(), Store.NO));
+      doc.add(new Field("grams", text.toString(), gramsType));
+      w.addDocument(doc);
+    }
+    IndexReader reader = w.getReader();
+    w.close();
+    IndexSearcher searcher = newSearcher(reader);
+
+    for (int iter = 0; iter < 100; ++iter) {
+      int length = TestUtil.nextInt(random(), 1, 5);
+      String[] words = new String[length];
+      for (int j = 0; j < length; ++j) {
+        words[j] = vocabulary[random().nextInt(vocabulary.length)];
+      }
+      TopDocs expected = searcher.search(new PhraseQuery("plain", words), numDocs, Sort.INDEXORDER);
+      TopDocs actual = searcher.search(new PhraseQuery("grams", words), numDocs, Sort.INDEXORDER);
+      assertEquals(expected.totalHits.value, actual.totalHits.value);
+      for (int j = 0; j < expected.scoreDocs.length; ++j) {
+        assertEquals(expected.scoreDocs[j].doc, actual.scoreDocs[j].doc);
+      }
+    }
+
+    reader.close();
+    dir.close();
+    a.close();
+  }
+
   /** blast some random strings through the analyzer */
   public void testRandomStrings() throws Exception {
     Analyzer a = new Analyzer() {
@@ -19,11 +19,14 @@ package org.apache.lucene.analysis.synonym;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.nio.file.Path;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.lucene.analysis.Analyzer;
@@ -35,6 +38,7 @@ import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.core.FlattenGraphFilter;
 import org.apache.lucene.analysis.tokenattributes.*;
+import org.apache.lucene.analysis.util.FilesystemResourceLoader;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.index.IndexReader;
@@ -43,6 +47,9 @@ import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.PhraseQuery;
 import org.apache.lucene.store.ByteArrayDataInput;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.CharsRef;
 import org.apache.lucene.util.CharsRefBuilder;
@@ -522,6 +529,98 @@ public class TestSynonymGraphFilter extends BaseTokenStreamTestCase {
     a.close();
   }
 
+  public void testSaveAndLoad() throws Exception {
+    SynonymMap.Builder b = new SynonymMap.Builder();
+    add(b, "a b", "x", true);
+    add(b, "c", "y z", false);
+    SynonymMap map = b.build();
+
+    Path path = createTempDir();
+    try (Directory dir = newFSDirectory(path)) {
+      try (IndexOutput out = dir.createOutput("synonyms.bin", IOContext.DEFAULT)) {
+        map.save(out);
+      }
+      try (IndexInput in = dir.openInput("synonyms.bin", IOContext.DEFAULT)) {
+        SynonymMap loaded = SynonymMap.load(in, random().nextBoolean());
+        assertEquals(map.maxHorizontalContext, loaded.maxHorizontalContext);
+        assertEquals(map.words.size(), loaded.words.size());
+        Analyzer a = new Analyzer() {
+          @Override
+          protected TokenStreamComponents createComponents(String fieldName) {
+            Tokenizer tokenizer = new MockTokenizer(MockTokenizer.WHITESPACE, false);
+            return new TokenStreamComponents(tokenizer, new SynonymGraphFilter(tokenizer, loaded, true));
+          }
+        };
+        assertAnalyzesTo(a,
+                         "c a b",
+                         new String[] {"y", "z", "x", "a", "b"},
+                         new int[]    { 0,   0,   2,   2,   4},
+                         new int[]    { 1,   1,   5,   3,   5},
+                         new String[] {"SYNONYM", "SYNONYM", "SYNONYM", "word", "word"},
+                         new int[]    { 1,   1,   1,   0,   1},
+                         new int[]    { 1,   1,   2,   1,   1});
+        a.close();
+      }
+    }
+  }
+
+  public void testCompiledFactoryIsShared() throws Exception {
+    SynonymMap.Builder b = new SynonymMap.Builder();
+    add(b, "a", "x", true);
+    SynonymMap map = b.build();
+
+    Path path = createTempDir();
+    try (Directory dir = newFSDirectory(path);
+         IndexOutput out = dir.createOutput("synonyms.bin", IOContext.DEFAULT)) {
+      map.save(out);
+    }
+
+    SynonymGraphFilterFactory factory1 = compiledFactory(path);
+    SynonymGraphFilterFactory factory2 = compiledFactory(path);
+    Tokenizer tokenizer = new MockTokenizer(MockTokenizer.WHITESPACE, false);
+    tokenizer.setReader(new StringReader("b a"));
+    TokenStream ts1 = factory1.create(tokenizer);
+    assertTokenStreamContents(ts1, new String[] {"b", "x", "a"});
+    tokenizer = new MockTokenizer(MockTokenizer.WHITESPACE, false);
+    TokenStream ts2 = factory2.create(tokenizer);
+    assertSame(((SynonymGraphFilter) ts1).getSynonymMap(), ((SynonymGraphFilter) ts2).getSynonymMap());
+
+    SynonymMetrics metrics = factory1.getMetrics();
+    assertEquals(2, metrics.getLookupCount());
+    assertEquals(1, metrics.getMatchCount());
+    assertEquals(1, metrics.getSynonymCount());
+    assertNotSame(metrics, factory2.getMetrics());
+  }
+
+  private SynonymGraphFilterFactory compiledFactory(Path path) throws IOException {
+    Map<String, String> args = new HashMap<>();
+    args.put("synonyms", "synonyms.bin");
+    args.put("format", "compiled");
+    args.put("metrics", "true");
+    SynonymGraphFilterFactory factory = new SynonymGraphFilterFactory(args);
+    factory.inform(new FilesystemResourceLoader(path, getClass().getClassLoader()));
+    return factory;
+  }
+
+  public void testMetrics() throws Exception {
+    SynonymMap.Builder b = new SynonymMap.Builder();
+    add(b, "a b", "x y", false);
+    add(b, "c", "z", true);
+    SynonymMap map = b.build();
+    SynonymMetrics metrics = new SynonymMetrics();
+    for (int i = 0; i < 2; i++) {
+      Tokenizer tokenizer = new MockTokenizer(MockTokenizer.WHITESPACE, false);
+      tokenizer.setReader(new StringReader("a b c d"));
+      TokenStream ts = new SynonymGraphFilter(tokenizer, map, false, metrics);
+      assertTokenStreamContents(ts, new String[] {"x", "y", "z", "c", "d"});
+    }
+    // one lookup at "a", "c" and "d"
+    assertEquals(6, metrics.getLookupCount());
+    assertEquals(4, metrics.getMatchCount());
+    assertEquals(6, metrics.getSynonymCount());
+    assertTrue(metrics.getTimeNanos() >= 0);
+  }
+
   /** Multiple input tokens map to a single output token */
   public void testManyToOne() throws Exception {
     SynonymMap.Builder b = new SynonymMap.Builder();
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.benchmark.byTask.feeds;
+
+
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.StringTokenizer;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queries.intervals.IntervalQuery;
+import org.apache.lucene.queries.intervals.Intervals;
+import org.apache.lucene.queries.intervals.IntervalsSource;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.spans.SpanNearQuery;
+import org.apache.lucene.search.spans.SpanQuery;
+import org.apache.lucene.search.spans.SpanTermQuery;
+
+/**
+ * Create equivalent proximity queries as either {@link IntervalQuery} or
+ * {@link SpanNearQuery} for performance comparisons, in an index created using
+ * simple doc maker. The implementation is selected by the
+ * <code>query.proximity</code> property, which may be either
+ * <code>intervals</code> (the default) or <code>spans</code>.
+ */
+public class SimpleProximityQueryMaker extends SimpleQueryMaker {
+
+  @Override
+  protected Query[] prepareQueries() throws Exception {
+    final String impl = config.get("query.proximity", "intervals");
+    final boolean spans;
+    if (impl.equals("spans")) {
+      spans = true;
+    } else if (impl.equals("intervals")) {
+      spans = false;
+    } else {
+      throw new IllegalArgumentException("query.proximity must be either intervals or spans, got " + impl);
+    }
+
+    // extract some 100 words from doc text to an array, roughly the way that
+    // StandardAnalyzer tokenizes them so that queries find stuff
+    ArrayList<String> w = new ArrayList<>();
+    StringTokenizer st = new StringTokenizer(SingleDocSource.DOC_TEXT.toLowerCase(Locale.ROOT), " ,.:;!?()\"");
+    while (st.hasMoreTokens() && w.size()<100) {
+      w.add(st.nextToken());
+    }
+    String[] words = w.toArray(new String[0]);
+
+    // create queries (that would find stuff) with varying slops, in and out of order
+    ArrayList<Query> queries = new ArrayList<>();
+    for (int slop=0; slop<8; slop+=2) {
+      for (int qlen=2; qlen<5; qlen++) {
+        for (int wd=0; wd<words.length-qlen-slop; wd++) {
+          String[] terms = new String[qlen];
+          for (int i=0; i<qlen; i++) {
+            terms[i] = words[wd + i + (i * slop) / qlen];
+          }
+          queries.add(spans ? spanNear(terms, slop, true) : intervalNear(terms, slop, true));
+          queries.add(spans ? spanNear(terms, slop, false) : intervalNear(terms, slop, false));
+        }
+      }
+    }
+    return queries.toArray(new Query[0]);
+  }
+
+  private static Query spanNear(String[] terms, int slop, boolean inOrder) {
+    SpanQuery[] clauses = new SpanQuery[terms.length];
+    for (int i=0; i<terms.length; i++) {
+      clauses[i] = new SpanTermQuery(new Term(DocMaker.BODY_FIELD, terms[i]));
+    }
+    return new SpanNearQuery(clauses, slop, inOrder);
+  }
+
+  private static Query intervalNear(String[] terms, int slop, boolean inOrder) {
+    IntervalsSource[] sources = new IntervalsSource[terms.length];
+    for (int i=0; i<terms.length; i++) {
+      sources[i] = Intervals.term(terms[i]);
+    }
+    // the width of a span near query with this slop
+    int width = terms.length + slop;
+    IntervalsSource source = inOrder ? Intervals.ordered(sources) : Intervals.unordered(sources);
+    return new IntervalQuery(DocMaker.BODY_FIELD, Intervals.maxwidth(width, source));
+  }
+
+}
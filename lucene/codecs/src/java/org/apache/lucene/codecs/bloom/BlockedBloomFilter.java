@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.bloom;
+
+import java.io.IOException;
+
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.StringHelper;
+
+/**
+ * A blocked Bloom filter: every value is hashed to a single 512-bit block
+ * (one cache line) and all of its bits are set within that block. Compared to
+ * {@link FuzzySet} this needs a single random memory access per lookup, and the
+ * filter is sized up-front from the exact number of values it will hold rather
+ * than being allocated for the worst case and downsized afterwards.
+ * <p>
+ * Values are hashed with two independent {@link StringHelper#murmurhash3_x86_32
+ * MurmurHash3} hashes: the first one picks the block and the second one is
+ * used to derive the positions within the block through double hashing.
+ * <p>This class is NOT threadsafe while values are being added.</p>
+ * @lucene.experimental
+ */
+public final class BlockedBloomFilter implements Accountable {
+
+  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(BlockedBloomFilter.class);
+
+  /** Number of longs per block: 8 longs = 512 bits = one 64-byte cache line. */
+  static final int LONGS_PER_BLOCK = 8;
+  static final int BITS_PER_BLOCK = LONGS_PER_BLOCK * Long.SIZE;
+  private static final int BLOCK_MASK = BITS_PER_BLOCK - 1;
+
+  /** Maximum number of hash functions, more than that only wastes CPU. */
+  public static final int MAX_NUM_HASHES = 16;
+
+  private static final int BLOCK_SEED = 0;
+  private static final int BITS_SEED = 0x9747b28c;
+
+  private final int numBlocks;
+  private final int numHashes;
+  private final long[] bits;
+
+  private BlockedBloomFilter(int numBlocks, int numHashes, long[] bits) {
+    this.numBlocks = numBlocks;
+    this.numHashes = numHashes;
+    this.bits = bits;
+  }
+
+  /**
+   * Create an empty filter that is sized to hold {@code numValues} values using
+   * roughly {@code bitsPerValue} bits per value.
+   */
+  public static BlockedBloomFilter create(long numValues, int bitsPerValue) {
+    if (numValues < 0) {
+      throw new IllegalArgumentException("numValues must be >= 0, got " + numValues);
+    }
+    if (bitsPerValue < 1) {
+      throw new IllegalArgumentException("bitsPerValue must be >= 1, got " + bitsPerValue);
+    }
+    final long numBits = Math.max(1L, numValues) * bitsPerValue;
+    final long numBlocks = (numBits + BITS_PER_BLOCK - 1) / BITS_PER_BLOCK;
+    if (numBlocks > Integer.MAX_VALUE / LONGS_PER_BLOCK) {
+      throw new IllegalArgumentException("Too many values for a single filter: " + numValues);
+    }
+    // k = ln(2) * m / n is the optimal number of hash functions for a classic Bloom filter
+    final int numHashes = Math.max(1, Math.min(MAX_NUM_HASHES, (int) Math.round(bitsPerValue * Math.log(2))));
+    return new BlockedBloomFilter((int) numBlocks, numHashes, new long[(int) numBlocks * LONGS_PER_BLOCK]);
+  }
+
+  /** Compute the 64-bit hash of the given value, as expected by {@link #add(long)} and {@link #mayContain(long)}. */
+  public static long hash(BytesRef value) {
+    final int blockHash = StringHelper.murmurhash3_x86_32(value, BLOCK_SEED);
+    final int bitsHash = StringHelper.murmurhash3_x86_32(value, BITS_SEED);
+    return ((long) blockHash << 32) | (bitsHash & 0xFFFFFFFFL);
+  }
+
+  private int blockOffset(long hash) {
+    // multiply-shift maps the high 32 bits of the hash uniformly to [0, numBlocks) without a modulo
+    final long block = ((hash >>> 32) * numBlocks) >>> 32;
+    return (int) block * LONGS_PER_BLOCK;
+  }
+
+  /** Record the value with the given {@link #hash(BytesRef) hash}. */
+  public void add(long hash) {
+    final int offset = blockOffset(hash);
+    final int a = (int) hash & 0xFFFF;
+    final int b = (((int) hash) >>> 16) | 1;
+    for (int i = 0; i < numHashes; ++i) {
+      final int bit = (a + i * b) & BLOCK_MASK;
+      bits[offset + (bit >>> 6)] |= 1L << bit;
+    }
+  }
+
+  /** Record the given value. */
+  public void add(BytesRef value) {
+    add(hash(value));
+  }
+
+  /**
+   * Return {@code false} if the value with the given {@link #hash(BytesRef)
+   * hash} has definitely not been added to this filter, and {@code true} if it
+   * may have been added.
+   */
+  public boolean mayContain(long hash) {
+    final int offset = blockOffset(hash);
+    final int a = (int) hash & 0xFFFF;
+    final int b = (((int) hash) >>> 16) | 1;
+    for (int i = 0; i < numHashes; ++i) {
+      final int bit = (a + i * b) & BLOCK_MASK;
+      if ((bits[offset + (bit >>> 6)] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Same as {@link #mayContain(long)} but computes the hash of the value first. */
+  public boolean mayContain(BytesRef value) {
+    return mayContain(hash(value));
+  }
+
+  /** Return the number of 512-bit blocks of this filter. */
+  public int getNumBlocks() {
+    return numBlocks;
+  }
+
+  /** Return the number of bits that are set for every value. */
+  public int getNumHashes() {
+    return numHashes;
+  }
+
+  /** Return the ratio of bits that are set, between 0 and 1. */
+  public float getSaturation() {
+    long setBits = 0;
+    for (long l : bits) {
+      setBits += Long.bitCount(l);
+    }
+    return (float) setBits / ((long) bits.length * Long.SIZE);
+  }
+
+  /**
+   * Serialize this filter.
+   * <ul>
+   * <li>BlockedBloomFilter --&gt; NumBlocks, NumHashes, Bits<sup>NumBlocks*8</sup></li>
+   * <li>NumBlocks --&gt; {@link DataOutput#writeVInt VInt}</li>
+   * <li>NumHashes --&gt; {@link DataOutput#writeByte Byte}</li>
+   * <li>Bits --&gt; {@link DataOutput#writeLong Int64}</li>
+   * </ul>
+   */
+  public void serialize(DataOutput out) throws IOException {
+    out.writeVInt(numBlocks);
+    out.writeByte((byte) numHashes);
+    for (long l : bits) {
+      out.writeLong(l);
+    }
+  }
+
+  /** Read a filter that has been written with {@link #serialize(DataOutput)}. */
+  public static BlockedBloomFilter deserialize(DataInput in) throws IOException {
+    final int numBlocks = in.readVInt();
+    if (numBlocks <= 0 || numBlocks > Integer.MAX_VALUE / LONGS_PER_BLOCK) {
+      throw new IOException("Invalid number of blocks: " + numBlocks);
+    }
+    final int numHashes = in.readByte();
+    if (numHashes < 1 || numHashes > MAX_NUM_HASHES) {
+      throw new IOException("Invalid number of hash functions: " + numHashes);
+    }
+    final long[] bits = new long[numBlocks * LONGS_PER_BLOCK];
+    for (int i = 0; i < bits.length; ++i) {
+      bits[i] = in.readLong();
+    }
+    return new BlockedBloomFilter(numBlocks, numHashes, bits);
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return BASE_RAM_BYTES_USED + RamUsageEstimator.sizeOf(bits);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(blocks=" + numBlocks + ",hashes=" + numHashes + ")";
+  }
+}
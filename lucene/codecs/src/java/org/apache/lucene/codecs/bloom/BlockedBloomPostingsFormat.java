@@ -0,0 +1,491 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.bloom;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.FieldsConsumer;
+import org.apache.lucene.codecs.FieldsProducer;
+import org.apache.lucene.codecs.NormsProducer;
+import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.index.BaseTermsEnum;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.Fields;
+import org.apache.lucene.index.ImpactsEnum;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.index.TermState;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.store.ChecksumIndexInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.Accountables;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.automaton.CompiledAutomaton;
+
+/**
+ * A {@link PostingsFormat} that maintains a {@link BlockedBloomFilter} for
+ * every field it is used for, in order to fail fast on
+ * {@link TermsEnum#seekExact(BytesRef)} calls for terms that do not exist in
+ * the segment. This is typically useful for primary keys, which are looked up
+ * in every segment on updates, deletes by term and real-time gets.
+ * <p>
+ * Unlike {@link BloomFilteringPostingsFormat}, filters are sized from the
+ * actual number of terms of the field when the segment is flushed or merged,
+ * so that they neither waste memory on small segments nor saturate on large
+ * ones. This format can be enabled for a subset of the fields of the default
+ * codec by overriding its {@code getPostingsFormatForField} method:
+ * <pre class="prettyprint">
+ * final PostingsFormat idPostingsFormat = new BlockedBloomPostingsFormat();
+ * iwc.setCodec(new Lucene80Codec() {
+ *   &#64;Override
+ *   public PostingsFormat getPostingsFormatForField(String field) {
+ *     return "id".equals(field) ? idPostingsFormat : super.getPostingsFormatForField(field);
+ *   }
+ * });
+ * </pre>
+ * <p>
+ * The format of the bbf file is as follows:
+ * </p>
+ * <ul>
+ * <li>BlockedBloomFilters (.bbf) --&gt; Header, DelegatePostingsFormatName,
+ * NumFilteredFields, Filter<sup>NumFilteredFields</sup>, Footer</li>
+ * <li>Filter --&gt; FieldNumber, BlockedBloomFilter</li>
+ * <li>BlockedBloomFilter --&gt; See {@link BlockedBloomFilter#serialize(DataOutput)}</li>
+ * <li>Header --&gt; {@link CodecUtil#writeIndexHeader IndexHeader}</li>
+ * <li>DelegatePostingsFormatName --&gt; {@link DataOutput#writeString(String)
+ * String} The name of a ServiceProvider registered {@link PostingsFormat}</li>
+ * <li>NumFilteredFields --&gt; {@link DataOutput#writeVInt VInt}</li>
+ * <li>FieldNumber --&gt; {@link DataOutput#writeVInt VInt} The number of the
+ * field in this segment</li>
+ * <li>Footer --&gt; {@link CodecUtil#writeFooter CodecFooter}</li>
+ * </ul>
+ * @lucene.experimental
+ */
+public final class BlockedBloomPostingsFormat extends PostingsFormat {
+
+  public static final String BLOCKED_BLOOM_CODEC_NAME = "BlockedBloom";
+  public static final int VERSION_START = 0;
+  public static final int VERSION_CURRENT = VERSION_START;
+
+  /** Extension of blocked Bloom filters file */
+  static final String BLOCKED_BLOOM_EXTENSION = "bbf";
+
+  /** Default number of bits per term, which gives a false positive rate of about 1%. */
+  public static final int DEFAULT_BITS_PER_VALUE = 10;
+
+  private static final String DEFAULT_DELEGATE_NAME = "Lucene50";
+
+  private final PostingsFormat delegatePostingsFormat;
+  private final int bitsPerValue;
+
+  /**
+   * Create a new instance that delegates encoding of the postings to
+   * {@code delegatePostingsFormat} and uses filters that take about
+   * {@code bitsPerValue} bits per unique term.
+   */
+  public BlockedBloomPostingsFormat(PostingsFormat delegatePostingsFormat, int bitsPerValue) {
+    super(BLOCKED_BLOOM_CODEC_NAME);
+    if (bitsPerValue < 1) {
+      throw new IllegalArgumentException("bitsPerValue must be >= 1, got " + bitsPerValue);
+    }
+    this.delegatePostingsFormat = delegatePostingsFormat;
+    this.bitsPerValue = bitsPerValue;
+  }
+
+  /**
+   * Create a new instance that uses {@link #DEFAULT_BITS_PER_VALUE} bits per
+   * unique term.
+   */
+  public BlockedBloomPostingsFormat(PostingsFormat delegatePostingsFormat) {
+    this(delegatePostingsFormat, DEFAULT_BITS_PER_VALUE);
+  }
+
+  /**
+   * Create a new instance that delegates to the {@code Lucene50} postings
+   * format and uses {@link #DEFAULT_BITS_PER_VALUE} bits per unique term.
+   * This is also the constructor that is used by the Service Provider at
+   * read-time.
+   */
+  public BlockedBloomPostingsFormat() {
+    // the delegate can't be looked up by name while SPI is being initialized
+    super(BLOCKED_BLOOM_CODEC_NAME);
+    this.delegatePostingsFormat = null;
+    this.bitsPerValue = DEFAULT_BITS_PER_VALUE;
+  }
+
+  private PostingsFormat getDelegatePostingsFormat() {
+    return delegatePostingsFormat == null ? PostingsFormat.forName(DEFAULT_DELEGATE_NAME) : delegatePostingsFormat;
+  }
+
+  @Override
+  public FieldsConsumer fieldsConsumer(SegmentWriteState state) throws IOException {
+    PostingsFormat delegate = getDelegatePostingsFormat();
+    FieldsConsumer fieldsConsumer = delegate.fieldsConsumer(state);
+    return new BlockedBloomFieldsConsumer(delegate.getName(), fieldsConsumer, state);
+  }
+
+  @Override
+  public FieldsProducer fieldsProducer(SegmentReadState state) throws IOException {
+    return new BlockedBloomFieldsProducer(state);
+  }
+
+  static class BlockedBloomFieldsProducer extends FieldsProducer {
+    private FieldsProducer delegateFieldsProducer;
+    private final Map<String,BlockedBloomFilter> filtersByFieldName = new HashMap<>();
+
+    BlockedBloomFieldsProducer(SegmentReadState state) throws IOException {
+      String filterFileName = IndexFileNames.segmentFileName(
+          state.segmentInfo.name, state.segmentSuffix, BLOCKED_BLOOM_EXTENSION);
+      boolean success = false;
+      try (ChecksumIndexInput filterIn = state.directory.openChecksumInput(filterFileName, state.context)) {
+        Throwable priorE = null;
+        try {
+          CodecUtil.checkIndexHeader(filterIn, BLOCKED_BLOOM_CODEC_NAME, VERSION_START, VERSION_CURRENT,
+              state.segmentInfo.getId(), state.segmentSuffix);
+          PostingsFormat delegatePostingsFormat = PostingsFormat.forName(filterIn.readString());
+          delegateFieldsProducer = delegatePostingsFormat.fieldsProducer(state);
+          int numFilters = filterIn.readVInt();
+          for (int i = 0; i < numFilters; i++) {
+            int fieldNum = filterIn.readVInt();
+            FieldInfo fieldInfo = state.fieldInfos.fieldInfo(fieldNum);
+            if (fieldInfo == null) {
+              throw new IOException("Invalid field number: " + fieldNum + " (resource=" + filterIn + ")");
+            }
+            filtersByFieldName.put(fieldInfo.name, BlockedBloomFilter.deserialize(filterIn));
+          }
+        } catch (Throwable exception) {
+          priorE = exception;
+        } finally {
+          CodecUtil.checkFooter(filterIn, priorE);
+        }
+        success = true;
+      } finally {
+        if (success == false) {
+          IOUtils.closeWhileHandlingException(delegateFieldsProducer);
+        }
+      }
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+      return delegateFieldsProducer.iterator();
+    }
+
+    @Override
+    public void close() throws IOException {
+      delegateFieldsProducer.close();
+    }
+
+    @Override
+    public Terms terms(String field) throws IOException {
+      Terms terms = delegateFieldsProducer.terms(field);
+      BlockedBloomFilter filter = filtersByFieldName.get(field);
+      if (terms == null || filter == null) {
+        return terms;
+      }
+      return new BlockedBloomTerms(terms, filter);
+    }
+
+    @Override
+    public int size() {
+      return delegateFieldsProducer.size();
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      long sizeInBytes = delegateFieldsProducer.ramBytesUsed();
+      for (Map.Entry<String,BlockedBloomFilter> entry : filtersByFieldName.entrySet()) {
+        sizeInBytes += entry.getKey().length() * Character.BYTES;
+        sizeInBytes += entry.getValue().ramBytesUsed();
+      }
+      return sizeInBytes;
+    }
+
+    @Override
+    public Collection<Accountable> getChildResources() {
+      List<Accountable> resources = new ArrayList<>();
+      resources.addAll(Accountables.namedAccountables("field", filtersByFieldName));
+      resources.add(Accountables.namedAccountable("delegate", delegateFieldsProducer));
+      return Collections.unmodifiableList(resources);
+    }
+
+    @Override
+    public void checkIntegrity() throws IOException {
+      delegateFieldsProducer.checkIntegrity();
+    }
+
+    @Override
+    public String toString() {
+      return getClass().getSimpleName() + "(fields=" + filtersByFieldName.size() + ",delegate=" + delegateFieldsProducer + ")";
+    }
+  }
+
+  static final class BlockedBloomTerms extends Terms {
+    private final Terms delegateTerms;
+    private final BlockedBloomFilter filter;
+
+    BlockedBloomTerms(Terms delegateTerms, BlockedBloomFilter filter) {
+      this.delegateTerms = delegateTerms;
+      this.filter = filter;
+    }
+
+    @Override
+    public TermsEnum intersect(CompiledAutomaton compiled, BytesRef startTerm) throws IOException {
+      return delegateTerms.intersect(compiled, startTerm);
+    }
+
+    @Override
+    public TermsEnum iterator() throws IOException {
+      return new BlockedBloomTermsEnum(delegateTerms, filter);
+    }
+
+    @Override
+    public long size() throws IOException {
+      return delegateTerms.size();
+    }
+
+    @Override
+    public long getSumTotalTermFreq() throws IOException {
+      return delegateTerms.getSumTotalTermFreq();
+    }
+
+    @Override
+    public long getSumDocFreq() throws IOException {
+      return delegateTerms.getSumDocFreq();
+    }
+
+    @Override
+    public int getDocCount() throws IOException {
+      return delegateTerms.getDocCount();
+    }
+
+    @Override
+    public boolean hasFreqs() {
+      return delegateTerms.hasFreqs();
+    }
+
+    @Override
+    public boolean hasOffsets() {
+      return delegateTerms.hasOffsets();
+    }
+
+    @Override
+    public boolean hasPositions() {
+      return delegateTerms.hasPositions();
+    }
+
+    @Override
+    public boolean hasPayloads() {
+      return delegateTerms.hasPayloads();
+    }
+
+    @Override
+    public BytesRef getMin() throws IOException {
+      return delegateTerms.getMin();
+    }
+
+    @Override
+    public BytesRef getMax() throws IOException {
+      return delegateTerms.getMax();
+    }
+  }
+
+  static final class BlockedBloomTermsEnum extends BaseTermsEnum {
+    private final Terms delegateTerms;
+    private final BlockedBloomFilter filter;
+    private TermsEnum delegateTermsEnum;
+
+    BlockedBloomTermsEnum(Terms delegateTerms, BlockedBloomFilter filter) {
+      this.delegateTerms = delegateTerms;
+      this.filter = filter;
+    }
+
+    private TermsEnum delegate() throws IOException {
+      if (delegateTermsEnum == null) {
+        // lazily pull the delegate iterator, lookups that are rejected by the
+        // filter never need it
+        delegateTermsEnum = delegateTerms.iterator();
+      }
+      return delegateTermsEnum;
+    }
+
+    @Override
+    public boolean seekExact(BytesRef text) throws IOException {
+      if (filter.mayContain(text) == false) {
+        return false;
+      }
+      return delegate().seekExact(text);
+    }
+
+    @Override
+    public void seekExact(BytesRef term, TermState state) throws IOException {
+      delegate().seekExact(term, state);
+    }
+
+    @Override
+    public TermState termState() throws IOException {
+      return delegate().termState();
+    }
+
+    @Override
+    public SeekStatus seekCeil(BytesRef text) throws IOException {
+      return delegate().seekCeil(text);
+    }
+
+    @Override
+    public void seekExact(long ord) throws IOException {
+      delegate().seekExact(ord);
+    }
+
+    @Override
+    public BytesRef next() throws IOException {
+      return delegate().next();
+    }
+
+    @Override
+    public BytesRef term() throws IOException {
+      return delegate().term();
+    }
+
+    @Override
+    public long ord() throws IOException {
+      return delegate().ord();
+    }
+
+    @Override
+    public int docFreq() throws IOException {
+      return delegate().docFreq();
+    }
+
+    @Override
+    public long totalTermFreq() throws IOException {
+      return delegate().totalTermFreq();
+    }
+
+    @Override
+    public PostingsEnum postings(PostingsEnum reuse, int flags) throws IOException {
+      return delegate().postings(reuse, flags);
+    }
+
+    @Override
+    public ImpactsEnum impacts(int flags) throws IOException {
+      return delegate().impacts(flags);
+    }
+  }
+
+  final class BlockedBloomFieldsConsumer extends FieldsConsumer {
+    private final String delegatePostingsFormatName;
+    private final FieldsConsumer delegateFieldsConsumer;
+    private final Map<FieldInfo,BlockedBloomFilter> filters = new HashMap<>();
+    private final SegmentWriteState state;
+    private boolean closed;
+
+    BlockedBloomFieldsConsumer(String delegatePostingsFormatName, FieldsConsumer delegateFieldsConsumer, SegmentWriteState state) {
+      this.delegatePostingsFormatName = delegatePostingsFormatName;
+      this.delegateFieldsConsumer = delegateFieldsConsumer;
+      this.state = state;
+    }
+
+    @Override
+    public void write(Fields fields, NormsProducer norms) throws IOException {
+      // Delegate must write first: it may have opened files on creating the
+      // class, and write() will close them
+      delegateFieldsConsumer.write(fields, norms);
+
+      for (String field : fields) {
+        Terms terms = fields.terms(field);
+        if (terms == null) {
+          continue;
+        }
+        // The number of live terms is not known up-front on merges, so terms
+        // are iterated twice: once to size the filter and once to fill it
+        long numTerms = 0;
+        TermsEnum termsEnum = terms.iterator();
+        PostingsEnum postingsEnum = null;
+        for (BytesRef term = termsEnum.next(); term != null; term = termsEnum.next()) {
+          postingsEnum = termsEnum.postings(postingsEnum, PostingsEnum.NONE);
+          if (hasLiveDoc(postingsEnum)) {
+            numTerms++;
+          }
+        }
+        if (numTerms == 0) {
+          continue;
+        }
+        BlockedBloomFilter filter = BlockedBloomFilter.create(numTerms, bitsPerValue);
+        termsEnum = terms.iterator();
+        for (BytesRef term = termsEnum.next(); term != null; term = termsEnum.next()) {
+          postingsEnum = termsEnum.postings(postingsEnum, PostingsEnum.NONE);
+          if (hasLiveDoc(postingsEnum)) {
+            filter.add(BlockedBloomFilter.hash(term));
+          }
+        }
+        FieldInfo fieldInfo = state.fieldInfos.fieldInfo(field);
+        assert filters.containsKey(fieldInfo) == false;
+        filters.put(fieldInfo, filter);
+      }
+    }
+
+    // Make sure there's at least one doc for this term
+    private boolean hasLiveDoc(PostingsEnum postingsEnum) throws IOException {
+      return postingsEnum.nextDoc() != PostingsEnum.NO_MORE_DOCS;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      delegateFieldsConsumer.close();
+
+      String filterFileName = IndexFileNames.segmentFileName(
+          state.segmentInfo.name, state.segmentSuffix, BLOCKED_BLOOM_EXTENSION);
+      try (IndexOutput filterOut = state.directory.createOutput(filterFileName, state.context)) {
+        CodecUtil.writeIndexHeader(filterOut, BLOCKED_BLOOM_CODEC_NAME, VERSION_CURRENT,
+            state.segmentInfo.getId(), state.segmentSuffix);
+        // remember the name of the postings format we will delegate to
+        filterOut.writeString(delegatePostingsFormatName);
+        filterOut.writeVInt(filters.size());
+        for (Map.Entry<FieldInfo,BlockedBloomFilter> entry : filters.entrySet()) {
+          filterOut.writeVInt(entry.getKey().number);
+          entry.getValue().serialize(filterOut);
+        }
+        CodecUtil.writeFooter(filterOut);
+      }
+      filters.clear();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "BlockedBloomPostingsFormat(" + (delegatePostingsFormat == null ? DEFAULT_DELEGATE_NAME : delegatePostingsFormat) + ", bitsPerValue=" + bitsPerValue + ")";
+  }
+}
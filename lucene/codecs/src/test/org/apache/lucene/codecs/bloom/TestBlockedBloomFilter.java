@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.bloom;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.store.ByteBuffersDataOutput;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestBlockedBloomFilter extends LuceneTestCase {
+
+  public void testNoFalseNegatives() throws IOException {
+    final int numValues = atLeast(10000);
+    Set<BytesRef> values = new HashSet<>();
+    while (values.size() < numValues) {
+      values.add(new BytesRef(TestUtil.randomUnicodeString(random())));
+    }
+    BlockedBloomFilter filter = BlockedBloomFilter.create(values.size(), TestUtil.nextInt(random(), 1, 20));
+    for (BytesRef value : values) {
+      filter.add(value);
+    }
+    for (BytesRef value : values) {
+      assertTrue(filter.mayContain(value));
+    }
+
+    ByteBuffersDataOutput out = new ByteBuffersDataOutput();
+    filter.serialize(out);
+    BlockedBloomFilter copy = BlockedBloomFilter.deserialize(out.toDataInput());
+    assertEquals(filter.getNumBlocks(), copy.getNumBlocks());
+    assertEquals(filter.getNumHashes(), copy.getNumHashes());
+    for (BytesRef value : values) {
+      assertTrue(copy.mayContain(value));
+    }
+  }
+
+  public void testFalsePositiveRate() {
+    final int numValues = 100000;
+    BlockedBloomFilter filter = BlockedBloomFilter.create(numValues, BlockedBloomPostingsFormat.DEFAULT_BITS_PER_VALUE);
+    for (int i = 0; i < numValues; ++i) {
+      filter.add(new BytesRef("id" + i));
+    }
+    int falsePositives = 0;
+    for (int i = numValues; i < 2 * numValues; ++i) {
+      if (filter.mayContain(new BytesRef("id" + i))) {
+        falsePositives++;
+      }
+    }
+    // about 1% is expected, leave some room for the blocking overhead
+    assertTrue("falsePositives=" + falsePositives, falsePositives < numValues * 3 / 100);
+  }
+
+  public void testEmpty() {
+    BlockedBloomFilter filter = BlockedBloomFilter.create(0, 10);
+    assertEquals(1, filter.getNumBlocks());
+    assertFalse(filter.mayContain(new BytesRef("foo")));
+    expectThrows(IllegalArgumentException.class, () -> BlockedBloomFilter.create(-1, 10));
+    expectThrows(IllegalArgumentException.class, () -> BlockedBloomFilter.create(10, 0));
+  }
+}
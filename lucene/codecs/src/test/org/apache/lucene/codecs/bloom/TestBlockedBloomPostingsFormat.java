@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.bloom;
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.BasePostingsFormatTestCase;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.TestUtil;
+
+/**
+ * Basic tests for BlockedBloomPostingsFormat
+ */
+public class TestBlockedBloomPostingsFormat extends BasePostingsFormatTestCase {
+  private final Codec codec = TestUtil.alwaysPostingsFormat(new BlockedBloomPostingsFormat(TestUtil.getDefaultPostingsFormat()));
+
+  @Override
+  protected Codec getCodec() {
+    return codec;
+  }
+
+  public void testDeleteAndUpdateById() throws IOException {
+    try (Directory dir = newDirectory()) {
+      IndexWriterConfig iwc = newIndexWriterConfig().setCodec(codec);
+      try (IndexWriter w = new IndexWriter(dir, iwc)) {
+        final int numDocs = atLeast(200);
+        for (int i = 0; i < numDocs; ++i) {
+          Document doc = new Document();
+          doc.add(new StringField("id", Integer.toString(i), Field.Store.NO));
+          w.addDocument(doc);
+          if (random().nextInt(20) == 0) {
+            w.commit();
+          }
+        }
+        for (int i = 0; i < numDocs; i += 2) {
+          w.deleteDocuments(new Term("id", Integer.toString(i)));
+        }
+        try (DirectoryReader reader = DirectoryReader.open(w)) {
+          assertEquals(numDocs / 2, reader.numDocs());
+          for (int i = 0; i < numDocs; ++i) {
+            BytesRef id = new BytesRef(Integer.toString(i));
+            int found = 0;
+            for (LeafReaderContext ctx : reader.leaves()) {
+              TermsEnum termsEnum = ctx.reader().terms("id").iterator();
+              if (termsEnum.seekExact(id)) {
+                found++;
+              }
+            }
+            // deleted docs are still in the terms dictionary until merged away
+            assertTrue(found <= 1);
+            if (i % 2 == 1) {
+              assertEquals(1, found);
+            }
+          }
+        }
+      }
+    }
+  }
+}
@@ -22,7 +22,7 @@ import java.io.Reader;
 
 import org.apache.lucene.analysis.CharArraySet;
 import org.apache.lucene.analysis.LowerCaseFilter;
-import org.apache.lucene.analysis.StopFilter;
+import org.apache.lucene.analysis.StopFilter; // javadocs
 import org.apache.lucene.analysis.StopwordAnalyzerBase;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.WordlistLoader;
@@ -79,14 +79,14 @@ public final class StandardAnalyzer extends StopwordAnalyzerBase {
 
   @Override
   protected TokenStreamComponents createComponents(final String fieldName) {
-    final StandardTokenizer src = new StandardTokenizer();
+    // tokenizes, lower-cases and removes stop words in a single pass, this
+    // produces the same tokens as StandardTokenizer+LowerCaseFilter+StopFilter
+    final StandardLowerCaseStopTokenizer src = new StandardLowerCaseStopTokenizer(stopwords);
     src.setMaxTokenLength(maxTokenLength);
-    TokenStream tok = new LowerCaseFilter(src);
-    tok = new StopFilter(tok, stopwords);
     return new TokenStreamComponents(r -> {
       src.setMaxTokenLength(StandardAnalyzer.this.maxTokenLength);
       src.setReader(r);
-    }, tok);
+    }, src);
   }
 
   @Override
@@ -0,0 +1,435 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.analysis.standard;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.CharacterUtils;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.StopFilter;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.apache.lucene.util.AttributeFactory;
+
+/**
+ * Performs the function of {@link StandardTokenizer}, {@link LowerCaseFilter}
+ * and {@link StopFilter} together, and produces exactly the same tokens as
+ * this chain, only faster.
+ * <p>
+ * Input is split into regions at whitespace that is followed by an ASCII
+ * character, since words never span such whitespace. Regions that only
+ * contain letters, digits and punctuation of the ASCII range are tokenized
+ * with a hand-written implementation of the Unicode word break rules for
+ * these characters, while other regions are tokenized by the same scanner
+ * as {@link StandardTokenizer}. Tokens are lower-cased in place and stop
+ * words are looked up without creating intermediate objects.
+ * 
+ * @lucene.experimental
+ */
+public final class StandardLowerCaseStopTokenizer extends Tokenizer {
+
+  private static final int BUFFER_SIZE = 4096;
+
+  private static final String ALPHANUM_TYPE = StandardTokenizer.TOKEN_TYPES[StandardTokenizer.ALPHANUM];
+  private static final String NUM_TYPE = StandardTokenizer.TOKEN_TYPES[StandardTokenizer.NUM];
+
+  // classes of ASCII chars
+  private static final int LETTER = 0x01;
+  private static final int DIGIT = 0x02;
+  /** MidLetter, MidNumLet and Single_Quote chars, which join letters */
+  private static final int MID_LETTER = 0x04;
+  /** MidNum, MidNumLet and Single_Quote chars, which join digits */
+  private static final int MID_NUM = 0x08;
+  private static final int WHITESPACE = 0x10;
+  /** Upper-case letters, this is the bit that needs to be set to lower-case them */
+  private static final int UPPER = 0x20;
+  /** ExtendNumLet chars */
+  private static final int CONNECTOR = 0x40;
+
+  private static final byte[] CLASSES = new byte[0x80];
+  static {
+    for (char c = 'a'; c <= 'z'; ++c) {
+      CLASSES[c] = LETTER;
+    }
+    for (char c = 'A'; c <= 'Z'; ++c) {
+      CLASSES[c] = LETTER | UPPER;
+    }
+    for (char c = '0'; c <= '9'; ++c) {
+      CLASSES[c] = DIGIT;
+    }
+    CLASSES[':'] = MID_LETTER;
+    CLASSES['.'] = MID_LETTER | MID_NUM;
+    CLASSES['\''] = MID_LETTER | MID_NUM;
+    CLASSES[','] = MID_NUM;
+    CLASSES[';'] = MID_NUM;
+    CLASSES['_'] = CONNECTOR;
+    for (char c = '\t'; c <= '\r'; ++c) {
+      CLASSES[c] = WHITESPACE;
+    }
+    CLASSES[' '] = WHITESPACE;
+  }
+
+  private final CharArraySet stopWords;
+  private int maxTokenLength = StandardAnalyzer.DEFAULT_MAX_TOKEN_LENGTH;
+
+  /** Scanner for regions that the ASCII fast path can't handle. */
+  private final StandardTokenizerImpl scanner;
+  private final RegionReader regionReader = new RegionReader();
+  /** Whether the scanner is tokenizing a region. */
+  private boolean scanning;
+  /** Offset of the region that the scanner is tokenizing. */
+  private int regionOffset;
+
+  private final char[] buffer = new char[BUFFER_SIZE];
+  /** Offset of the first char of the buffer in the input. */
+  private int bufferOffset;
+  /** Start of the data that has not been tokenized yet, and end of the data in the buffer. */
+  private int pos, limit;
+  private boolean exhausted;
+  /** The ASCII region that is being tokenized. */
+  private int fastPos, fastEnd;
+
+  /** Number of tokens that have been removed since the last token that was returned. */
+  private int skippedPositions;
+
+  private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+  private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
+  private final PositionIncrementAttribute posIncrAtt = addAttribute(PositionIncrementAttribute.class);
+  private final TypeAttribute typeAtt = addAttribute(TypeAttribute.class);
+
+  /**
+   * Creates a new tokenizer that removes the given stop words.
+   */
+  public StandardLowerCaseStopTokenizer(CharArraySet stopWords) {
+    this.stopWords = stopWords;
+    this.scanner = new StandardTokenizerImpl(regionReader);
+  }
+
+  /**
+   * Creates a new tokenizer that removes the given stop words, with a given
+   * {@link org.apache.lucene.util.AttributeFactory}.
+   */
+  public StandardLowerCaseStopTokenizer(AttributeFactory factory, CharArraySet stopWords) {
+    super(factory);
+    this.stopWords = stopWords;
+    this.scanner = new StandardTokenizerImpl(regionReader);
+  }
+
+  /**
+   * Set the max allowed token length.
+   * @see StandardTokenizer#setMaxTokenLength
+   */
+  public void setMaxTokenLength(int length) {
+    if (length < 1) {
+      throw new IllegalArgumentException("maxTokenLength must be greater than zero");
+    } else if (length > StandardTokenizer.MAX_TOKEN_LENGTH_LIMIT) {
+      throw new IllegalArgumentException("maxTokenLength may not exceed " + StandardTokenizer.MAX_TOKEN_LENGTH_LIMIT);
+    }
+    if (length != maxTokenLength) {
+      maxTokenLength = length;
+      scanner.setBufferSize(length);
+    }
+  }
+
+  /** Returns the current maximum token length
+   * 
+   *  @see #setMaxTokenLength */
+  public int getMaxTokenLength() {
+    return maxTokenLength;
+  }
+
+  @Override
+  public boolean incrementToken() throws IOException {
+    clearAttributes();
+    while (true) {
+      if (scanning) {
+        int tokenType = scanner.getNextToken();
+        if (tokenType == StandardTokenizerImpl.YYEOF) {
+          scanning = false;
+          if (canSplitRegions() == false) {
+            // the region was the whole input, and the scanner may have
+            // stopped before its end
+            exhausted = true;
+            pos = limit;
+          }
+        } else if (scanner.yylength() > maxTokenLength) {
+          skippedPositions++;
+        } else {
+          scanner.getText(termAtt);
+          CharacterUtils.toLowerCase(termAtt.buffer(), 0, termAtt.length());
+          if (stopWords.contains(termAtt.buffer(), 0, termAtt.length())) {
+            skippedPositions++;
+          } else {
+            final int start = regionOffset + scanner.yychar();
+            setAttributes(start, StandardTokenizer.TOKEN_TYPES[tokenType]);
+            return true;
+          }
+        }
+      } else if (fastPos < fastEnd) {
+        if (nextAsciiToken()) {
+          return true;
+        }
+      } else if (pos == limit && fill() == -1) {
+        return false;
+      } else {
+        int end = asciiRegionEnd();
+        if (end == -1) {
+          regionOffset = bufferOffset + pos;
+          regionReader.startRegion();
+          scanner.yyreset(regionReader);
+          scanning = true;
+        } else {
+          fastPos = pos;
+          fastEnd = end;
+          pos = end;
+        }
+      }
+    }
+  }
+
+  private void setAttributes(int start, String type) {
+    posIncrAtt.setPositionIncrement(skippedPositions + 1);
+    skippedPositions = 0;
+    offsetAtt.setOffset(correctOffset(start), correctOffset(start + termAtt.length()));
+    typeAtt.setType(type);
+  }
+
+  /**
+   * Returns the end of the longest sequence of regions starting at
+   * {@link #pos} that can be tokenized by {@link #nextAsciiToken}, or -1
+   * if the first region can't.
+   */
+  private int asciiRegionEnd() throws IOException {
+    if (canSplitRegions() == false) {
+      return -1;
+    }
+    int regionEnd = pos;
+    boolean sawWhitespace = false;
+    int wordLength = 0;
+    for (int i = pos; ; ++i) {
+      if (i == limit) {
+        if (regionEnd > pos) {
+          // tokenize what we have before reading more
+          return regionEnd;
+        }
+        final int offset = i - pos;
+        final int read = fill();
+        i = pos + offset;
+        regionEnd = pos;
+        if (read == -1) {
+          return limit;
+        } else if (read == 0) {
+          // the region doesn't fit in the buffer
+          return -1;
+        }
+      }
+      final char c = buffer[i];
+      if (c >= 0x80 || (CLASSES[c] & CONNECTOR) != 0) {
+        // non-ASCII characters and connector punctuation may join words
+        // in ways that only the scanner handles
+        break;
+      } else if ((CLASSES[c] & WHITESPACE) != 0) {
+        sawWhitespace = true;
+        wordLength = 0;
+      } else {
+        if (sawWhitespace) {
+          regionEnd = i;
+          sawWhitespace = false;
+        }
+        if (++wordLength + 2 > maxTokenLength) {
+          // leave words that might be chopped to the scanner
+          break;
+        }
+      }
+    }
+    return regionEnd > pos ? regionEnd : -1;
+  }
+
+  /**
+   * Finds the next token of the current ASCII region, following the
+   * rules of UAX#29 for letters, digits, and mid-word punctuation.
+   */
+  private boolean nextAsciiToken() {
+    final char[] buffer = this.buffer;
+    final int end = fastEnd;
+    int i = fastPos;
+    while (true) {
+      while (i < end && (CLASSES[buffer[i]] & (LETTER | DIGIT)) == 0) {
+        ++i;
+      }
+      if (i == end) {
+        fastPos = end;
+        return false;
+      }
+
+      final int start = i;
+      // words of the region are shorter than maxTokenLength
+      final char[] term = termAtt.resizeBuffer(Math.min(end - start, maxTokenLength));
+      int length = 0;
+      int classes = 0;
+      while (true) {
+        final char c = buffer[i++];
+        final int cls = CLASSES[c];
+        classes |= cls;
+        // lower-case while copying
+        term[length++] = (char) (c | (cls & UPPER));
+        if (i == end) {
+          break;
+        }
+        final char next = buffer[i];
+        final int nextCls = CLASSES[next];
+        if ((nextCls & (LETTER | DIGIT)) != 0) {
+          continue;
+        }
+        // a mid-word punctuation char joins two letters or two digits
+        if ((nextCls & (MID_LETTER | MID_NUM)) != 0 && i + 1 < end) {
+          final int joined = cls & CLASSES[buffer[i + 1]] & (LETTER | DIGIT);
+          if ((joined == LETTER && (nextCls & MID_LETTER) != 0) || (joined == DIGIT && (nextCls & MID_NUM) != 0)) {
+            term[length++] = next;
+            ++i;
+            continue;
+          }
+        }
+        break;
+      }
+      termAtt.setLength(length);
+      if (stopWords.contains(term, 0, length)) {
+        skippedPositions++;
+        continue;
+      }
+      fastPos = i;
+      setAttributes(bufferOffset + start, (classes & LETTER) != 0 ? ALPHANUM_TYPE : NUM_TYPE);
+      return true;
+    }
+  }
+
+  /**
+   * With a buffer of a single char, the scanner can't read surrogate pairs
+   * and ignores the rest of its input, so the whole input must be given to
+   * the scanner to produce the same tokens as {@link StandardTokenizer}.
+   */
+  private boolean canSplitRegions() {
+    return maxTokenLength > 1;
+  }
+
+  /**
+   * Reads more input into the buffer, after discarding data before
+   * {@link #pos}. Returns the number of chars that were read, 0 if the
+   * buffer is full or -1 if the input is exhausted.
+   */
+  private int fill() throws IOException {
+    if (exhausted) {
+      return -1;
+    }
+    if (pos > 0) {
+      System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+      bufferOffset += pos;
+      limit -= pos;
+      pos = 0;
+    }
+    if (limit == buffer.length) {
+      return 0;
+    }
+    int read;
+    do {
+      read = input.read(buffer, limit, buffer.length - limit);
+    } while (read == 0);
+    if (read == -1) {
+      exhausted = true;
+      return -1;
+    }
+    limit += read;
+    return read;
+  }
+
+  /**
+   * Feeds a region of the input to the scanner, and reports the end of the
+   * input at the first whitespace that is followed by an ASCII character.
+   */
+  private final class RegionReader extends Reader {
+
+    private boolean sawWhitespace;
+    private boolean regionEnded;
+
+    void startRegion() {
+      sawWhitespace = false;
+      regionEnded = false;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+      int n = 0;
+      while (n < len && regionEnded == false) {
+        if (pos == limit && fill() == -1) {
+          break;
+        }
+        final char c = buffer[pos];
+        if (c < 0x80 && (CLASSES[c] & WHITESPACE) != 0) {
+          sawWhitespace = true;
+        } else if (sawWhitespace && c < 0x80 && canSplitRegions()) {
+          regionEnded = true;
+          break;
+        } else {
+          sawWhitespace = false;
+        }
+        cbuf[off + n++] = c;
+        pos++;
+      }
+      return n == 0 ? -1 : n;
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  @Override
+  public void end() throws IOException {
+    super.end();
+    // set final offset
+    int finalOffset = correctOffset(canSplitRegions() ? bufferOffset + limit : scanner.yychar() + scanner.yylength());
+    offsetAtt.setOffset(finalOffset, finalOffset);
+    // adjust any removed tokens
+    posIncrAtt.setPositionIncrement(posIncrAtt.getPositionIncrement() + skippedPositions);
+  }
+
+  @Override
+  public void close() throws IOException {
+    super.close();
+    scanner.yyreset(regionReader);
+    scanning = false;
+  }
+
+  @Override
+  public void reset() throws IOException {
+    super.reset();
+    scanning = false;
+    bufferOffset = pos = limit = fastPos = fastEnd = 0;
+    exhausted = false;
+    skippedPositions = 0;
+    if (canSplitRegions() == false) {
+      regionOffset = 0;
+      regionReader.startRegion();
+      scanner.yyreset(regionReader);
+      scanning = true;
+    }
+  }
+}
@@ -36,6 +36,7 @@ import org.apache.lucene.store.DataInput;
 import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.RamUsageEstimator;
 
@@ -403,6 +404,38 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       return doc;
     }
 
+    @Override
+    public void intoBitSet(int upTo, FixedBitSet bitSet, int offset) throws IOException {
+      assert offset <= doc;
+      if (doc >= upTo) {
+        return;
+      }
+      bitSet.set(doc - offset);
+      // decode remaining doc IDs block by block
+      while (docUpto < docFreq) {
+        if (docBufferUpto == BLOCK_SIZE) {
+          refillDocs();
+        }
+        final int bufferEnd = docBufferUpto + Math.min(BLOCK_SIZE - docBufferUpto, docFreq - docUpto);
+        int d = accum;
+        for (int i = docBufferUpto; i < bufferEnd; ++i) {
+          d += docDeltaBuffer[i];
+          if (d >= upTo) {
+            docUpto += i + 1 - docBufferUpto;
+            docBufferUpto = i + 1;
+            accum = doc = d;
+            freq = freqBuffer[i];
+            return;
+          }
+          bitSet.set(d - offset);
+        }
+        docUpto += bufferEnd - docBufferUpto;
+        docBufferUpto = bufferEnd;
+        accum = doc = d;
+      }
+      doc = NO_MORE_DOCS;
+    }
+
     @Override
     public int advance(int target) throws IOException {
       // TODO: make frq block load lazy/skippable
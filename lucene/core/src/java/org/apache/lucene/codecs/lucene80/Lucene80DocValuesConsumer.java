@@ -28,6 +28,8 @@ import java.util.Set;
 import org.apache.lucene.codecs.CodecUtil;
 import org.apache.lucene.codecs.DocValuesConsumer;
 import org.apache.lucene.codecs.DocValuesProducer;
+import org.apache.lucene.codecs.compressing.CompressionMode;
+import org.apache.lucene.codecs.compressing.Compressor;
 import org.apache.lucene.index.BinaryDocValues;
 import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.EmptyDocValuesProducer;
@@ -46,11 +48,14 @@ import org.apache.lucene.store.IndexOutput;
 import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.BytesRefHash;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.MathUtil;
 import org.apache.lucene.util.StringHelper;
 import org.apache.lucene.util.packed.DirectMonotonicWriter;
 import org.apache.lucene.util.packed.DirectWriter;
+import org.apache.lucene.util.packed.PackedInts;
+import org.apache.lucene.util.packed.PackedLongValues;
 
 import static org.apache.lucene.codecs.lucene80.Lucene80DocValuesFormat.DIRECT_MONOTONIC_BLOCK_SHIFT;
 import static org.apache.lucene.codecs.lucene80.Lucene80DocValuesFormat.NUMERIC_BLOCK_SHIFT;
@@ -359,20 +364,39 @@ final class Lucene80DocValuesConsumer extends DocValuesConsumer implements Close
     meta.writeByte(Lucene80DocValuesFormat.BINARY);
 
     BinaryDocValues values = valuesProducer.getBinary(field);
-    long start = data.getFilePointer();
-    meta.writeLong(start); // dataOffset
     int numDocsWithField = 0;
     int minLength = Integer.MAX_VALUE;
     int maxLength = 0;
+    // collect unique values as long as there are few of them, in which case
+    // values are dictionary-encoded rather than compressed
+    BytesRefHash uniqueValues = new BytesRefHash();
+    long uniqueValuesBytes = 0;
     for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
       numDocsWithField++;
       BytesRef v = values.binaryValue();
-      int length = v.length;
-      data.writeBytes(v.bytes, v.offset, v.length);
-      minLength = Math.min(length, minLength);
-      maxLength = Math.max(length, maxLength);
+      minLength = Math.min(v.length, minLength);
+      maxLength = Math.max(v.length, maxLength);
+      if (uniqueValues != null && v.length > Lucene80DocValuesFormat.BINARY_DICTIONARY_MAX_BYTES) {
+        uniqueValues = null;
+      }
+      if (uniqueValues != null && uniqueValues.add(v) >= 0) {
+        uniqueValuesBytes += v.length;
+        if (uniqueValues.size() > Lucene80DocValuesFormat.BINARY_DICTIONARY_MAX_SIZE
+            || uniqueValuesBytes > Lucene80DocValuesFormat.BINARY_DICTIONARY_MAX_BYTES) {
+          uniqueValues = null;
+        }
+      }
     }
     assert numDocsWithField <= maxDoc;
+
+    long start = data.getFilePointer();
+    meta.writeLong(start); // dataOffset
+    final boolean useDictionary = numDocsWithField > 0 && uniqueValues != null && uniqueValues.size() < numDocsWithField;
+    if (useDictionary) {
+      writeBinaryDictionary(uniqueValues);
+    } else if (numDocsWithField > 0) {
+      writeCompressedBinaryBlocks(field, valuesProducer);
+    }
     meta.writeLong(data.getFilePointer() - start); // dataLength
 
     if (numDocsWithField == 0) {
@@ -398,21 +422,112 @@ final class Lucene80DocValuesConsumer extends DocValuesConsumer implements Close
     meta.writeInt(numDocsWithField);
     meta.writeInt(minLength);
     meta.writeInt(maxLength);
-    if (maxLength > minLength) {
+    if (numDocsWithField == 0) {
+      return;
+    }
+
+    if (useDictionary) {
+      meta.writeByte(Lucene80DocValuesFormat.BINARY_DICTIONARY);
+      meta.writeVInt(uniqueValues.size());
       start = data.getFilePointer();
-      meta.writeLong(start);
+      meta.writeLong(start); // dictionaryAddressesOffset
       meta.writeVInt(DIRECT_MONOTONIC_BLOCK_SHIFT);
-
-      final DirectMonotonicWriter writer = DirectMonotonicWriter.getInstance(meta, data, numDocsWithField + 1, DIRECT_MONOTONIC_BLOCK_SHIFT);
+      final DirectMonotonicWriter addresses = DirectMonotonicWriter.getInstance(meta, data, uniqueValues.size() + 1L, DIRECT_MONOTONIC_BLOCK_SHIFT);
       long addr = 0;
-      writer.add(addr);
+      addresses.add(addr);
+      BytesRef scratch = new BytesRef();
+      for (int ord = 0; ord < uniqueValues.size(); ++ord) {
+        addr += uniqueValues.get(ord, scratch).length;
+        addresses.add(addr);
+      }
+      addresses.finish();
+      meta.writeLong(data.getFilePointer() - start); // dictionaryAddressesLength
+
+      start = data.getFilePointer();
+      meta.writeLong(start); // ordsOffset
+      final int bitsPerOrd = DirectWriter.unsignedBitsRequired(uniqueValues.size() - 1);
+      final DirectWriter ords = DirectWriter.getInstance(data, numDocsWithField, bitsPerOrd);
       values = valuesProducer.getBinary(field);
       for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
-        addr += values.binaryValue().length;
-        writer.add(addr);
+        final int ord = uniqueValues.find(values.binaryValue());
+        assert ord >= 0;
+        ords.add(ord);
       }
-      writer.finish();
-      meta.writeLong(data.getFilePointer() - start);
+      ords.finish();
+      meta.writeLong(data.getFilePointer() - start); // ordsLength
+      meta.writeByte((byte) bitsPerOrd);
+    } else {
+      meta.writeByte(Lucene80DocValuesFormat.BINARY_LZ4_BLOCKS);
+      meta.writeInt(maxUncompressedBinaryBlockLength);
+      start = data.getFilePointer();
+      meta.writeLong(start); // blockAddressesOffset
+      meta.writeVInt(DIRECT_MONOTONIC_BLOCK_SHIFT);
+      final DirectMonotonicWriter addresses = DirectMonotonicWriter.getInstance(meta, data, binaryBlockAddresses.size(), DIRECT_MONOTONIC_BLOCK_SHIFT);
+      for (PackedLongValues.Iterator it = binaryBlockAddresses.iterator(); it.hasNext(); ) {
+        addresses.add(it.next());
+      }
+      addresses.finish();
+      meta.writeLong(data.getFilePointer() - start); // blockAddressesLength
+      binaryBlockAddresses = null;
+    }
+  }
+
+  private void writeBinaryDictionary(BytesRefHash uniqueValues) throws IOException {
+    BytesRef scratch = new BytesRef();
+    for (int ord = 0; ord < uniqueValues.size(); ++ord) {
+      uniqueValues.get(ord, scratch);
+      data.writeBytes(scratch.bytes, scratch.offset, scratch.length);
+    }
+  }
+
+  private PackedLongValues binaryBlockAddresses;
+  private int maxUncompressedBinaryBlockLength;
+
+  /**
+   * Write values in blocks of {@link Lucene80DocValuesFormat#BINARY_BLOCK_SIZE}
+   * documents: the lengths of all values of the block as vints, followed by
+   * the LZ4-compressed concatenation of the values. Start offsets of the blocks
+   * are recorded into {@link #binaryBlockAddresses}.
+   */
+  private void writeCompressedBinaryBlocks(FieldInfo field, DocValuesProducer valuesProducer) throws IOException {
+    final long start = data.getFilePointer();
+    final PackedLongValues.Builder blockAddresses = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+    final int[] lengths = new int[Lucene80DocValuesFormat.BINARY_BLOCK_SIZE];
+    byte[] block = new byte[0];
+    int numDocsInBlock = 0;
+    int blockLength = 0;
+    int maxBlockLength = 0;
+    try (Compressor compressor = CompressionMode.FAST.newCompressor()) {
+      BinaryDocValues values = valuesProducer.getBinary(field);
+      for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
+        BytesRef v = values.binaryValue();
+        block = ArrayUtil.grow(block, blockLength + v.length);
+        System.arraycopy(v.bytes, v.offset, block, blockLength, v.length);
+        blockLength += v.length;
+        lengths[numDocsInBlock++] = v.length;
+        if (numDocsInBlock == lengths.length) {
+          blockAddresses.add(data.getFilePointer() - start);
+          writeBinaryBlock(compressor, lengths, numDocsInBlock, block, blockLength);
+          maxBlockLength = Math.max(maxBlockLength, blockLength);
+          numDocsInBlock = blockLength = 0;
+        }
+      }
+      if (numDocsInBlock > 0) {
+        blockAddresses.add(data.getFilePointer() - start);
+        writeBinaryBlock(compressor, lengths, numDocsInBlock, block, blockLength);
+        maxBlockLength = Math.max(maxBlockLength, blockLength);
+      }
+    }
+    binaryBlockAddresses = blockAddresses.build();
+    maxUncompressedBinaryBlockLength = maxBlockLength;
+  }
+
+  private void writeBinaryBlock(Compressor compressor, int[] lengths, int numDocsInBlock, byte[] block, int blockLength) throws IOException {
+    for (int i = 0; i < numDocsInBlock; ++i) {
+      data.writeVInt(lengths[i]);
+    }
+    if (blockLength > 0) {
+      compressor.compress(block, 0, blockLength, data);
     }
   }
 
@@ -603,11 +718,15 @@ final class Lucene80DocValuesConsumer extends DocValuesConsumer implements Close
     SortedSetDocValues values = valuesProducer.getSortedSet(field);
     int numDocsWithField = 0;
     long numOrds = 0;
+    int maxOrdsPerDoc = 0;
     for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
       numDocsWithField++;
+      int numDocOrds = 0;
       for (long ord = values.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = values.nextOrd()) {
-        numOrds++;
+        numDocOrds++;
       }
+      numOrds += numDocOrds;
+      maxOrdsPerDoc = Math.max(maxOrdsPerDoc, numDocOrds);
     }
 
     if (numDocsWithField == numOrds) {
@@ -620,7 +739,14 @@ final class Lucene80DocValuesConsumer extends DocValuesConsumer implements Close
       });
       return;
     }
-    meta.writeByte((byte) 1);  // multiValued (1 = multiValued)
+    final long valueCount = values.getValueCount();
+    final int numberOfBitsPerOrd = DirectWriter.unsignedBitsRequired(valueCount - 1);
+    final boolean useBitmaps = useSortedSetBitmaps(valueCount, numDocsWithField, numOrds, maxOrdsPerDoc, numberOfBitsPerOrd);
+    if (useBitmaps) {
+      meta.writeByte((byte) 2);  // multiValued (2 = multiValued, encoded as bitmaps)
+    } else {
+      meta.writeByte((byte) 1);  // multiValued (1 = multiValued)
+    }
 
     assert numDocsWithField != 0;
     if (numDocsWithField == maxDoc) {
@@ -638,7 +764,28 @@ final class Lucene80DocValuesConsumer extends DocValuesConsumer implements Close
       meta.writeByte(IndexedDISI.DEFAULT_DENSE_RANK_POWER);
     }
 
-    int numberOfBitsPerOrd = DirectWriter.unsignedBitsRequired(values.getValueCount() - 1);
+    if (useBitmaps) {
+      // every document stores the set of its ordinals as a bitmap
+      final int bitsPerBitmap = DirectWriter.unsignedBitsRequired(valueCount == Long.SIZE ? -1L : (1L << valueCount) - 1);
+      meta.writeByte((byte) bitsPerBitmap); // bitsPerValue
+      long start = data.getFilePointer();
+      meta.writeLong(start); // bitmapsOffset
+      DirectWriter writer = DirectWriter.getInstance(data, numDocsWithField, bitsPerBitmap);
+      values = valuesProducer.getSortedSet(field);
+      for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
+        long bitmap = 0;
+        for (long ord = values.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = values.nextOrd()) {
+          bitmap |= 1L << ord;
+        }
+        writer.add(bitmap);
+      }
+      writer.finish();
+      meta.writeLong(data.getFilePointer() - start); // bitmapsLength
+      meta.writeInt(numDocsWithField);
+      addTermsDict(values);
+      return;
+    }
+
     meta.writeByte((byte) numberOfBitsPerOrd); // bitsPerValue
     long start = data.getFilePointer();
     meta.writeLong(start); // ordsOffset
@@ -674,4 +821,21 @@ final class Lucene80DocValuesConsumer extends DocValuesConsumer implements Close
 
     addTermsDict(values);
   }
+
+  /**
+   * Whether to encode the ordinals of a multi-valued sorted set field as one
+   * bitmap per document. This requires at most 64 unique values, and is only
+   * used if bitmaps take at most twice as much space as ordinals and their
+   * addresses, since decoding bitmaps is much faster.
+   */
+  private static boolean useSortedSetBitmaps(long valueCount, int numDocsWithField, long numOrds, int maxOrdsPerDoc, int bitsPerOrd) {
+    if (valueCount > Lucene80DocValuesFormat.SORTED_SET_BITMAP_MAX_VALUE_COUNT) {
+      return false;
+    }
+    final int bitsPerBitmap = DirectWriter.unsignedBitsRequired(valueCount == Long.SIZE ? -1L : (1L << valueCount) - 1);
+    final long bitmapsSize = (long) bitsPerBitmap * numDocsWithField;
+    // addresses are monotonic, so they roughly need as many bits as the deviation of the number of ords per doc
+    final long ordsAndAddressesSize = numOrds * bitsPerOrd + (long) numDocsWithField * PackedInts.unsignedBitsRequired(maxOrdsPerDoc);
+    return bitmapsSize <= 2 * ordsAndAddressesSize;
+  }
 }
@@ -92,10 +92,13 @@ import org.apache.lucene.util.packed.DirectWriter;
  * <p>
  * {@link DocValuesType#BINARY BINARY}:
  * <ul>
- *    <li>Fixed-width Binary: one large concatenated byte[] is written, along with the fixed length.
- *        Each document's value can be addressed directly with multiplication ({@code docID * length}).
- *    <li>Variable-width Binary: one large concatenated byte[] is written, along with end addresses
- *        for each document. The addresses are written as Monotonic-compressed numerics.
+ *    <li>Dictionary-encoded Binary: when there are few (&lt;= 256) unique values that are not larger than
+ *        16kB in total, unique values are written once along with their Monotonic-compressed end addresses,
+ *        and the per-document ordinals of the values are compressed with bitpacking ({@link DirectWriter}).
+ *    <li>Block-compressed Binary: values are written in blocks of 32 documents. Every block starts with the
+ *        lengths of its values as {@link DataOutput#writeVInt(int) vints}, followed by the concatenation of
+ *        the values compressed with LZ4. Block addresses are written as Monotonic-compressed numerics. Since a
+ *        whole block is decompressed at once, sequential access only decompresses every block once.
  *    <li>Prefix-compressed Binary: values are written in chunks of 16, with the first value written
  *        completely and other values sharing prefixes. chunk addresses are written as Monotonic-compressed
  *        numerics. A reverse lookup index is written from a portion of every 1024th term.
@@ -113,6 +116,10 @@ import org.apache.lucene.util.packed.DirectWriter;
  *    <li>SortedSet: a mapping of ordinals to deduplicated terms is written as Binary,
  *        an ordinal list and per-document index into this list are written using the numeric strategies
  *        above.
+ *    <li>Bitmaps: when there are at most 64 unique values, the set of ordinals of every document may be
+ *        written as a bitmap, compressed with bitpacking ({@link DirectWriter}). A document's values
+ *        can then be retrieved with a single lookup and iterated with
+ *        {@link Long#numberOfTrailingZeros(long) ntz} operations.
  * </ul>
  * <p>
  * {@link DocValuesType#SORTED_NUMERIC SORTED_NUMERIC}:
@@ -151,7 +158,9 @@ public final class Lucene80DocValuesFormat extends DocValuesFormat {
   static final String META_CODEC = "Lucene80DocValuesMetadata";
   static final String META_EXTENSION = "dvm";
   static final int VERSION_START = 0;
-  static final int VERSION_CURRENT = VERSION_START;
+  static final int VERSION_BINARY_COMPRESSED = 1;
+  static final int VERSION_SORTED_SET_BITMAPS = 2;
+  static final int VERSION_CURRENT = VERSION_SORTED_SET_BITMAPS;
 
   // indicates docvalues type
   static final byte NUMERIC = 0;
@@ -160,8 +169,21 @@ public final class Lucene80DocValuesFormat extends DocValuesFormat {
   static final byte SORTED_SET = 3;
   static final byte SORTED_NUMERIC = 4;
 
+  // indicates how binary values are encoded
+  static final byte BINARY_LZ4_BLOCKS = 0;
+  static final byte BINARY_DICTIONARY = 1;
+
   static final int DIRECT_MONOTONIC_BLOCK_SHIFT = 16;
 
+  static final int BINARY_BLOCK_SHIFT = 5;
+  static final int BINARY_BLOCK_SIZE = 1 << BINARY_BLOCK_SHIFT;
+  static final int BINARY_BLOCK_MASK = BINARY_BLOCK_SIZE - 1;
+
+  static final int SORTED_SET_BITMAP_MAX_VALUE_COUNT = Long.SIZE;
+
+  static final int BINARY_DICTIONARY_MAX_SIZE = 256;
+  static final int BINARY_DICTIONARY_MAX_BYTES = 16 * 1024;
+
   static final int NUMERIC_BLOCK_SHIFT = 14;
   static final int NUMERIC_BLOCK_SIZE = 1 << NUMERIC_BLOCK_SHIFT;
 
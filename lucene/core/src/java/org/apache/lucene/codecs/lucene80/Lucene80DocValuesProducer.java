@@ -23,6 +23,8 @@ import java.util.Map;
 
 import org.apache.lucene.codecs.CodecUtil;
 import org.apache.lucene.codecs.DocValuesProducer;
+import org.apache.lucene.codecs.compressing.CompressionMode;
+import org.apache.lucene.codecs.compressing.Decompressor;
 import org.apache.lucene.index.BaseTermsEnum;
 import org.apache.lucene.index.BinaryDocValues;
 import org.apache.lucene.index.CorruptIndexException;
@@ -77,7 +79,7 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
                                         Lucene80DocValuesFormat.VERSION_CURRENT,
                                         state.segmentInfo.getId(),
                                         state.segmentSuffix);
-        readFields(in, state.fieldInfos);
+        readFields(in, state.fieldInfos, version);
       } catch (Throwable exception) {
         priorE = exception;
       } finally {
@@ -112,7 +114,7 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
     }
   }
 
-  private void readFields(ChecksumIndexInput meta, FieldInfos infos) throws IOException {
+  private void readFields(ChecksumIndexInput meta, FieldInfos infos, int version) throws IOException {
     for (int fieldNumber = meta.readInt(); fieldNumber != -1; fieldNumber = meta.readInt()) {
       FieldInfo info = infos.fieldInfo(fieldNumber);
       if (info == null) {
@@ -122,7 +124,7 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
       if (type == Lucene80DocValuesFormat.NUMERIC) {
         numerics.put(info.name, readNumeric(meta));
       } else if (type == Lucene80DocValuesFormat.BINARY) {
-        binaries.put(info.name, readBinary(meta));
+        binaries.put(info.name, readBinary(meta, version));
       } else if (type == Lucene80DocValuesFormat.SORTED) {
         sorted.put(info.name, readSorted(meta));
       } else if (type == Lucene80DocValuesFormat.SORTED_SET) {
@@ -171,7 +173,7 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
     entry.valueJumpTableOffset = meta.readLong();
   }
 
-  private BinaryEntry readBinary(ChecksumIndexInput meta) throws IOException {
+  private BinaryEntry readBinary(ChecksumIndexInput meta, int version) throws IOException {
     BinaryEntry entry = new BinaryEntry();
     entry.dataOffset = meta.readLong();
     entry.dataLength = meta.readLong();
@@ -182,6 +184,35 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
     entry.numDocsWithField = meta.readInt();
     entry.minLength = meta.readInt();
     entry.maxLength = meta.readInt();
+    if (version >= Lucene80DocValuesFormat.VERSION_BINARY_COMPRESSED) {
+      if (entry.numDocsWithField == 0) {
+        return entry;
+      }
+      entry.encoding = meta.readByte();
+      if (entry.encoding == Lucene80DocValuesFormat.BINARY_DICTIONARY) {
+        entry.dictionarySize = meta.readVInt();
+        entry.addressesOffset = meta.readLong();
+        final int blockShift = meta.readVInt();
+        entry.addressesMeta = DirectMonotonicReader.loadMeta(meta, entry.dictionarySize + 1L, blockShift);
+        ramBytesUsed += entry.addressesMeta.ramBytesUsed();
+        entry.addressesLength = meta.readLong();
+        entry.ordsOffset = meta.readLong();
+        entry.ordsLength = meta.readLong();
+        entry.bitsPerOrd = meta.readByte();
+      } else if (entry.encoding == Lucene80DocValuesFormat.BINARY_LZ4_BLOCKS) {
+        entry.maxUncompressedBlockLength = meta.readInt();
+        entry.addressesOffset = meta.readLong();
+        final int blockShift = meta.readVInt();
+        final long numBlocks = ((long) entry.numDocsWithField + Lucene80DocValuesFormat.BINARY_BLOCK_MASK) >>> Lucene80DocValuesFormat.BINARY_BLOCK_SHIFT;
+        entry.addressesMeta = DirectMonotonicReader.loadMeta(meta, numBlocks, blockShift);
+        ramBytesUsed += entry.addressesMeta.ramBytesUsed();
+        entry.addressesLength = meta.readLong();
+      } else {
+        throw new CorruptIndexException("Invalid binary encoding: " + entry.encoding, meta);
+      }
+      return entry;
+    }
+    entry.encoding = BINARY_UNCOMPRESSED;
     if (entry.minLength < entry.maxLength) {
       entry.addressesOffset = meta.readLong();
       final int blockShift = meta.readVInt();
@@ -215,6 +246,9 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
         return entry;
       case 1: // multivalued
         break;
+      case 2: // multivalued, encoded as bitmaps
+        entry.bitmaps = true;
+        break;
       default:
         throw new CorruptIndexException("Invalid multiValued flag: " + multiValued, meta);
     }
@@ -226,6 +260,10 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
     entry.ordsOffset = meta.readLong();
     entry.ordsLength = meta.readLong();
     entry.numDocsWithField = meta.readInt();
+    if (entry.bitmaps) {
+      readTermDict(meta, entry);
+      return entry;
+    }
     entry.addressesOffset = meta.readLong();
     final int blockShift = meta.readVInt();
     entry.addressesMeta = DirectMonotonicReader.loadMeta(meta, entry.numDocsWithField + 1, blockShift);
@@ -290,6 +328,9 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
     long valueJumpTableOffset; // -1 if no jump-table
   }
 
+  /** Binary values of indices that have been written before {@link Lucene80DocValuesFormat#VERSION_BINARY_COMPRESSED}. */
+  private static final byte BINARY_UNCOMPRESSED = -1;
+
   private static class BinaryEntry {
     long dataOffset;
     long dataLength;
@@ -300,9 +341,18 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
     int numDocsWithField;
     int minLength;
     int maxLength;
+    byte encoding;
+    // value addresses if uncompressed, dictionary addresses if dictionary-encoded, block addresses if compressed
     long addressesOffset;
     long addressesLength;
     DirectMonotonicReader.Meta addressesMeta;
+    // dictionary-encoded
+    int dictionarySize;
+    long ordsOffset;
+    long ordsLength;
+    byte bitsPerOrd;
+    // compressed
+    int maxUncompressedBlockLength;
   }
 
   private static class TermsDictEntry {
@@ -335,6 +385,7 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
 
   private static class SortedSetEntry extends TermsDictEntry {
     SortedEntry singleValueEntry;
+    boolean bitmaps; // if true, ords are bitmaps of the ordinals of every doc
     long docsWithFieldOffset;
     long docsWithFieldLength;
     short jumpTableEntryCount;
@@ -665,13 +716,143 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
     }
   }
 
+  /** Decodes binary values that are dictionary-encoded. */
+  private static final class BinaryDictionaryDecoder {
+
+    private final LongValues ords;
+    private final LongValues addresses;
+    private final IndexInput bytesSlice;
+    private final BytesRef value;
+    private long currentOrd = -1;
+
+    BinaryDictionaryDecoder(LongValues ords, LongValues addresses, IndexInput bytesSlice, int maxLength) {
+      this.ords = ords;
+      this.addresses = addresses;
+      this.bytesSlice = bytesSlice;
+      this.value = new BytesRef(new byte[maxLength], 0, 0);
+    }
+
+    BytesRef decode(int index) throws IOException {
+      final long ord = ords.get(index);
+      if (ord != currentOrd) {
+        final long startOffset = addresses.get(ord);
+        value.length = (int) (addresses.get(ord + 1) - startOffset);
+        bytesSlice.seek(startOffset);
+        bytesSlice.readBytes(value.bytes, 0, value.length);
+        currentOrd = ord;
+      }
+      return value;
+    }
+  }
+
+  /**
+   * Decodes binary values that are compressed in blocks. The current block is
+   * cached so that iterating values in order decompresses every block once.
+   */
+  private static final class BinaryBlockDecoder {
+
+    private final LongValues blockAddresses;
+    private final IndexInput compressedData;
+    private final Decompressor decompressor;
+    private final int numDocsWithField;
+    private final int[] valueStarts = new int[Lucene80DocValuesFormat.BINARY_BLOCK_SIZE + 1];
+    private final BytesRef block;
+    private final BytesRef value = new BytesRef();
+    private long currentBlock = -1;
+
+    BinaryBlockDecoder(LongValues blockAddresses, IndexInput compressedData, int numDocsWithField, int maxUncompressedBlockLength) {
+      this.blockAddresses = blockAddresses;
+      this.compressedData = compressedData;
+      this.decompressor = CompressionMode.FAST.newDecompressor();
+      this.numDocsWithField = numDocsWithField;
+      // add 7 padding bytes like the decompressor does to avoid reallocating
+      this.block = new BytesRef(new byte[maxUncompressedBlockLength + 7], 0, 0);
+    }
+
+    BytesRef decode(int index) throws IOException {
+      final long blockId = index >>> Lucene80DocValuesFormat.BINARY_BLOCK_SHIFT;
+      if (blockId != currentBlock) {
+        compressedData.seek(blockAddresses.get(blockId));
+        final int numDocsInBlock = (int) Math.min(Lucene80DocValuesFormat.BINARY_BLOCK_SIZE,
+            numDocsWithField - (blockId << Lucene80DocValuesFormat.BINARY_BLOCK_SHIFT));
+        for (int i = 0; i < numDocsInBlock; ++i) {
+          valueStarts[i + 1] = valueStarts[i] + compressedData.readVInt();
+        }
+        final int blockLength = valueStarts[numDocsInBlock];
+        if (blockLength > 0) {
+          decompressor.decompress(compressedData, blockLength, 0, blockLength, block);
+        }
+        currentBlock = blockId;
+      }
+      final int indexInBlock = index & Lucene80DocValuesFormat.BINARY_BLOCK_MASK;
+      value.bytes = block.bytes;
+      value.offset = block.offset + valueStarts[indexInBlock];
+      value.length = valueStarts[indexInBlock + 1] - valueStarts[indexInBlock];
+      return value;
+    }
+  }
+
   @Override
   public BinaryDocValues getBinary(FieldInfo field) throws IOException {
     BinaryEntry entry = binaries.get(field.name);
     if (entry.docsWithFieldOffset == -2) {
       return DocValues.emptyBinary();
     }
+    if (entry.encoding == BINARY_UNCOMPRESSED) {
+      return getUncompressedBinary(entry);
+    }
+
+    final IndexInput bytesSlice = data.slice("binary", entry.dataOffset, entry.dataLength);
+    final RandomAccessInput addressesData = this.data.randomAccessSlice(entry.addressesOffset, entry.addressesLength);
+    final LongValues addresses = DirectMonotonicReader.getInstance(entry.addressesMeta, addressesData);
+    if (entry.encoding == Lucene80DocValuesFormat.BINARY_DICTIONARY) {
+      final RandomAccessInput ordsData = this.data.randomAccessSlice(entry.ordsOffset, entry.ordsLength);
+      final LongValues ords = DirectReader.getInstance(ordsData, entry.bitsPerOrd);
+      final BinaryDictionaryDecoder decoder = new BinaryDictionaryDecoder(ords, addresses, bytesSlice, entry.maxLength);
+      if (entry.docsWithFieldOffset == -1) {
+        // dense
+        return new DenseBinaryDocValues(maxDoc) {
+          @Override
+          public BytesRef binaryValue() throws IOException {
+            return decoder.decode(doc);
+          }
+        };
+      } else {
+        // sparse
+        final IndexedDISI disi = new IndexedDISI(data, entry.docsWithFieldOffset, entry.docsWithFieldLength,
+            entry.jumpTableEntryCount, entry.denseRankPower, entry.numDocsWithField);
+        return new SparseBinaryDocValues(disi) {
+          @Override
+          public BytesRef binaryValue() throws IOException {
+            return decoder.decode(disi.index());
+          }
+        };
+      }
+    } else {
+      final BinaryBlockDecoder decoder = new BinaryBlockDecoder(addresses, bytesSlice, entry.numDocsWithField, entry.maxUncompressedBlockLength);
+      if (entry.docsWithFieldOffset == -1) {
+        // dense
+        return new DenseBinaryDocValues(maxDoc) {
+          @Override
+          public BytesRef binaryValue() throws IOException {
+            return decoder.decode(doc);
+          }
+        };
+      } else {
+        // sparse
+        final IndexedDISI disi = new IndexedDISI(data, entry.docsWithFieldOffset, entry.docsWithFieldLength,
+            entry.jumpTableEntryCount, entry.denseRankPower, entry.numDocsWithField);
+        return new SparseBinaryDocValues(disi) {
+          @Override
+          public BytesRef binaryValue() throws IOException {
+            return decoder.decode(disi.index());
+          }
+        };
+      }
+    }
+  }
 
+  private BinaryDocValues getUncompressedBinary(BinaryEntry entry) throws IOException {
     final IndexInput bytesSlice = data.slice("fixed-binary", entry.dataOffset, entry.dataLength);
 
     if (entry.docsWithFieldOffset == -1) {
@@ -1152,19 +1333,23 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
           if (target >= maxDoc) {
             return doc = NO_MORE_DOCS;
           }
-          start = addresses.get(target);
-          end = addresses.get(target + 1L);
-          count = (int) (end - start);
-          return doc = target;
+          setDoc(target);
+          return doc;
         }
 
         @Override
         public boolean advanceExact(int target) throws IOException {
-          start = addresses.get(target);
+          setDoc(target);
+          return true;
+        }
+
+        private void setDoc(int target) {
+          // the start address of a doc is the end address of the previous doc
+          // so only one lookup is required when iterating in order
+          start = target == doc + 1 && doc != -1 ? end : addresses.get(target);
           end = addresses.get(target + 1L);
           count = (int) (end - start);
           doc = target;
-          return true;
         }
 
         @Override
@@ -1186,6 +1371,7 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
         boolean set;
         long start, end;
         int count;
+        int lastIndex = -1;
 
         @Override
         public int nextDoc() throws IOException {
@@ -1230,9 +1416,12 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
         private void set() {
           if (set == false) {
             final int index = disi.index();
-            start = addresses.get(index);
+            // the start address of a doc is the end address of the previous doc
+            // so only one lookup is required when iterating in order
+            start = index == lastIndex + 1 && lastIndex != -1 ? end : addresses.get(index);
             end = addresses.get(index + 1L);
             count = (int) (end - start);
+            lastIndex = index;
             set = true;
           }
         }
@@ -1251,6 +1440,10 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
     final RandomAccessInput slice = data.randomAccessSlice(entry.ordsOffset, entry.ordsLength);
     final LongValues ords = DirectReader.getInstance(slice, entry.bitsPerValue);
 
+    if (entry.bitmaps) {
+      return getSortedSetBitmaps(entry, ords);
+    }
+
     final RandomAccessInput addressesInput = data.randomAccessSlice(entry.addressesOffset, entry.addressesLength);
     final LongValues addresses = DirectMonotonicReader.getInstance(entry.addressesMeta, addressesInput);
 
@@ -1282,17 +1475,22 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
           if (target >= maxDoc) {
             return doc = NO_MORE_DOCS;
           }
-          start = addresses.get(target);
-          end = addresses.get(target + 1L);
-          return doc = target;
+          setDoc(target);
+          return doc;
         }
 
         @Override
         public boolean advanceExact(int target) throws IOException {
-          start = addresses.get(target);
+          setDoc(target);
+          return true;
+        }
+
+        private void setDoc(int target) {
+          // the start address of a doc is the end address of the previous doc
+          // so only one lookup is required when iterating in order
+          start = target == doc + 1 && doc != -1 ? end : addresses.get(target);
           end = addresses.get(target + 1L);
           doc = target;
-          return true;
         }
 
         @Override
@@ -1303,6 +1501,15 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
           return ords.get(start++);
         }
 
+        @Override
+        public int nextOrds(long[] buffer, int offset, int length) throws IOException {
+          final int count = (int) Math.min(length, end - start);
+          for (int i = 0; i < count; ++i) {
+            buffer[offset + i] = ords.get(start++);
+          }
+          return count;
+        }
+
       };
     } else {
       // sparse
@@ -1313,6 +1520,7 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
         boolean set;
         long start;
         long end = 0;
+        int lastIndex = -1;
 
         @Override
         public int nextDoc() throws IOException {
@@ -1345,12 +1553,8 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
         @Override
         public long nextOrd() throws IOException {
           if (set == false) {
-            final int index = disi.index();
-            final long start = addresses.get(index);
-            this.start = start + 1;
-            end = addresses.get(index + 1L);
-            set = true;
-            return ords.get(start);
+            set();
+            return ords.get(start++);
           } else if (start == end) {
             return NO_MORE_ORDS;
           } else {
@@ -1358,6 +1562,157 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
           }
         }
 
+        @Override
+        public int nextOrds(long[] buffer, int offset, int length) throws IOException {
+          if (set == false) {
+            set();
+          }
+          final int count = (int) Math.min(length, end - start);
+          for (int i = 0; i < count; ++i) {
+            buffer[offset + i] = ords.get(start++);
+          }
+          return count;
+        }
+
+        private void set() {
+          final int index = disi.index();
+          // the start address of a doc is the end address of the previous doc
+          // so only one lookup is required when iterating in order
+          start = index == lastIndex + 1 && lastIndex != -1 ? end : addresses.get(index);
+          end = addresses.get(index + 1L);
+          lastIndex = index;
+          set = true;
+        }
+
+      };
+    }
+  }
+
+  private SortedSetDocValues getSortedSetBitmaps(SortedSetEntry entry, LongValues bitmaps) throws IOException {
+    if (entry.docsWithFieldOffset == -1) {
+      // dense
+      return new BaseSortedSetDocValues(entry, data) {
+
+        int doc = -1;
+        long bitmap;
+
+        @Override
+        public int nextDoc() throws IOException {
+          return advance(doc + 1);
+        }
+
+        @Override
+        public int docID() {
+          return doc;
+        }
+
+        @Override
+        public long cost() {
+          return maxDoc;
+        }
+
+        @Override
+        public int advance(int target) throws IOException {
+          if (target >= maxDoc) {
+            return doc = NO_MORE_DOCS;
+          }
+          bitmap = bitmaps.get(target);
+          return doc = target;
+        }
+
+        @Override
+        public boolean advanceExact(int target) throws IOException {
+          bitmap = bitmaps.get(target);
+          doc = target;
+          return true;
+        }
+
+        @Override
+        public long nextOrd() throws IOException {
+          if (bitmap == 0) {
+            return NO_MORE_ORDS;
+          }
+          final long ord = Long.numberOfTrailingZeros(bitmap);
+          bitmap &= bitmap - 1;
+          return ord;
+        }
+
+        @Override
+        public int nextOrds(long[] buffer, int offset, int length) throws IOException {
+          int count = 0;
+          for (; count < length && bitmap != 0; ++count) {
+            buffer[offset + count] = Long.numberOfTrailingZeros(bitmap);
+            bitmap &= bitmap - 1;
+          }
+          return count;
+        }
+
+      };
+    } else {
+      // sparse
+      final IndexedDISI disi = new IndexedDISI(data, entry.docsWithFieldOffset, entry.docsWithFieldLength,
+          entry.jumpTableEntryCount, entry.denseRankPower, entry.numDocsWithField);
+      return new BaseSortedSetDocValues(entry, data) {
+
+        boolean set;
+        long bitmap;
+
+        @Override
+        public int nextDoc() throws IOException {
+          set = false;
+          return disi.nextDoc();
+        }
+
+        @Override
+        public int docID() {
+          return disi.docID();
+        }
+
+        @Override
+        public long cost() {
+          return disi.cost();
+        }
+
+        @Override
+        public int advance(int target) throws IOException {
+          set = false;
+          return disi.advance(target);
+        }
+
+        @Override
+        public boolean advanceExact(int target) throws IOException {
+          set = false;
+          return disi.advanceExact(target);
+        }
+
+        @Override
+        public long nextOrd() throws IOException {
+          if (set == false) {
+            bitmap = bitmaps.get(disi.index());
+            set = true;
+          }
+          if (bitmap == 0) {
+            return NO_MORE_ORDS;
+          }
+          final long ord = Long.numberOfTrailingZeros(bitmap);
+          bitmap &= bitmap - 1;
+          return ord;
+        }
+
+        @Override
+        public int nextOrds(long[] buffer, int offset, int length) throws IOException {
+          if (set == false) {
+            bitmap = bitmaps.get(disi.index());
+            set = true;
+          }
+          int count = 0;
+          for (; count < length && bitmap != 0; ++count) {
+            buffer[offset + count] = Long.numberOfTrailingZeros(bitmap);
+            bitmap &= bitmap - 1;
+          }
+          return count;
+        }
+
       };
     }
   }
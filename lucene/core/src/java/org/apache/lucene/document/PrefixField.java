@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.document;
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.WildcardQuery;
+
+/**
+ * {@link Field} that indexes the prefixes of a keyword value into a hidden
+ * field, whose name is given by {@link #getPrefixFieldName(String)}. This
+ * allows {@link PrefixQuery} and {@link WildcardQuery} queries that are
+ * equivalent to a prefix query to run as a single term lookup rather than
+ * a union of all terms that start with the prefix, if the prefix has between
+ * {@code minPrefixLength} and {@code maxPrefixLength} code points.
+ * <p>
+ * This field must be added along with the keyword field that it accelerates,
+ * for every value of every document:
+ * <pre class="prettyprint">
+ * document.add(new StringField("name", value, Field.Store.NO));
+ * document.add(new PrefixField("name", value, 1, 3));
+ * </pre>
+ * Queries rely on this field to find matches, so all values of the field
+ * must have their prefixes indexed with the same prefix lengths. Queries
+ * fall back to enumerating terms if prefix lengths differ across segments,
+ * or if a segment has documents with a value of the keyword field but
+ * without prefixes, which is detected by comparing the doc counts of both
+ * fields. Values that are shorter than {@code minPrefixLength} index the
+ * empty string so that they are still counted.
+ * <p>
+ * NOTE: This only applies to queries that use a constant-score rewrite
+ * method, which is the default.
+ * @lucene.experimental
+ */
+public final class PrefixField extends Field {
+
+  /**
+   * Name of the attribute of the hidden field that records the lengths of
+   * indexed prefixes, formatted as {@code minPrefixLength,maxPrefixLength}.
+   */
+  public static final String PREFIX_LENGTHS_ATTRIBUTE = "PrefixField.prefixLengths";
+
+  /** Return the name of the hidden field that stores prefixes of values of {@code field}. */
+  public static String getPrefixFieldName(String field) {
+    return field + "._prefix";
+  }
+
+  private static FieldType getType(int minPrefixLength, int maxPrefixLength) {
+    if (minPrefixLength < 1) {
+      throw new IllegalArgumentException("minPrefixLength must be at least 1, got " + minPrefixLength);
+    }
+    if (maxPrefixLength < minPrefixLength) {
+      throw new IllegalArgumentException("maxPrefixLength must be greater than or equal to minPrefixLength, got "
+          + maxPrefixLength + " < " + minPrefixLength);
+    }
+    FieldType type = new FieldType();
+    type.setTokenized(false);
+    type.setOmitNorms(true);
+    type.setIndexOptions(IndexOptions.DOCS);
+    type.putAttribute(PREFIX_LENGTHS_ATTRIBUTE, minPrefixLength + "," + maxPrefixLength);
+    type.freeze();
+    return type;
+  }
+
+  private final int minPrefixLength;
+  private final int maxPrefixLength;
+
+  /**
+   * Create a new field that indexes prefixes of {@code value}.
+   * @param field the name of the keyword field, prefixes are indexed into
+   *        {@link #getPrefixFieldName(String) a hidden field}
+   * @param value the value of the keyword field
+   * @param minPrefixLength minimum length of indexed prefixes, in code points
+   * @param maxPrefixLength maximum length of indexed prefixes, in code points
+   * @throws IllegalArgumentException if {@code minPrefixLength} is less than 1
+   *         or greater than {@code maxPrefixLength}
+   */
+  public PrefixField(String field, String value, int minPrefixLength, int maxPrefixLength) {
+    super(getPrefixFieldName(field), value, getType(minPrefixLength, maxPrefixLength));
+    this.minPrefixLength = minPrefixLength;
+    this.maxPrefixLength = maxPrefixLength;
+  }
+
+  @Override
+  public TokenStream tokenStream(Analyzer analyzer, TokenStream reuse) {
+    PrefixTokenStream stream;
+    if (reuse instanceof PrefixTokenStream) {
+      stream = (PrefixTokenStream) reuse;
+    } else {
+      stream = new PrefixTokenStream();
+    }
+    stream.setValue((String) fieldsData, minPrefixLength, maxPrefixLength);
+    return stream;
+  }
+
+  private static final class PrefixTokenStream extends TokenStream {
+    private final CharTermAttribute termAttribute = addAttribute(CharTermAttribute.class);
+    private String value;
+    private int minPrefixLength, maxPrefixLength;
+    // length of the last prefix, in code points
+    private int prefixLength;
+    // end of the last prefix, in chars
+    private int end;
+    // whether the empty string has been returned for a value that has no prefix to index
+    private boolean emptyPrefixReturned;
+
+    private PrefixTokenStream() {
+    }
+
+    void setValue(String value, int minPrefixLength, int maxPrefixLength) {
+      this.value = value;
+      this.minPrefixLength = minPrefixLength;
+      this.maxPrefixLength = maxPrefixLength;
+    }
+
+    @Override
+    public void reset() throws IOException {
+      super.reset();
+      // move to the end of the prefix that precedes the first prefix to index
+      end = 0;
+      prefixLength = 0;
+      emptyPrefixReturned = false;
+      while (prefixLength < minPrefixLength - 1 && end < value.length()) {
+        end = value.offsetByCodePoints(end, 1);
+        prefixLength++;
+      }
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+      if (prefixLength >= maxPrefixLength || end >= value.length()) {
+        if (prefixLength < minPrefixLength && emptyPrefixReturned == false) {
+          // the value is shorter than the shortest prefix, the empty string
+          // makes the document count towards the doc count of the field
+          clearAttributes();
+          emptyPrefixReturned = true;
+          return true;
+        }
+        return false;
+      }
+      clearAttributes();
+      end = value.offsetByCodePoints(end, 1);
+      prefixLength++;
+      termAttribute.append(value, 0, end);
+      return true;
+    }
+  }
+}
@@ -689,7 +689,7 @@ final class FrozenBufferedUpdates {
 
       FieldTermIterator iter = deleteTerms.iterator();
       BytesRef delTerm;
-      TermDocsIterator termDocsIterator = new TermDocsIterator(segState.reader, true);
+      TermDocsIterator termDocsIterator = new TermDocsIterator(segState.reader, true, deleteTerms.size());
       while ((delTerm = iter.next()) != null) {
         final DocIdSetIterator iterator = termDocsIterator.nextTerm(iter.field(), delTerm);
         if (iterator != null) {
@@ -765,6 +765,11 @@ final class FrozenBufferedUpdates {
    * It accepts a field, value tuple and returns a {@link DocIdSetIterator} if the field has an entry
    * for the given value. It has an optimized way of iterating the term dictionary if the terms are
    * passed in sorted order and makes sure terms and postings are reused as much as possible.
+   * When the number of terms to look up is known and small compared to the number of terms of
+   * a field, terms are looked up with {@link TermsEnum#seekExact(BytesRef)} even if they are
+   * sorted: tracking the ceiling term would not allow to skip many seeks anyway, and exact seeks
+   * allow postings formats that maintain a membership filter, e.g. bloom filters on primary keys,
+   * to skip segments that cannot contain a term without touching their terms dictionary.
    */
   static final class TermDocsIterator {
     private final TermsProvider provider;
@@ -772,9 +777,14 @@ final class FrozenBufferedUpdates {
     private TermsEnum termsEnum;
     private PostingsEnum postingsEnum;
     private final boolean sortedTerms;
+    private final long numQueryTerms;
+    private boolean seekCeil;
     private BytesRef readerTerm;
     private BytesRef lastTerm; // only set with asserts
 
+    /** Sorted terms are looked up using exact seeks when fields have this many times more terms than the number of terms to look up. */
+    static final int SEEK_EXACT_TERMS_RATIO = 16;
+
     @FunctionalInterface
     interface TermsProvider {
       Terms terms(String field) throws IOException;
@@ -785,12 +795,21 @@ final class FrozenBufferedUpdates {
     }
 
     TermDocsIterator(LeafReader reader, boolean sortedTerms) {
-      this(reader::terms, sortedTerms);
+      this(reader::terms, sortedTerms, -1);
+    }
+
+    TermDocsIterator(LeafReader reader, boolean sortedTerms, long numQueryTerms) {
+      this(reader::terms, sortedTerms, numQueryTerms);
     }
 
     private TermDocsIterator(TermsProvider provider, boolean sortedTerms) {
+      this(provider, sortedTerms, -1);
+    }
+
+    private TermDocsIterator(TermsProvider provider, boolean sortedTerms, long numQueryTerms) {
       this.sortedTerms = sortedTerms;
       this.provider = provider;
+      this.numQueryTerms = numQueryTerms;
     }
 
     private void setField(String field) throws IOException {
@@ -800,7 +819,8 @@ final class FrozenBufferedUpdates {
         Terms terms = provider.terms(field);
         if (terms != null) {
           termsEnum = terms.iterator();
-          if (sortedTerms) {
+          seekCeil = sortedTerms && (numQueryTerms < 0 || terms.size() < 0 || terms.size() <= numQueryTerms * SEEK_EXACT_TERMS_RATIO);
+          if (seekCeil) {
             assert (lastTerm = null) == null; // need to reset otherwise we fail the assertSorted below since we sort per field
             readerTerm = termsEnum.next();
           }
@@ -813,7 +833,7 @@ final class FrozenBufferedUpdates {
     DocIdSetIterator nextTerm(String field, BytesRef term) throws IOException {
       setField(field);
       if (termsEnum != null) {
-        if (sortedTerms) {
+        if (seekCeil) {
           assert assertSorted(term);
           // in the sorted case we can take advantage of the "seeking forward" property
           // this allows us depending on the term dict impl to reuse data-structures internally
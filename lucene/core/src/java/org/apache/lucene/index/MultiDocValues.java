@@ -557,6 +557,13 @@ public class MultiDocValues {
    * </p>  
    */
   public static SortedDocValues getSortedValues(final IndexReader r, final String field) throws IOException {
+    return getSortedValues(r, field, null);
+  }
+
+  /** Same as {@link #getSortedValues(IndexReader, String)}, but if the returned instance
+   *  needs an {@link OrdinalMap}, it is built incrementally from {@code previous}.
+   *  @see OrdinalMap#build(IndexReader.CacheKey, IndexReader.CacheKey[], SortedDocValues[], float, OrdinalMap) */
+  public static SortedDocValues getSortedValues(final IndexReader r, final String field, final OrdinalMap previous) throws IOException {
     final List<LeafReaderContext> leaves = r.leaves();
     final int size = leaves.size();
     
@@ -568,10 +575,13 @@ public class MultiDocValues {
     
     boolean anyReal = false;
     final SortedDocValues[] values = new SortedDocValues[size];
+    final IndexReader.CacheKey[] segmentKeys = new IndexReader.CacheKey[size];
     final int[] starts = new int[size+1];
     long totalCost = 0;
     for (int i = 0; i < size; i++) {
       LeafReaderContext context = leaves.get(i);
+      IndexReader.CacheHelper coreCacheHelper = context.reader().getCoreCacheHelper();
+      segmentKeys[i] = coreCacheHelper == null ? null : coreCacheHelper.getKey();
       SortedDocValues v = context.reader().getSortedDocValues(field);
       if (v == null) {
         v = DocValues.emptySorted();
@@ -589,7 +599,7 @@ public class MultiDocValues {
     } else {
       IndexReader.CacheHelper cacheHelper = r.getReaderCacheHelper();
       IndexReader.CacheKey owner = cacheHelper == null ? null : cacheHelper.getKey();
-      OrdinalMap mapping = OrdinalMap.build(owner, values, PackedInts.DEFAULT);
+      OrdinalMap mapping = OrdinalMap.build(owner, segmentKeys, values, PackedInts.DEFAULT, previous);
       return new MultiSortedDocValues(values, starts, mapping, totalCost);
     }
   }
@@ -601,6 +611,13 @@ public class MultiDocValues {
    * </p>  
    */
   public static SortedSetDocValues getSortedSetValues(final IndexReader r, final String field) throws IOException {
+    return getSortedSetValues(r, field, null);
+  }
+
+  /** Same as {@link #getSortedSetValues(IndexReader, String)}, but if the returned instance
+   *  needs an {@link OrdinalMap}, it is built incrementally from {@code previous}.
+   *  @see OrdinalMap#build(IndexReader.CacheKey, IndexReader.CacheKey[], SortedSetDocValues[], float, OrdinalMap) */
+  public static SortedSetDocValues getSortedSetValues(final IndexReader r, final String field, final OrdinalMap previous) throws IOException {
     final List<LeafReaderContext> leaves = r.leaves();
     final int size = leaves.size();
     
@@ -612,10 +629,13 @@ public class MultiDocValues {
     
     boolean anyReal = false;
     final SortedSetDocValues[] values = new SortedSetDocValues[size];
+    final IndexReader.CacheKey[] segmentKeys = new IndexReader.CacheKey[size];
     final int[] starts = new int[size+1];
     long totalCost = 0;
     for (int i = 0; i < size; i++) {
       LeafReaderContext context = leaves.get(i);
+      IndexReader.CacheHelper coreCacheHelper = context.reader().getCoreCacheHelper();
+      segmentKeys[i] = coreCacheHelper == null ? null : coreCacheHelper.getKey();
       SortedSetDocValues v = context.reader().getSortedSetDocValues(field);
       if (v == null) {
         v = DocValues.emptySortedSet();
@@ -633,7 +653,7 @@ public class MultiDocValues {
     } else {
       IndexReader.CacheHelper cacheHelper = r.getReaderCacheHelper();
       IndexReader.CacheKey owner = cacheHelper == null ? null : cacheHelper.getKey();
-      OrdinalMap mapping = OrdinalMap.build(owner, values, PackedInts.DEFAULT);
+      OrdinalMap mapping = OrdinalMap.build(owner, segmentKeys, values, PackedInts.DEFAULT, previous);
       return new MultiSortedSetDocValues(values, starts, mapping, totalCost);
     }
   }
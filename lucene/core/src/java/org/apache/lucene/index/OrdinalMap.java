@@ -21,12 +21,15 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Accountables;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.InPlaceMergeSorter;
 import org.apache.lucene.util.LongValues;
 import org.apache.lucene.util.PriorityQueue;
@@ -39,6 +42,11 @@ import org.apache.lucene.util.packed.PackedLongValues;
  *  <p><b>NOTE</b>: this is a costly operation, as it must merge sort all terms, and may require non-trivial RAM once done.  It's better to operate in
  *  segment-private ordinal space instead when possible.
  *
+ *  <p>When a reader is reopened, most of its segments are usually still there. Passing the map of the previous reader to
+ *  {@link #build(IndexReader.CacheKey, IndexReader.CacheKey[], SortedSetDocValues[], float, OrdinalMap)} only merges the terms of the
+ *  new segments into the global ordinal space of the previous map, and remaps the ordinals of the segments that both readers share
+ *  without comparing their terms again.
+ *
  * @lucene.internal */
 public class OrdinalMap implements Accountable {
   // TODO: we could also have a utility method to merge Terms[] and use size() as a weight when we need it
@@ -123,13 +131,24 @@ public class OrdinalMap implements Accountable {
    * @see #build(IndexReader.CacheKey, TermsEnum[], long[], float)
    */
   public static OrdinalMap build(IndexReader.CacheKey owner, SortedDocValues[] values, float acceptableOverheadRatio) throws IOException {
+    return build(owner, null, values, acceptableOverheadRatio, null);
+  }
+
+  /**
+   * Create an ordinal map that uses the number of unique values of each
+   * {@link SortedDocValues} instance as a weight, reusing the mappings of
+   * {@code previous} for the segments that both maps have in common.
+   * @see #build(IndexReader.CacheKey, IndexReader.CacheKey[], SortedSetDocValues[], float, OrdinalMap)
+   */
+  public static OrdinalMap build(IndexReader.CacheKey owner, IndexReader.CacheKey[] segmentKeys, SortedDocValues[] values,
+      float acceptableOverheadRatio, OrdinalMap previous) throws IOException {
     final TermsEnum[] subs = new TermsEnum[values.length];
     final long[] weights = new long[values.length];
     for (int i = 0; i < values.length; ++i) {
       subs[i] = values[i].termsEnum();
       weights[i] = values[i].getValueCount();
     }
-    return build(owner, subs, weights, acceptableOverheadRatio);
+    return build(owner, segmentKeys, subs, weights, acceptableOverheadRatio, previous);
   }
 
   /**
@@ -138,13 +157,38 @@ public class OrdinalMap implements Accountable {
    * @see #build(IndexReader.CacheKey, TermsEnum[], long[], float)
    */
   public static OrdinalMap build(IndexReader.CacheKey owner, SortedSetDocValues[] values, float acceptableOverheadRatio) throws IOException {
+    return build(owner, null, values, acceptableOverheadRatio, null);
+  }
+
+  /**
+   * Create an ordinal map that uses the number of unique values of each
+   * {@link SortedSetDocValues} instance as a weight, reusing the mappings of
+   * {@code previous} for the segments that both maps have in common.
+   * <p>
+   * Segments are identified by their {@link LeafReader#getCoreCacheHelper() core cache key}:
+   * {@code segmentKeys[i]} is the key of the segment that {@code values[i]}
+   * comes from, or {@code null} if this segment has no key. Only the terms of
+   * the segments that {@code previous} does not know about are merged, the
+   * global ordinals of the other segments are computed by shifting the global
+   * ordinals of {@code previous}. This falls back to building a new map from
+   * scratch if {@code previous} is {@code null}, was not built with segment
+   * keys, or if most terms live in new segments.
+   * @param owner a cache key
+   * @param segmentKeys the core cache key of each segment, may be {@code null}
+   * @param values the doc values of each segment
+   * @param acceptableOverheadRatio the overhead ratio of the per-segment mappings
+   * @param previous the ordinal map of the same field on a previous view of the index, may be {@code null}
+   * @throws IOException if an I/O error occurred.
+   */
+  public static OrdinalMap build(IndexReader.CacheKey owner, IndexReader.CacheKey[] segmentKeys, SortedSetDocValues[] values,
+      float acceptableOverheadRatio, OrdinalMap previous) throws IOException {
     final TermsEnum[] subs = new TermsEnum[values.length];
     final long[] weights = new long[values.length];
     for (int i = 0; i < values.length; ++i) {
       subs[i] = values[i].termsEnum();
       weights[i] = values[i].getValueCount();
     }
-    return build(owner, subs, weights, acceptableOverheadRatio);
+    return build(owner, segmentKeys, subs, weights, acceptableOverheadRatio, previous);
   }
 
   /** 
@@ -165,13 +209,320 @@ public class OrdinalMap implements Accountable {
 
     // enums are not sorted, so let's sort to save memory
     final SegmentMap segmentMap = new SegmentMap(weights);
-    return new OrdinalMap(owner, subs, segmentMap, acceptableOverheadRatio);
+    return buildFromScratch(owner, null, subs, segmentMap, acceptableOverheadRatio);
+  }
+
+  /** Same as {@link #build(IndexReader.CacheKey, TermsEnum[], long[], float)} but {@code subs} are dense and
+   *  {@code valueCounts} are their number of terms. */
+  private static OrdinalMap build(IndexReader.CacheKey owner, IndexReader.CacheKey[] segmentKeys, TermsEnum[] subs, long[] valueCounts,
+      float acceptableOverheadRatio, OrdinalMap previous) throws IOException {
+    if (segmentKeys != null) {
+      if (segmentKeys.length != subs.length) {
+        throw new IllegalArgumentException("segmentKeys and values must have the same length");
+      }
+      segmentKeys = segmentKeys.clone();
+    }
+    final SegmentMap segmentMap = new SegmentMap(valueCounts);
+    if (segmentKeys != null && previous != null) {
+      OrdinalMap map = buildIncremental(owner, segmentKeys, subs, valueCounts, segmentMap, acceptableOverheadRatio, previous);
+      if (map != null) {
+        return map;
+      }
+    }
+    return buildFromScratch(owner, segmentKeys, subs, segmentMap, acceptableOverheadRatio);
+  }
+
+  /** Rough cost of locating a term of a new segment in a segment of the previous map,
+   *  relatively to the cost of merging a term from scratch. */
+  private static final int SEEK_COST = 4;
+
+  /**
+   * Build a map for {@code subs} by merging the terms of the segments that
+   * {@code previous} does not have into its global ordinal space, or return
+   * {@code null} if this would not be cheaper than building a map from scratch.
+   */
+  private static OrdinalMap buildIncremental(IndexReader.CacheKey owner, IndexReader.CacheKey[] segmentKeys, TermsEnum[] subs,
+      long[] valueCounts, SegmentMap segmentMap, float acceptableOverheadRatio, OrdinalMap previous) throws IOException {
+    final long previousValueCount = previous.getValueCount();
+    if (previous.segmentKeys == null || previousValueCount >= Integer.MAX_VALUE) {
+      return null;
+    }
+    final Map<IndexReader.CacheKey, Integer> previousSegments = new HashMap<>();
+    for (int i = 0; i < previous.segmentKeys.length; ++i) {
+      if (previous.segmentKeys[i] != null) {
+        previousSegments.put(previous.segmentKeys[i], i);
+      }
+    }
+
+    // retained segments are those that both maps have, added segments are only in the new map
+    // and removed segments only in the previous map
+    final int[] previousIndexes = new int[subs.length]; // new segment number -> previous segment number, or -1
+    final int[] retainedSubs = new int[previous.segmentKeys.length]; // previous segment number -> new sub index, or -1
+    Arrays.fill(retainedSubs, -1);
+    int numRetained = 0;
+    long retainedValueCount = 0, addedValueCount = 0;
+    for (int i = 0; i < subs.length; ++i) {
+      final Integer previousIndex = segmentKeys[i] == null ? null : previousSegments.remove(segmentKeys[i]);
+      if (previousIndex == null) {
+        previousIndexes[i] = -1;
+        addedValueCount += valueCounts[i];
+      } else {
+        previousIndexes[i] = previousIndex;
+        retainedSubs[previousIndex] = segmentMap.oldToNew(i);
+        numRetained++;
+        retainedValueCount += valueCounts[i];
+      }
+    }
+    if (numRetained == 0 || addedValueCount * numRetained * SEEK_COST > retainedValueCount + addedValueCount) {
+      return null;
+    }
+
+    // Previous ords whose first segment has been removed are orphans. They are kept if another
+    // retained segment adopts them, and dropped otherwise:
+    FixedBitSet orphans = null, dropped = null;
+    int[] orphanRanks = null, droppedRanks = null;
+    PackedInts.Mutable adoptiveSubs = null, adoptiveOrds = null;
+    if (numRetained < previous.segmentKeys.length) {
+      orphans = new FixedBitSet((int) previousValueCount);
+      final PackedLongValues.Iterator previousFirstSegments = previous.firstSegments.iterator();
+      for (int ord = 0; ord < previousValueCount; ++ord) {
+        if (retainedSubs[previous.segmentMap.newToOld((int) previousFirstSegments.next())] == -1) {
+          orphans.set(ord);
+        }
+      }
+      orphanRanks = ranks(orphans);
+      final int numOrphans = orphanRanks[orphanRanks.length - 1];
+      final FixedBitSet adopted = new FixedBitSet((int) previousValueCount);
+      if (numOrphans > 0) {
+        long maxValueCount = 0;
+        for (long valueCount : valueCounts) {
+          maxValueCount = Math.max(maxValueCount, valueCount);
+        }
+        adoptiveSubs = PackedInts.getMutable(numOrphans, PackedInts.bitsRequired(subs.length), PackedInts.COMPACT);
+        adoptiveOrds = PackedInts.getMutable(numOrphans, PackedInts.bitsRequired(maxValueCount), PackedInts.COMPACT);
+        int numAdopted = 0;
+        // visit segments in sub order so that orphans are adopted by the least sub that contains them, like the first segment
+        for (int sub = 0; sub < subs.length && numAdopted < numOrphans; ++sub) {
+          final int segment = segmentMap.newToOld(sub);
+          if (previousIndexes[segment] == -1) {
+            continue;
+          }
+          final LongValues previousGlobalOrds = previous.getGlobalOrds(previousIndexes[segment]);
+          for (long segmentOrd = 0; segmentOrd < valueCounts[segment]; ++segmentOrd) {
+            final int ord = (int) previousGlobalOrds.get(segmentOrd);
+            if (orphans.get(ord) && adopted.getAndSet(ord) == false) {
+              final int rank = rank(orphans, orphanRanks, ord);
+              adoptiveSubs.set(rank, sub);
+              adoptiveOrds.set(rank, segmentOrd);
+              numAdopted++;
+            }
+          }
+        }
+      }
+      dropped = orphans.clone();
+      dropped.andNot(adopted);
+      droppedRanks = ranks(dropped);
+    }
+
+    final PackedLongValues.Builder[] ordDeltas = new PackedLongValues.Builder[subs.length];
+    for (int i = 0; i < ordDeltas.length; i++) {
+      ordDeltas[i] = PackedLongValues.monotonicBuilder(acceptableOverheadRatio);
+    }
+    final long[] ordDeltaBits = new long[subs.length];
+    final long[] segmentOrds = new long[subs.length];
+
+    // Merge-sort the terms of the added segments and find where they fall in the previous ord space
+    final TermsEnum[] retainedEnums = new TermsEnum[numRetained];
+    final LongValues[] retainedGlobalOrds = new LongValues[numRetained];
+    final BytesRef[] retainedTerms = new BytesRef[numRetained];
+    PriorityQueue<TermsEnumIndex> queue = newQueue(subs.length - numRetained);
+    for (int sub = 0, r = 0; sub < subs.length; ++sub) {
+      final int segment = segmentMap.newToOld(sub);
+      if (previousIndexes[segment] == -1) {
+        TermsEnumIndex termsEnum = new TermsEnumIndex(subs[segment], sub);
+        if (termsEnum.next() != null) {
+          queue.add(termsEnum);
+        }
+      } else {
+        retainedEnums[r] = subs[segment];
+        retainedGlobalOrds[r] = previous.getGlobalOrds(previousIndexes[segment]);
+        r++;
+      }
+    }
+    // previous ord before which each inserted term goes, and where to find this term
+    final PackedLongValues.Builder insertionOrds = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+    final PackedLongValues.Builder insertionSubs = PackedLongValues.packedBuilder(PackedInts.COMPACT);
+    final PackedLongValues.Builder insertionSegmentOrds = PackedLongValues.packedBuilder(PackedInts.COMPACT);
+    final BytesRefBuilder scratch = new BytesRefBuilder();
+    long numInserted = 0;
+    while (queue.size() != 0) {
+      scratch.copyBytes(queue.top().currentTerm);
+      final BytesRef term = scratch.get();
+
+      long previousOrd = previousValueCount;
+      boolean found = false;
+      for (int r = 0; r < numRetained; ++r) {
+        // targets are increasing, so there is no need to seek again if the enum is already on or after the target
+        int cmp = retainedTerms[r] == null ? -1 : retainedTerms[r].compareTo(term);
+        if (cmp < 0 && retainedEnums[r] != null) {
+          if (retainedEnums[r].seekCeil(term) == TermsEnum.SeekStatus.END) {
+            retainedEnums[r] = null;
+            retainedTerms[r] = null;
+            continue;
+          }
+          retainedTerms[r] = retainedEnums[r].term();
+          cmp = retainedTerms[r].compareTo(term);
+        }
+        if (cmp >= 0) {
+          final long ord = retainedGlobalOrds[r].get(retainedEnums[r].ord());
+          if (cmp == 0) {
+            previousOrd = ord;
+            found = true;
+            break;
+          }
+          previousOrd = Math.min(previousOrd, ord);
+        }
+      }
+      final long globalOrd = previousOrd - rank(dropped, droppedRanks, previousOrd) + numInserted;
+
+      int firstSegmentIndex = Integer.MAX_VALUE;
+      long firstSegmentOrd = -1;
+      while (true) {
+        TermsEnumIndex top = queue.top();
+        long segmentOrd = top.termsEnum.ord();
+        long delta = globalOrd - segmentOrd;
+        int segmentIndex = top.subIndex;
+        if (segmentIndex < firstSegmentIndex) {
+          firstSegmentIndex = segmentIndex;
+          firstSegmentOrd = segmentOrd;
+        }
+        ordDeltaBits[segmentIndex] |= delta;
+        do {
+          ordDeltas[segmentIndex].add(delta);
+          segmentOrds[segmentIndex]++;
+        } while (segmentOrds[segmentIndex] <= segmentOrd);
+
+        if (top.next() == null) {
+          queue.pop();
+          if (queue.size() == 0) {
+            break;
+          }
+        } else {
+          queue.updateTop();
+        }
+        if (queue.top().currentTerm.equals(term) == false) {
+          break;
+        }
+      }
+
+      if (found == false) {
+        insertionOrds.add(previousOrd);
+        insertionSubs.add(firstSegmentIndex);
+        insertionSegmentOrds.add(firstSegmentOrd);
+        numInserted++;
+      }
+    }
+    final PackedLongValues insertions = insertionOrds.build();
+
+    // Shift the mappings of retained segments
+    for (int sub = 0; sub < subs.length; ++sub) {
+      final int segment = segmentMap.newToOld(sub);
+      if (previousIndexes[segment] == -1) {
+        continue;
+      }
+      final LongValues previousGlobalOrds = previous.getGlobalOrds(previousIndexes[segment]);
+      final PackedLongValues.Iterator it = insertions.iterator();
+      long nextInsertion = it.hasNext() ? it.next() : Long.MAX_VALUE;
+      long inserted = 0;
+      for (long segmentOrd = 0; segmentOrd < valueCounts[segment]; ++segmentOrd) {
+        final long previousOrd = previousGlobalOrds.get(segmentOrd);
+        while (nextInsertion <= previousOrd) {
+          inserted++;
+          nextInsertion = it.hasNext() ? it.next() : Long.MAX_VALUE;
+        }
+        final long delta = previousOrd - rank(dropped, droppedRanks, previousOrd) + inserted - segmentOrd;
+        ordDeltaBits[sub] |= delta;
+        ordDeltas[sub].add(delta);
+      }
+    }
+
+    // Interleave the previous ords that are still used with the inserted ones
+    final PackedLongValues.Builder globalOrdDeltas = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+    final PackedLongValues.Builder firstSegments = PackedLongValues.packedBuilder(PackedInts.COMPACT);
+    final PackedLongValues.Iterator insertionIt = insertions.iterator();
+    final PackedLongValues.Iterator insertionSubIt = insertionSubs.build().iterator();
+    final PackedLongValues.Iterator insertionSegmentOrdIt = insertionSegmentOrds.build().iterator();
+    final PackedLongValues.Iterator previousFirstSegments = previous.firstSegments.iterator();
+    final PackedLongValues.Iterator previousGlobalOrdDeltas = previous.globalOrdDeltas.iterator();
+    long nextInsertion = insertionIt.hasNext() ? insertionIt.next() : Long.MAX_VALUE;
+    long globalOrd = 0;
+    for (int previousOrd = 0; ; ++previousOrd) {
+      while (nextInsertion <= previousOrd) {
+        firstSegments.add(insertionSubIt.next());
+        globalOrdDeltas.add(globalOrd - insertionSegmentOrdIt.next());
+        globalOrd++;
+        nextInsertion = insertionIt.hasNext() ? insertionIt.next() : Long.MAX_VALUE;
+      }
+      if (previousOrd == previousValueCount) {
+        break;
+      }
+      int sub = retainedSubs[previous.segmentMap.newToOld((int) previousFirstSegments.next())];
+      long segmentOrd = previousOrd - previousGlobalOrdDeltas.next();
+      if (sub == -1) {
+        if (dropped.get(previousOrd)) {
+          continue;
+        }
+        final int rank = rank(orphans, orphanRanks, previousOrd);
+        sub = (int) adoptiveSubs.get(rank);
+        segmentOrd = adoptiveOrds.get(rank);
+      }
+      firstSegments.add(sub);
+      globalOrdDeltas.add(globalOrd - segmentOrd);
+      globalOrd++;
+    }
+
+    return new OrdinalMap(owner, segmentKeys, segmentMap, globalOrdDeltas, firstSegments, ordDeltas, ordDeltaBits, acceptableOverheadRatio);
+  }
+
+  /** Compute the number of set bits before every word of {@code bits}. */
+  private static int[] ranks(FixedBitSet bits) {
+    final long[] words = bits.getBits();
+    final int[] ranks = new int[words.length + 1];
+    for (int i = 0; i < words.length; ++i) {
+      ranks[i + 1] = ranks[i] + Long.bitCount(words[i]);
+    }
+    return ranks;
+  }
+
+  /** Return the number of set bits before {@code index}, or 0 if {@code bits} is null. */
+  private static int rank(FixedBitSet bits, int[] ranks, long index) {
+    if (bits == null) {
+      return 0;
+    }
+    final int word = (int) (index >> 6);
+    final long[] words = bits.getBits();
+    if (word >= words.length) {
+      return ranks[words.length];
+    }
+    return ranks[word] + Long.bitCount(words[word] & ((1L << index) - 1));
+  }
+
+  private static PriorityQueue<TermsEnumIndex> newQueue(int maxSize) {
+    return new PriorityQueue<TermsEnumIndex>(maxSize) {
+      @Override
+      protected boolean lessThan(TermsEnumIndex a, TermsEnumIndex b) {
+        return a.currentTerm.compareTo(b.currentTerm) < 0;
+      }
+    };
   }
 
   private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(OrdinalMap.class);
+  private static final long CACHE_KEY_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(IndexReader.CacheKey.class);
 
   /** Cache key of whoever asked for this awful thing */
   public final IndexReader.CacheKey owner;
+  // core cache key of every segment, or null if unknown
+  final IndexReader.CacheKey[] segmentKeys;
   // globalOrd -> (globalOrd - segmentOrd) where segmentOrd is the the ordinal in the first segment that contains this term
   final PackedLongValues globalOrdDeltas;
   // globalOrd -> first segment container
@@ -183,11 +534,10 @@ public class OrdinalMap implements Accountable {
   // ram usage
   final long ramBytesUsed;
     
-  OrdinalMap(IndexReader.CacheKey owner, TermsEnum subs[], SegmentMap segmentMap, float acceptableOverheadRatio) throws IOException {
+  private static OrdinalMap buildFromScratch(IndexReader.CacheKey owner, IndexReader.CacheKey[] segmentKeys, TermsEnum subs[],
+      SegmentMap segmentMap, float acceptableOverheadRatio) throws IOException {
     // create the ordinal mappings by pulling a termsenum over each sub's 
     // unique terms, and walking a multitermsenum over those
-    this.owner = owner;
-    this.segmentMap = segmentMap;
     // even though we accept an overhead ratio, we keep these ones with COMPACT
     // since they are only used to resolve values given a global ord, which is
     // slow anyway
@@ -201,12 +551,7 @@ public class OrdinalMap implements Accountable {
     long[] segmentOrds = new long[subs.length];
 
     // Just merge-sorts by term:
-    PriorityQueue<TermsEnumIndex> queue = new PriorityQueue<TermsEnumIndex>(subs.length) {
-        @Override
-        protected boolean lessThan(TermsEnumIndex a, TermsEnumIndex b) {
-          return a.currentTerm.compareTo(b.currentTerm) < 0;
-        }
-      };
+    PriorityQueue<TermsEnumIndex> queue = newQueue(subs.length);
     
     for (int i = 0; i < subs.length; i++) {
       TermsEnumIndex sub = new TermsEnumIndex(subs[segmentMap.newToOld(i)], i);
@@ -271,13 +616,30 @@ public class OrdinalMap implements Accountable {
       globalOrd++;
     }
 
+    return new OrdinalMap(owner, segmentKeys, segmentMap, globalOrdDeltas, firstSegments, ordDeltas, ordDeltaBits, acceptableOverheadRatio);
+  }
+
+  private OrdinalMap(IndexReader.CacheKey owner, IndexReader.CacheKey[] segmentKeys, SegmentMap segmentMap,
+      PackedLongValues.Builder globalOrdDeltas, PackedLongValues.Builder firstSegments,
+      PackedLongValues.Builder[] ordDeltas, long[] ordDeltaBits, float acceptableOverheadRatio) {
+    this.owner = owner;
+    this.segmentKeys = segmentKeys;
+    this.segmentMap = segmentMap;
     this.firstSegments = firstSegments.build();
     this.globalOrdDeltas = globalOrdDeltas.build();
     // ordDeltas is typically the bottleneck, so let's see what we can do to make it faster
-    segmentToGlobalOrds = new LongValues[subs.length];
+    segmentToGlobalOrds = new LongValues[ordDeltas.length];
     long ramBytesUsed = BASE_RAM_BYTES_USED + this.globalOrdDeltas.ramBytesUsed()
       + this.firstSegments.ramBytesUsed() + RamUsageEstimator.shallowSizeOf(segmentToGlobalOrds)
       + segmentMap.ramBytesUsed();
+    if (segmentKeys != null) {
+      ramBytesUsed += RamUsageEstimator.shallowSizeOf(segmentKeys);
+      for (IndexReader.CacheKey key : segmentKeys) {
+        if (key != null) {
+          ramBytesUsed += CACHE_KEY_RAM_BYTES_USED;
+        }
+      }
+    }
     for (int i = 0; i < ordDeltas.length; ++i) {
       final PackedLongValues deltas = ordDeltas[i].build();
       if (ordDeltaBits[i] == 0L) {
@@ -338,7 +700,8 @@ public class OrdinalMap implements Accountable {
     
   /** 
    * Given a global ordinal, returns the index of the first
-   * segment that contains this term.
+   * segment that contains this term. Maps that are built incrementally
+   * may return another segment that contains this term.
    */
   public int getFirstSegmentNumber(long globalOrd) {
     return segmentMap.newToOld((int) firstSegments.get(globalOrd));
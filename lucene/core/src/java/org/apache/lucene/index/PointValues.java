@@ -208,6 +208,30 @@ public abstract class PointValues {
      *  docID order. */
     void visit(int docID, byte[] packedValue) throws IOException;
 
+    /** Similar to {@link #visit(int)}, but called with all documents of a
+     *  leaf cell that's fully contained by the query at once, which gives
+     *  consumers an opportunity to add them in bulk. The iterator returns
+     *  doc IDs in increasing order and must only be consumed via
+     *  {@link DocIdSetIterator#nextDoc()}. The default implementation calls
+     *  {@link #visit(int)} for every document. */
+    default void visit(DocIdSetIterator iterator) throws IOException {
+      for (int docID = iterator.nextDoc(); docID != DocIdSetIterator.NO_MORE_DOCS; docID = iterator.nextDoc()) {
+        visit(docID);
+      }
+    }
+
+    /** Similar to {@link #visit(int, byte[])}, but called with all documents
+     *  that share the same {@code packedValue} at once, so that consumers only
+     *  need to check the value once. The iterator returns doc IDs in
+     *  increasing order and must only be consumed via
+     *  {@link DocIdSetIterator#nextDoc()}. The default implementation calls
+     *  {@link #visit(int, byte[])} for every document. */
+    default void visit(DocIdSetIterator iterator, byte[] packedValue) throws IOException {
+      for (int docID = iterator.nextDoc(); docID != DocIdSetIterator.NO_MORE_DOCS; docID = iterator.nextDoc()) {
+        visit(docID, packedValue);
+      }
+    }
+
     /** Called for non-leaf cells to test how the cell relates to the query, to
      *  determine how to further recurse down the tree. */
     Relation compare(byte[] minPackedValue, byte[] maxPackedValue);
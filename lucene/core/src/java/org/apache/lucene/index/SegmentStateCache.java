@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A cache of state that is computed per segment, such as data structures that
+ * are expensive to build from the index and that a searcher uses for every
+ * query.
+ * <p>
+ * State is keyed on the {@link LeafReader#getCoreCacheHelper() core cache key}
+ * of segments: when a reader is reopened, for instance via
+ * {@link DirectoryReader#openIfChanged} or
+ * {@link org.apache.lucene.search.SearcherManager#maybeRefresh}, segments that
+ * the new reader shares with the previous one find their state again and only
+ * new segments need to compute it. The cost of a refresh is then proportional
+ * to the change rather than to the size of the index. State is released when
+ * the core of its segment is closed.
+ * <p>
+ * Because it is keyed on cores, state must not depend on deleted documents.
+ * Leaves that do not have a core cache helper compute their state on every
+ * call.
+ * <p>
+ * A typical usage is to share one instance across refreshes, and to load the
+ * state of new segments before exposing a searcher:
+ * <pre class="prettyprint">
+ * SegmentStateCache&lt;MyState&gt; cache = new SegmentStateCache&lt;&gt;(MyState::new);
+ * SearcherFactory factory = new SearcherFactory() {
+ *   public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) throws IOException {
+ *     cache.warm(reader);
+ *     return new IndexSearcher(reader);
+ *   }
+ * };
+ * </pre>
+ * This class is thread-safe.
+ * @lucene.experimental
+ */
+public final class SegmentStateCache<T> {
+
+  /** Computes the state of a segment. */
+  @FunctionalInterface
+  public interface Loader<T> {
+    /** Compute the state of the given segment, must not return {@code null}. */
+    T load(LeafReader reader) throws IOException;
+  }
+
+  private final Loader<T> loader;
+  private final Map<IndexReader.CacheKey, T> cache = new ConcurrentHashMap<>();
+
+  /** Sole constructor. */
+  public SegmentStateCache(Loader<T> loader) {
+    this.loader = loader;
+  }
+
+  /**
+   * Return the state of the given segment, computing it if this segment has
+   * never been seen by this cache.
+   */
+  public T get(LeafReader reader) throws IOException {
+    final IndexReader.CacheHelper cacheHelper = reader.getCoreCacheHelper();
+    if (cacheHelper == null) {
+      return load(reader);
+    }
+    final IndexReader.CacheKey key = cacheHelper.getKey();
+    T state = cache.get(key);
+    if (state == null) {
+      // loaded outside of any lock, concurrent callers may compute the same
+      // state but only one of them is kept
+      state = load(reader);
+      final T previous = cache.putIfAbsent(key, state);
+      if (previous == null) {
+        cacheHelper.addClosedListener(cache::remove);
+      } else {
+        state = previous;
+      }
+    }
+    return state;
+  }
+
+  private T load(LeafReader reader) throws IOException {
+    final T state = loader.load(reader);
+    if (state == null) {
+      throw new NullPointerException("Loader returned null state for " + reader);
+    }
+    return state;
+  }
+
+  /**
+   * Compute the state of the segments of the given reader that this cache
+   * doesn't have yet, and return how many segments were loaded. This is
+   * typically called from {@link org.apache.lucene.search.SearcherFactory}
+   * so that new searchers are warm when they get exposed.
+   */
+  public int warm(IndexReader reader) throws IOException {
+    int loaded = 0;
+    for (LeafReaderContext context : reader.leaves()) {
+      final IndexReader.CacheHelper cacheHelper = context.reader().getCoreCacheHelper();
+      if (cacheHelper != null && cache.containsKey(cacheHelper.getKey()) == false) {
+        get(context.reader());
+        loaded++;
+      }
+    }
+    return loaded;
+  }
+
+  /** Return the number of segments that have state in this cache. */
+  public int size() {
+    return cache.size();
+  }
+
+}
@@ -51,6 +51,28 @@ public abstract class SortedSetDocValues extends DocValuesIterator {
    */
   public abstract long nextOrd() throws IOException;
 
+  /**
+   * Bulk version of {@link #nextOrd()}: reads up to {@code length} of the
+   * next ordinals of the current document into {@code ords}, starting at
+   * {@code offset}, and returns how many ordinals have been read. A return
+   * value that is less than {@code length} means that all ordinals of the
+   * current document have been consumed.
+   * It is illegal to call this method after {@link #advanceExact(int)}
+   * returned {@code false}.
+   * <p>The default implementation calls {@link #nextOrd()} in a loop, but
+   * implementations may be able to decode ordinals more efficiently.
+   */
+  public int nextOrds(long[] ords, int offset, int length) throws IOException {
+    for (int i = 0; i < length; ++i) {
+      final long ord = nextOrd();
+      if (ord == NO_MORE_ORDS) {
+        return i;
+      }
+      ords[offset + i] = ord;
+    }
+    return length;
+  }
+
   // TODO: should we have a docValueCount, like SortedNumeric?
   
   /** Retrieves the value for the specified ordinal. The returned
@@ -34,6 +34,17 @@ final class DisjunctionMaxScorer extends DisjunctionScorer {
   /* Multiplier applied to non-maximum-scoring subqueries for a document as they are summed into the result. */
   private final float tieBreakerMultiplier;
 
+  // Only set with ScoreMode.TOP_SCORES: the max score of each sub scorer across
+  // the whole segment, and the max and sum of the max scores of other scorers
+  private final float[] maxScores;
+  private final float[] maxOfOtherMaxScores;
+  private final double[] sumOfOtherMaxScores;
+  private final TwoPhaseIterator competitiveTwoPhase;
+  private float minCompetitiveScore;
+  // the score of the current doc, if it has been computed already
+  private int scoreDoc = -1;
+  private float score;
+
   /**
    * Creates a new instance of DisjunctionMaxScorer
    * 
@@ -52,10 +63,59 @@ final class DisjunctionMaxScorer extends DisjunctionScorer {
     if (tieBreakerMultiplier < 0 || tieBreakerMultiplier > 1) {
       throw new IllegalArgumentException("tieBreakerMultiplier must be in [0, 1]");
     }
+    if (scoreMode == ScoreMode.TOP_SCORES) {
+      final int numScorers = subScorers.size();
+      maxScores = new float[numScorers];
+      for (int i = 0; i < numScorers; ++i) {
+        // sub scorers have been shallow-advanced to 0 already
+        maxScores[i] = subScorers.get(i).getMaxScore(NO_MORE_DOCS);
+      }
+      maxOfOtherMaxScores = new float[numScorers];
+      sumOfOtherMaxScores = new double[numScorers];
+      for (int i = 0; i < numScorers; ++i) {
+        for (int j = 0; j < numScorers; ++j) {
+          if (j != i) {
+            maxOfOtherMaxScores[i] = Math.max(maxOfOtherMaxScores[i], maxScores[j]);
+            sumOfOtherMaxScores[i] += maxScores[j];
+          }
+        }
+      }
+      competitiveTwoPhase = new CompetitiveTwoPhase(super.twoPhaseIterator());
+    } else {
+      maxScores = null;
+      maxOfOtherMaxScores = null;
+      sumOfOtherMaxScores = null;
+      competitiveTwoPhase = null;
+    }
+  }
+
+  @Override
+  public DocIdSetIterator iterator() {
+    if (competitiveTwoPhase != null) {
+      return TwoPhaseIterator.asDocIdSetIterator(competitiveTwoPhase);
+    }
+    return super.iterator();
+  }
+
+  @Override
+  public TwoPhaseIterator twoPhaseIterator() {
+    if (competitiveTwoPhase != null) {
+      return competitiveTwoPhase;
+    }
+    return super.twoPhaseIterator();
   }
 
   @Override
   protected float score(DisiWrapper topList) throws IOException {
+    final int doc = docID();
+    if (doc != scoreDoc) {
+      score = computeScore(topList);
+      scoreDoc = doc;
+    }
+    return score;
+  }
+
+  private float computeScore(DisiWrapper topList) throws IOException {
     float scoreMax = 0;
     double otherScoreSum = 0;
     for (DisiWrapper w = topList; w != null; w = w.next) {
@@ -112,7 +172,88 @@ final class DisjunctionMaxScorer extends DisjunctionScorer {
   }
 
   @Override
-  public void setMinCompetitiveScore(float minScore) {
+  public void setMinCompetitiveScore(float minScore) throws IOException {
     getBlockMaxApprox().setMinCompetitiveScore(minScore);
+    if (minScore <= minCompetitiveScore) {
+      return;
+    }
+    minCompetitiveScore = minScore;
+    // Sub scorers may skip documents that can't be competitive, regardless of
+    // the scores of other sub scorers
+    for (int i = 0; i < maxScores.length; ++i) {
+      float subMinScore = getSubMinCompetitiveScore(i, minScore);
+      if (subMinScore > 0) {
+        subScorers.get(i).setMinCompetitiveScore(subMinScore);
+      }
+    }
+  }
+
+  /**
+   * Return the minimum score that the sub scorer at index {@code i} must
+   * produce for a hit to be competitive, or 0 if no such score exists.
+   */
+  private float getSubMinCompetitiveScore(int i, float minScore) {
+    if (tieBreakerMultiplier == 0) {
+      // the score is the maximum of the scores of the sub scorers
+      return minScore;
+    }
+    if (scoreUpperBound(i, 0) >= minScore) {
+      // other scorers may produce competitive scores on their own
+      return 0;
+    }
+    final double maxOther = maxOfOtherMaxScores[i];
+    final double sumOther = sumOfOtherMaxScores[i];
+    double subMinScore;
+    if (maxOther + tieBreakerMultiplier * sumOther < minScore) {
+      // the sub scorer needs to produce the maximum score
+      subMinScore = minScore - tieBreakerMultiplier * sumOther;
+    } else {
+      subMinScore = (minScore - (1 - tieBreakerMultiplier) * maxOther - tieBreakerMultiplier * sumOther) / tieBreakerMultiplier;
+    }
+    float subMinScoreFloat = (float) subMinScore;
+    // account for rounding errors, this should converge in a couple iterations
+    while (subMinScoreFloat > 0 && scoreUpperBound(i, subMinScoreFloat) >= minScore) {
+      subMinScoreFloat -= Math.ulp(minScore);
+    }
+    return Math.max(subMinScoreFloat, 0f);
+  }
+
+  /**
+   * Return an upper bound of the score of a document on which the sub scorer
+   * at index {@code i} produces {@code subScore}.
+   */
+  private float scoreUpperBound(int i, float subScore) {
+    final double max = Math.max(subScore, maxOfOtherMaxScores[i]);
+    double otherScoreSum = subScore + sumOfOtherMaxScores[i] - max;
+    otherScoreSum *= (1 + 2 * MathUtil.sumRelativeErrorBound(subScorers.size() - 1));
+    return (float) (max + otherScoreSum * tieBreakerMultiplier);
+  }
+
+  /**
+   * Only match documents whose score is competitive. This is required since
+   * sub scorers may skip documents that are not competitive, which would give
+   * incomplete scores to these documents.
+   */
+  private class CompetitiveTwoPhase extends TwoPhaseIterator {
+
+    private final TwoPhaseIterator in;
+
+    CompetitiveTwoPhase(TwoPhaseIterator in) {
+      super(in == null ? DisjunctionMaxScorer.super.iterator() : in.approximation());
+      this.in = in;
+    }
+
+    @Override
+    public boolean matches() throws IOException {
+      if (in != null && in.matches() == false) {
+        return false;
+      }
+      return minCompetitiveScore == 0 || score() >= minCompetitiveScore;
+    }
+
+    @Override
+    public float matchCost() {
+      return (in == null ? 0 : in.matchCost()) + subScorers.size();
+    }
   }
 }
@@ -19,6 +19,8 @@ package org.apache.lucene.search;
 
 import java.io.IOException;
 
+import org.apache.lucene.util.FixedBitSet;
+
 /**
  * This abstract class defines methods to iterate over a set of non-decreasing
  * doc ids. Note that this class assumes it iterates on doc Ids, and therefore
@@ -84,6 +86,16 @@ public abstract class DocIdSetIterator {
         return doc;
       }
 
+      @Override
+      public void intoBitSet(int upTo, FixedBitSet bitSet, int offset) throws IOException {
+        assert offset <= doc;
+        upTo = Math.min(upTo, maxDoc);
+        if (upTo > doc) {
+          bitSet.set(doc - offset, upTo - offset);
+          advance(upTo);
+        }
+      }
+
       @Override
       public long cost() {
         return maxDoc;
@@ -125,6 +137,16 @@ public abstract class DocIdSetIterator {
         return doc;
       }
 
+      @Override
+      public void intoBitSet(int upTo, FixedBitSet bitSet, int offset) throws IOException {
+        assert offset <= doc;
+        upTo = Math.min(upTo, maxDoc);
+        if (upTo > doc) {
+          bitSet.set(doc - offset, upTo - offset);
+          advance(upTo);
+        }
+      }
+
       @Override
       public long cost() {
         return maxDoc - minDoc;
@@ -208,6 +230,34 @@ public abstract class DocIdSetIterator {
     return doc;
   }
 
+  /**
+   * Load doc IDs into a {@link FixedBitSet}. Doc IDs are recorded as
+   * {@code doc - offset}, starting with the current doc ID, up to {@code upTo}
+   * exclusive. The iterator is then positioned on the first doc ID that is
+   * greater than or equal to {@code upTo}. This behaves exactly as if
+   * written as below, which is the default implementation:
+   *
+   * <pre class="prettyprint">
+   * for (int doc = docID(); doc &lt; upTo; doc = nextDoc()) {
+   *   bitSet.set(doc - offset);
+   * }
+   * </pre>
+   *
+   * Implementations are encouraged to override this method when they can
+   * decode doc IDs in bulk.
+   * <p>
+   * <b>NOTE:</b> the iterator must be positioned, and {@code offset} must be
+   * less than or equal to the current doc ID.
+   *
+   * @lucene.experimental
+   */
+  public void intoBitSet(int upTo, FixedBitSet bitSet, int offset) throws IOException {
+    assert offset <= docID();
+    for (int doc = docID(); doc < upTo; doc = nextDoc()) {
+      bitSet.set(doc - offset);
+    }
+  }
+
   /**
    * Returns the estimated cost of this {@link DocIdSetIterator}.
    * <p>
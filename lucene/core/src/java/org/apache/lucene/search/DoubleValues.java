@@ -35,6 +35,39 @@ public abstract class DoubleValues {
    */
   public abstract boolean advanceExact(int doc) throws IOException;
 
+  /**
+   * Advance to the block of documents that contains {@code target} in order to
+   * get information about the maximum value of this block. Calling this method
+   * doesn't modify the current document. It returns a number that is greater
+   * than or equal to all documents contained in the current block, but less
+   * than any doc IDs of the next block. {@code target} must be greater than or
+   * equal to the current document as well as all targets that have been passed
+   * to {@link #advanceShallow(int)} so far.
+   * <p>
+   * The default implementation considers that all documents are in a single
+   * block and returns {@link DocIdSetIterator#NO_MORE_DOCS}.
+   * @see Scorer#advanceShallow(int)
+   * @lucene.experimental
+   */
+  public int advanceShallow(int target) throws IOException {
+    return DocIdSetIterator.NO_MORE_DOCS;
+  }
+
+  /**
+   * Return an upper bound of the values of documents between the last
+   * {@code target} that this instance was {@link #advanceShallow(int)
+   * shallow-advanced} to included and {@code upTo} included. Documents that
+   * have no value are not taken into account.
+   * <p>
+   * The default implementation returns {@link Double#POSITIVE_INFINITY},
+   * meaning that values are not bounded.
+   * @see Scorer#getMaxScore(int)
+   * @lucene.experimental
+   */
+  public double getMaxValue(int upTo) throws IOException {
+    return Double.POSITIVE_INFINITY;
+  }
+
   /**
    * Wrap a DoubleValues instance, returning a default if the wrapped instance has no value
    */
@@ -53,6 +86,16 @@ public abstract class DoubleValues {
         hasValue = in.advanceExact(doc);
         return true;
       }
+
+      @Override
+      public int advanceShallow(int target) throws IOException {
+        return in.advanceShallow(target);
+      }
+
+      @Override
+      public double getMaxValue(int upTo) throws IOException {
+        return Math.max(in.getMaxValue(upTo), missingValue);
+      }
     };
   }
 
@@ -292,6 +292,11 @@ public abstract class DoubleValuesSource implements SegmentCacheable {
         public boolean advanceExact(int doc) throws IOException {
           return true;
         }
+
+        @Override
+        public double getMaxValue(int upTo) {
+          return value;
+        }
       };
     }
 
@@ -331,10 +336,139 @@ public abstract class DoubleValuesSource implements SegmentCacheable {
 
   }
 
+  /**
+   * Creates a DoubleValuesSource that returns the values of {@code in}, capped
+   * at {@code maxValue}.
+   * <p>
+   * This declares an upper bound of the values of a source, which allows
+   * consumers such as {@code FunctionScoreQuery} to skip documents that can't
+   * produce competitive scores. The tighter the bound, the more documents may
+   * be skipped.
+   */
+  public static DoubleValuesSource withMaxValue(DoubleValuesSource in, double maxValue) {
+    if (Double.isNaN(maxValue)) {
+      throw new IllegalArgumentException("maxValue must not be NaN");
+    }
+    return new MaxValueSource(Objects.requireNonNull(in), maxValue);
+  }
+
+  private static class MaxValueSource extends DoubleValuesSource {
+
+    private final DoubleValuesSource in;
+    private final double maxValue;
+
+    private MaxValueSource(DoubleValuesSource in, double maxValue) {
+      this.in = in;
+      this.maxValue = maxValue;
+    }
+
+    @Override
+    public DoubleValues getValues(LeafReaderContext ctx, DoubleValues scores) throws IOException {
+      final DoubleValues values = in.getValues(ctx, scores);
+      return new DoubleValues() {
+        @Override
+        public double doubleValue() throws IOException {
+          return Math.min(values.doubleValue(), maxValue);
+        }
+
+        @Override
+        public boolean advanceExact(int doc) throws IOException {
+          return values.advanceExact(doc);
+        }
+
+        @Override
+        public int advanceShallow(int target) throws IOException {
+          return values.advanceShallow(target);
+        }
+
+        @Override
+        public double getMaxValue(int upTo) throws IOException {
+          return Math.min(values.getMaxValue(upTo), maxValue);
+        }
+      };
+    }
+
+    @Override
+    public boolean needsScores() {
+      return in.needsScores();
+    }
+
+    @Override
+    public boolean isCacheable(LeafReaderContext ctx) {
+      return in.isCacheable(ctx);
+    }
+
+    @Override
+    public Explanation explain(LeafReaderContext ctx, int docId, Explanation scoreExplanation) throws IOException {
+      Explanation inner = in.explain(ctx, docId, scoreExplanation);
+      if (inner.isMatch() == false || inner.getValue().doubleValue() <= maxValue) {
+        return inner;
+      }
+      return Explanation.match(maxValue, "min of:", inner, Explanation.match(maxValue, "maximum value"));
+    }
+
+    @Override
+    public DoubleValuesSource rewrite(IndexSearcher searcher) throws IOException {
+      DoubleValuesSource rewritten = in.rewrite(searcher);
+      if (rewritten == in) {
+        return this;
+      }
+      return new MaxValueSource(rewritten, maxValue);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(in, maxValue);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      MaxValueSource that = (MaxValueSource) o;
+      return Double.compare(that.maxValue, maxValue) == 0 &&
+          Objects.equals(in, that.in);
+    }
+
+    @Override
+    public String toString() {
+      return "min(" + in + ", " + maxValue + ")";
+    }
+
+  }
+
   /**
    * Returns a DoubleValues instance that wraps scores returned by a Scorer
+   *
+   * If {@code scorer} is a {@link Scorer}, then the returned values expose
+   * the maximum scores of the scorer as their {@link DoubleValues#getMaxValue(int) maximum values}.
    */
   public static DoubleValues fromScorer(Scorable scorer) {
+    if (scorer instanceof Scorer) {
+      final Scorer s = (Scorer) scorer;
+      return new DoubleValues() {
+        @Override
+        public double doubleValue() throws IOException {
+          return s.score();
+        }
+
+        @Override
+        public boolean advanceExact(int doc) throws IOException {
+          assert s.docID() == doc;
+          return true;
+        }
+
+        @Override
+        public int advanceShallow(int target) throws IOException {
+          return s.advanceShallow(target);
+        }
+
+        @Override
+        public double getMaxValue(int upTo) throws IOException {
+          return s.getMaxScore(upTo);
+        }
+      };
+    }
     return new DoubleValues() {
       @Override
       public double doubleValue() throws IOException {
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.search.BooleanClause.Occur;
+
+/**
+ * A {@link QueryPlanner} that groups the {@link Occur#FILTER} clauses of a
+ * scoring {@link BooleanQuery} into a single filter clause. This allows the
+ * {@link QueryCache} to cache the intersection of the filters as a single
+ * {@link DocIdSet}, so that searches that reuse the same filters iterate over
+ * one cached set instead of intersecting one set per filter.
+ *
+ * Queries are left unchanged if the searcher has no query cache or if scores
+ * are not needed, since the entire {@link BooleanQuery} is then a candidate
+ * for caching already.
+ *
+ * @lucene.experimental
+ */
+public class FilterGroupingQueryPlanner implements QueryPlanner {
+
+  private final int minFilters;
+
+  /** Create a planner that groups filters of boolean queries that have at
+   *  least 2 filter clauses. */
+  public FilterGroupingQueryPlanner() {
+    this(2);
+  }
+
+  /** Create a planner that groups filters of boolean queries that have at
+   *  least {@code minFilters} filter clauses. */
+  public FilterGroupingQueryPlanner(int minFilters) {
+    if (minFilters < 2) {
+      throw new IllegalArgumentException("minFilters must be at least 2, got " + minFilters);
+    }
+    this.minFilters = minFilters;
+  }
+
+  @Override
+  public Query plan(IndexSearcher searcher, Query query, ScoreMode scoreMode) {
+    if (searcher.getQueryCache() == null
+        || scoreMode.needsScores() == false
+        || query instanceof BooleanQuery == false) {
+      return query;
+    }
+
+    final BooleanQuery booleanQuery = (BooleanQuery) query;
+    final List<BooleanClause> others = new ArrayList<>();
+    final BooleanQuery.Builder filters = new BooleanQuery.Builder();
+    int numFilters = 0;
+    for (BooleanClause clause : booleanQuery) {
+      if (clause.getOccur() == Occur.FILTER) {
+        filters.add(clause);
+        numFilters++;
+      } else {
+        others.add(clause);
+      }
+    }
+    // a query that only has filters is a group of filters already
+    if (numFilters < minFilters || others.isEmpty()) {
+      return query;
+    }
+
+    final BooleanQuery.Builder planned = new BooleanQuery.Builder();
+    planned.setMinimumNumberShouldMatch(booleanQuery.getMinimumNumberShouldMatch());
+    for (BooleanClause clause : others) {
+      planned.add(clause);
+    }
+    planned.add(filters.build(), Occur.FILTER);
+    return planned.build();
+  }
+
+}
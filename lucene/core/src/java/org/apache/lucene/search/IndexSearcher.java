@@ -117,6 +117,7 @@ public class IndexSearcher {
 
   private QueryCache queryCache = DEFAULT_QUERY_CACHE;
   private QueryCachingPolicy queryCachingPolicy = DEFAULT_CACHING_POLICY;
+  private QueryPlanner queryPlanner;
 
   /**
    * Expert: returns a default Similarity instance.
@@ -266,6 +267,28 @@ public class IndexSearcher {
     return queryCachingPolicy;
   }
 
+  /**
+   * Set the {@link QueryPlanner} to use in order to plan the execution of
+   * queries, or {@code null} to execute queries as they are, which is the
+   * default. This method should be called <b>before</b> starting using this
+   * {@link IndexSearcher}.
+   * @see QueryPlanner
+   * @lucene.experimental
+   */
+  public void setQueryPlanner(QueryPlanner queryPlanner) {
+    this.queryPlanner = queryPlanner;
+  }
+
+  /**
+   * Return the {@link QueryPlanner} that was last set through
+   * {@link #setQueryPlanner(QueryPlanner)}, or {@code null} if queries are
+   * executed as they are.
+   * @lucene.experimental
+   */
+  public QueryPlanner getQueryPlanner() {
+    return queryPlanner;
+  }
+
   /**
    * Expert: Creates an array of leaf slices each holding a subset of the given leaves.
    * Each {@link LeafSlice} is executed in a single thread. By default there
@@ -684,6 +707,62 @@ public class IndexSearcher {
     return explain(createWeight(query, ScoreMode.COMPLETE, 1), doc);
   }
 
+  /** Returns an Explanation that describes how <code>query</code> would be
+   * executed with the given {@link ScoreMode}. It has one detail per leaf,
+   * which is the tree of {@link Scorer}s that would be used on this leaf once
+   * the {@link QueryPlanner} and the per-leaf {@link ScorerSupplier}s made
+   * their decisions. Values are the costs of the scorers' iterators.
+   *
+   * <p>Like searching, this may record query usage and populate the query
+   * cache. It is intended for debugging slow queries.
+   * @lucene.experimental
+   */
+  public Explanation explainPlan(Query query, ScoreMode scoreMode) throws IOException {
+    query = rewrite(query);
+    final Weight weight = createWeight(query, scoreMode, 1);
+    final List<Explanation> details = new ArrayList<>();
+    long cost = 0;
+    for (LeafReaderContext ctx : leafContexts) {
+      final ScorerSupplier scorerSupplier = weight.scorerSupplier(ctx);
+      if (scorerSupplier == null) {
+        details.add(Explanation.noMatch("leaf " + ctx.ord + ": no matches"));
+      } else {
+        final Explanation leafPlan = explainPlan(scorerSupplier.get(Long.MAX_VALUE), "leaf " + ctx.ord + ":");
+        cost += leafPlan.getValue().longValue();
+        details.add(leafPlan);
+      }
+    }
+    return Explanation.match(cost, "plan for " + weight.getQuery() + ", score mode " + scoreMode, details);
+  }
+
+  private static Explanation explainPlan(Scorable scorable, String relationship) throws IOException {
+    final List<Explanation> details = new ArrayList<>();
+    for (Scorable.ChildScorable child : scorable.getChildren()) {
+      details.add(explainPlan(child.child, child.relationship));
+    }
+    if (scorable instanceof Scorer == false) {
+      return Explanation.match(0, relationship + " " + scorable.getClass().getName(), details);
+    }
+    final Scorer scorer = (Scorer) scorable;
+    final String scorerName = scorer.getClass().getSimpleName().isEmpty()
+        ? scorer.getClass().getName()
+        : scorer.getClass().getSimpleName();
+    final Weight weight = scorer.getWeight();
+    final StringBuilder description = new StringBuilder(relationship);
+    if (weight != null) {
+      description.append(' ').append(weight.getQuery());
+    }
+    description.append(" [").append(scorerName);
+    if (weight instanceof LRUQueryCache.CachingWrapperWeight) {
+      description.append(", cached");
+    }
+    if (scorer.twoPhaseIterator() != null) {
+      description.append(", two-phase");
+    }
+    description.append(']');
+    return Explanation.match(scorer.iterator().cost(), description.toString(), details);
+  }
+
   /** Expert: low-level implementation method
    * Returns an Explanation that describes how <code>doc</code> scored against
    * <code>weight</code>.
@@ -708,11 +787,15 @@ public class IndexSearcher {
   }
 
   /**
-   * Creates a {@link Weight} for the given query, potentially adding caching
-   * if possible and configured.
+   * Creates a {@link Weight} for the given query, potentially planning its
+   * execution and adding caching if possible and configured.
    * @lucene.experimental
    */
   public Weight createWeight(Query query, ScoreMode scoreMode, float boost) throws IOException {
+    final QueryPlanner queryPlanner = this.queryPlanner;
+    if (queryPlanner != null) {
+      query = queryPlanner.plan(this, query, scoreMode);
+    }
     final QueryCache queryCache = this.queryCache;
     Weight weight = query.createWeight(this, scoreMode, boost);
     if (scoreMode.needsScores() == false && queryCache != null) {
@@ -20,8 +20,12 @@ package org.apache.lucene.search;
 import java.io.IOException;
 import java.util.Objects;
 
+import org.apache.lucene.document.PrefixField;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
 import org.apache.lucene.index.FilteredTermsEnum; // javadocs
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.SingleTermsEnum;   // javadocs
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.TermStates;
@@ -29,6 +33,8 @@ import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.BooleanQuery.Builder;
 import org.apache.lucene.util.AttributeSource;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.UnicodeUtil;
 
 /**
  * An abstract {@link Query} that matches documents
@@ -307,9 +313,79 @@ public abstract class MultiTermQuery extends Query {
    */
   @Override
   public final Query rewrite(IndexReader reader) throws IOException {
+    if (rewriteMethod == CONSTANT_SCORE_REWRITE || rewriteMethod == CONSTANT_SCORE_BOOLEAN_REWRITE) {
+      Query indexedPrefixQuery = rewriteToIndexedPrefix(reader);
+      if (indexedPrefixQuery != null) {
+        return indexedPrefixQuery;
+      }
+    }
     return rewriteMethod.rewrite(reader, this);
   }
 
+  /**
+   * If this query matches exactly the terms that start with a given prefix,
+   * return this prefix, otherwise return {@code null}.
+   */
+  BytesRef getMatchedPrefix() {
+    return null;
+  }
+
+  /**
+   * If this query is a prefix query and prefixes of {@link #field} are
+   * indexed with a {@link PrefixField} for all documents that have the field,
+   * return a query on the indexed prefix. Otherwise return {@code null}.
+   */
+  private Query rewriteToIndexedPrefix(IndexReader reader) throws IOException {
+    final BytesRef prefix = getMatchedPrefix();
+    if (prefix == null) {
+      return null;
+    }
+    final int prefixLength;
+    try {
+      prefixLength = UnicodeUtil.codePointCount(prefix);
+    } catch (IllegalArgumentException e) {
+      // prefixes are indexed at code point boundaries
+      return null;
+    }
+
+    // all segments that have the field must index prefixes of the same lengths,
+    // for all their documents that have the field
+    final String prefixField = PrefixField.getPrefixFieldName(field);
+    String prefixLengths = null;
+    for (LeafReaderContext context : reader.leaves()) {
+      final FieldInfos fieldInfos = context.reader().getFieldInfos();
+      if (fieldInfos.fieldInfo(field) == null) {
+        continue;
+      }
+      final FieldInfo prefixFieldInfo = fieldInfos.fieldInfo(prefixField);
+      if (prefixFieldInfo == null) {
+        return null;
+      }
+      final String value = prefixFieldInfo.getAttribute(PrefixField.PREFIX_LENGTHS_ATTRIBUTE);
+      if (value == null || (prefixLengths != null && prefixLengths.equals(value) == false)) {
+        return null;
+      }
+      final Terms terms = context.reader().terms(field);
+      if (terms != null) {
+        final Terms prefixTerms = context.reader().terms(prefixField);
+        if (prefixTerms == null || prefixTerms.getDocCount() != terms.getDocCount()) {
+          return null;
+        }
+      }
+      prefixLengths = value;
+    }
+    if (prefixLengths == null) {
+      return null;
+    }
+    final int comma = prefixLengths.indexOf(',');
+    final int minPrefixLength = Integer.parseInt(prefixLengths.substring(0, comma));
+    final int maxPrefixLength = Integer.parseInt(prefixLengths.substring(comma + 1));
+    if (prefixLength < minPrefixLength || prefixLength > maxPrefixLength) {
+      return null;
+    }
+    return new ConstantScoreQuery(new TermQuery(new Term(prefixField, BytesRef.deepCopyOf(prefix))));
+  }
+
   /**
    * @see #setRewriteMethod
    */
@@ -20,10 +20,16 @@ package org.apache.lucene.search;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat;
 import org.apache.lucene.codecs.lucene50.Lucene50PostingsReader;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.index.FieldInfo;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexReaderContext;
 import org.apache.lucene.index.LeafReader;
@@ -37,6 +43,7 @@ import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.similarities.Similarity;
 import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
 
 /** A Query that matches documents containing a particular sequence of terms.
  * A PhraseQuery is built by QueryParser for input like <code>"new york"</code>.
@@ -137,6 +144,62 @@ public class PhraseQuery extends Query {
 
   }
 
+  /**
+   * Name of the {@link FieldInfo} attribute that records the common words of
+   * a field whose common grams are indexed.
+   * @see #setCommonWords(FieldType, Collection)
+   */
+  public static final String COMMON_WORDS_ATTRIBUTE = "PhraseQuery.commonWords";
+
+  /** The separator between the two words of a common gram. */
+  public static final char COMMON_GRAMS_SEPARATOR = '_';
+
+  // separates common words in the value of the field attribute
+  private static final char COMMON_WORDS_ATTRIBUTE_SEPARATOR = '\u0000';
+
+  /**
+   * Record on {@code fieldType} that fields of this type index common grams
+   * for the given words. Exact phrase queries on such fields will then be
+   * rewritten to phrase queries on common grams, which are much less frequent
+   * than common words, or to a {@link TermQuery} if a common gram covers the
+   * whole phrase.
+   * <p>
+   * A common gram is a term made of two words that are at consecutive
+   * positions, separated with {@link #COMMON_GRAMS_SEPARATOR}, such as
+   * {@code "new_york"}, which is indexed at the position of the first word.
+   * Fields must index the common gram of every two consecutive words if
+   * either of them is a common word, like {@code CommonGramsFilter} does in
+   * the analysis module, and must not create gaps or stack tokens at the
+   * same position. Since phrase queries rely on this metadata to find
+   * matches, all documents of the field must be indexed with the same
+   * common words, so changing them requires re-indexing.
+   * <p>
+   * NOTE: scores of rewritten queries are computed from the statistics of
+   * common grams.
+   *
+   * @throws IllegalArgumentException if there are no common words or if a
+   *         common word is empty or contains {@link #COMMON_GRAMS_SEPARATOR}
+   * @lucene.experimental
+   */
+  public static void setCommonWords(FieldType fieldType, Collection<String> commonWords) {
+    if (commonWords.isEmpty()) {
+      throw new IllegalArgumentException("There must be at least one common word");
+    }
+    StringBuilder value = new StringBuilder();
+    for (String word : new TreeSet<>(commonWords)) {
+      if (word.isEmpty()
+          || word.indexOf(COMMON_GRAMS_SEPARATOR) >= 0
+          || word.indexOf(COMMON_WORDS_ATTRIBUTE_SEPARATOR) >= 0) {
+        throw new IllegalArgumentException("Invalid common word: [" + word + "]");
+      }
+      if (value.length() > 0) {
+        value.append(COMMON_WORDS_ATTRIBUTE_SEPARATOR);
+      }
+      value.append(word);
+    }
+    fieldType.putAttribute(COMMON_WORDS_ATTRIBUTE, value.toString());
+  }
+
   private final int slop;
   private final String field;
   private final Term[] terms;
@@ -280,9 +343,88 @@ public class PhraseQuery extends Query {
         newPositions[i] = positions[i] - positions[0];
       }
       return new PhraseQuery(slop, terms, newPositions);
-    } else {
-      return super.rewrite(reader);
     }
+    Query commonGramsQuery = rewriteToCommonGrams(reader);
+    if (commonGramsQuery != null) {
+      return commonGramsQuery;
+    }
+    return super.rewrite(reader);
+  }
+
+  /**
+   * Rewrite this exact phrase to a phrase on common grams if the field indexes
+   * common grams, see {@link #setCommonWords(FieldType, Collection)}. Returns
+   * {@code null} if this query can't be rewritten.
+   */
+  private Query rewriteToCommonGrams(IndexReader reader) {
+    if (slop != 0) {
+      return null;
+    }
+    for (int i = 0; i < positions.length; ++i) {
+      if (positions[i] != i) {
+        return null;
+      }
+    }
+    // all segments must have been indexed with the same common words
+    String commonWordsValue = null;
+    for (LeafReaderContext context : reader.leaves()) {
+      FieldInfo fieldInfo = context.reader().getFieldInfos().fieldInfo(field);
+      if (fieldInfo == null) {
+        // no matches on this segment
+        continue;
+      }
+      String value = fieldInfo.getAttribute(COMMON_WORDS_ATTRIBUTE);
+      if (value == null || (commonWordsValue != null && commonWordsValue.equals(value) == false)) {
+        return null;
+      }
+      commonWordsValue = value;
+    }
+    if (commonWordsValue == null) {
+      return null;
+    }
+
+    Set<BytesRef> commonWords = new HashSet<>();
+    int start = 0;
+    for (int end = commonWordsValue.indexOf(COMMON_WORDS_ATTRIBUTE_SEPARATOR); end != -1;
+        start = end + 1, end = commonWordsValue.indexOf(COMMON_WORDS_ATTRIBUTE_SEPARATOR, start)) {
+      commonWords.add(new BytesRef(commonWordsValue.substring(start, end)));
+    }
+    commonWords.add(new BytesRef(commonWordsValue.substring(start)));
+
+    final boolean[] common = new boolean[terms.length];
+    boolean hasCommonWord = false;
+    for (int i = 0; i < terms.length; ++i) {
+      final BytesRef bytes = terms[i].bytes();
+      for (int j = 0; j < bytes.length; ++j) {
+        if (bytes.bytes[bytes.offset + j] == COMMON_GRAMS_SEPARATOR) {
+          // the common gram would be ambiguous
+          return null;
+        }
+      }
+      common[i] = commonWords.contains(bytes);
+      hasCommonWord |= common[i];
+    }
+    if (hasCommonWord == false) {
+      return null;
+    }
+
+    // Replace words with the common grams that cover them, words that are not
+    // covered by any common gram remain as-is
+    PhraseQuery.Builder builder = new PhraseQuery.Builder();
+    for (int i = 0; i < terms.length; ++i) {
+      if (i + 1 < terms.length && (common[i] || common[i + 1])) {
+        final BytesRef first = terms[i].bytes();
+        final BytesRef second = terms[i + 1].bytes();
+        final BytesRefBuilder gram = new BytesRefBuilder();
+        gram.append(first);
+        gram.append((byte) COMMON_GRAMS_SEPARATOR);
+        gram.append(second);
+        builder.add(new Term(field, gram.toBytesRef()), i);
+      } else if (i == 0 || (common[i - 1] == false && common[i] == false)) {
+        builder.add(terms[i], i);
+      }
+    }
+    return builder.build();
   }
 
   @Override
@@ -113,6 +113,21 @@ public abstract class PointRangeQuery extends Query {
 
     return new ConstantScoreWeight(this, boost) {
 
+      private boolean matches(byte[] packedValue) {
+        for(int dim=0;dim<numDims;dim++) {
+          int offset = dim*bytesPerDim;
+          if (Arrays.compareUnsigned(packedValue, offset, offset + bytesPerDim, lowerPoint, offset, offset + bytesPerDim) < 0) {
+            // Doc's value is too low, in this dimension
+            return false;
+          }
+          if (Arrays.compareUnsigned(packedValue, offset, offset + bytesPerDim, upperPoint, offset, offset + bytesPerDim) > 0) {
+            // Doc's value is too high, in this dimension
+            return false;
+          }
+        }
+        return true;
+      }
+
       private IntersectVisitor getIntersectVisitor(DocIdSetBuilder result) {
         return new IntersectVisitor() {
 
@@ -128,22 +143,25 @@ public abstract class PointRangeQuery extends Query {
             adder.add(docID);
           }
 
+          @Override
+          public void visit(DocIdSetIterator iterator) throws IOException {
+            adder.add(iterator);
+          }
+
           @Override
           public void visit(int docID, byte[] packedValue) {
-            for(int dim=0;dim<numDims;dim++) {
-              int offset = dim*bytesPerDim;
-              if (Arrays.compareUnsigned(packedValue, offset, offset + bytesPerDim, lowerPoint, offset, offset + bytesPerDim) < 0) {
-                // Doc's value is too low, in this dimension
-                return;
-              }
-              if (Arrays.compareUnsigned(packedValue, offset, offset + bytesPerDim, upperPoint, offset, offset + bytesPerDim) > 0) {
-                // Doc's value is too high, in this dimension
-                return;
-              }
+            if (matches(packedValue)) {
+              // Doc is in-bounds
+              adder.add(docID);
             }
+          }
 
-            // Doc is in-bounds
-            adder.add(docID);
+          @Override
+          public void visit(DocIdSetIterator iterator, byte[] packedValue) throws IOException {
+            if (matches(packedValue)) {
+              // All docs are in-bounds
+              adder.add(iterator);
+            }
           }
 
           @Override
@@ -186,20 +204,15 @@ public abstract class PointRangeQuery extends Query {
 
           @Override
           public void visit(int docID, byte[] packedValue) {
-            for(int dim=0;dim<numDims;dim++) {
-              int offset = dim*bytesPerDim;
-              if (Arrays.compareUnsigned(packedValue, offset, offset + bytesPerDim, lowerPoint, offset, offset + bytesPerDim) < 0) {
-                // Doc's value is too low, in this dimension
-                result.clear(docID);
-                cost[0]--;
-                return;
-              }
-              if (Arrays.compareUnsigned(packedValue, offset, offset + bytesPerDim, upperPoint, offset, offset + bytesPerDim) > 0) {
-                // Doc's value is too high, in this dimension
-                result.clear(docID);
-                cost[0]--;
-                return;
-              }
+            if (matches(packedValue) == false) {
+              visit(docID);
+            }
+          }
+
+          @Override
+          public void visit(DocIdSetIterator iterator, byte[] packedValue) throws IOException {
+            if (matches(packedValue) == false) {
+              visit(iterator);
             }
           }
 
@@ -60,6 +60,11 @@ public class PrefixQuery extends AutomatonQuery {
   public Term getPrefix() {
     return term;
   }
+
+  @Override
+  BytesRef getMatchedPrefix() {
+    return term.bytes();
+  }
   
   /** Prints a user-readable version of this query. */
   @Override
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+
+import java.io.IOException;
+
+/**
+ * A planner that gets a chance to change how a query is executed right before
+ * its {@link Weight} is created.
+ *
+ * {@link IndexSearcher#createWeight} calls the planner on the top-level query
+ * and on every sub-query whose weight is created through the searcher, such as
+ * the clauses of a {@link BooleanQuery}. The planner may return any query that
+ * matches the same documents with the same scores.
+ *
+ * Decisions that depend on a segment are made later, per leaf, by
+ * {@link ScorerSupplier}s, which know the cost of the clause that leads the
+ * iteration: {@link IndexOrDocValuesQuery} picks its index or doc values
+ * query this way, and {@link LRUQueryCache} only populates the cache when
+ * the cost of a clause is not much higher than the lead cost.
+ * {@link IndexSearcher#explainPlan} describes the resulting plan.
+ *
+ * Implementations of this class must be thread-safe.
+ *
+ * @see FilterGroupingQueryPlanner
+ * @see IndexSearcher#setQueryPlanner(QueryPlanner)
+ * @lucene.experimental
+ */
+public interface QueryPlanner {
+
+  /** Return the query that should be executed instead of {@code query}, or
+   *  {@code query} itself if there is nothing to change. The returned query
+   *  will not be planned again, but its sub-queries will. */
+  Query plan(IndexSearcher searcher, Query query, ScoreMode scoreMode) throws IOException;
+
+}
@@ -337,9 +337,12 @@ public final class SynonymQuery extends Query {
   }
 
   /**
-   * Merge impacts for multiple synonyms.
+   * Merge impacts for multiple synonyms. The merged impacts give an upper
+   * bound of the sum of the term frequencies, multiplied by their boosts, for
+   * a given norm.
+   * @lucene.internal
    */
-  static ImpactsSource mergeImpacts(ImpactsEnum[] impactsEnums, float[] boosts) {
+  public static ImpactsSource mergeImpacts(ImpactsEnum[] impactsEnums, float[] boosts) {
     assert impactsEnums.length == boosts.length;
     return new ImpactsSource() {
 
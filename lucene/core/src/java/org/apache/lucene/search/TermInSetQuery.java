@@ -256,9 +256,43 @@ public class TermInSetQuery extends Query implements Accountable {
         List<TermAndState> matchingTerms = new ArrayList<>(threshold);
         DocIdSetBuilder builder = null;
 
+        // the term that the terms enum is positioned on, or null if unpositioned
+        BytesRef current = null;
+        // number of seeks to perform before trying to move to the next term again
+        int nextBackoff = 0, seeksUntilNext = 0;
         for (BytesRef term = iterator.next(); term != null; term = iterator.next()) {
           assert field.equals(iterator.field());
-          if (termsEnum.seekExact(term)) {
+          // Terms are sorted, so we intersect them with the terms dictionary:
+          // moving to the next term of the dictionary is cheaper than a seek
+          // and often lands on the target term or proves that it doesn't exist,
+          // e.g. with dense ranges of ids. Otherwise we back off exponentially.
+          boolean found;
+          if (current != null && current.compareTo(term) < 0) {
+            if (seeksUntilNext > 0) {
+              seeksUntilNext--;
+              current = null;
+            } else {
+              current = termsEnum.next();
+              if (current == null) {
+                break;
+              } else if (current.compareTo(term) < 0) {
+                nextBackoff = Math.min(Math.max(1, nextBackoff * 2), 64);
+                seeksUntilNext = nextBackoff;
+              } else {
+                nextBackoff = 0;
+              }
+            }
+          }
+          final int cmp = current == null ? -1 : current.compareTo(term);
+          if (cmp > 0) {
+            continue;
+          } else if (cmp == 0) {
+            found = true;
+          } else {
+            found = termsEnum.seekExact(term);
+            current = found ? termsEnum.term() : null;
+          }
+          if (found) {
             if (matchingTerms == null) {
               docs = termsEnum.postings(docs, PostingsEnum.NONE);
               builder.add(docs);
@@ -275,6 +309,8 @@ public class TermInSetQuery extends Query implements Accountable {
                 builder.add(docs);
               }
               matchingTerms = null;
+              // the terms enum has been moved back to previous terms
+              current = null;
             }
           }
         }
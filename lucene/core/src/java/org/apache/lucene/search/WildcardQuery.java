@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.lucene.index.Term;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.automaton.Automata;
 import org.apache.lucene.util.automaton.Automaton;
 import org.apache.lucene.util.automaton.Operations;
@@ -104,6 +105,31 @@ public class WildcardQuery extends AutomatonQuery {
     return Operations.concatenate(automata);
   }
   
+  @Override
+  BytesRef getMatchedPrefix() {
+    // a pattern is a prefix if its only wildcards are trailing WILDCARD_STRINGs
+    final String wildcardText = term.text();
+    final StringBuilder prefix = new StringBuilder();
+    boolean trailingWildcard = false;
+    for (int i = 0; i < wildcardText.length();) {
+      final int c = wildcardText.codePointAt(i);
+      int length = Character.charCount(c);
+      if (c == WILDCARD_STRING) {
+        trailingWildcard = true;
+      } else if (trailingWildcard || c == WILDCARD_CHAR) {
+        return null;
+      } else if (c == WILDCARD_ESCAPE && i + length < wildcardText.length()) {
+        final int nextChar = wildcardText.codePointAt(i + length);
+        length += Character.charCount(nextChar);
+        prefix.appendCodePoint(nextChar);
+      } else {
+        prefix.appendCodePoint(c);
+      }
+      i += length;
+    }
+    return trailingWildcard ? new BytesRef(prefix) : null;
+  }
+
   /**
    * Returns the pattern term.
    */
@@ -42,6 +42,15 @@ public final class DocIdSetBuilder {
    *  @see DocIdSetBuilder#grow */
   public static abstract class BulkAdder {
     public abstract void add(int doc);
+
+    /** Add all documents of the given iterator, which must be unpositioned.
+     *  The number of documents must have been reserved through
+     *  {@link DocIdSetBuilder#grow}. */
+    public void add(DocIdSetIterator iterator) throws IOException {
+      for (int doc = iterator.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = iterator.nextDoc()) {
+        add(doc);
+      }
+    }
   }
 
   private static class FixedBitSetAdder extends BulkAdder {
@@ -55,6 +64,11 @@ public final class DocIdSetBuilder {
     public void add(int doc) {
       bitSet.set(doc);
     }
+
+    @Override
+    public void add(DocIdSetIterator iterator) throws IOException {
+      bitSet.or(iterator);
+    }
   }
 
   private static class Buffer {
@@ -22,6 +22,7 @@ import java.util.Arrays;
 import org.apache.lucene.codecs.CodecUtil;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.PointValues;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.store.ByteArrayDataInput;
 import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.util.Accountable;
@@ -335,6 +336,8 @@ public final class BKDReader extends PointValues implements Accountable {
     final int[] scratchDocIDs;
     final byte[] scratchDataPackedValue, scratchMinIndexPackedValue, scratchMaxIndexPackedValue;
     final int[] commonPrefixLengths;
+    // reused across leaves to visit doc IDs that share a value
+    final LeafDocIdSetIterator scratchIterator = new LeafDocIdSetIterator();
 
     final IntersectVisitor visitor;
     public final IndexTree index;
@@ -414,7 +417,7 @@ public final class BKDReader extends PointValues implements Accountable {
     int count = readDocIDs(state.in, index.getLeafBlockFP(), state.scratchDocIDs);
 
     // Again, this time reading values and checking with the visitor
-    visitDocValues(state.commonPrefixLengths, state.scratchDataPackedValue, state.scratchMinIndexPackedValue, state.scratchMaxIndexPackedValue, state.in, state.scratchDocIDs, count, state.visitor);
+    visitDocValues(state, count, state.visitor);
   }
 
   private void visitDocIDs(IndexInput in, long blockFP, IntersectVisitor visitor) throws IOException {
@@ -439,16 +442,20 @@ public final class BKDReader extends PointValues implements Accountable {
     return count;
   }
 
-  void visitDocValues(int[] commonPrefixLengths, byte[] scratchDataPackedValue, byte[] scratchMinIndexPackedValue, byte[] scratchMaxIndexPackedValue,
-                      IndexInput in, int[] docIDs, int count, IntersectVisitor visitor) throws IOException {
+  /** Visits the values of the {@code count} points of the leaf block that {@code state.in} is positioned on, whose
+   *  doc IDs have been read into {@code state.scratchDocIDs}. */
+  void visitDocValues(IntersectState state, int count, IntersectVisitor visitor) throws IOException {
+    final int[] commonPrefixLengths = state.commonPrefixLengths;
+    final byte[] scratchDataPackedValue = state.scratchDataPackedValue;
+    final IndexInput in = state.in;
+    final int[] docIDs = state.scratchDocIDs;
 
-
-    readCommonPrefixes(commonPrefixLengths, scratchDataPackedValue, in);
+    final int commonPrefixSum = readCommonPrefixes(commonPrefixLengths, scratchDataPackedValue, in);
 
     if (numIndexDims != 1 && version >= BKDWriter.VERSION_LEAF_STORES_BOUNDS) {
-      byte[] minPackedValue = scratchMinIndexPackedValue;
+      byte[] minPackedValue = state.scratchMinIndexPackedValue;
       System.arraycopy(scratchDataPackedValue, 0, minPackedValue, 0, packedIndexBytesLength);
-      byte[] maxPackedValue = scratchMaxIndexPackedValue;
+      byte[] maxPackedValue = state.scratchMaxIndexPackedValue;
       //Copy common prefixes before reading adjusted
       // box
       System.arraycopy(minPackedValue, 0, maxPackedValue, 0, packedIndexBytesLength);
@@ -480,12 +487,98 @@ public final class BKDReader extends PointValues implements Accountable {
     int compressedDim = readCompressedDim(in);
 
     if (compressedDim == -1) {
-      visitRawDocValues(commonPrefixLengths, scratchDataPackedValue, in, docIDs, count, visitor);
+      if (commonPrefixSum == packedBytesLength) {
+        // all values in this block are equal
+        visitDocIDs(docIDs, 0, count, scratchDataPackedValue, state.scratchIterator, visitor);
+      } else {
+        visitRawDocValues(commonPrefixLengths, scratchDataPackedValue, in, docIDs, count, visitor);
+      }
+    } else if (compressedDim == -2) {
+      visitLowCardinalityDocValues(commonPrefixLengths, scratchDataPackedValue, in, docIDs, count, state.scratchIterator, visitor);
     } else {
       visitCompressedDocValues(commonPrefixLengths, scratchDataPackedValue, in, docIDs, count, visitor, compressedDim);
     }
   }
 
+  // Every distinct value is stored once, along with the number of consecutive points that share it
+  private void visitLowCardinalityDocValues(int[] commonPrefixLengths, byte[] scratchPackedValue, IndexInput in, int[] docIDs, int count,
+                                            LeafDocIdSetIterator iterator, IntersectVisitor visitor) throws IOException {
+    int i;
+    for (i = 0; i < count; ) {
+      final int runLen = in.readVInt();
+      if (runLen <= 0 || runLen > count - i) {
+        throw new CorruptIndexException("Invalid run length: " + runLen + ", with " + (count - i) + " remaining points", in);
+      }
+      for (int dim = 0; dim < numDataDims; dim++) {
+        int prefix = commonPrefixLengths[dim];
+        in.readBytes(scratchPackedValue, dim*bytesPerDim + prefix, bytesPerDim - prefix);
+      }
+      visitDocIDs(docIDs, i, i + runLen, scratchPackedValue, iterator, visitor);
+      i += runLen;
+    }
+    if (i != count) {
+      throw new CorruptIndexException("Sub blocks do not add up to the expected count: " + count + " != " + i, in);
+    }
+  }
+
+  /** Visit doc IDs from {@code start} inclusive to {@code end} exclusive that all share the same packed value,
+   *  in bulk if they are in increasing order. */
+  private static void visitDocIDs(int[] docIDs, int start, int end, byte[] packedValue, LeafDocIdSetIterator iterator, IntersectVisitor visitor) throws IOException {
+    if (end - start > 1 && iterator.reset(docIDs, start, end)) {
+      visitor.visit(iterator, packedValue);
+    } else {
+      for (int i = start; i < end; ++i) {
+        visitor.visit(docIDs[i], packedValue);
+      }
+    }
+  }
+
+  /** A {@link DocIdSetIterator} over a slice of the doc IDs of a leaf block. */
+  private static final class LeafDocIdSetIterator extends DocIdSetIterator {
+    private int[] docIDs;
+    private int index, end;
+    private long cost;
+    private int doc;
+
+    /** Return {@code true} if the slice is in strictly increasing order and could be used to reset this iterator. */
+    boolean reset(int[] docIDs, int start, int end) {
+      for (int i = start + 1; i < end; ++i) {
+        if (docIDs[i - 1] >= docIDs[i]) {
+          return false;
+        }
+      }
+      this.docIDs = docIDs;
+      this.index = start;
+      this.end = end;
+      this.cost = end - start;
+      this.doc = -1;
+      return true;
+    }
+
+    @Override
+    public int docID() {
+      return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+      if (index == end) {
+        return doc = NO_MORE_DOCS;
+      }
+      return doc = docIDs[index++];
+    }
+
+    @Override
+    public int advance(int target) throws IOException {
+      return slowAdvance(target);
+    }
+
+    @Override
+    public long cost() {
+      return cost;
+    }
+  }
+
   private void readMinMax(int[] commonPrefixLengths, byte[] minPackedValue, byte[] maxPackedValue, IndexInput in) throws IOException {
     for (int dim = 0; dim < numIndexDims; dim++) {
       int prefix = commonPrefixLengths[dim];
@@ -530,21 +623,25 @@ public final class BKDReader extends PointValues implements Accountable {
 
   private int readCompressedDim(IndexInput in) throws IOException {
     int compressedDim = in.readByte();
-    if (compressedDim < -1 || compressedDim >= numDataDims) {
+    if (compressedDim < (version >= BKDWriter.VERSION_LOW_CARDINALITY_LEAVES ? -2 : -1) || compressedDim >= numDataDims) {
       throw new CorruptIndexException("Got compressedDim="+compressedDim, in);
     }
     return compressedDim;
   }
 
-  private void readCommonPrefixes(int[] commonPrefixLengths, byte[] scratchPackedValue, IndexInput in) throws IOException {
+  /** Reads the common prefixes of all dimensions and returns the sum of their lengths. */
+  private int readCommonPrefixes(int[] commonPrefixLengths, byte[] scratchPackedValue, IndexInput in) throws IOException {
+    int sum = 0;
     for(int dim=0;dim<numDataDims;dim++) {
       int prefix = in.readVInt();
       commonPrefixLengths[dim] = prefix;
+      sum += prefix;
       if (prefix > 0) {
         in.readBytes(scratchPackedValue, dim*bytesPerDim, prefix);
       }
       //System.out.println("R: " + dim + " of " + numDims + " prefix=" + prefix);
     }
+    return sum;
   }
 
   private void intersect(IntersectState state, byte[] cellMinPacked, byte[] cellMaxPacked) throws IOException {
@@ -574,7 +671,7 @@ public final class BKDReader extends PointValues implements Accountable {
         int count = readDocIDs(state.in, state.index.getLeafBlockFP(), state.scratchDocIDs);
 
         // Again, this time reading values and checking with the visitor
-        visitDocValues(state.commonPrefixLengths, state.scratchDataPackedValue, state.scratchMinIndexPackedValue, state.scratchMaxIndexPackedValue, state.in, state.scratchDocIDs, count, state.visitor);
+        visitDocValues(state, count, state.visitor);
       }
 
     } else {
@@ -80,7 +80,8 @@ public class BKDWriter implements Closeable {
   //public static final int VERSION_CURRENT = VERSION_START;
   public static final int VERSION_LEAF_STORES_BOUNDS = 5;
   public static final int VERSION_SELECTIVE_INDEXING = 6;
-  public static final int VERSION_CURRENT = VERSION_SELECTIVE_INDEXING;
+  public static final int VERSION_LOW_CARDINALITY_LEAVES = 7;
+  public static final int VERSION_CURRENT = VERSION_LOW_CARDINALITY_LEAVES;
 
   /** How many bytes each docs takes in the fixed-width offline format */
   private final int bytesPerDoc;
@@ -293,7 +294,7 @@ public class BKDWriter implements Closeable {
           docsInBlock = bkd.readDocIDs(state.in, state.in.getFilePointer(), state.scratchDocIDs);
           assert docsInBlock > 0;
           docBlockUpto = 0;
-          bkd.visitDocValues(state.commonPrefixLengths, state.scratchDataPackedValue, state.scratchMinIndexPackedValue, state.scratchMaxIndexPackedValue, state.in, state.scratchDocIDs, docsInBlock, new IntersectVisitor() {
+          bkd.visitDocValues(state, docsInBlock, new IntersectVisitor() {
             int i = 0;
 
             @Override
@@ -1038,8 +1039,39 @@ public class BKDWriter implements Closeable {
         writeActualBounds(out, commonPrefixLengths, count, packedValues);
       }
       assert commonPrefixLengths[sortedDim] < bytesPerDim;
+      // compare the cost of storing every suffix with run-length compression on the
+      // sorted dim against storing every distinct value once along with its run length
+      final int compressedByteOffset = sortedDim * bytesPerDim + commonPrefixLengths[sortedDim];
+      int numRunLens = 0;
+      int leafCardinality = 1;
+      int currentRunLen = 1;
+      // packedValues may reuse the same BytesRef, so copy the previous value
+      final byte[] previous = scratch2;
+      BytesRef firstValue = packedValues.apply(0);
+      System.arraycopy(firstValue.bytes, firstValue.offset, previous, 0, packedBytesLength);
+      for (int i = 1; i < count; ++i) {
+        BytesRef current = packedValues.apply(i);
+        if (current.bytes[current.offset + compressedByteOffset] != previous[compressedByteOffset] || currentRunLen == 0xff) {
+          numRunLens++;
+          currentRunLen = 0;
+        }
+        currentRunLen++;
+        if (Arrays.equals(previous, 0, packedBytesLength,
+            current.bytes, current.offset, current.offset + packedBytesLength) == false) {
+          leafCardinality++;
+          System.arraycopy(current.bytes, current.offset, previous, 0, packedBytesLength);
+        }
+      }
+      numRunLens++;
+      final int suffixLength = packedBytesLength - prefixLenSum;
+      final long highCardinalityCost = (long) count * (suffixLength - 1) + 2L * numRunLens;
+      final long lowCardinalityCost = (long) leafCardinality * (suffixLength + 1);
+      if (lowCardinalityCost < highCardinalityCost) {
+        out.writeByte((byte) -2);
+        writeLowCardinalityLeafBlockPackedValues(out, commonPrefixLengths, count, packedValues);
+        return;
+      }
       out.writeByte((byte) sortedDim);
-      int compressedByteOffset = sortedDim * bytesPerDim + commonPrefixLengths[sortedDim];
       commonPrefixLengths[sortedDim]++;
       for (int i = 0; i < count; ) {
         // do run-length compression on the byte at compressedByteOffset
@@ -1056,6 +1088,29 @@ public class BKDWriter implements Closeable {
     }
   }
 
+  /** Write every distinct value once, preceded by the number of consecutive points that share it. */
+  private void writeLowCardinalityLeafBlockPackedValues(DataOutput out, int[] commonPrefixLengths, int count, IntFunction<BytesRef> packedValues) throws IOException {
+    // packedValues may reuse the same BytesRef, so copy the current value
+    final byte[] current = scratch2;
+    BytesRef value = packedValues.apply(0);
+    System.arraycopy(value.bytes, value.offset, current, 0, packedBytesLength);
+    int cardinality = 1;
+    for (int i = 1; i < count; i++) {
+      value = packedValues.apply(i);
+      if (Arrays.equals(current, 0, packedBytesLength, value.bytes, value.offset, value.offset + packedBytesLength)) {
+        cardinality++;
+      } else {
+        out.writeVInt(cardinality);
+        writeLeafBlockPackedValuesRange(out, commonPrefixLengths, i - 1, i, packedValues);
+        value = packedValues.apply(i);
+        System.arraycopy(value.bytes, value.offset, current, 0, packedBytesLength);
+        cardinality = 1;
+      }
+    }
+    out.writeVInt(cardinality);
+    writeLeafBlockPackedValuesRange(out, commonPrefixLengths, count - 1, count, packedValues);
+  }
+
   private void writeActualBounds(DataOutput out, int[] commonPrefixLengths, int count, IntFunction<BytesRef> packedValues) throws IOException {
     for (int dim = 0; dim < numIndexDims; ++dim) {
       int commonPrefixLength = commonPrefixLengths[dim];
@@ -18,70 +18,184 @@ package org.apache.lucene.util.bkd;
 
 import java.io.IOException;
 
+import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.PointValues.IntersectVisitor;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.store.DataOutput;
 import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.util.DocBaseBitSetIterator;
+import org.apache.lucene.util.FixedBitSet;
 
 class DocIdsWriter {
 
+  /** Doc IDs are consecutive: only the first one is stored. */
+  static final byte CONTINUOUS_IDS = -2;
+  /** Doc IDs are strictly increasing and dense: they are stored as a bit set. */
+  static final byte BITSET_IDS = -1;
+  /** Doc IDs are increasing: they are stored as delta-encoded vInts. */
+  static final byte DELTA_VINT = 0;
+  /** Doc IDs are stored as 16-bits deltas from the minimum doc ID. */
+  static final byte DELTA_BPV_16 = 16;
+  static final byte BPV_24 = 24;
+  static final byte BPV_32 = 32;
+
   private DocIdsWriter() {}
 
   static void writeDocIds(int[] docIds, int start, int count, DataOutput out) throws IOException {
+    if (count == 0) {
+      out.writeByte(DELTA_VINT);
+      return;
+    }
     // docs can be sorted either when all docs in a block have the same value
     // or when a segment is sorted
     boolean sorted = true;
+    boolean strictlySorted = true;
+    int min = docIds[start];
+    int max = min;
     for (int i = 1; i < count; ++i) {
-      if (docIds[start + i - 1] > docIds[start + i]) {
-        sorted = false;
-        break;
+      int last = docIds[start + i - 1];
+      int current = docIds[start + i];
+      if (last >= current) {
+        strictlySorted = false;
+        if (last > current) {
+          sorted = false;
+        }
+      }
+      min = Math.min(min, current);
+      max = Math.max(max, current);
+    }
+
+    final long min2max = (long) max - min + 1;
+    if (strictlySorted) {
+      if (min2max == count) {
+        out.writeByte(CONTINUOUS_IDS);
+        out.writeVInt(docIds[start]);
+        return;
+      } else if (min2max <= ((long) count << 3)) {
+        // a bit set never takes more space than delta vInts at this density,
+        // and it can be added in bulk to the visitor
+        out.writeByte(BITSET_IDS);
+        writeIdsAsBitSet(docIds, start, count, out);
+        return;
       }
     }
+
     if (sorted) {
-      out.writeByte((byte) 0);
+      out.writeByte(DELTA_VINT);
       int previous = 0;
       for (int i = 0; i < count; ++i) {
         int doc = docIds[start + i];
         out.writeVInt(doc - previous);
         previous = doc;
       }
+    } else if (min2max <= 0xffff) {
+      out.writeByte(DELTA_BPV_16);
+      out.writeVInt(min);
+      for (int i = 0; i < count; ++i) {
+        out.writeShort((short) (docIds[start + i] - min));
+      }
+    } else if (max <= 0xffffff) {
+      out.writeByte(BPV_24);
+      for (int i = 0; i < count; ++i) {
+        out.writeShort((short) (docIds[start + i] >>> 8));
+        out.writeByte((byte) docIds[start + i]);
+      }
     } else {
-      long max = 0;
+      out.writeByte(BPV_32);
       for (int i = 0; i < count; ++i) {
-        max |= Integer.toUnsignedLong(docIds[start + i]);
+        out.writeInt(docIds[start + i]);
       }
-      if (max <= 0xffffff) {
-        out.writeByte((byte) 24);
-        for (int i = 0; i < count; ++i) {
-          out.writeShort((short) (docIds[start + i] >>> 8));
-          out.writeByte((byte) docIds[start + i]);
-        }
-      } else {
-        out.writeByte((byte) 32);
-        for (int i = 0; i < count; ++i) {
-          out.writeInt(docIds[start + i]);
-        }
+    }
+  }
+
+  private static void writeIdsAsBitSet(int[] docIds, int start, int count, DataOutput out) throws IOException {
+    final int min = docIds[start];
+    final int max = docIds[start + count - 1];
+    final int offsetWords = min >>> 6;
+    final int numWords = (max >>> 6) - offsetWords + 1;
+    out.writeVInt(offsetWords);
+    out.writeVInt(numWords);
+    long currentWord = 0;
+    int currentWordIndex = 0;
+    for (int i = 0; i < count; ++i) {
+      final int index = (docIds[start + i] >>> 6) - offsetWords;
+      while (currentWordIndex < index) {
+        out.writeLong(currentWord);
+        currentWord = 0;
+        currentWordIndex++;
       }
+      currentWord |= 1L << docIds[start + i];
     }
+    out.writeLong(currentWord);
+    assert currentWordIndex + 1 == numWords;
   }
 
   /** Read {@code count} integers into {@code docIDs}. */
   static void readInts(IndexInput in, int count, int[] docIDs) throws IOException {
     final int bpv = in.readByte();
     switch (bpv) {
-      case 0:
+      case CONTINUOUS_IDS:
+        readContinuousIds(in, count, docIDs);
+        break;
+      case BITSET_IDS:
+        readBitSet(in, count, docIDs);
+        break;
+      case DELTA_VINT:
         readDeltaVInts(in, count, docIDs);
         break;
-      case 32:
-        readInts32(in, count, docIDs);
+      case DELTA_BPV_16:
+        readDelta16(in, count, docIDs);
         break;
-      case 24:
+      case BPV_24:
         readInts24(in, count, docIDs);
         break;
+      case BPV_32:
+        readInts32(in, count, docIDs);
+        break;
       default:
         throw new IOException("Unsupported number of bits per value: " + bpv);
     }
   }
 
+  private static void readContinuousIds(IndexInput in, int count, int[] docIDs) throws IOException {
+    final int start = in.readVInt();
+    for (int i = 0; i < count; i++) {
+      docIDs[i] = start + i;
+    }
+  }
+
+  private static void readBitSet(IndexInput in, int count, int[] docIDs) throws IOException {
+    final int offsetWords = in.readVInt();
+    final int numWords = in.readVInt();
+    int pos = 0;
+    for (int i = 0; i < numWords; i++) {
+      long word = in.readLong();
+      final int base = (offsetWords + i) << 6;
+      while (word != 0 && pos < count) {
+        docIDs[pos++] = base + Long.numberOfTrailingZeros(word);
+        word &= word - 1;
+      }
+    }
+    if (pos != count) {
+      throw new CorruptIndexException("Expected " + count + " doc IDs in bit set, but got " + pos, in);
+    }
+  }
+
+  private static void readDelta16(IndexInput in, int count, int[] docIDs) throws IOException {
+    final int min = in.readVInt();
+    int i;
+    for (i = 0; i < count - 3; i += 4) {
+      long l = in.readLong();
+      docIDs[i] = min + (int) (l >>> 48);
+      docIDs[i+1] = min + ((int) (l >>> 32) & 0xffff);
+      docIDs[i+2] = min + ((int) (l >>> 16) & 0xffff);
+      docIDs[i+3] = min + ((int) l & 0xffff);
+    }
+    for (; i < count; ++i) {
+      docIDs[i] = min + Short.toUnsignedInt(in.readShort());
+    }
+  }
+
   private static void readDeltaVInts(IndexInput in, int count, int[] docIDs) throws IOException {
     int doc = 0;
     for (int i = 0; i < count; i++) {
@@ -90,7 +204,7 @@ class DocIdsWriter {
     }
   }
 
-  static <T> void readInts32(IndexInput in, int count, int[] docIDs) throws IOException {
+  private static void readInts32(IndexInput in, int count, int[] docIDs) throws IOException {
     for (int i = 0; i < count; i++) {
       docIDs[i] = in.readInt();
     }
@@ -116,24 +230,64 @@ class DocIdsWriter {
     }
   }
 
-  /** Read {@code count} integers and feed the result directly to {@link IntersectVisitor#visit(int)}. */
+  /** Read {@code count} integers and feed the result directly to {@link IntersectVisitor#visit(int)}, or
+   *  to {@link IntersectVisitor#visit(DocIdSetIterator)} when doc IDs are stored as a range or a bit set. */
   static void readInts(IndexInput in, int count, IntersectVisitor visitor) throws IOException {
     final int bpv = in.readByte();
     switch (bpv) {
-      case 0:
+      case CONTINUOUS_IDS:
+        readContinuousIds(in, count, visitor);
+        break;
+      case BITSET_IDS:
+        readBitSet(in, count, visitor);
+        break;
+      case DELTA_VINT:
         readDeltaVInts(in, count, visitor);
         break;
-      case 32:
-        readInts32(in, count, visitor);
+      case DELTA_BPV_16:
+        readDelta16(in, count, visitor);
         break;
-      case 24:
+      case BPV_24:
         readInts24(in, count, visitor);
         break;
+      case BPV_32:
+        readInts32(in, count, visitor);
+        break;
       default:
         throw new IOException("Unsupported number of bits per value: " + bpv);
     }
   }
 
+  private static void readContinuousIds(IndexInput in, int count, IntersectVisitor visitor) throws IOException {
+    final int start = in.readVInt();
+    visitor.visit(DocIdSetIterator.range(start, start + count));
+  }
+
+  private static void readBitSet(IndexInput in, int count, IntersectVisitor visitor) throws IOException {
+    final int offsetWords = in.readVInt();
+    final int numWords = in.readVInt();
+    final long[] bits = new long[numWords];
+    for (int i = 0; i < numWords; i++) {
+      bits[i] = in.readLong();
+    }
+    visitor.visit(new DocBaseBitSetIterator(new FixedBitSet(bits, numWords << 6), count, offsetWords << 6));
+  }
+
+  private static void readDelta16(IndexInput in, int count, IntersectVisitor visitor) throws IOException {
+    final int min = in.readVInt();
+    int i;
+    for (i = 0; i < count - 3; i += 4) {
+      long l = in.readLong();
+      visitor.visit(min + (int) (l >>> 48));
+      visitor.visit(min + ((int) (l >>> 32) & 0xffff));
+      visitor.visit(min + ((int) (l >>> 16) & 0xffff));
+      visitor.visit(min + ((int) l & 0xffff));
+    }
+    for (; i < count; ++i) {
+      visitor.visit(min + Short.toUnsignedInt(in.readShort()));
+    }
+  }
+
   private static void readDeltaVInts(IndexInput in, int count, IntersectVisitor visitor) throws IOException {
     int doc = 0;
     for (int i = 0; i < count; i++) {
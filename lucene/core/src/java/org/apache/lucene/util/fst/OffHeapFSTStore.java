@@ -42,6 +42,9 @@ public final class OffHeapFSTStore implements FSTStore {
             this.in = (IndexInput) in;
             this.numBytes = numBytes;
             this.offset = this.in.getFilePointer();
+            // skip the FST bytes like the on-heap store does, so that data that
+            // follows the FST can be read from the same input
+            this.in.seek(offset + numBytes);
         } else {
             throw new IllegalArgumentException("parameter:in should be an instance of IndexInput for using OffHeapFSTStore, not a "
                                                + in.getClass().getName());
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.analysis.standard;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.BaseTokenStreamTestCase;
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.MockReaderWrapper;
+import org.apache.lucene.analysis.StopFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.apache.lucene.util.TestUtil;
+
+public class TestStandardLowerCaseStopTokenizer extends BaseTokenStreamTestCase {
+
+  private static final CharArraySet STOP_WORDS = new CharArraySet(Arrays.asList("the", "and", "of", "a", "1", "é", "don't"), false);
+
+  private static final String[] PIECES = {
+      "a", "B", "The", "the", "AND", "of", "Zz", "1", "23", "5.6", ".", ",", ";", ":", "'", "\"", "_", "-", "@",
+      "!", "(", ")", "/", " ", " ", " ", "  ", "\t", "\n", "\r\n", "\u000B", "\u0000",
+      "é", "É", "ß", "中文", "́", "‍", "😀", "カタカナ", "한국어", " ", "’", "İ", "𐐀",
+      "http://x.com", "foo@bar.com", "U.S.A.", "Don't", "3,000.50", "x_y"
+  };
+
+  public void testBasics() throws Exception {
+    Tokenizer tokenizer = new StandardLowerCaseStopTokenizer(STOP_WORDS);
+    tokenizer.setReader(new StringReader("The Quick brown fox, and 3,000.50 DON'T jump"));
+    assertTokenStreamContents(tokenizer,
+        new String[] { "quick", "brown", "fox", "3,000.50", "jump" },
+        new int[] { 4, 10, 16, 25, 40 },
+        new int[] { 9, 15, 19, 33, 44 },
+        new String[] { "<ALPHANUM>", "<ALPHANUM>", "<ALPHANUM>", "<NUM>", "<ALPHANUM>" },
+        new int[] { 2, 1, 1, 2, 2 },
+        44);
+  }
+
+  public void testNonAscii() throws Exception {
+    Tokenizer tokenizer = new StandardLowerCaseStopTokenizer(STOP_WORDS);
+    tokenizer.setReader(new StringReader("É CAFÉ 中文 the x_Y"));
+    assertTokenStreamContents(tokenizer,
+        new String[] { "café", "中", "文", "x_y" },
+        new int[] { 2, 7, 8, 14 },
+        new int[] { 6, 8, 9, 17 },
+        new String[] { "<ALPHANUM>", "<IDEOGRAPHIC>", "<IDEOGRAPHIC>", "<ALPHANUM>" },
+        new int[] { 2, 1, 1, 2 },
+        17);
+  }
+
+  public void testMaxTokenLength() throws Exception {
+    StandardLowerCaseStopTokenizer tokenizer = new StandardLowerCaseStopTokenizer(STOP_WORDS);
+    tokenizer.setMaxTokenLength(5);
+    tokenizer.setReader(new StringReader("abcdefghij THE"));
+    assertTokenStreamContents(tokenizer, new String[] { "abcde", "fghij" });
+    expectThrows(IllegalArgumentException.class, () -> tokenizer.setMaxTokenLength(0));
+  }
+
+  /** Check that we produce the same tokens as the chain that we replace. */
+  public void testDuelWithChain() throws Exception {
+    Random random = random();
+    for (int iter = 0; iter < 200 * RANDOM_MULTIPLIER; ++iter) {
+      CharArraySet stopWords = random.nextInt(5) == 0 ? CharArraySet.EMPTY_SET : new CharArraySet(STOP_WORDS, random.nextBoolean());
+      int maxTokenLength = random.nextInt(3) == 0 ? TestUtil.nextInt(random, 1, 20) : StandardAnalyzer.DEFAULT_MAX_TOKEN_LENGTH;
+      StandardTokenizer standard = new StandardTokenizer();
+      standard.setMaxTokenLength(maxTokenLength);
+      TokenStream chain = new StopFilter(new LowerCaseFilter(standard), stopWords);
+      StandardLowerCaseStopTokenizer fused = new StandardLowerCaseStopTokenizer(stopWords);
+      fused.setMaxTokenLength(maxTokenLength);
+      for (int i = 0; i < 3; ++i) {
+        String text = randomText(random);
+        standard.setReader(new StringReader(text));
+        List<String> expected = tokens(chain);
+        Reader reader = new StringReader(text);
+        fused.setReader(random.nextBoolean() ? reader : new MockReaderWrapper(random, reader));
+        assertEquals(text, expected, tokens(fused));
+      }
+    }
+  }
+
+  public void testRandomStrings() throws Exception {
+    Analyzer analyzer = new StandardAnalyzer(STOP_WORDS);
+    checkRandomData(random(), analyzer, 200 * RANDOM_MULTIPLIER);
+    analyzer.close();
+  }
+
+  private static String randomText(Random random) {
+    StringBuilder text = new StringBuilder();
+    int numPieces = random.nextInt(40);
+    for (int i = 0; i < numPieces; ++i) {
+      switch (random.nextInt(20)) {
+        case 0:
+          // long words, that may exceed the maximum token length
+          int length = random.nextInt(300);
+          for (int j = 0; j < length; ++j) {
+            text.append((char) ('a' + random.nextInt(3)));
+          }
+          break;
+        case 1:
+          text.append((char) random.nextInt(128));
+          break;
+        case 2:
+          text.append(TestUtil.randomUnicodeString(random, 5));
+          break;
+        default:
+          text.append(PIECES[random.nextInt(PIECES.length)]);
+          break;
+      }
+    }
+    return text.toString();
+  }
+
+  private static List<String> tokens(TokenStream stream) throws IOException {
+    CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+    OffsetAttribute offsetAtt = stream.addAttribute(OffsetAttribute.class);
+    PositionIncrementAttribute posIncAtt = stream.addAttribute(PositionIncrementAttribute.class);
+    TypeAttribute typeAtt = stream.addAttribute(TypeAttribute.class);
+    List<String> tokens = new ArrayList<>();
+    stream.reset();
+    while (stream.incrementToken()) {
+      tokens.add(termAtt + " " + offsetAtt.startOffset() + "-" + offsetAtt.endOffset()
+          + " +" + posIncAtt.getPositionIncrement() + " " + typeAtt.type());
+    }
+    stream.end();
+    tokens.add("end " + offsetAtt.endOffset() + " +" + posIncAtt.getPositionIncrement());
+    stream.close();
+    return tokens;
+  }
+}
@@ -40,7 +40,9 @@ import org.apache.lucene.index.Impact;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.store.ByteArrayDataInput;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
@@ -49,6 +51,7 @@ import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.IndexOutput;
 import org.apache.lucene.store.MMapDirectory;
 import org.apache.lucene.store.SimpleFSDirectory;
+import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.TestUtil;
 
 /**
@@ -282,6 +285,54 @@ public class TestBlockPostingsFormat extends BasePostingsFormatTestCase {
     d.close();
   }
 
+  public void testIntoBitSet() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, new IndexWriterConfig(new MockAnalyzer(random())).setCodec(getCodec()));
+    final int numDocs = atLeast(1000);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      // terms with full blocks and a tail, only a tail, or a single doc
+      if (random().nextInt(10) != 0) {
+        doc.add(newStringField("field", "dense", Field.Store.NO));
+      }
+      if (random().nextInt(20) == 0) {
+        doc.add(newStringField("field", "sparse", Field.Store.NO));
+      }
+      if (i == numDocs / 2) {
+        doc.add(newStringField("field", "single", Field.Store.NO));
+      }
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    DirectoryReader reader = DirectoryReader.open(w);
+    w.close();
+    LeafReaderContext context = reader.leaves().get(0);
+    for (String term : new String[] { "dense", "sparse", "single" }) {
+      for (int iter = 0; iter < 10; ++iter) {
+        PostingsEnum expected = context.reader().postings(new Term("field", term), PostingsEnum.NONE);
+        PostingsEnum actual = context.reader().postings(new Term("field", term), PostingsEnum.NONE);
+        int target = random().nextInt(numDocs);
+        int doc = actual.advance(target);
+        assertEquals(expected.advance(target), doc);
+        while (doc != DocIdSetIterator.NO_MORE_DOCS) {
+          final int offset = doc - random().nextInt(doc + 1);
+          final int upTo = random().nextBoolean() ? DocIdSetIterator.NO_MORE_DOCS : doc + random().nextInt(numDocs);
+          FixedBitSet bitSet = new FixedBitSet(numDocs);
+          actual.intoBitSet(upTo, bitSet, offset);
+          FixedBitSet expectedBitSet = new FixedBitSet(numDocs);
+          for (int d = expected.docID(); d < upTo; d = expected.nextDoc()) {
+            expectedBitSet.set(d - offset);
+          }
+          assertEquals(expectedBitSet, bitSet);
+          assertEquals(expected.docID(), actual.docID());
+          doc = actual.docID();
+        }
+      }
+    }
+    reader.close();
+    dir.close();
+  }
+
   private void shouldFail(int minItemsInBlock, int maxItemsInBlock) {
     expectThrows(IllegalArgumentException.class, () -> {
       new Lucene50PostingsFormat(minItemsInBlock, maxItemsInBlock, BlockTreeTermsReader.FSTLoadMode.AUTO);
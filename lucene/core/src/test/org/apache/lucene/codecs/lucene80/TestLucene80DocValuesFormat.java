@@ -22,6 +22,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.function.LongSupplier;
@@ -61,6 +62,7 @@ import org.apache.lucene.index.Term;
 import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.index.TermsEnum.SeekStatus;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.store.ByteBuffersDataInput;
 import org.apache.lucene.store.ByteBuffersDataOutput;
 import org.apache.lucene.store.Directory;
@@ -491,6 +493,117 @@ public class TestLucene80DocValuesFormat extends BaseCompressingDocValuesFormatT
     }
   }
 
+  public void testSortedSetLowCardinality() throws IOException {
+    // few unique values: ords of every doc are encoded as bitmaps
+    final int valueCount = TestUtil.nextInt(random(), 1, Long.SIZE);
+    final boolean sparse = random().nextBoolean();
+    final Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig().setMergePolicy(newLogMergePolicy()));
+    final int numDocs = atLeast(1000);
+    List<Set<BytesRef>> expected = new ArrayList<>();
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      Set<BytesRef> values = new TreeSet<>();
+      if (sparse == false || random().nextBoolean()) {
+        final int numValues = TestUtil.nextInt(random(), 1, Math.min(valueCount, 5));
+        for (int j = 0; j < numValues; ++j) {
+          values.add(new BytesRef(String.format(Locale.ROOT, "%02d", random().nextInt(valueCount))));
+        }
+        for (BytesRef value : values) {
+          doc.add(new SortedSetDocValuesField("sset", value));
+        }
+      }
+      expected.add(values);
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    DirectoryReader r = DirectoryReader.open(w);
+    w.close();
+    LeafReader sr = getOnlyLeafReader(r);
+    final long[] ords = new long[TestUtil.nextInt(random(), 1, 3)];
+    for (int iter = 0; iter < 3; ++iter) {
+      SortedSetDocValues values = DocValues.getSortedSet(sr, "sset");
+      for (int i = random().nextInt(10); i < numDocs; i += 1 + random().nextInt(3)) {
+        Set<BytesRef> expectedValues = expected.get(i);
+        assertEquals(expectedValues.isEmpty() == false, values.advanceExact(i));
+        if (expectedValues.isEmpty()) {
+          continue;
+        }
+        List<BytesRef> actualValues = new ArrayList<>();
+        if (random().nextBoolean()) {
+          for (long ord = values.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = values.nextOrd()) {
+            actualValues.add(BytesRef.deepCopyOf(values.lookupOrd(ord)));
+          }
+        } else {
+          int count;
+          do {
+            count = values.nextOrds(ords, 0, ords.length);
+            for (int j = 0; j < count; ++j) {
+              actualValues.add(BytesRef.deepCopyOf(values.lookupOrd(ords[j])));
+            }
+          } while (count == ords.length);
+        }
+        assertEquals(new ArrayList<>(expectedValues), actualValues);
+      }
+    }
+    r.close();
+    dir.close();
+  }
+
+  public void testBinaryAroundBlockSize() throws IOException {
+    final int frontier = Lucene80DocValuesFormat.BINARY_BLOCK_SIZE;
+    for (int maxDoc = frontier - 1; maxDoc <= frontier + 1; ++maxDoc) {
+      // low cardinality values are dictionary-encoded, other values are compressed in blocks
+      final boolean lowCardinality = random().nextBoolean();
+      final boolean sparse = random().nextBoolean();
+      final Directory dir = newDirectory();
+      IndexWriter w = new IndexWriter(dir, newIndexWriterConfig().setMergePolicy(newLogMergePolicy()));
+      List<BytesRef> expected = new ArrayList<>();
+      for (int i = 0; i < maxDoc; ++i) {
+        Document doc = new Document();
+        BytesRef value = null;
+        if (sparse == false || random().nextBoolean()) {
+          if (lowCardinality) {
+            value = new BytesRef(Integer.toString(random().nextInt(3)));
+          } else {
+            value = new BytesRef(TestUtil.randomSimpleString(random(), 0, 20));
+          }
+          doc.add(new BinaryDocValuesField("binary", value));
+        }
+        expected.add(value);
+        w.addDocument(doc);
+      }
+
+      w.forceMerge(1);
+      DirectoryReader r = DirectoryReader.open(w);
+      w.close();
+      LeafReader sr = getOnlyLeafReader(r);
+      assertEquals(maxDoc, sr.maxDoc());
+      BinaryDocValues values = DocValues.getBinary(sr, "binary");
+      int doc = values.nextDoc();
+      for (int i = 0; i < maxDoc; ++i) {
+        if (expected.get(i) != null) {
+          assertEquals(i, doc);
+          assertEquals(expected.get(i), values.binaryValue());
+          doc = values.nextDoc();
+        }
+      }
+      assertEquals(DocIdSetIterator.NO_MORE_DOCS, doc);
+      // random access, possibly going back to previous blocks on a new iterator
+      for (int iter = 0; iter < 10; ++iter) {
+        values = DocValues.getBinary(sr, "binary");
+        for (int i = random().nextInt(maxDoc); i < maxDoc; i += 1 + random().nextInt(frontier)) {
+          assertEquals(expected.get(i) != null, values.advanceExact(i));
+          if (expected.get(i) != null) {
+            assertEquals(expected.get(i), values.binaryValue());
+          }
+        }
+      }
+      r.close();
+      dir.close();
+    }
+  }
+
   @Slow
   public void testSortedNumericAroundBlockSize() throws IOException {
     final int frontier = 1 << Lucene80DocValuesFormat.DIRECT_MONOTONIC_BLOCK_SHIFT;
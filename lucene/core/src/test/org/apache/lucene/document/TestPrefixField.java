@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.document;
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.BaseTokenStreamTestCase;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MultiTermQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestPrefixField extends LuceneTestCase {
+
+  public void testIllegalPrefixLengths() {
+    IllegalArgumentException e = expectThrows(IllegalArgumentException.class,
+        () -> new PrefixField("foo", "bar", 0, 2));
+    assertEquals("minPrefixLength must be at least 1, got 0", e.getMessage());
+    e = expectThrows(IllegalArgumentException.class,
+        () -> new PrefixField("foo", "bar", 3, 2));
+    assertEquals("maxPrefixLength must be greater than or equal to minPrefixLength, got 2 < 3", e.getMessage());
+  }
+
+  public void testTokenStream() throws IOException {
+    PrefixField field = new PrefixField("foo", "abcd", 2, 3);
+    assertEquals("foo._prefix", field.name());
+    BaseTokenStreamTestCase.assertTokenStreamContents(field.tokenStream(null, null), new String[] { "ab", "abc" });
+
+    field = new PrefixField("foo", "ab", 1, 3);
+    BaseTokenStreamTestCase.assertTokenStreamContents(field.tokenStream(null, null), new String[] { "a", "ab" });
+
+    // values that are too short to have a prefix index the empty string
+    field = new PrefixField("foo", "a", 2, 3);
+    BaseTokenStreamTestCase.assertTokenStreamContents(field.tokenStream(null, null), new String[] { "" });
+    field = new PrefixField("foo", "", 1, 3);
+    BaseTokenStreamTestCase.assertTokenStreamContents(field.tokenStream(null, null), new String[] { "" });
+
+    // prefix lengths are in code points
+    field = new PrefixField("foo", "\uD801\uDC00b\uD801\uDC01", 1, 3);
+    BaseTokenStreamTestCase.assertTokenStreamContents(field.tokenStream(null, null),
+        new String[] { "\uD801\uDC00", "\uD801\uDC00b", "\uD801\uDC00b\uD801\uDC01" });
+
+    // reuse
+    PrefixField other = new PrefixField("foo", "xyz", 1, 1);
+    BaseTokenStreamTestCase.assertTokenStreamContents(other.tokenStream(null, field.tokenStream(null, null)), new String[] { "x" });
+  }
+
+  public void testRewrite() throws IOException {
+    Directory dir = newDirectory();
+    // segments that index prefixes must not be merged with segments that don't
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE));
+    Document doc = new Document();
+    doc.add(new StringField("foo", "abcd", Store.NO));
+    doc.add(new PrefixField("foo", "abcd", 2, 3));
+    w.addDocument(doc);
+    IndexReader reader = w.getReader();
+    IndexSearcher searcher = newSearcher(reader);
+
+    Query expected = new ConstantScoreQuery(new TermQuery(new Term("foo._prefix", "ab")));
+    assertEquals(expected, searcher.rewrite(new PrefixQuery(new Term("foo", "ab"))));
+    assertEquals(expected, searcher.rewrite(new WildcardQuery(new Term("foo", "ab*"))));
+    assertEquals(expected, searcher.rewrite(new WildcardQuery(new Term("foo", "ab**"))));
+    expected = new ConstantScoreQuery(new TermQuery(new Term("foo._prefix", "a*c")));
+    assertEquals(expected, searcher.rewrite(new WildcardQuery(new Term("foo", "a\\*c*"))));
+
+    // prefix lengths that are not indexed
+    assertFalse(searcher.rewrite(new PrefixQuery(new Term("foo", "a"))) instanceof ConstantScoreQuery);
+    assertFalse(searcher.rewrite(new PrefixQuery(new Term("foo", "abcd"))) instanceof ConstantScoreQuery);
+    // not a prefix
+    assertFalse(searcher.rewrite(new WildcardQuery(new Term("foo", "a?c*"))) instanceof ConstantScoreQuery);
+    assertFalse(searcher.rewrite(new WildcardQuery(new Term("foo", "a*c"))) instanceof ConstantScoreQuery);
+    assertFalse(searcher.rewrite(new WildcardQuery(new Term("foo", "ab\\*"))) instanceof ConstantScoreQuery);
+    // scoring rewrite
+    PrefixQuery scoring = new PrefixQuery(new Term("foo", "ab"));
+    scoring.setRewriteMethod(MultiTermQuery.SCORING_BOOLEAN_REWRITE);
+    assertFalse(searcher.rewrite(scoring) instanceof ConstantScoreQuery);
+
+    // some segments don't index prefixes
+    doc = new Document();
+    doc.add(new StringField("foo", "abcd", Store.NO));
+    w.addDocument(doc);
+    IndexReader reader2 = w.getReader();
+    IndexSearcher searcher2 = newSearcher(reader2);
+    assertFalse(searcher2.rewrite(new PrefixQuery(new Term("foo", "ab"))) instanceof ConstantScoreQuery);
+
+    w.close();
+    IOUtils.close(reader, reader2, dir);
+  }
+
+  public void testSomeDocumentsWithoutPrefixes() throws IOException {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    Document doc = new Document();
+    doc.add(new StringField("foo", "abcd", Store.NO));
+    doc.add(new PrefixField("foo", "abcd", 2, 3));
+    w.addDocument(doc);
+    // too short to have prefixes, but still indexed with a PrefixField
+    doc = new Document();
+    doc.add(new StringField("foo", "a", Store.NO));
+    doc.add(new PrefixField("foo", "a", 2, 3));
+    w.addDocument(doc);
+    w.forceMerge(1);
+    IndexReader reader = w.getReader();
+    IndexSearcher searcher = newSearcher(reader);
+    Query expected = new ConstantScoreQuery(new TermQuery(new Term("foo._prefix", "ab")));
+    assertEquals(expected, searcher.rewrite(new PrefixQuery(new Term("foo", "ab"))));
+
+    // a document without PrefixField in the same segment
+    doc = new Document();
+    doc.add(new StringField("foo", "abef", Store.NO));
+    w.addDocument(doc);
+    w.forceMerge(1);
+    IndexReader reader2 = w.getReader();
+    assertEquals(1, reader2.leaves().size());
+    IndexSearcher searcher2 = newSearcher(reader2);
+    assertFalse(expected.equals(searcher2.rewrite(new PrefixQuery(new Term("foo", "ab")))));
+    assertEquals(2, searcher2.count(new PrefixQuery(new Term("foo", "ab"))));
+    assertEquals(2, searcher2.count(new WildcardQuery(new Term("foo", "ab*"))));
+
+    w.close();
+    IOUtils.close(reader, reader2, dir);
+  }
+
+  public void testSameMatches() throws IOException {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    final int numDocs = atLeast(200);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      final int numValues = random().nextInt(3);
+      for (int j = 0; j < numValues; ++j) {
+        String value = TestUtil.randomSimpleString(random(), 1, 5);
+        doc.add(new StringField("plain", value, Store.NO));
+        doc.add(new StringField("foo", value, Store.NO));
+        doc.add(new PrefixField("foo", value, 1, 3));
+      }
+      w.addDocument(doc);
+    }
+    IndexReader reader = w.getReader();
+    w.close();
+    IndexSearcher searcher = newSearcher(reader);
+
+    for (int iter = 0; iter < 100; ++iter) {
+      String prefix = TestUtil.randomSimpleString(random(), 1, 4);
+      Query expected = new PrefixQuery(new Term("plain", prefix));
+      Query actual = random().nextBoolean()
+          ? new PrefixQuery(new Term("foo", prefix))
+          : new WildcardQuery(new Term("foo", prefix + "*"));
+      TopDocs expectedTopDocs = searcher.search(expected, numDocs, Sort.INDEXORDER);
+      TopDocs actualTopDocs = searcher.search(actual, numDocs, Sort.INDEXORDER);
+      assertEquals(expectedTopDocs.totalHits.value, actualTopDocs.totalHits.value);
+      for (int i = 0; i < expectedTopDocs.scoreDocs.length; ++i) {
+        assertEquals(expectedTopDocs.scoreDocs[i].doc, actualTopDocs.scoreDocs[i].doc);
+      }
+    }
+
+    reader.close();
+    dir.close();
+  }
+}
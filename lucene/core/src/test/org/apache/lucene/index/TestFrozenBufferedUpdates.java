@@ -78,7 +78,9 @@ public class TestFrozenBufferedUpdates extends LuceneTestCase {
           boolean sorted = random().nextBoolean();
           BytesRefIterator values = sorted ? array.iterator(Comparator.naturalOrder()) : array.iterator();
           assertEquals(1, reader.leaves().size());
-          TermDocsIterator iterator = new TermDocsIterator(reader.leaves().get(0).reader(), sorted);
+          // -1 means unknown, 1 makes sorted lookups use exact seeks
+          long numQueryTerms = RandomPicks.randomFrom(random(), new Long[] {-1L, 1L, (long) array.size()});
+          TermDocsIterator iterator = new TermDocsIterator(reader.leaves().get(0).reader(), sorted, numQueryTerms);
           FixedBitSet bitSet = new FixedBitSet(reader.maxDoc());
           BytesRef ref;
           while ((ref = values.next()) != null) {
@@ -23,14 +23,18 @@ import java.util.HashMap;
 
 import org.apache.lucene.analysis.MockAnalyzer;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StringField;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.LongValues;
 import org.apache.lucene.util.LuceneTestCase;
 import org.apache.lucene.util.RamUsageTester;
 import org.apache.lucene.util.TestUtil;
+import org.apache.lucene.util.packed.PackedInts;
 
 public class TestOrdinalMap extends LuceneTestCase {
 
@@ -95,4 +99,66 @@ public class TestOrdinalMap extends LuceneTestCase {
     dir.close();
   }
 
+  public void testIncrementalBuild() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig cfg = new IndexWriterConfig(new MockAnalyzer(random()));
+    IndexWriter w = new IndexWriter(dir, cfg);
+    final int maxTermLength = TestUtil.nextInt(random(), 1, 3);
+    DirectoryReader reader = null;
+    OrdinalMap previous = null;
+    for (int iter = 0, numIters = atLeast(20); iter < numIters; ++iter) {
+      for (int i = 0, numDocs = 1 + random().nextInt(random().nextBoolean() ? 5 : 100); i < numDocs; ++i) {
+        Document d = new Document();
+        d.add(new StringField("id", Integer.toString(random().nextInt(500)), Store.NO));
+        for (int j = random().nextInt(3); j > 0; --j) {
+          d.add(new SortedSetDocValuesField("ssdv", new BytesRef(TestUtil.randomSimpleString(random(), maxTermLength))));
+        }
+        w.addDocument(d);
+      }
+      if (random().nextInt(5) == 0) {
+        w.deleteDocuments(new Term("id", Integer.toString(random().nextInt(500))));
+      }
+      if (rarely()) {
+        w.forceMerge(TestUtil.nextInt(random(), 1, 3));
+      }
+      DirectoryReader newReader = reader == null ? DirectoryReader.open(w) : DirectoryReader.openIfChanged(reader, w);
+      if (newReader == null) {
+        continue;
+      }
+      IOUtils.close(reader);
+      reader = newReader;
+
+      SortedSetDocValues dv = MultiDocValues.getSortedSetValues(reader, "ssdv", previous);
+      if (dv instanceof MultiDocValues.MultiSortedSetDocValues == false) {
+        previous = null;
+        continue;
+      }
+      OrdinalMap map = ((MultiDocValues.MultiSortedSetDocValues) dv).mapping;
+      SortedSetDocValues[] values = new SortedSetDocValues[reader.leaves().size()];
+      for (int i = 0; i < values.length; ++i) {
+        values[i] = DocValues.getSortedSet(reader.leaves().get(i).reader(), "ssdv");
+      }
+      OrdinalMap expected = OrdinalMap.build(null, values, PackedInts.DEFAULT);
+      assertEquals(expected.getValueCount(), map.getValueCount());
+      for (int i = 0; i < values.length; ++i) {
+        LongValues expectedGlobalOrds = expected.getGlobalOrds(i);
+        LongValues globalOrds = map.getGlobalOrds(i);
+        for (long ord = 0; ord < values[i].getValueCount(); ++ord) {
+          assertEquals(expectedGlobalOrds.get(ord), globalOrds.get(ord));
+        }
+      }
+      for (long globalOrd = 0; globalOrd < map.getValueCount(); ++globalOrd) {
+        int segment = map.getFirstSegmentNumber(globalOrd);
+        long segmentOrd = map.getFirstSegmentOrd(globalOrd);
+        assertEquals(globalOrd, map.getGlobalOrds(segment).get(segmentOrd));
+        int expectedSegment = expected.getFirstSegmentNumber(globalOrd);
+        long expectedSegmentOrd = expected.getFirstSegmentOrd(globalOrd);
+        assertEquals(BytesRef.deepCopyOf(values[expectedSegment].lookupOrd(expectedSegmentOrd)), values[segment].lookupOrd(segmentOrd));
+      }
+      assertEquals(RamUsageTester.sizeOf(map, ORDINAL_MAP_ACCUMULATOR), map.ramBytesUsed());
+      previous = map;
+    }
+    IOUtils.close(reader, w, dir);
+  }
+
 }
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+
+public class TestSegmentStateCache extends LuceneTestCase {
+
+  private static void addDocs(IndexWriter w, int numDocs) throws IOException {
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(new StringField("id", Integer.toString(i), Store.NO));
+      w.addDocument(doc);
+    }
+  }
+
+  public void testReopen() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE));
+    addDocs(w, 10);
+    w.commit();
+    addDocs(w, 5);
+    w.commit();
+
+    AtomicInteger loads = new AtomicInteger();
+    SegmentStateCache<Integer> cache = new SegmentStateCache<>(reader -> {
+      loads.incrementAndGet();
+      return reader.maxDoc();
+    });
+
+    DirectoryReader reader = DirectoryReader.open(w);
+    assertEquals(2, reader.leaves().size());
+    assertEquals(2, cache.warm(reader));
+    assertEquals(2, loads.get());
+    assertEquals(2, cache.size());
+    for (LeafReaderContext ctx : reader.leaves()) {
+      assertEquals(ctx.reader().maxDoc(), cache.get(ctx.reader()).intValue());
+    }
+    assertEquals(2, loads.get());
+
+    // deletes don't change cores, and only the new segment gets loaded
+    w.deleteDocuments(new Term("id", "3"));
+    addDocs(w, 3);
+    DirectoryReader newReader = DirectoryReader.openIfChanged(reader, w);
+    assertNotNull(newReader);
+    assertEquals(3, newReader.leaves().size());
+    assertEquals(1, cache.warm(newReader));
+    assertEquals(3, loads.get());
+    assertEquals(0, cache.warm(newReader));
+    assertEquals(3, loads.get());
+
+    reader.close();
+    assertEquals(3, cache.size());
+
+    // merged away segments release their state once no reader uses them anymore
+    w.getConfig().setMergePolicy(new LogDocMergePolicy());
+    w.forceMerge(1);
+    DirectoryReader mergedReader = DirectoryReader.openIfChanged(newReader, w);
+    assertNotNull(mergedReader);
+    assertEquals(1, cache.warm(mergedReader));
+    newReader.close();
+    assertEquals(1, cache.size());
+
+    mergedReader.close();
+    w.close();
+    assertEquals(0, cache.size());
+    dir.close();
+  }
+
+  public void testNullState() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig());
+    addDocs(w, 1);
+    DirectoryReader reader = DirectoryReader.open(w);
+    SegmentStateCache<Object> cache = new SegmentStateCache<>(r -> null);
+    expectThrows(NullPointerException.class, () -> cache.warm(reader));
+    assertEquals(0, cache.size());
+    reader.close();
+    w.close();
+    dir.close();
+  }
+
+}
@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -101,6 +102,50 @@ public class TermInSetQueryTest extends LuceneTestCase {
     }
   }
 
+  public void testDuelDenseIds() throws IOException {
+    final String field = "id";
+    Directory dir = newDirectory();
+    RandomIndexWriter iw = new RandomIndexWriter(random(), dir);
+    final int numDocs = atLeast(1000);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      // only even ids exist
+      doc.add(new StringField(field, String.format(Locale.ROOT, "%06d", 2 * i), Store.NO));
+      iw.addDocument(doc);
+    }
+    final IndexReader reader = iw.getReader();
+    final IndexSearcher searcher = newSearcher(reader);
+    iw.close();
+
+    for (int i = 0; i < 20; ++i) {
+      // mix ranges of consecutive ids, which may or may not exist, and random ids
+      List<BytesRef> queryTerms = new ArrayList<>();
+      final int numRanges = TestUtil.nextInt(random(), 1, 5);
+      for (int j = 0; j < numRanges; ++j) {
+        final int start = random().nextInt(2 * numDocs + 10);
+        final int step = TestUtil.nextInt(random(), 1, 3);
+        final int length = TestUtil.nextInt(random(), 1, 100);
+        for (int k = 0; k < length; ++k) {
+          queryTerms.add(new BytesRef(String.format(Locale.ROOT, "%06d", start + k * step)));
+        }
+      }
+      final int numRandomTerms = random().nextInt(100);
+      for (int j = 0; j < numRandomTerms; ++j) {
+        queryTerms.add(new BytesRef(String.format(Locale.ROOT, "%06d", random().nextInt(2 * numDocs + 10))));
+      }
+      final BooleanQuery.Builder bq = new BooleanQuery.Builder();
+      for (BytesRef t : new HashSet<>(queryTerms)) {
+        bq.add(new TermQuery(new Term(field, t)), Occur.SHOULD);
+      }
+      final Query q1 = new ConstantScoreQuery(bq.build());
+      final Query q2 = new TermInSetQuery(field, queryTerms);
+      assertSameMatches(searcher, q1, q2, false);
+    }
+
+    reader.close();
+    dir.close();
+  }
+
   private void assertSameMatches(IndexSearcher searcher, Query q1, Query q2, boolean scores) throws IOException {
     final int maxDoc = searcher.getIndexReader().maxDoc();
     final TopDocs td1 = searcher.search(q1, maxDoc, scores ? Sort.RELEVANCE : Sort.INDEXORDER);
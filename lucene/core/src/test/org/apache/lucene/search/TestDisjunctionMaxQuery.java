@@ -584,7 +584,8 @@ public class TestDisjunctionMaxQuery extends LuceneTestCase {
           }
         }
       }
-      float tieBreaker = random().nextFloat();
+      // a tie breaker of 0 allows propagating the minimum competitive score as-is
+      float tieBreaker = random().nextBoolean() ? 0f : random().nextFloat();
       Query query = new DisjunctionMaxQuery(clauses, tieBreaker);
       CheckHits.checkTopScores(random(), query, searcher);
 
@@ -17,6 +17,7 @@
 
 package org.apache.lucene.search;
 
+import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.LuceneTestCase;
 
 import static org.apache.lucene.search.DocIdSetIterator.NO_MORE_DOCS;
@@ -52,4 +53,26 @@ public class TestDocIdSetIterator extends LuceneTestCase {
     assertEquals(19, disi.nextDoc());
     assertEquals(NO_MORE_DOCS, disi.nextDoc());
   }
+
+  public void testIntoBitSet() throws Exception {
+    DocIdSetIterator disi = DocIdSetIterator.range(5, 20);
+    FixedBitSet bitSet = new FixedBitSet(20);
+    assertEquals(5, disi.nextDoc());
+    disi.intoBitSet(10, bitSet, 3);
+    assertEquals(10, disi.docID());
+    assertEquals(2, bitSet.nextSetBit(0));
+    assertEquals(5, bitSet.cardinality());
+    assertFalse(bitSet.get(7));
+    disi.intoBitSet(NO_MORE_DOCS, bitSet, 3);
+    assertEquals(NO_MORE_DOCS, disi.docID());
+    assertEquals(15, bitSet.cardinality());
+    assertEquals(16, bitSet.prevSetBit(19));
+
+    disi = DocIdSetIterator.all(10);
+    bitSet = new FixedBitSet(10);
+    assertEquals(0, disi.nextDoc());
+    disi.intoBitSet(NO_MORE_DOCS, bitSet, 0);
+    assertEquals(NO_MORE_DOCS, disi.docID());
+    assertEquals(10, bitSet.cardinality());
+  }
 }
@@ -135,6 +135,28 @@ public class TestDoubleValuesSource extends LuceneTestCase {
 
   }
 
+  public void testWithMaxValue() throws Exception {
+    DoubleValuesSource source = DoubleValuesSource.withMaxValue(DoubleValuesSource.fromDoubleField("double"), 0.5);
+    assertEquals(source, DoubleValuesSource.withMaxValue(DoubleValuesSource.fromDoubleField("double"), 0.5));
+    assertEquals(source.hashCode(), DoubleValuesSource.withMaxValue(DoubleValuesSource.fromDoubleField("double"), 0.5).hashCode());
+    assertFalse(source.equals(DoubleValuesSource.withMaxValue(DoubleValuesSource.fromDoubleField("double"), 0.6)));
+    expectThrows(IllegalArgumentException.class, () -> DoubleValuesSource.withMaxValue(source, Double.NaN));
+
+    DoubleValuesSource unbounded = DoubleValuesSource.fromDoubleField("double");
+    for (LeafReaderContext ctx : reader.leaves()) {
+      DoubleValues values = source.getValues(ctx, null);
+      DoubleValues unboundedValues = unbounded.getValues(ctx, null);
+      assertEquals(Double.POSITIVE_INFINITY, unboundedValues.getMaxValue(DocIdSetIterator.NO_MORE_DOCS), 0d);
+      assertEquals(0.5, values.getMaxValue(DocIdSetIterator.NO_MORE_DOCS), 0d);
+      for (int doc = 0; doc < ctx.reader().maxDoc(); ++doc) {
+        assertTrue(values.advanceExact(doc));
+        assertTrue(unboundedValues.advanceExact(doc));
+        assertEquals(Math.min(0.5, unboundedValues.doubleValue()), values.doubleValue(), 0d);
+      }
+      assertEquals(3, DoubleValuesSource.constant(3).getValues(ctx, null).getMaxValue(DocIdSetIterator.NO_MORE_DOCS), 0d);
+    }
+  }
+
   public void testSimpleFieldSortables() throws Exception {
     int n = atLeast(4);
     for (int i = 0; i < n; i++) {
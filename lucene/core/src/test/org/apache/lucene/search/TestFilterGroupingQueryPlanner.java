@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+import java.io.IOException;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+
+public class TestFilterGroupingQueryPlanner extends LuceneTestCase {
+
+  private static Query term(String field, String value) {
+    return new TermQuery(new Term(field, value));
+  }
+
+  public void testIllegalMinFilters() {
+    expectThrows(IllegalArgumentException.class, () -> new FilterGroupingQueryPlanner(1));
+  }
+
+  public void testPlan() throws IOException {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    w.addDocument(new Document());
+    IndexReader reader = w.getReader();
+    w.close();
+    IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setQueryCache(new LRUQueryCache(10, 10000, context -> true));
+    QueryPlanner planner = new FilterGroupingQueryPlanner();
+
+    Query query = new BooleanQuery.Builder()
+        .add(term("f", "a"), Occur.SHOULD)
+        .add(term("f", "b"), Occur.SHOULD)
+        .add(term("f", "c"), Occur.FILTER)
+        .add(term("f", "d"), Occur.MUST_NOT)
+        .add(term("f", "e"), Occur.FILTER)
+        .setMinimumNumberShouldMatch(1)
+        .build();
+    Query expected = new BooleanQuery.Builder()
+        .add(term("f", "a"), Occur.SHOULD)
+        .add(term("f", "b"), Occur.SHOULD)
+        .add(term("f", "d"), Occur.MUST_NOT)
+        .add(new BooleanQuery.Builder()
+            .add(term("f", "c"), Occur.FILTER)
+            .add(term("f", "e"), Occur.FILTER)
+            .build(), Occur.FILTER)
+        .setMinimumNumberShouldMatch(1)
+        .build();
+    assertEquals(expected, planner.plan(searcher, query, ScoreMode.COMPLETE));
+    assertEquals(expected, planner.plan(searcher, query, ScoreMode.TOP_SCORES));
+
+    // scores are not needed: the whole query may be cached
+    assertSame(query, planner.plan(searcher, query, ScoreMode.COMPLETE_NO_SCORES));
+
+    // only filters: nothing to group
+    Query filters = new BooleanQuery.Builder()
+        .add(term("f", "c"), Occur.FILTER)
+        .add(term("f", "e"), Occur.FILTER)
+        .build();
+    assertSame(filters, planner.plan(searcher, filters, ScoreMode.COMPLETE));
+
+    // not enough filters
+    assertSame(query, new FilterGroupingQueryPlanner(3).plan(searcher, query, ScoreMode.COMPLETE));
+
+    // no query cache
+    searcher.setQueryCache(null);
+    assertSame(query, planner.plan(searcher, query, ScoreMode.COMPLETE));
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testRandom() throws IOException {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    String[] values = new String[] { "a", "b", "c" };
+    final int numDocs = atLeast(1000);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      for (String field : new String[] { "f", "g", "h" }) {
+        if (random().nextInt(5) != 0) {
+          doc.add(new StringField(field, values[random().nextInt(values.length)], Store.NO));
+        }
+      }
+      w.addDocument(doc);
+    }
+    IndexReader reader = w.getReader();
+    w.close();
+
+    IndexSearcher searcher = newSearcher(reader);
+    IndexSearcher plannedSearcher = newSearcher(reader);
+    plannedSearcher.setQueryCache(new LRUQueryCache(100, 1 << 20, context -> true));
+    plannedSearcher.setQueryCachingPolicy(new QueryCachingPolicy() {
+      @Override
+      public void onUse(Query query) {}
+
+      @Override
+      public boolean shouldCache(Query query) {
+        return random().nextBoolean();
+      }
+    });
+    plannedSearcher.setQueryPlanner(new FilterGroupingQueryPlanner());
+
+    for (int iter = 0; iter < 50; ++iter) {
+      BooleanQuery.Builder builder = new BooleanQuery.Builder();
+      final int numClauses = 1 + random().nextInt(5);
+      for (int i = 0; i < numClauses; ++i) {
+        String field = new String[] { "f", "g", "h" }[random().nextInt(3)];
+        Occur occur = Occur.values()[random().nextInt(Occur.values().length)];
+        builder.add(term(field, values[random().nextInt(values.length)]), occur);
+      }
+      Query query = builder.build();
+      CheckHits.checkEqual(query,
+          searcher.search(query, 100).scoreDocs,
+          plannedSearcher.search(query, 100).scoreDocs);
+      assertEquals(searcher.count(query), plannedSearcher.count(query));
+    }
+
+    reader.close();
+    dir.close();
+  }
+
+}
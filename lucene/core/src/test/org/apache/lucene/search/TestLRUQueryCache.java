@@ -1690,4 +1690,50 @@ public class TestLRUQueryCache extends LuceneTestCase {
     t.start();
     t.join();
   }
+
+  public void testSkipCachingForClausesMuchMoreExpensiveThanLead() throws IOException {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    for (int i = 0; i < 100; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("f", "x", Store.NO));
+      if (i == 42) {
+        doc.add(new StringField("rare", "y", Store.NO));
+      }
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    IndexReader reader = w.getReader();
+    w.close();
+
+    expectThrows(IllegalArgumentException.class, () -> new LRUQueryCache(1, 10000, context -> true, 0.5f));
+    expectThrows(IllegalArgumentException.class, () -> new LRUQueryCache(1, 10000, context -> true, Float.NaN));
+
+    final LRUQueryCache cache = new LRUQueryCache(10, 100000, context -> true, 10);
+    final IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setQueryCache(cache);
+    searcher.setQueryCachingPolicy(ALWAYS_CACHE);
+
+    final Query dense = new TermQuery(new Term("f", "x"));
+    final Query rare = new TermQuery(new Term("rare", "y"));
+    Query query = new BooleanQuery.Builder()
+        .add(rare, Occur.MUST)
+        .add(dense, Occur.FILTER)
+        .build();
+
+    // the filter is 100x more costly than the lead: not cached
+    assertEquals(1, searcher.search(query, 1).totalHits.value);
+    assertEquals(Collections.emptyList(), cache.cachedQueries());
+
+    // now the filter leads the iteration and gets cached
+    assertEquals(100, searcher.search(new ConstantScoreQuery(dense), 1).totalHits.value);
+    assertEquals(Collections.singletonList(dense), cache.cachedQueries());
+
+    // cached clauses are used regardless of their cost
+    assertEquals(1, searcher.search(query, 1).totalHits.value);
+    assertTrue(searcher.explainPlan(query, ScoreMode.COMPLETE).toString().contains("f:x [ConstantScoreScorer, cached]"));
+
+    reader.close();
+    dir.close();
+  }
 }
@@ -34,18 +34,21 @@ import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.NoMergePolicy;
 import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.similarities.BM25Similarity;
 import org.apache.lucene.search.similarities.ClassicSimilarity;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.LuceneTestCase;
 import org.apache.lucene.util.TestUtil;
 import org.junit.AfterClass;
@@ -559,6 +562,70 @@ public class TestPhraseQuery extends LuceneTestCase {
     assertTrue(rewritten instanceof TermQuery);
   }
 
+  public void testSetCommonWords() {
+    FieldType type = new FieldType(TextField.TYPE_NOT_STORED);
+    expectThrows(IllegalArgumentException.class, () -> PhraseQuery.setCommonWords(type, Collections.emptyList()));
+    expectThrows(IllegalArgumentException.class, () -> PhraseQuery.setCommonWords(type, Arrays.asList("the", "")));
+    expectThrows(IllegalArgumentException.class, () -> PhraseQuery.setCommonWords(type, Arrays.asList("the", "of_the")));
+    assertNull(type.getAttributes());
+    PhraseQuery.setCommonWords(type, Arrays.asList("the", "of"));
+    assertNotNull(type.getAttributes().get(PhraseQuery.COMMON_WORDS_ATTRIBUTE));
+  }
+
+  public void testRewriteToCommonGrams() throws IOException {
+    FieldType type = new FieldType(TextField.TYPE_NOT_STORED);
+    PhraseQuery.setCommonWords(type, Arrays.asList("the", "of"));
+    Directory dir = newDirectory();
+    // segments that index common grams must not be merged with segments that don't
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE));
+    Document doc = new Document();
+    doc.add(new Field("body", "the quick brown fox", type));
+    doc.add(new TextField("title", "the quick brown fox", Store.NO));
+    w.addDocument(doc);
+    IndexReader reader = w.getReader();
+    IndexSearcher searcher = newSearcher(reader);
+
+    assertEquals(new TermQuery(new Term("body", "the_quick")),
+        searcher.rewrite(new PhraseQuery("body", "the", "quick")));
+    assertEquals(new PhraseQuery("body", "quick_of", "of_the", "the_fox"),
+        searcher.rewrite(new PhraseQuery("body", "quick", "of", "the", "fox")));
+    assertEquals(new PhraseQuery.Builder()
+            .add(new Term("body", "quick"), 0)
+            .add(new Term("body", "brown_of"), 1)
+            .add(new Term("body", "of_fox"), 2)
+            .add(new Term("body", "jumps"), 4)
+            .build(),
+        searcher.rewrite(new PhraseQuery("body", "quick", "brown", "of", "fox", "jumps")));
+
+    // no common words
+    Query query = new PhraseQuery("body", "quick", "fox");
+    assertEquals(query, searcher.rewrite(query));
+    // sloppy phrases
+    query = new PhraseQuery(1, "body", "the", "fox");
+    assertEquals(query, searcher.rewrite(query));
+    // gaps
+    query = new PhraseQuery.Builder().add(new Term("body", "the"), 0).add(new Term("body", "fox"), 2).build();
+    assertEquals(query, searcher.rewrite(query));
+    // ambiguous common grams
+    query = new PhraseQuery("body", "the", "quick_fox");
+    assertEquals(query, searcher.rewrite(query));
+    // common grams are not indexed
+    query = new PhraseQuery("title", "the", "fox");
+    assertEquals(query, searcher.rewrite(query));
+
+    // some segments don't index common grams
+    doc = new Document();
+    doc.add(new TextField("body", "the quick brown fox", Store.NO));
+    w.addDocument(doc);
+    IndexReader reader2 = w.getReader();
+    IndexSearcher searcher2 = newSearcher(reader2);
+    query = new PhraseQuery("body", "the", "fox");
+    assertEquals(query, searcher2.rewrite(query));
+
+    w.close();
+    IOUtils.close(reader, reader2, dir);
+  }
+
   /** Tests PhraseQuery with terms at the same position in the query. */
   public void testZeroPosIncr() throws IOException {
     Directory dir = newDirectory();
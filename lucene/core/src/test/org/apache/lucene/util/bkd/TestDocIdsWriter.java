@@ -57,6 +57,36 @@ public class TestDocIdsWriter extends LuceneTestCase {
     }
   }
 
+  public void testStrictlySorted() throws Exception {
+    try (Directory dir = newDirectory()) {
+      for (int iter = 0; iter < 1000; ++iter) {
+        int[] docIDs = new int[random().nextInt(5000)];
+        // gaps between 1 (consecutive doc IDs) and 16 cover the range, bit set and delta encodings
+        final int maxGap = random().nextBoolean() ? 1 : TestUtil.nextInt(random(), 1, 16);
+        int doc = TestUtil.nextInt(random(), 0, 1 << 20);
+        for (int i = 0; i < docIDs.length; ++i) {
+          docIDs[i] = doc;
+          doc += TestUtil.nextInt(random(), 1, maxGap);
+        }
+        test(dir, docIDs);
+      }
+    }
+  }
+
+  public void testCloseDocIDs() throws Exception {
+    try (Directory dir = newDirectory()) {
+      for (int iter = 0; iter < 1000; ++iter) {
+        int[] docIDs = new int[random().nextInt(5000)];
+        // unsorted doc IDs that fit in 16 bits once the minimum is subtracted
+        final int min = TestUtil.nextInt(random(), 0, Integer.MAX_VALUE - 0xffff);
+        for (int i = 0; i < docIDs.length; ++i) {
+          docIDs[i] = min + TestUtil.nextInt(random(), 0, 0xffff);
+        }
+        test(dir, docIDs);
+      }
+    }
+  }
+
   private void test(Directory dir, int[] ints) throws Exception {
     final long len;
     try(IndexOutput out = dir.createOutput("tmp", IOContext.DEFAULT)) {
@@ -88,6 +88,43 @@ public abstract class Expression {
    */
   public abstract double evaluate(DoubleValues[] functionValues);
 
+  /**
+   * Evaluates the expression for a block of documents.
+   * <p>
+   * Expressions compiled by {@link JavascriptCompiler} override this method
+   * with a loop over the arrays of values, which is faster than evaluating
+   * documents one at a time. The default implementation calls
+   * {@link #evaluate(DoubleValues[])} for each document.
+   *
+   * @param values values of each element of {@link #variables}, for
+   *        each document of the block.
+   * @param count number of documents in the block
+   * @param results array that receives the value of the expression for each
+   *        document of the block
+   */
+  public void evaluateBlock(double[][] values, int count, double[] results) {
+    final int[] doc = new int[1];
+    final DoubleValues[] functionValues = new DoubleValues[values.length];
+    for (int i = 0; i < values.length; ++i) {
+      final double[] variableValues = values[i];
+      functionValues[i] = new DoubleValues() {
+        @Override
+        public double doubleValue() {
+          return variableValues[doc[0]];
+        }
+
+        @Override
+        public boolean advanceExact(int target) {
+          // values are positioned by evaluateBlock, and every document has one
+          return true;
+        }
+      };
+    }
+    for (doc[0] = 0; doc[0] < count; ++doc[0]) {
+      results[doc[0]] = evaluate(functionValues);
+    }
+  }
+
   /**
    * Get a DoubleValuesSource which can compute the value of this expression in the context of the given bindings.
    * @param bindings Bindings to use for external values in this expression
@@ -18,16 +18,26 @@ package org.apache.lucene.expressions;
 
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.search.DoubleValues;
 import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Rescorer;
+import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.SortRescorer;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.util.IntroSelector;
+import org.apache.lucene.util.IntroSorter;
 
 /**
  * A {@link Rescorer} that uses an expression to re-score
@@ -35,7 +45,8 @@ import org.apache.lucene.search.SortRescorer;
  * SortRescorer} (if you build the {@link Sort} using {@link
  * Expression#getSortField}), except for the explain method
  * which gives more detail by showing the value of each
- * variable.
+ * variable. Hits are rescored with {@link Expression#evaluateBlock},
+ * segment by segment, rather than one hit at a time.
  * 
  * @lucene.experimental
  */
@@ -44,13 +55,114 @@ class ExpressionRescorer extends SortRescorer {
 
   private final Expression expression;
   private final Bindings bindings;
+  private final SortField sortField;
 
   /** Uses the provided {@link Expression} to assign second
    *  pass scores. */
   public ExpressionRescorer(Expression expression, Bindings bindings) {
-    super(new Sort(expression.getSortField(bindings, true)));
+    this(expression, bindings, expression.getSortField(bindings, true));
+  }
+
+  private ExpressionRescorer(Expression expression, Bindings bindings, SortField sortField) {
+    super(new Sort(sortField));
     this.expression = expression;
     this.bindings = bindings;
+    this.sortField = sortField;
+  }
+
+  @Override
+  public TopDocs rescore(IndexSearcher searcher, TopDocs firstPassTopDocs, int topN) throws IOException {
+    // Copy ScoreDoc[] and sort by ascending docID:
+    ScoreDoc[] hits = firstPassTopDocs.scoreDocs.clone();
+    Arrays.sort(hits, Comparator.comparingInt(sd -> sd.doc));
+
+    ExpressionValueSource source = (ExpressionValueSource) new ExpressionValueSource(bindings, expression).rewrite(searcher);
+    List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+    double[] values = new double[hits.length];
+    int[] docs = new int[0];
+    float[] scores = new float[0];
+    double[] leafValues = new double[0];
+
+    // Evaluate the expression on all hits of a segment at once:
+    int hitUpto = 0;
+    while (hitUpto < hits.length) {
+      LeafReaderContext readerContext = leaves.get(ReaderUtil.subIndex(hits[hitUpto].doc, leaves));
+      int endDoc = readerContext.docBase + readerContext.reader().maxDoc();
+      int hitEnd = hitUpto;
+      while (hitEnd < hits.length && hits[hitEnd].doc < endDoc) {
+        hitEnd++;
+      }
+      int count = hitEnd - hitUpto;
+      if (docs.length < count) {
+        docs = new int[count];
+        scores = new float[count];
+        leafValues = new double[count];
+      }
+      for (int i = 0; i < count; i++) {
+        docs[i] = hits[hitUpto + i].doc - readerContext.docBase;
+        scores[i] = hits[hitUpto + i].score;
+      }
+      source.evaluate(readerContext, docs, scores, count, leafValues);
+      System.arraycopy(leafValues, 0, values, hitUpto, count);
+      hitUpto = hitEnd;
+    }
+
+    // Select and sort the top hits in the same order as the sort field:
+    // descending values, then ascending docIDs, which is the order of hits
+    final int[] order = new int[hits.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    final int numHits = Math.min(topN, hits.length);
+    if (numHits < hits.length) {
+      new IntroSelector() {
+        int pivot;
+
+        @Override
+        protected void swap(int i, int j) {
+          int tmp = order[i];
+          order[i] = order[j];
+          order[j] = tmp;
+        }
+
+        @Override
+        protected void setPivot(int i) {
+          pivot = order[i];
+        }
+
+        @Override
+        protected int comparePivot(int j) {
+          return compareHits(values, pivot, order[j]);
+        }
+      }.select(0, hits.length, numHits);
+    }
+    new IntroSorter() {
+      int pivot;
+
+      @Override
+      protected void swap(int i, int j) {
+        int tmp = order[i];
+        order[i] = order[j];
+        order[j] = tmp;
+      }
+
+      @Override
+      protected void setPivot(int i) {
+        pivot = order[i];
+      }
+
+      @Override
+      protected int comparePivot(int j) {
+        return compareHits(values, pivot, order[j]);
+      }
+    }.sort(0, numHits);
+
+    FieldDoc[] rescored = new FieldDoc[numHits];
+    for (int i = 0; i < numHits; i++) {
+      ScoreDoc hit = hits[order[i]];
+      rescored[i] = new FieldDoc(hit.doc, hit.score, new Object[] { values[order[i]] });
+    }
+    return new TopFieldDocs(new TotalHits(hits.length, TotalHits.Relation.EQUAL_TO), rescored, new SortField[] { sortField });
   }
 
   private static DoubleValues scores(int doc, float score) {
@@ -68,6 +180,14 @@ class ExpressionRescorer extends SortRescorer {
     };
   }
 
+  private static int compareHits(double[] values, int hit1, int hit2) {
+    int cmp = Double.compare(values[hit2], values[hit1]);
+    if (cmp == 0) {
+      cmp = Integer.compare(hit1, hit2);
+    }
+    return cmp;
+  }
+
   @Override
   public Explanation explain(IndexSearcher searcher, Explanation firstPassExplanation, int docID) throws IOException {
     Explanation superExpl = super.explain(searcher, firstPassExplanation, docID);
@@ -33,6 +33,9 @@ import org.apache.lucene.search.IndexSearcher;
  */
 @SuppressWarnings({"rawtypes", "unchecked"})
 final class ExpressionValueSource extends DoubleValuesSource {
+  /** Number of documents that {@link #evaluate} evaluates at once. */
+  static final int BLOCK_SIZE = 128;
+
   final DoubleValuesSource variables[];
   final Expression expression;
   final boolean needsScores;
@@ -80,6 +83,54 @@ final class ExpressionValueSource extends DoubleValuesSource {
     return new ExpressionFunctionValues(expression, externalValues);
   }
 
+  /**
+   * Computes the values of the expression for {@code count} documents of a
+   * segment, which must be in increasing order, with the given scores. The
+   * values of each variable are loaded for a block of documents, and the
+   * expression is then evaluated over the whole block with
+   * {@link Expression#evaluateBlock}.
+   */
+  void evaluate(LeafReaderContext readerContext, int[] docs, float[] scores, int count, double[] results) throws IOException {
+    final int[] scoreIndex = new int[1];
+    final DoubleValues scoreValues = new DoubleValues() {
+      @Override
+      public double doubleValue() {
+        return scores[scoreIndex[0]];
+      }
+
+      @Override
+      public boolean advanceExact(int doc) {
+        assert doc == docs[scoreIndex[0]];
+        return true;
+      }
+    };
+
+    final DoubleValues[] externalValues = new DoubleValues[variables.length];
+    for (int i = 0; i < variables.length; ++i) {
+      externalValues[i] = variables[i].getValues(readerContext, scoreValues);
+      if (externalValues[i] == null) {
+        throw new RuntimeException("Internal error. External (" + expression.variables[i] + ") does not exist.");
+      }
+    }
+
+    final double[][] values = new double[variables.length][BLOCK_SIZE];
+    final double[] blockResults = new double[BLOCK_SIZE];
+    for (int start = 0; start < count; start += BLOCK_SIZE) {
+      final int blockCount = Math.min(BLOCK_SIZE, count - start);
+      // load variable by variable, so that each loop only calls one implementation of DoubleValues
+      for (int i = 0; i < variables.length; ++i) {
+        final DoubleValues variable = externalValues[i];
+        final double[] variableValues = values[i];
+        for (int j = 0; j < blockCount; ++j) {
+          scoreIndex[0] = start + j;
+          variableValues[j] = variable.advanceExact(docs[start + j]) ? variable.doubleValue() : 0;
+        }
+      }
+      expression.evaluateBlock(values, blockCount, blockResults);
+      System.arraycopy(blockResults, 0, results, start, blockCount);
+    }
+  }
+
   private static DoubleValues zeroWhenUnpositioned(DoubleValues in) {
     return new DoubleValues() {
 
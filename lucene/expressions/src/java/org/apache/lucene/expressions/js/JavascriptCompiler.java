@@ -33,6 +33,7 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.function.IntConsumer;
 
 import org.antlr.v4.runtime.ANTLRInputStream;
 import org.antlr.v4.runtime.CommonTokenStream;
@@ -94,10 +95,12 @@ public final class JavascriptCompiler {
   
   static final Type EXPRESSION_TYPE = Type.getType(Expression.class);
   static final Type FUNCTION_VALUES_TYPE = Type.getType(DoubleValues.class);
+  static final Type DOUBLE_ARRAY_TYPE = Type.getType(double[].class);
 
   private static final org.objectweb.asm.commons.Method
     EXPRESSION_CTOR = getAsmMethod(void.class, "<init>", String.class, String[].class),
-    EVALUATE_METHOD = getAsmMethod(double.class, "evaluate", DoubleValues[].class);
+    EVALUATE_METHOD = getAsmMethod(double.class, "evaluate", DoubleValues[].class),
+    EVALUATE_BLOCK_METHOD = getAsmMethod(void.class, "evaluateBlock", double[][].class, int.class, double[].class);
 
   static final org.objectweb.asm.commons.Method DOUBLE_VAL_METHOD = getAsmMethod(double.class, "doubleValue");
   
@@ -245,7 +248,72 @@ public final class JavascriptCompiler {
     
     final GeneratorAdapter gen = new GeneratorAdapter(Opcodes.ACC_PUBLIC,
         EVALUATE_METHOD, null, null, classWriter);
-    
+    generateExpression(parseTree, gen, externalsMap, index -> {
+      gen.loadArg(0);
+      gen.push(index);
+      gen.arrayLoad(FUNCTION_VALUES_TYPE);
+      gen.invokeVirtual(FUNCTION_VALUES_TYPE, DOUBLE_VAL_METHOD);
+    });
+    gen.returnValue();
+    gen.endMethod();
+
+    generateEvaluateBlock(parseTree, classWriter, externalsMap);
+
+    classWriter.visitEnd();
+  }
+
+  /**
+   * Generates the method that evaluates the expression over blocks of
+   * values: it loads the values of each variable from arrays in a loop
+   * over documents, rather than calling {@link DoubleValues#doubleValue()}.
+   * The expression must have been generated once already, so that
+   * {@code externalsMap} has all variables.
+   */
+  private void generateEvaluateBlock(final ParseTree parseTree, final ClassWriter classWriter, final Map<String, Integer> externalsMap) throws ParseException {
+    final GeneratorAdapter gen = new GeneratorAdapter(Opcodes.ACC_PUBLIC,
+        EVALUATE_BLOCK_METHOD, null, null, classWriter);
+
+    // hoist the arrays of values of each variable out of the loop
+    final int[] valueArrays = new int[externalsMap.size()];
+    for (int index = 0; index < valueArrays.length; ++index) {
+      valueArrays[index] = gen.newLocal(DOUBLE_ARRAY_TYPE);
+      gen.loadArg(0);
+      gen.push(index);
+      gen.arrayLoad(DOUBLE_ARRAY_TYPE);
+      gen.storeLocal(valueArrays[index]);
+    }
+
+    // for (int doc = 0; doc < count; ++doc) results[doc] = <expression>;
+    final int doc = gen.newLocal(Type.INT_TYPE);
+    gen.push(0);
+    gen.storeLocal(doc);
+    final Label loop = gen.mark();
+    final Label end = new Label();
+    gen.loadLocal(doc);
+    gen.loadArg(1);
+    gen.ifICmp(GeneratorAdapter.GE, end);
+    gen.loadArg(2);
+    gen.loadLocal(doc);
+    generateExpression(parseTree, gen, externalsMap, index -> {
+      gen.loadLocal(valueArrays[index]);
+      gen.loadLocal(doc);
+      gen.arrayLoad(Type.DOUBLE_TYPE);
+    });
+    gen.arrayStore(Type.DOUBLE_TYPE);
+    gen.iinc(doc, 1);
+    gen.goTo(loop);
+    gen.mark(end);
+    gen.returnValue();
+    gen.endMethod();
+  }
+
+  /**
+   * Generates the code that computes the expression and leaves its value on
+   * the stack, {@code pushVariable} generates the code that pushes the value
+   * of the variable that has the given index.
+   */
+  private void generateExpression(final ParseTree parseTree, final GeneratorAdapter gen,
+      final Map<String, Integer> externalsMap, final IntConsumer pushVariable) throws ParseException {
     // to completely hide the ANTLR visitor we use an anonymous impl:
     new JavascriptBaseVisitor<Void>() {
       private final Deque<Type> typeStack = new ArrayDeque<>();
@@ -324,10 +392,7 @@ public final class JavascriptCompiler {
               externalsMap.put(text, index);
             }
   
-            gen.loadArg(0);
-            gen.push(index);
-            gen.arrayLoad(FUNCTION_VALUES_TYPE);
-            gen.invokeVirtual(FUNCTION_VALUES_TYPE, DOUBLE_VAL_METHOD);
+            pushVariable.accept(index);
             gen.cast(Type.DOUBLE_TYPE, typeStack.peek());
           } else {
             throw new ParseException("Invalid expression '" + sourceText + "': Unrecognized function call (" +
@@ -627,11 +692,6 @@ public final class JavascriptCompiler {
         }
       }
     }.visit(parseTree);
-    
-    gen.returnValue();
-    gen.endMethod();
-    
-    classWriter.visitEnd();
   }
 
   static String normalizeQuotes(String text) {
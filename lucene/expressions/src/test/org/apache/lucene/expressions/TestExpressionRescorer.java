@@ -25,15 +25,19 @@ import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Rescorer;
+import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.SortRescorer;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.similarities.ClassicSimilarity;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
 
 public class TestExpressionRescorer extends LuceneTestCase {
   IndexSearcher searcher;
@@ -117,4 +121,51 @@ public class TestExpressionRescorer extends LuceneTestCase {
     assertTrue(expl.contains("= first pass score"));
     assertTrue(expl.contains("body:contents in"));
   }
+
+  public void testSameAsSortRescorer() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter iw = new RandomIndexWriter(random(), dir);
+    int numDocs = atLeast(500);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(newTextField("body", random().nextBoolean() ? "contents" : "more contents contents", Field.Store.NO));
+      if (random().nextInt(10) != 0) {
+        doc.add(new NumericDocValuesField("popularity", random().nextInt(10)));
+      }
+      iw.addDocument(doc);
+    }
+    IndexReader r = iw.getReader();
+    iw.close();
+    IndexSearcher s = newSearcher(r);
+
+    Expression e = JavascriptCompiler.compile("popularity > 5 ? _score * popularity : ln(1 + popularity) - _score");
+    SimpleBindings bindings = new SimpleBindings();
+    bindings.add(new SortField("popularity", SortField.Type.INT));
+    bindings.add(new SortField("_score", SortField.Type.SCORE));
+
+    TopDocs hits = s.search(new TermQuery(new Term("body", "contents")), TestUtil.nextInt(random(), 1, numDocs));
+    int topN = hits.scoreDocs.length + random().nextInt(5);
+    TopDocs expected = new SortRescorer(new Sort(e.getSortField(bindings, true))).rescore(s, hits, topN);
+    TopDocs actual = e.getRescorer(bindings).rescore(s, hits, topN);
+    assertEquals(expected.totalHits, actual.totalHits);
+    assertEquals(expected.scoreDocs.length, actual.scoreDocs.length);
+    for (int i = 0; i < expected.scoreDocs.length; i++) {
+      FieldDoc expectedDoc = (FieldDoc) expected.scoreDocs[i];
+      FieldDoc actualDoc = (FieldDoc) actual.scoreDocs[i];
+      assertEquals(expectedDoc.doc, actualDoc.doc);
+      assertEquals(expectedDoc.score, actualDoc.score, 0f);
+      assertArrayEquals(expectedDoc.fields, actualDoc.fields);
+    }
+
+    // fewer hits than the first pass
+    topN = TestUtil.nextInt(random(), 1, hits.scoreDocs.length);
+    TopDocs top = e.getRescorer(bindings).rescore(s, hits, topN);
+    assertEquals(topN, top.scoreDocs.length);
+    for (int i = 0; i < topN; i++) {
+      assertEquals(expected.scoreDocs[i].doc, top.scoreDocs[i].doc);
+    }
+
+    r.close();
+    dir.close();
+  }
 }
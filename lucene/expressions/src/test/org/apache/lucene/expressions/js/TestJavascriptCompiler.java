@@ -19,7 +19,9 @@ package org.apache.lucene.expressions.js;
 import java.text.ParseException;
 
 import org.apache.lucene.expressions.Expression;
+import org.apache.lucene.search.DoubleValues;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
 
 public class TestJavascriptCompiler extends LuceneTestCase {
 
@@ -195,4 +197,40 @@ public class TestJavascriptCompiler extends LuceneTestCase {
     x = JavascriptCompiler.compile("foo['\\\\'][\"\\\\\"]");
     assertEquals("foo['\\\\']['\\\\']", x.variables[0]);
   }
+
+  public void testEvaluateBlock() throws Exception {
+    Expression e = JavascriptCompiler.compile("a > b ? a * 2 + c : max(b, c) - a");
+    int count = TestUtil.nextInt(random(), 1, 200);
+    double[][] values = new double[e.variables.length][count];
+    for (double[] variableValues : values) {
+      for (int i = 0; i < count; i++) {
+        variableValues[i] = random().nextInt(20) - 10;
+      }
+    }
+    double[] results = new double[count + 1];
+    results[count] = 42;
+    e.evaluateBlock(values, count, results);
+
+    int[] doc = new int[1];
+    DoubleValues[] functionValues = new DoubleValues[values.length];
+    for (int i = 0; i < values.length; i++) {
+      final double[] variableValues = values[i];
+      functionValues[i] = new DoubleValues() {
+        @Override
+        public double doubleValue() {
+          return variableValues[doc[0]];
+        }
+
+        @Override
+        public boolean advanceExact(int target) {
+          return true;
+        }
+      };
+    }
+    for (doc[0] = 0; doc[0] < count; doc[0]++) {
+      assertEquals(e.evaluate(functionValues), results[doc[0]], 0d);
+    }
+    // only the first count values are written
+    assertEquals(42, results[count], 0d);
+  }
 }
@@ -24,6 +24,11 @@ public class TestJavascriptOperations extends LuceneTestCase {
     Expression evaluator = JavascriptCompiler.compile(expression);
     long actual = (long)evaluator.evaluate(null);
     assertEquals(expected, actual);
+    double[] results = new double[2];
+    evaluator.evaluateBlock(new double[0][], results.length, results);
+    for (double result : results) {
+      assertEquals(expected, (long) result);
+    }
   }
   
   public void testNegationOperation() throws Exception {
@@ -171,6 +171,9 @@ public class ConcurrentSortedSetDocValuesFacetCounts extends Facets {
         return null;
       }
 
+      // ords of the current doc are read in bulk
+      final long[] ords = new long[64];
+
       // TODO: yet another option is to count all segs
       // first, only in seg-ord space, and then do a
       // merge-sort-PQ in the end to only "resolve to
@@ -196,22 +199,26 @@ public class ConcurrentSortedSetDocValuesFacetCounts extends Facets {
         if (hits != null && hits.totalHits < numSegOrds/10) {
           // Remap every ord to global ord as we iterate:
           for (int doc = it.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = it.nextDoc()) {
-            int term = (int) segValues.nextOrd();
-            while (term != SortedSetDocValues.NO_MORE_ORDS) {
-              counts.incrementAndGet((int) ordMap.get(term));
-              term = (int) segValues.nextOrd();
-            }
+            int numOrds;
+            do {
+              numOrds = segValues.nextOrds(ords, 0, ords.length);
+              for (int i = 0; i < numOrds; ++i) {
+                counts.incrementAndGet((int) ordMap.get(ords[i]));
+              }
+            } while (numOrds == ords.length);
           }
         } else {
 
           // First count in seg-ord space:
           final int[] segCounts = new int[numSegOrds];
           for (int doc = it.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = it.nextDoc()) {
-            int term = (int) segValues.nextOrd();
-            while (term != SortedSetDocValues.NO_MORE_ORDS) {
-              segCounts[term]++;
-              term = (int) segValues.nextOrd();
-            }
+            int numOrds;
+            do {
+              numOrds = segValues.nextOrds(ords, 0, ords.length);
+              for (int i = 0; i < numOrds; ++i) {
+                segCounts[(int) ords[i]]++;
+              }
+            } while (numOrds == ords.length);
           }
 
           // Then, migrate to global ords:
@@ -226,11 +233,13 @@ public class ConcurrentSortedSetDocValuesFacetCounts extends Facets {
         // No ord mapping (e.g., single segment index):
         // just aggregate directly into counts:
         for (int doc = it.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = it.nextDoc()) {
-          int term = (int) segValues.nextOrd();
-          while (term != SortedSetDocValues.NO_MORE_ORDS) {
-            counts.incrementAndGet(term);
-            term = (int) segValues.nextOrd();
-          }
+          int numOrds;
+          do {
+            numOrds = segValues.nextOrds(ords, 0, ords.length);
+            for (int i = 0; i < numOrds; ++i) {
+              counts.incrementAndGet((int) ords[i]);
+            }
+          } while (numOrds == ords.length);
         }
       }
       
@@ -20,7 +20,9 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.lucene.facet.FacetsConfig;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState.OrdRange;
@@ -34,9 +36,11 @@ import org.apache.lucene.index.MultiDocValues.MultiSortedSetDocValues;
 import org.apache.lucene.index.MultiDocValues;
 import org.apache.lucene.index.OrdinalMap;
 import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Accountables;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
 
 /**
  * Default implementation of {@link SortedSetDocValuesFacetCounts}. You must ensure the original
@@ -54,6 +58,9 @@ public class DefaultSortedSetDocValuesReaderState extends SortedSetDocValuesRead
 
   private final Map<String,OrdRange> prefixToOrdRange = new HashMap<>();
 
+  // OrdinalMap of the state this one refreshes, only used while building our own:
+  private OrdinalMap previousOrdMap;
+
   /** Creates this, pulling doc values from the default {@link
    *  FacetsConfig#DEFAULT_INDEX_FIELD_NAME}. */ 
   public DefaultSortedSetDocValuesReaderState(IndexReader reader) throws IOException {
@@ -63,12 +70,29 @@ public class DefaultSortedSetDocValuesReaderState extends SortedSetDocValuesRead
   /** Creates this, pulling doc values from the specified
    *  field. */
   public DefaultSortedSetDocValuesReaderState(IndexReader reader, String field) throws IOException {
+    this(reader, field, null);
+  }
+
+  /** Creates this, pulling doc values from the specified
+   *  field and reusing the global ordinals of {@code previous},
+   *  typically the state of the reader that {@code reader} was
+   *  reopened from, for the segments that both readers share.
+   *  This makes refreshing the state after a small change to the
+   *  index much cheaper than building it from scratch. {@code
+   *  previous} may be null. */
+  public DefaultSortedSetDocValuesReaderState(IndexReader reader, String field, DefaultSortedSetDocValuesReaderState previous) throws IOException {
     this.field = field;
     this.reader = reader;
+    if (previous != null && field.equals(previous.field)) {
+      synchronized (previous.cachedOrdMaps) {
+        previousOrdMap = previous.cachedOrdMaps.get(field);
+      }
+    }
 
     // We need this to create thread-safe MultiSortedSetDV
     // per collector:
     SortedSetDocValues dv = getDocValues();
+    previousOrdMap = null;
     if (dv == null) {
       throw new IllegalArgumentException("field \"" + field + "\" was not indexed with SortedSetDocValues");
     }
@@ -77,33 +101,75 @@ public class DefaultSortedSetDocValuesReaderState extends SortedSetDocValuesRead
     }
     valueCount = (int) dv.getValueCount();
 
-    // TODO: we can make this more efficient if eg we can be
-    // "involved" when OrdinalMap is being created?  Ie see
-    // each term/ord it's assigning as it goes...
-    String lastDim = null;
-    int startOrd = -1;
+    checkTwoLevelHierarchy(reader, field, previous);
+
+    // Terms are sorted by dim first, so each dim is a contiguous
+    // range of ords: instead of resolving every ord, we only look at
+    // the first term of each dim and then seek past all its values.
 
     // TODO: this approach can work for full hierarchy?;
     // TaxoReader can't do this since ords are not in
     // "sorted order" ... but we should generalize this to
     // support arbitrary hierarchy:
-    for(int ord=0;ord<valueCount;ord++) {
-      final BytesRef term = dv.lookupOrd(ord);
+    TermsEnum termsEnum = dv.termsEnum();
+    BytesRefBuilder nextDim = new BytesRefBuilder();
+    BytesRef term = termsEnum.next();
+    while (term != null) {
+      final int startOrd = (int) termsEnum.ord();
       String[] components = FacetsConfig.stringToPath(term.utf8ToString());
       if (components.length != 2) {
         throw new IllegalArgumentException("this class can only handle 2 level hierarchy (dim/value); got: " + Arrays.toString(components) + " " + term.utf8ToString());
       }
-      if (!components[0].equals(lastDim)) {
-        if (lastDim != null) {
-          prefixToOrdRange.put(lastDim, new OrdRange(startOrd, ord-1));
+      final String dim = components[0];
+
+      // All values of this dim share the encoded dim followed by the
+      // delimiter as a prefix; the smallest term that sorts after all
+      // of them has the delimiter byte incremented:
+      final int prefixLength = new BytesRef(FacetsConfig.pathToString(new String[] {dim})).length + 1;
+      nextDim.copyBytes(term.bytes, term.offset, prefixLength);
+      nextDim.setByteAt(prefixLength - 1, (byte) (nextDim.byteAt(prefixLength - 1) + 1));
+
+      final int endOrd;
+      if (termsEnum.seekCeil(nextDim.get()) == TermsEnum.SeekStatus.END) {
+        endOrd = valueCount - 1;
+        term = null;
+      } else {
+        endOrd = (int) termsEnum.ord() - 1;
+        term = termsEnum.term();
+      }
+      prefixToOrdRange.put(dim, new OrdRange(startOrd, endOrd));
+    }
+  }
+
+  /** Checks that all values of {@code field} are dim/value paths, skipping
+   *  the segments that {@code previous} already checked. */
+  private static void checkTwoLevelHierarchy(IndexReader reader, String field, DefaultSortedSetDocValuesReaderState previous) throws IOException {
+    final Set<IndexReader.CacheKey> checkedSegments = new HashSet<>();
+    if (previous != null && field.equals(previous.field)) {
+      for (LeafReaderContext context : previous.reader.leaves()) {
+        IndexReader.CacheHelper cacheHelper = context.reader().getCoreCacheHelper();
+        if (cacheHelper != null) {
+          checkedSegments.add(cacheHelper.getKey());
         }
-        startOrd = ord;
-        lastDim = components[0];
       }
     }
 
-    if (lastDim != null) {
-      prefixToOrdRange.put(lastDim, new OrdRange(startOrd, valueCount-1));
+    for (LeafReaderContext context : reader.leaves()) {
+      IndexReader.CacheHelper cacheHelper = context.reader().getCoreCacheHelper();
+      if (cacheHelper != null && checkedSegments.contains(cacheHelper.getKey())) {
+        continue;
+      }
+      SortedSetDocValues values = context.reader().getSortedSetDocValues(field);
+      if (values == null) {
+        continue;
+      }
+      TermsEnum termsEnum = values.termsEnum();
+      for (BytesRef term = termsEnum.next(); term != null; term = termsEnum.next()) {
+        String[] components = FacetsConfig.stringToPath(term.utf8ToString());
+        if (components.length != 2) {
+          throw new IllegalArgumentException("this class can only handle 2 level hierarchy (dim/value); got: " + Arrays.toString(components) + " " + term.utf8ToString());
+        }
+      }
     }
   }
 
@@ -151,7 +217,7 @@ public class DefaultSortedSetDocValuesReaderState extends SortedSetDocValuesRead
       map = cachedOrdMaps.get(field);
       if (map == null) {
         // uncached, or not a multi dv
-        SortedSetDocValues dv = MultiDocValues.getSortedSetValues(reader, field);
+        SortedSetDocValues dv = MultiDocValues.getSortedSetValues(reader, field, previousOrdMap);
         if (dv instanceof MultiDocValues.MultiSortedSetDocValues) {
           map = ((MultiDocValues.MultiSortedSetDocValues)dv).mapping;
           IndexReader.CacheHelper cacheHelper = reader.getReaderCacheHelper();
@@ -46,6 +46,9 @@ import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.LongValues;
 
+import com.carrotsearch.hppc.IntIntScatterMap;
+import com.carrotsearch.hppc.cursors.IntIntCursor;
+
 /** Compute facets counts from previously
  *  indexed {@link SortedSetDocValuesFacetField},
  *  without require a separate taxonomy index.  Faceting is
@@ -59,6 +62,10 @@ import org.apache.lucene.util.LongValues;
  *  <p><b>NOTE</b>: this class should be instantiated and
  *  then used from a single thread, because it holds a
  *  thread-private instance of {@link SortedSetDocValues}.
+ *
+ * <p>When the hits are a small fraction of the index, counts are
+ *  tallied in a sparse hash table instead of an array sized by the
+ *  number of unique labels, see {@link #useHashTable}.
  * 
  * <p><b>NOTE:</b>: tie-break is by unicode sort order
  *
@@ -69,6 +76,7 @@ public class SortedSetDocValuesFacetCounts extends Facets {
   final SortedSetDocValues dv;
   final String field;
   final int[] counts;
+  final IntIntScatterMap sparseCounts;
 
   /** Returns all facet counts, same result as searching on {@link MatchAllDocsQuery} but faster. */
   public SortedSetDocValuesFacetCounts(SortedSetDocValuesReaderState state)
@@ -82,7 +90,13 @@ public class SortedSetDocValuesFacetCounts extends Facets {
     this.state = state;
     this.field = state.getField();
     dv = state.getDocValues();    
-    counts = new int[state.getSize()];
+    if (useHashTable(hits, state)) {
+      sparseCounts = new IntIntScatterMap();
+      counts = null;
+    } else {
+      sparseCounts = null;
+      counts = new int[state.getSize()];
+    }
     if (hits == null) {
       // browse only
       countAll();
@@ -91,6 +105,45 @@ public class SortedSetDocValuesFacetCounts extends Facets {
     }
   }
 
+  /** Return true if a sparse hash table should be used for counting, instead of a dense int[]. */
+  protected boolean useHashTable(FacetsCollector hits, SortedSetDocValuesReaderState state) {
+    if (state.getSize() < 1024) {
+      // small number of unique values: use an array
+      return false;
+    }
+
+    if (hits == null) {
+      // counting all docs: use an array
+      return false;
+    }
+
+    int maxDoc = 0;
+    int sumTotalHits = 0;
+    for (MatchingDocs docs : hits.getMatchingDocs()) {
+      sumTotalHits += docs.totalHits;
+      maxDoc += docs.context.reader().maxDoc();
+    }
+
+    // if our result set is < 10% of the index, we collect sparsely (use hash map):
+    return sumTotalHits < maxDoc/10;
+  }
+
+  private void increment(int ord) {
+    if (sparseCounts != null) {
+      sparseCounts.addTo(ord, 1);
+    } else {
+      counts[ord]++;
+    }
+  }
+
+  private int getCount(int ord) {
+    if (sparseCounts != null) {
+      return sparseCounts.get(ord);
+    } else {
+      return counts[ord];
+    }
+  }
+
   @Override
   public FacetResult getTopChildren(int topN, String dim, String... path) throws IOException {
     if (topN <= 0) {
@@ -116,21 +169,23 @@ public class SortedSetDocValuesFacetCounts extends Facets {
     int childCount = 0;
 
     TopOrdAndIntQueue.OrdAndValue reuse = null;
-    //System.out.println("getDim : " + ordRange.start + " - " + ordRange.end);
-    for(int ord=ordRange.start; ord<=ordRange.end; ord++) {
-      //System.out.println("  ord=" + ord + " count=" + counts[ord]);
-      if (counts[ord] > 0) {
-        dimCount += counts[ord];
+    if (sparseCounts != null && sparseCounts.size() < ordRange.end - ordRange.start + 1) {
+      // fewer non-zero counts than ords in this dim: only visit those
+      for (IntIntCursor c : sparseCounts) {
+        final int ord = c.key;
+        final int count = c.value;
+        if (ord < ordRange.start || ord > ordRange.end) {
+          continue;
+        }
+        dimCount += count;
         childCount++;
-        if (counts[ord] > bottomCount) {
+        if (count > bottomCount || (count == bottomCount && q != null && ord < q.top().ord)) {
           if (reuse == null) {
             reuse = new TopOrdAndIntQueue.OrdAndValue();
           }
           reuse.ord = ord;
-          reuse.value = counts[ord];
+          reuse.value = count;
           if (q == null) {
-            // Lazy init, so we don't create this for the
-            // sparse case unnecessarily
             q = new TopOrdAndIntQueue(topN);
           }
           reuse = q.insertWithOverflow(reuse);
@@ -139,6 +194,32 @@ public class SortedSetDocValuesFacetCounts extends Facets {
           }
         }
       }
+    } else {
+      //System.out.println("getDim : " + ordRange.start + " - " + ordRange.end);
+      for(int ord=ordRange.start; ord<=ordRange.end; ord++) {
+        final int count = getCount(ord);
+        //System.out.println("  ord=" + ord + " count=" + count);
+        if (count > 0) {
+          dimCount += count;
+          childCount++;
+          if (count > bottomCount) {
+            if (reuse == null) {
+              reuse = new TopOrdAndIntQueue.OrdAndValue();
+            }
+            reuse.ord = ord;
+            reuse.value = count;
+            if (q == null) {
+              // Lazy init, so we don't create this for the
+              // sparse case unnecessarily
+              q = new TopOrdAndIntQueue(topN);
+            }
+            reuse = q.insertWithOverflow(reuse);
+            if (q.size() == topN) {
+              bottomCount = q.top().value;
+            }
+          }
+        }
+      }
     }
 
     if (q == null) {
@@ -163,6 +244,9 @@ public class SortedSetDocValuesFacetCounts extends Facets {
       return;
     }
 
+    // ords of the current doc are read in bulk
+    final long[] ords = new long[64];
+
     DocIdSetIterator it;
     if (hits == null) {
       it = segValues;
@@ -184,16 +268,33 @@ public class SortedSetDocValuesFacetCounts extends Facets {
 
       int numSegOrds = (int) segValues.getValueCount();
 
-      if (hits != null && hits.totalHits < numSegOrds/10) {
+      if (sparseCounts != null) {
+        // Count in seg-ord space first, then only resolve the
+        // seg ords that were actually hit to global ords:
+        final IntIntScatterMap segCounts = new IntIntScatterMap();
+        for (int doc = it.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = it.nextDoc()) {
+          int numOrds;
+          do {
+            numOrds = segValues.nextOrds(ords, 0, ords.length);
+            for (int i = 0; i < numOrds; ++i) {
+              segCounts.addTo((int) ords[i], 1);
+            }
+          } while (numOrds == ords.length);
+        }
+        for (IntIntCursor c : segCounts) {
+          sparseCounts.addTo((int) ordMap.get(c.key), c.value);
+        }
+      } else if (hits != null && hits.totalHits < numSegOrds/10) {
         //System.out.println("    remap as-we-go");
         // Remap every ord to global ord as we iterate:
         for (int doc = it.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = it.nextDoc()) {
-          int term = (int) segValues.nextOrd();
-          while (term != SortedSetDocValues.NO_MORE_ORDS) {
-            //System.out.println("      segOrd=" + segOrd + " ord=" + term + " globalOrd=" + ordinalMap.getGlobalOrd(segOrd, term));
-            counts[(int) ordMap.get(term)]++;
-            term = (int) segValues.nextOrd();
-          }
+          int numOrds;
+          do {
+            numOrds = segValues.nextOrds(ords, 0, ords.length);
+            for (int i = 0; i < numOrds; ++i) {
+              counts[(int) ordMap.get(ords[i])]++;
+            }
+          } while (numOrds == ords.length);
         }
       } else {
         //System.out.println("    count in seg ord first");
@@ -201,12 +302,13 @@ public class SortedSetDocValuesFacetCounts extends Facets {
         // First count in seg-ord space:
         final int[] segCounts = new int[numSegOrds];
         for (int doc = it.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = it.nextDoc()) {
-          int term = (int) segValues.nextOrd();
-          while (term != SortedSetDocValues.NO_MORE_ORDS) {
-            //System.out.println("      ord=" + term);
-            segCounts[term]++;
-            term = (int) segValues.nextOrd();
-          }
+          int numOrds;
+          do {
+            numOrds = segValues.nextOrds(ords, 0, ords.length);
+            for (int i = 0; i < numOrds; ++i) {
+              segCounts[(int) ords[i]]++;
+            }
+          } while (numOrds == ords.length);
         }
 
         // Then, migrate to global ords:
@@ -222,11 +324,13 @@ public class SortedSetDocValuesFacetCounts extends Facets {
       // No ord mapping (e.g., single segment index):
       // just aggregate directly into counts:
       for (int doc = it.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = it.nextDoc()) {
-        int term = (int) segValues.nextOrd();
-        while (term != SortedSetDocValues.NO_MORE_ORDS) {
-          counts[term]++;
-          term = (int) segValues.nextOrd();
-        }
+        int numOrds;
+        do {
+          numOrds = segValues.nextOrds(ords, 0, ords.length);
+          for (int i = 0; i < numOrds; ++i) {
+            increment((int) ords[i]);
+          }
+        } while (numOrds == ords.length);
       }
     }
 
@@ -294,7 +398,7 @@ public class SortedSetDocValuesFacetCounts extends Facets {
       return -1;
     }
 
-    return counts[ord];
+    return getCount(ord);
   }
 
   @Override
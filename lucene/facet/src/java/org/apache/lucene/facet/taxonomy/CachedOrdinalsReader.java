@@ -19,7 +19,7 @@ package org.apache.lucene.facet.taxonomy;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.lucene.codecs.DocValuesFormat;
 import org.apache.lucene.index.BinaryDocValues;
@@ -54,29 +54,38 @@ import org.apache.lucene.util.RamUsageEstimator;
  * <p>
  * <b>NOTE:</b> create one instance of this and re-use it
  * for all facet implementations (the cache is per-instance,
- * not static).
+ * not static). It may be used by concurrent searches:
+ * segments are cached without locking, and evicted when
+ * their core is closed.
  */
 public class CachedOrdinalsReader extends OrdinalsReader implements Accountable {
 
   private final OrdinalsReader source;
 
-  private final Map<Object,CachedOrds> ordsCache = new WeakHashMap<>();
+  private final Map<IndexReader.CacheKey,CachedOrds> ordsCache = new ConcurrentHashMap<>();
 
   /** Sole constructor. */
   public CachedOrdinalsReader(OrdinalsReader source) {
     this.source = source;
   }
 
-  private synchronized CachedOrds getCachedOrds(LeafReaderContext context) throws IOException {
+  private CachedOrds getCachedOrds(LeafReaderContext context) throws IOException {
     IndexReader.CacheHelper cacheHelper = context.reader().getCoreCacheHelper();
     if (cacheHelper == null) {
       throw new IllegalStateException("Cannot cache ordinals on leaf: " + context.reader());
     }
-    Object cacheKey = cacheHelper.getKey();
+    IndexReader.CacheKey cacheKey = cacheHelper.getKey();
     CachedOrds ords = ordsCache.get(cacheKey);
     if (ords == null) {
+      // decoded outside of any lock: concurrent searches may decode the same
+      // segment, but only one of them gets cached
       ords = new CachedOrds(source.getReader(context), context.reader().maxDoc());
-      ordsCache.put(cacheKey, ords);
+      CachedOrds previous = ordsCache.putIfAbsent(cacheKey, ords);
+      if (previous == null) {
+        cacheHelper.addClosedListener(ordsCache::remove);
+      } else {
+        ords = previous;
+      }
     }
 
     return ords;
@@ -155,7 +164,7 @@ public class CachedOrdinalsReader extends OrdinalsReader implements Accountable
   }
 
   @Override
-  public synchronized long ramBytesUsed() {
+  public long ramBytesUsed() {
     long bytes = 0;
     for(CachedOrds ords : ordsCache.values()) {
       bytes += ords.ramBytesUsed();
@@ -165,7 +174,7 @@ public class CachedOrdinalsReader extends OrdinalsReader implements Accountable
   }
   
   @Override
-  public synchronized Collection<Accountable> getChildResources() {
+  public Collection<Accountable> getChildResources() {
     return Accountables.namedAccountables("segment", ordsCache);
   }
 }
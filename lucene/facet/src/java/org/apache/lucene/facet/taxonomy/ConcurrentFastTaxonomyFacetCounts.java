@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.facet.taxonomy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+import org.apache.lucene.facet.FacetsCollector.MatchingDocs;
+import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.ConjunctionDISI;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.IOUtils;
+
+import com.carrotsearch.hppc.IntIntScatterMap;
+import com.carrotsearch.hppc.cursors.IntIntCursor;
+
+/** Like {@link FastTaxonomyFacetCounts}, but counts segments concurrently.
+ *  <p>
+ *  Every task counts into its own buffer, which is a dense {@code int[]} if
+ *  the segment has many hits compared to the size of the taxonomy, and a
+ *  sparse hash table otherwise. Buffers are reused across tasks, so there are
+ *  about as many of them as tasks that ran concurrently. Once all segments are
+ *  counted, dense buffers are summed in parallel, each task taking care of a
+ *  range of ordinals.
+ *
+ * @lucene.experimental */
+public class ConcurrentFastTaxonomyFacetCounts extends IntTaxonomyFacets {
+
+  /** Number of ordinals that a single task sums when merging dense buffers. */
+  private static final int MERGE_CHUNK_SIZE = 1 << 16;
+
+  private final ExecutorService exec;
+  private final int size;
+  private final Queue<int[]> denseBuffers = new ConcurrentLinkedQueue<>();
+  private final Queue<IntIntScatterMap> sparseBuffers = new ConcurrentLinkedQueue<>();
+
+  /** Create {@code ConcurrentFastTaxonomyFacetCounts}, which also
+   *  counts all facet labels. */
+  public ConcurrentFastTaxonomyFacetCounts(TaxonomyReader taxoReader, FacetsConfig config, FacetsCollector fc, ExecutorService exec)
+      throws IOException, InterruptedException {
+    this(FacetsConfig.DEFAULT_INDEX_FIELD_NAME, taxoReader, config, fc, exec);
+  }
+
+  /** Create {@code ConcurrentFastTaxonomyFacetCounts}, using the
+   *  specified {@code indexFieldName} for ordinals. */
+  public ConcurrentFastTaxonomyFacetCounts(String indexFieldName, TaxonomyReader taxoReader, FacetsConfig config, FacetsCollector fc,
+      ExecutorService exec) throws IOException, InterruptedException {
+    super(indexFieldName, taxoReader, config, fc);
+    this.exec = exec;
+    this.size = taxoReader.getSize();
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (MatchingDocs hits : fc.getMatchingDocs()) {
+      tasks.add(new CountOneSegment(hits.context, hits));
+    }
+    count(tasks);
+  }
+
+  /** Create {@code ConcurrentFastTaxonomyFacetCounts}, using the
+   *  specified {@code indexFieldName} for ordinals, and
+   *  counting all non-deleted documents in the index.  This is 
+   *  the same result as searching on {@link MatchAllDocsQuery},
+   *  but faster */
+  public ConcurrentFastTaxonomyFacetCounts(String indexFieldName, IndexReader reader, TaxonomyReader taxoReader, FacetsConfig config,
+      ExecutorService exec) throws IOException, InterruptedException {
+    super(indexFieldName, taxoReader, config, null);
+    this.exec = exec;
+    this.size = taxoReader.getSize();
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (LeafReaderContext context : reader.leaves()) {
+      tasks.add(new CountOneSegment(context, null));
+    }
+    count(tasks);
+  }
+
+  /** Return true if the given segment should be counted into a sparse hash
+   *  table rather than into a dense {@code int[]}. */
+  protected boolean useSegmentHashTable(MatchingDocs hits) {
+    // summing a dense buffer costs as much as the size of the taxonomy
+    return size >= 1024 && hits != null && hits.totalHits < size / 10;
+  }
+
+  private class CountOneSegment implements Callable<Void> {
+    final LeafReaderContext context;
+    final MatchingDocs hits;
+
+    CountOneSegment(LeafReaderContext context, MatchingDocs hits) {
+      this.context = context;
+      this.hits = hits;
+    }
+
+    @Override
+    public Void call() throws IOException {
+      BinaryDocValues dv = context.reader().getBinaryDocValues(indexFieldName);
+      if (dv == null) { // this reader does not have DocValues for the requested category list
+        return null;
+      }
+
+      DocIdSetIterator it;
+      Bits liveDocs;
+      if (hits == null) {
+        it = dv;
+        liveDocs = context.reader().getLiveDocs();
+      } else {
+        it = ConjunctionDISI.intersectIterators(Arrays.asList(hits.bits.iterator(), dv));
+        liveDocs = null;
+      }
+
+      if (useSegmentHashTable(hits)) {
+        IntIntScatterMap buffer = sparseBuffers.poll();
+        final IntIntScatterMap counts = buffer != null ? buffer : new IntIntScatterMap();
+        try {
+          countOrdinals(it, liveDocs, dv, ord -> counts.addTo(ord, 1));
+        } finally {
+          sparseBuffers.add(counts);
+        }
+      } else {
+        int[] buffer = denseBuffers.poll();
+        final int[] counts = buffer != null ? buffer : new int[size];
+        try {
+          countOrdinals(it, liveDocs, dv, ord -> counts[ord]++);
+        } finally {
+          denseBuffers.add(counts);
+        }
+      }
+      return null;
+    }
+  }
+
+  private static void countOrdinals(DocIdSetIterator it, Bits liveDocs, BinaryDocValues dv, IntConsumer consumer) throws IOException {
+    for (int doc = it.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = it.nextDoc()) {
+      if (liveDocs != null && liveDocs.get(doc) == false) {
+        continue;
+      }
+      FastTaxonomyFacetCounts.decodeOrdinals(dv.binaryValue(), consumer);
+    }
+  }
+
+  private void count(List<Callable<Void>> tasks) throws IOException, InterruptedException {
+    run(tasks);
+
+    for (IntIntScatterMap counts : sparseBuffers) {
+      for (IntIntCursor c : counts) {
+        increment(c.key, c.value);
+      }
+    }
+    sparseBuffers.clear();
+
+    if (denseBuffers.isEmpty() == false) {
+      final int[][] buffers = denseBuffers.toArray(new int[0][]);
+      denseBuffers.clear();
+      if (isSparse()) {
+        for (int[] counts : buffers) {
+          increment(counts, 0, size);
+        }
+      } else {
+        // ranges are disjoint so that tasks don't need to synchronize
+        List<Callable<Void>> mergeTasks = new ArrayList<>();
+        for (int from = 0; from < size; from += MERGE_CHUNK_SIZE) {
+          final int start = from;
+          final int end = Math.min(size, from + MERGE_CHUNK_SIZE);
+          mergeTasks.add(() -> {
+            for (int[] counts : buffers) {
+              increment(counts, start, end);
+            }
+            return null;
+          });
+        }
+        run(mergeTasks);
+      }
+    }
+
+    rollup();
+  }
+
+  private void run(List<Callable<Void>> tasks) throws IOException, InterruptedException {
+    if (tasks.size() == 1) {
+      // no need to fork a single task
+      try {
+        tasks.get(0).call();
+      } catch (Exception e) {
+        throw IOUtils.rethrowAlways(e);
+      }
+      return;
+    }
+    List<Future<Void>> results = new ArrayList<>();
+    for (Callable<Void> task : tasks) {
+      results.add(exec.submit(task));
+    }
+    for (Future<Void> result : results) {
+      try {
+        result.get();
+      } catch (ExecutionException ee) {
+        // Theoretically cause can be null; guard against that.
+        Throwable cause = ee.getCause();
+        throw IOUtils.rethrowAlways(cause != null ? cause : ee);
+      }
+    }
+  }
+}
@@ -19,6 +19,7 @@ package org.apache.lucene.facet.taxonomy;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.IntConsumer;
 
 import org.apache.lucene.facet.FacetsCollector.MatchingDocs;
 import org.apache.lucene.facet.FacetsCollector;
@@ -75,22 +76,7 @@ public class FastTaxonomyFacetCounts extends IntTaxonomyFacets {
           hits.bits.iterator(), dv));
       
       for (int doc = it.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = it.nextDoc()) {
-        final BytesRef bytesRef = dv.binaryValue();
-        byte[] bytes = bytesRef.bytes;
-        int end = bytesRef.offset + bytesRef.length;
-        int ord = 0;
-        int offset = bytesRef.offset;
-        int prev = 0;
-        while (offset < end) {
-          byte b = bytes[offset++];
-          if (b >= 0) {
-            prev = ord = ((ord << 7) | b) + prev;
-            increment(ord);
-            ord = 0;
-          } else {
-            ord = (ord << 7) | (b & 0x7F);
-          }
-        }
+        decodeOrdinals(dv.binaryValue(), this::increment);
       }
     }
 
@@ -110,25 +96,30 @@ public class FastTaxonomyFacetCounts extends IntTaxonomyFacets {
         if (liveDocs != null && liveDocs.get(doc) == false) {
           continue;
         }
-        final BytesRef bytesRef = dv.binaryValue();
-        byte[] bytes = bytesRef.bytes;
-        int end = bytesRef.offset + bytesRef.length;
-        int ord = 0;
-        int offset = bytesRef.offset;
-        int prev = 0;
-        while (offset < end) {
-          byte b = bytes[offset++];
-          if (b >= 0) {
-            prev = ord = ((ord << 7) | b) + prev;
-            increment(ord);
-            ord = 0;
-          } else {
-            ord = (ord << 7) | (b & 0x7F);
-          }
-        }
+        decodeOrdinals(dv.binaryValue(), this::increment);
       }
     }
 
     rollup();
   }
+
+  /** Decodes the ordinals of a document, which are encoded as deltas with
+   *  vInts, and passes each of them to {@code consumer}. */
+  static void decodeOrdinals(BytesRef bytesRef, IntConsumer consumer) {
+    byte[] bytes = bytesRef.bytes;
+    int end = bytesRef.offset + bytesRef.length;
+    int ord = 0;
+    int offset = bytesRef.offset;
+    int prev = 0;
+    while (offset < end) {
+      byte b = bytes[offset++];
+      if (b >= 0) {
+        prev = ord = ((ord << 7) | b) + prev;
+        consumer.accept(ord);
+        ord = 0;
+      } else {
+        ord = (ord << 7) | (b & 0x7F);
+      }
+    }
+  }
 }
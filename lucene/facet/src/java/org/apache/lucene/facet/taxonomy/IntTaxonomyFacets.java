@@ -89,6 +89,28 @@ public abstract class IntTaxonomyFacets extends TaxonomyFacets {
     }
   }
 
+  /** Return true if values are stored in a sparse hash table rather than in a dense int[]. */
+  boolean isSparse() {
+    return sparseValues != null;
+  }
+
+  /** Add {@code counts[ordinal]} to the value of every ordinal between
+   *  {@code from} inclusive and {@code to} exclusive. This may be called
+   *  concurrently on disjoint ranges if values are stored in a dense int[]. */
+  void increment(int[] counts, int from, int to) {
+    if (sparseValues != null) {
+      for (int ord = from; ord < to; ++ord) {
+        if (counts[ord] != 0) {
+          sparseValues.addTo(ord, counts[ord]);
+        }
+      }
+    } else {
+      for (int ord = from; ord < to; ++ord) {
+        values[ord] += counts[ord];
+      }
+    }
+  }
+
   private int getValue(int ordinal) {
     if (sparseValues != null) {
       return sparseValues.get(ordinal);
@@ -28,7 +28,9 @@ import org.apache.lucene.util.Counter;
 import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.lucene.util.UnicodeUtil;
 
-/** A "cache" that never frees memory, and stores labels in a BytesRefHash (utf-8 encoding). */
+/** A "cache" that never frees memory, and stores labels in a BytesRefHash (utf-8 encoding).
+ *  Labels are spread across stripes that are locked independently, so that
+ *  threads that look up labels concurrently rarely contend. */
 public final class UTF8TaxonomyWriterCache implements TaxonomyWriterCache, Accountable {
   private final ThreadLocal<BytesRefBuilder> bytes = new ThreadLocal<BytesRefBuilder>() {
       @Override
@@ -37,48 +39,48 @@ public final class UTF8TaxonomyWriterCache implements TaxonomyWriterCache, Accou
       }
     };
 
-  private final Counter bytesUsed = Counter.newCounter();
-  private final BytesRefHash map = new BytesRefHash(new ByteBlockPool(new DirectTrackingAllocator(bytesUsed)));
+  private final static int STRIPE_BITS = 4;
+  private final static int NUM_STRIPES = 1 << STRIPE_BITS;
 
-  private final static int PAGE_BITS = 16;
-  private final static int PAGE_SIZE = 1 << PAGE_BITS;
-  private final static int PAGE_MASK = PAGE_SIZE - 1;
-
-  private volatile int[][] ordinals;
-
-  // How many labels we are storing:
-  private int count;
+  private static final class Stripe {
+    final Counter bytesUsed = Counter.newCounter();
+    final BytesRefHash map = new BytesRefHash(new ByteBlockPool(new DirectTrackingAllocator(bytesUsed)));
+    // id in map -> ordinal
+    int[] ordinals = new int[16];
+  }
 
-  // How many pages in ordinals we've allocated:
-  private int pageCount;
+  private final Stripe[] stripes = new Stripe[NUM_STRIPES];
 
   /** Sole constructor. */
   public UTF8TaxonomyWriterCache() {
-    ordinals = new int[1][];
-    ordinals[0] = new int[PAGE_SIZE];
+    for (int i = 0; i < stripes.length; ++i) {
+      stripes[i] = new Stripe();
+    }
+  }
+
+  private Stripe stripe(FacetLabel label) {
+    // components usually have their hash code cached already, so this is cheaper than hashing
+    // the utf-8 bytes, the multiplication spreads entropy to the high bits
+    return stripes[(label.hashCode() * 0x9E3779B9) >>> (Integer.SIZE - STRIPE_BITS)];
   }
 
   @Override
   public int get(FacetLabel label) {
     BytesRef bytes = toBytes(label);
-    int id;
-    synchronized (this) {
-      id = map.find(bytes);
-    }
-    if (id == -1) {
-      return LabelToOrdinal.INVALID_ORDINAL;
+    Stripe stripe = stripe(label);
+    synchronized (stripe) {
+      int id = stripe.map.find(bytes);
+      if (id == -1) {
+        return LabelToOrdinal.INVALID_ORDINAL;
+      }
+      return stripe.ordinals[id];
     }
-    int page = id >>> PAGE_BITS;
-    int offset = id & PAGE_MASK;
-    return ordinals[page][offset];
   }
 
   // Called only from assert
-  private boolean assertSameOrdinal(FacetLabel label, int id, int ord) {
+  private static boolean assertSameOrdinal(FacetLabel label, Stripe stripe, int id, int ord) {
     id = -id - 1;
-    int page = id >>> PAGE_BITS;
-    int offset = id & PAGE_MASK;
-    int oldOrd = ordinals[page][offset];
+    int oldOrd = stripe.ordinals[id];
     if (oldOrd != ord) {
       throw new IllegalArgumentException("label " + label + " was already cached, with old ord=" + oldOrd + " versus new ord=" + ord);
     }
@@ -88,27 +90,17 @@ public final class UTF8TaxonomyWriterCache implements TaxonomyWriterCache, Accou
   @Override
   public boolean put(FacetLabel label, int ord) {
     BytesRef bytes = toBytes(label);
-    int id;
-    synchronized (this) {
-      id = map.add(bytes);
+    Stripe stripe = stripe(label);
+    synchronized (stripe) {
+      int id = stripe.map.add(bytes);
       if (id < 0) {
-        assert assertSameOrdinal(label, id, ord);
+        assert assertSameOrdinal(label, stripe, id, ord);
         return false;
       }
-      assert id == count;
-      int page = id >>> PAGE_BITS;
-      int offset = id & PAGE_MASK;
-      if (page == pageCount) {
-        if (page == ordinals.length) {
-          int[][] newOrdinals = new int[ArrayUtil.oversize(page+1, RamUsageEstimator.NUM_BYTES_OBJECT_REF)][];
-          System.arraycopy(ordinals, 0, newOrdinals, 0, ordinals.length);
-          ordinals = newOrdinals;
-        }
-        ordinals[page] = new int[PAGE_SIZE];
-        pageCount++;
+      if (id == stripe.ordinals.length) {
+        stripe.ordinals = ArrayUtil.grow(stripe.ordinals, id + 1);
       }
-      ordinals[page][offset] = ord;
-      count++;
+      stripe.ordinals[id] = ord;
 
       // we never prune from the cache
       return false;
@@ -122,24 +114,37 @@ public final class UTF8TaxonomyWriterCache implements TaxonomyWriterCache, Accou
   }
 
   @Override
-  public synchronized void clear() {
-    map.clear();
-    map.reinit();
-    ordinals = new int[1][];
-    ordinals[0] = new int[PAGE_SIZE];
-    count = 0;
-    pageCount = 0;
-    assert bytesUsed.get() == 0;
+  public void clear() {
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        stripe.map.clear();
+        stripe.map.reinit();
+        stripe.ordinals = new int[16];
+        assert stripe.bytesUsed.get() == 0;
+      }
+    }
   }
     
   /** How many labels are currently stored in the cache. */
   public int size() {
-    return count;
+    int size = 0;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        size += stripe.map.size();
+      }
+    }
+    return size;
   }
   
   @Override
-  public synchronized long ramBytesUsed() {
-    return bytesUsed.get() + pageCount * PAGE_SIZE * Integer.BYTES;
+  public long ramBytesUsed() {
+    long ramBytesUsed = 0;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        ramBytesUsed += stripe.bytesUsed.get() + RamUsageEstimator.sizeOf(stripe.ordinals);
+      }
+    }
+    return ramBytesUsed;
   }
     
   @Override
@@ -29,6 +29,8 @@ import java.util.concurrent.TimeUnit;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StringField;
 import org.apache.lucene.facet.DrillDownQuery;
 import org.apache.lucene.facet.FacetResult;
 import org.apache.lucene.facet.FacetTestCase;
@@ -45,6 +47,7 @@ import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.NamedThreadFactory;
 import org.apache.lucene.util.TestUtil;
@@ -345,6 +348,120 @@ public class TestSortedSetDocValuesFacets extends FacetTestCase {
     IOUtils.close(searcher.getIndexReader(), indexDir, taxoDir);
   }
 
+  public void testSparseCountsAndRefreshedState() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    FacetsConfig config = new FacetsConfig();
+    int numDims = TestUtil.nextInt(random(), 1, 4);
+
+    // enough unique labels for the hash table to kick in:
+    int numDocs = atLeast(3000);
+    for (int i = 0; i < numDocs; i++) {
+      w.addDocument(config.build(newSparseDoc(i, numDims)));
+      if (random().nextInt(500) == 0) {
+        w.commit();
+      }
+    }
+
+    IndexReader reader = w.getReader();
+    DefaultSortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(reader);
+    assertSparseCounts(newSearcher(reader), state, numDims);
+
+    // add a few docs, some of which introduce new labels, and refresh the
+    // state from the previous one:
+    for (int i = 0; i < atLeast(20); i++) {
+      w.addDocument(config.build(newSparseDoc(random().nextInt(2 * numDocs), numDims)));
+    }
+    if (random().nextBoolean()) {
+      w.deleteDocuments(new Term("content", "rare"));
+    }
+    IndexReader newReader = w.getReader();
+    DefaultSortedSetDocValuesReaderState newState = new DefaultSortedSetDocValuesReaderState(newReader, FacetsConfig.DEFAULT_INDEX_FIELD_NAME, state);
+    DefaultSortedSetDocValuesReaderState freshState = new DefaultSortedSetDocValuesReaderState(newReader);
+    assertEquals(freshState.getSize(), newState.getSize());
+    assertEquals(freshState.getPrefixToOrdRange().size(), newState.getPrefixToOrdRange().size());
+    for (Map.Entry<String,SortedSetDocValuesReaderState.OrdRange> ent : freshState.getPrefixToOrdRange().entrySet()) {
+      SortedSetDocValuesReaderState.OrdRange range = newState.getOrdRange(ent.getKey());
+      assertEquals(ent.getValue().start, range.start);
+      assertEquals(ent.getValue().end, range.end);
+    }
+    IndexSearcher newSearcher = newSearcher(newReader);
+    assertSparseCounts(newSearcher, newState, numDims);
+    assertEquals(new SortedSetDocValuesFacetCounts(freshState).getAllDims(10),
+                 new SortedSetDocValuesFacetCounts(newState).getAllDims(10));
+
+    w.close();
+    IOUtils.close(reader, newReader, dir);
+  }
+
+  public void testDeeperHierarchyRejected() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    w.addDocument(newPathDoc("a", "b"));
+    w.addDocument(newPathDoc("a", "d"));
+    w.commit();
+    IndexReader reader = w.getReader();
+    DefaultSortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(reader);
+
+    // sorts between a/b and a/d, so it is neither the first nor the last value of its dim
+    w.addDocument(newPathDoc("a", "b", "c"));
+    IndexReader newReader = w.getReader();
+    IllegalArgumentException expected = expectThrows(IllegalArgumentException.class,
+        () -> new DefaultSortedSetDocValuesReaderState(newReader));
+    assertTrue(expected.getMessage().contains("can only handle 2 level hierarchy"));
+    expected = expectThrows(IllegalArgumentException.class,
+        () -> new DefaultSortedSetDocValuesReaderState(newReader, FacetsConfig.DEFAULT_INDEX_FIELD_NAME, state));
+    assertTrue(expected.getMessage().contains("can only handle 2 level hierarchy"));
+
+    w.close();
+    IOUtils.close(reader, newReader, dir);
+  }
+
+  private static Document newPathDoc(String... path) {
+    Document doc = new Document();
+    doc.add(new SortedSetDocValuesField(FacetsConfig.DEFAULT_INDEX_FIELD_NAME, new BytesRef(FacetsConfig.pathToString(path))));
+    return doc;
+  }
+
+  private static Document newSparseDoc(int i, int numDims) {
+    Document doc = new Document();
+    doc.add(new StringField("content", random().nextInt(50) == 0 ? "rare" : "common", Field.Store.NO));
+    for (int j = 0; j < numDims; j++) {
+      if (random().nextInt(10) != 0) {
+        doc.add(new SortedSetDocValuesFacetField("dim" + j, "value" + (random().nextBoolean() ? i : i % 7)));
+      }
+    }
+    return doc;
+  }
+
+  // checks that counting sparsely, in a hash table, gives the same results as dense counting
+  private static void assertSparseCounts(IndexSearcher searcher, SortedSetDocValuesReaderState state, int numDims) throws IOException {
+    FacetsCollector fc = new FacetsCollector();
+    FacetsCollector.search(searcher, new TermQuery(new Term("content", "rare")), 10, fc);
+    SortedSetDocValuesFacetCounts sparse = new SortedSetDocValuesFacetCounts(state, fc) {
+      @Override
+      protected boolean useHashTable(FacetsCollector hits, SortedSetDocValuesReaderState state) {
+        return true;
+      }
+    };
+    SortedSetDocValuesFacetCounts dense = new SortedSetDocValuesFacetCounts(state, fc) {
+      @Override
+      protected boolean useHashTable(FacetsCollector hits, SortedSetDocValuesReaderState state) {
+        return false;
+      }
+    };
+    int topN = TestUtil.nextInt(random(), 1, 20);
+    assertEquals(dense.getAllDims(topN), sparse.getAllDims(topN));
+    for (int j = 0; j < numDims; j++) {
+      if (state.getOrdRange("dim" + j) != null) {
+        assertEquals(dense.getTopChildren(topN, "dim" + j), sparse.getTopChildren(topN, "dim" + j));
+      }
+      for (int k = 0; k < 7; k++) {
+        assertEquals(dense.getSpecificValue("dim" + j, "value" + k), sparse.getSpecificValue("dim" + j, "value" + k));
+      }
+    }
+  }
+
   private static Facets getAllFacets(IndexSearcher searcher, SortedSetDocValuesReaderState state,
                                      ExecutorService exec) throws IOException, InterruptedException {
     if (random().nextBoolean()) {
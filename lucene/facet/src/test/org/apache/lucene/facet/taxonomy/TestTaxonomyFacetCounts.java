@@ -25,6 +25,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.lucene.analysis.MockAnalyzer;
 import org.apache.lucene.document.Document;
@@ -55,6 +59,7 @@ import org.apache.lucene.search.similarities.PerFieldSimilarityWrapper;
 import org.apache.lucene.search.similarities.Similarity;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.NamedThreadFactory;
 import org.apache.lucene.util.TestUtil;
 
 public class TestTaxonomyFacetCounts extends FacetTestCase {
@@ -726,6 +731,67 @@ public class TestTaxonomyFacetCounts extends FacetTestCase {
     IOUtils.close(tw, searcher.getIndexReader(), tr, indexDir, taxoDir);
   }
 
+  public void testRandomConcurrent() throws Exception {
+    Directory indexDir = newDirectory();
+    Directory taxoDir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), indexDir);
+    DirectoryTaxonomyWriter tw = new DirectoryTaxonomyWriter(taxoDir);
+    FacetsConfig config = new FacetsConfig();
+    config.setHierarchical("tree", true);
+    config.setMultiValued("multi", true);
+    // large taxonomies make segments count into hash tables
+    final int numLabels = random().nextBoolean() ? 10 : 2000;
+    int numDocs = atLeast(2000);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(newStringField("content", random().nextBoolean() ? "a" : "b", Field.Store.NO));
+      if (random().nextInt(10) != 0) {
+        doc.add(new FacetField("flat", Integer.toString(random().nextInt(numLabels))));
+      }
+      doc.add(new FacetField("tree", Integer.toString(random().nextInt(5)), Integer.toString(random().nextInt(numLabels))));
+      for (int j = random().nextInt(3); j > 0; --j) {
+        doc.add(new FacetField("multi", Integer.toString(random().nextInt(numLabels))));
+      }
+      w.addDocument(config.build(tw, doc));
+      if (rarely()) {
+        w.commit();
+      }
+    }
+    if (random().nextBoolean()) {
+      w.deleteDocuments(new Term("content", "b"));
+    }
+
+    IndexSearcher searcher = newSearcher(w.getReader());
+    TaxonomyReader tr = new DirectoryTaxonomyReader(tw);
+    ExecutorService exec = new ThreadPoolExecutor(1, TestUtil.nextInt(random(), 2, 6), Long.MAX_VALUE, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("TestTaxonomyFacetCounts"));
+
+    for (int iter = 0, iters = atLeast(10); iter < iters; iter++) {
+      Facets expected, actual;
+      if (iter == 0) {
+        expected = new FastTaxonomyFacetCounts(FacetsConfig.DEFAULT_INDEX_FIELD_NAME, searcher.getIndexReader(), tr, config);
+        actual = new ConcurrentFastTaxonomyFacetCounts(FacetsConfig.DEFAULT_INDEX_FIELD_NAME, searcher.getIndexReader(), tr, config, exec);
+      } else {
+        FacetsCollector fc = new FacetsCollector();
+        Query query = random().nextBoolean() ? new MatchAllDocsQuery() : new TermQuery(new Term("content", "a"));
+        FacetsCollector.search(searcher, query, 10, fc);
+        expected = new FastTaxonomyFacetCounts(tr, config, fc);
+        actual = new ConcurrentFastTaxonomyFacetCounts(tr, config, fc, exec);
+      }
+      assertEquals(expected.getAllDims(10), actual.getAllDims(10));
+      for (int i = 0; i < 5; ++i) {
+        assertEquals(expected.getTopChildren(10, "tree", Integer.toString(i)), actual.getTopChildren(10, "tree", Integer.toString(i)));
+      }
+      assertEquals(expected.getSpecificValue("tree"), actual.getSpecificValue("tree"));
+      String label = Integer.toString(random().nextInt(numLabels));
+      assertEquals(expected.getSpecificValue("flat", label), actual.getSpecificValue("flat", label));
+    }
+
+    exec.shutdownNow();
+    w.close();
+    IOUtils.close(tw, searcher.getIndexReader(), tr, indexDir, taxoDir);
+  }
+
   private static Facets getAllFacets(String indexFieldName, IndexSearcher searcher, TaxonomyReader taxoReader, FacetsConfig config) throws IOException {
     if (random().nextBoolean()) {
       // Aggregate the facet counts:
@@ -22,6 +22,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 
 import org.apache.lucene.facet.FacetTestCase;
 import org.apache.lucene.facet.taxonomy.FacetLabel;
@@ -109,6 +110,47 @@ public class TestUTF8TaxonomyWriterCache extends FacetTestCase {
     }
   }
 
+  public void testConcurrent() throws Exception {
+    UTF8TaxonomyWriterCache cache = new UTF8TaxonomyWriterCache();
+    final int numThreads = TestUtil.nextInt(random(), 2, 5);
+    final int numLabels = atLeast(10000);
+    final CountDownLatch start = new CountDownLatch(1);
+    Thread[] threads = new Thread[numThreads];
+    for (int t = 0; t < numThreads; t++) {
+      final int thread = t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+          }
+          // every thread adds its own labels, and looks up the labels of other threads
+          for (int i = thread; i < numLabels; i += numThreads) {
+            cache.put(new FacetLabel("a", Integer.toString(i)), i);
+            assertEquals(i, cache.get(new FacetLabel("a", Integer.toString(i))));
+            int other = i - thread;
+            int ord = cache.get(new FacetLabel("a", Integer.toString(other)));
+            assertTrue(ord == other || ord == LabelToOrdinal.INVALID_ORDINAL);
+          }
+        }
+      };
+      threads[t].start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(numLabels, cache.size());
+    for (int i = 0; i < numLabels; i++) {
+      assertEquals(i, cache.get(new FacetLabel("a", Integer.toString(i))));
+    }
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertEquals(LabelToOrdinal.INVALID_ORDINAL, cache.get(new FacetLabel("a", "0")));
+  }
+
   private static class LabelToOrdinalMap extends LabelToOrdinal {
     private Map<FacetLabel, Integer> map = new HashMap<>();
 
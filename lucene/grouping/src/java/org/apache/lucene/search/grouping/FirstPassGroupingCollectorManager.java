@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search.grouping;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.Sort;
+
+/**
+ * A {@link CollectorManager} that runs a {@link FirstPassGroupingCollector} per slice of an
+ * {@link org.apache.lucene.search.IndexSearcher} and merges their top groups with
+ * {@link SearchGroup#merge}, so that the first pass can be executed concurrently.
+ *
+ * @param <T> the type of the group value
+ *
+ * @lucene.experimental
+ */
+public class FirstPassGroupingCollectorManager<T> implements CollectorManager<FirstPassGroupingCollector<T>, Collection<SearchGroup<T>>> {
+
+  private final Supplier<GroupSelector<T>> groupSelectorFactory;
+  private final Sort groupSort;
+  private final int groupOffset;
+  private final int topNGroups;
+
+  /**
+   * Create a new FirstPassGroupingCollectorManager
+   * @param groupSelectorFactory creates a new GroupSelector for each collector, since they are stateful
+   * @param groupSort            the {@link Sort} used to sort the groups
+   * @param groupOffset          the offset in the merged top groups
+   * @param topNGroups           how many top groups to return from the offset
+   */
+  public FirstPassGroupingCollectorManager(Supplier<GroupSelector<T>> groupSelectorFactory, Sort groupSort, int groupOffset, int topNGroups) {
+    if (groupOffset < 0) {
+      throw new IllegalArgumentException("groupOffset must be >= 0 (got " + groupOffset + ")");
+    }
+    if (topNGroups < 1) {
+      throw new IllegalArgumentException("topNGroups must be >= 1 (got " + topNGroups + ")");
+    }
+    this.groupSelectorFactory = Objects.requireNonNull(groupSelectorFactory);
+    this.groupSort = Objects.requireNonNull(groupSort);
+    this.groupOffset = groupOffset;
+    this.topNGroups = topNGroups;
+  }
+
+  @Override
+  public FirstPassGroupingCollector<T> newCollector() {
+    return new FirstPassGroupingCollector<>(groupSelectorFactory.get(), groupSort, groupOffset + topNGroups);
+  }
+
+  /**
+   * Returns the merged top groups, starting from the offset, or null if the number of unique groups
+   * is &lt;= offset.
+   */
+  @Override
+  public Collection<SearchGroup<T>> reduce(Collection<FirstPassGroupingCollector<T>> collectors) throws IOException {
+    if (collectors.size() == 1) {
+      return collectors.iterator().next().getTopGroups(groupOffset);
+    }
+    List<Collection<SearchGroup<T>>> topGroups = new ArrayList<>(collectors.size());
+    for (FirstPassGroupingCollector<T> collector : collectors) {
+      Collection<SearchGroup<T>> groups = collector.getTopGroups(0);
+      if (groups != null) {
+        topGroups.add(groups);
+      }
+    }
+    return SearchGroup.merge(topGroups, groupOffset, topNGroups, groupSort);
+  }
+}
@@ -19,13 +19,18 @@ package org.apache.lucene.search.grouping;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 
 import org.apache.lucene.queries.function.ValueSource;
 import org.apache.lucene.search.CachingCollector;
 import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MultiCollector;
+import org.apache.lucene.search.MultiCollectorManager;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreMode;
 import org.apache.lucene.search.Sort;
@@ -43,6 +48,8 @@ import org.apache.lucene.util.mutable.MutableValue;
 public class GroupingSearch {
 
   private final GroupSelector grouper;
+  private final Supplier<GroupSelector> grouperFactory;
+  private final String groupField;
   private final Query groupEndDocs;
 
   private Sort groupSort = Sort.RELEVANCE;
@@ -57,6 +64,7 @@ public class GroupingSearch {
   private boolean cacheScores;
   private boolean allGroups;
   private boolean allGroupHeads;
+  private boolean singlePass;
 
   private Collection<?> matchingGroups;
   private Bits matchingGroupHeads;
@@ -68,7 +76,7 @@ public class GroupingSearch {
    * @param groupField The name of the field to group by.
    */
   public GroupingSearch(String groupField) {
-    this(new TermGroupSelector(groupField), null);
+    this(() -> new TermGroupSelector(groupField), groupField, null);
   }
 
   /**
@@ -79,7 +87,7 @@ public class GroupingSearch {
    * @param valueSourceContext The context of the specified groupFunction
    */
   public GroupingSearch(ValueSource groupFunction, Map<?, ?> valueSourceContext) {
-    this(new ValueSourceGroupSelector(groupFunction, valueSourceContext), null);
+    this(() -> new ValueSourceGroupSelector(groupFunction, valueSourceContext), null, null);
   }
 
   /**
@@ -89,11 +97,13 @@ public class GroupingSearch {
    * @param groupEndDocs The query that marks the last document in all doc blocks
    */
   public GroupingSearch(Query groupEndDocs) {
-    this(null, groupEndDocs);
+    this(null, null, groupEndDocs);
   }
 
-  private GroupingSearch(GroupSelector grouper, Query groupEndDocs) {
-    this.grouper = grouper;
+  private GroupingSearch(Supplier<GroupSelector> grouperFactory, String groupField, Query groupEndDocs) {
+    this.grouperFactory = grouperFactory;
+    this.grouper = grouperFactory == null ? null : grouperFactory.get();
+    this.groupField = groupField;
     this.groupEndDocs = groupEndDocs;
   }
 
@@ -120,6 +130,15 @@ public class GroupingSearch {
 
   @SuppressWarnings({"unchecked", "rawtypes"})
   protected TopGroups groupByFieldOrFunction(IndexSearcher searcher, Query query, int groupOffset, int groupLimit) throws IOException {
+    final boolean caching = maxCacheRAMMB != null || maxDocsToCache != null;
+    if (singlePass && groupField != null && Sort.RELEVANCE.equals(groupSort) && Sort.RELEVANCE.equals(sortWithinGroup)
+        && caching == false && allGroupHeads == false) {
+      return groupByFieldInSinglePass(searcher, query, groupOffset, groupLimit);
+    }
+    if (searcher.getSlices() != null && caching == false && allGroupHeads == false) {
+      return groupByFieldOrFunctionConcurrently(searcher, query, groupOffset, groupLimit);
+    }
+
     int topN = groupOffset + groupLimit;
 
     final FirstPassGroupingCollector firstPassCollector = new FirstPassGroupingCollector(grouper, groupSort, topN);
@@ -167,6 +186,67 @@ public class GroupingSearch {
     }
   }
 
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private TopGroups groupByFieldOrFunctionConcurrently(IndexSearcher searcher, Query query, int groupOffset, int groupLimit) throws IOException {
+    final Supplier<GroupSelector<Object>> grouperFactory = (Supplier) this.grouperFactory;
+    final FirstPassGroupingCollectorManager<Object> firstPass
+        = new FirstPassGroupingCollectorManager<>(grouperFactory, groupSort, groupOffset, groupLimit);
+    final Collection<SearchGroup<Object>> topSearchGroups;
+    if (allGroups) {
+      Object[] results = searcher.search(query, new MultiCollectorManager(firstPass, new CollectorManager<AllGroupsCollector<Object>, Collection<Object>>() {
+        @Override
+        public AllGroupsCollector<Object> newCollector() {
+          return new AllGroupsCollector<>(grouperFactory.get());
+        }
+
+        @Override
+        public Collection<Object> reduce(Collection<AllGroupsCollector<Object>> collectors) {
+          Set<Object> groups = new HashSet<>();
+          for (AllGroupsCollector<Object> collector : collectors) {
+            groups.addAll(collector.getGroups());
+          }
+          return groups;
+        }
+      }));
+      topSearchGroups = (Collection<SearchGroup<Object>>) results[0];
+      matchingGroups = (Collection<?>) results[1];
+    } else {
+      topSearchGroups = searcher.search(query, firstPass);
+      matchingGroups = Collections.emptyList();
+    }
+    matchingGroupHeads = new Bits.MatchNoBits(searcher.getIndexReader().maxDoc());
+
+    if (topSearchGroups == null) {
+      return new TopGroups(new SortField[0], new SortField[0], 0, 0, new GroupDocs[0], Float.NaN);
+    }
+
+    TopGroups<Object> topGroups = searcher.search(query, new TopGroupsCollectorManager<>(grouperFactory, topSearchGroups,
+        groupSort, sortWithinGroup, groupDocsOffset, groupDocsOffset + groupDocsLimit, includeMaxScore));
+    if (allGroups) {
+      return new TopGroups(topGroups, matchingGroups.size());
+    } else {
+      return topGroups;
+    }
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private TopGroups groupByFieldInSinglePass(IndexSearcher searcher, Query query, int groupOffset, int groupLimit) throws IOException {
+    SinglePassGroupingCollectorManager manager = new SinglePassGroupingCollectorManager(groupField, groupOffset, groupLimit,
+        groupDocsOffset, groupDocsOffset + groupDocsLimit);
+    TopGroups<BytesRef> topGroups = searcher.search(query, manager);
+    matchingGroups = allGroups ? manager.getAllGroups() : Collections.emptyList();
+    matchingGroupHeads = new Bits.MatchNoBits(searcher.getIndexReader().maxDoc());
+
+    if (topGroups == null) {
+      return new TopGroups(new SortField[0], new SortField[0], 0, 0, new GroupDocs[0], Float.NaN);
+    }
+    if (allGroups) {
+      return new TopGroups(topGroups, matchingGroups.size());
+    } else {
+      return topGroups;
+    }
+  }
+
   protected TopGroups<?> groupByDocBlock(IndexSearcher searcher, Query query, int groupOffset, int groupLimit) throws IOException {
     int topN = groupOffset + groupLimit;
     final Query endDocsQuery = searcher.rewrite(this.groupEndDocs);
@@ -277,6 +357,24 @@ public class GroupingSearch {
     return this;
   }
 
+  /**
+   * Whether to collect groups and the documents within groups in a single pass over the matching documents,
+   * instead of first computing the top groups and then their documents. This is only possible when grouping by
+   * field, when both groups and documents within groups are sorted by relevance and when neither caching nor
+   * {@link #setAllGroupHeads(boolean) all group heads} are enabled, and is ignored otherwise.
+   * <p>
+   * The query is only executed once, but the top documents of all groups, rather than just the top groups,
+   * are tracked, see {@link SinglePassGroupingCollector}. This is typically faster for expensive queries or
+   * fields with few unique values, while two passes are faster for cheap queries that match many groups.
+   *
+   * @param singlePass Whether to group in a single pass
+   * @return <code>this</code>
+   */
+  public GroupingSearch setSinglePass(boolean singlePass) {
+    this.singlePass = singlePass;
+    return this;
+  }
+
   /**
    * Whether to also compute all groups matching the query.
    * This can be used to determine the number of groups, which can be used for accurate pagination.
@@ -0,0 +1,469 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search.grouping;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.search.Scorable;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefHash;
+import org.apache.lucene.util.PriorityQueue;
+
+/**
+ * Collects the top groups of a {@link SortedDocValues} field and the top documents of each group in a
+ * single pass, when both groups and documents within groups are sorted by relevance. This computes the
+ * same {@link TopGroups} as a {@link FirstPassGroupingCollector} followed by a {@link TopGroupsCollector}
+ * with {@link Sort#RELEVANCE} for both sorts, without running the query twice.
+ * <p>
+ * The top documents of every group that is encountered are kept, since any group may make it to the top
+ * groups until all documents have been collected. They are kept in bounded per-group heaps that live in
+ * flat primitive arrays indexed by group slot, so the memory usage is about {@code 8 * maxDocsPerGroup}
+ * bytes per unique group. Within a segment, groups are keyed by ordinal; their values are only resolved,
+ * in ordinal order, once the segment is done. Documents that don't have a value go to the {@code null} group.
+ * <p>
+ * Use {@link SinglePassGroupingCollectorManager} to collect concurrently.
+ *
+ * @lucene.experimental
+ */
+public class SinglePassGroupingCollector extends SimpleCollector {
+
+  private static final int NULL_SLOT = 0;
+
+  private final String groupField;
+  private final int maxDocsPerGroup;
+
+  // resolved group values, and the slot of each of them:
+  private final BytesRefHash groupValues = new BytesRefHash();
+  private int[] idToSlot = new int[0];
+
+  // per group slot:
+  private int numSlots;
+  private int[] slotToId = new int[0];
+  private int[] groupHitCounts = new int[0];
+  private float[] groupMaxScores = new float[0];
+  private int[] groupTopDocs = new int[0];
+  private int[] heapSizes = new int[0];
+  // per group slot, maxDocsPerGroup entries: a min-heap of the group's top docs, least competitive first
+  private float[] heapScores = new float[0];
+  private int[] heapDocs = new int[0];
+
+  // slots that were released when their group turned out to exist already:
+  private int[] freeSlots = new int[0];
+  private int numFreeSlots;
+
+  private int totalHitCount;
+
+  // groups of the current segment whose value is not resolved yet:
+  private final OrdToSlotMap ordToSlot = new OrdToSlotMap();
+  private long[] pendingOrdsAndSlots = new long[0];
+  private int numPending;
+  private SortedDocValues docValues;
+  private Scorable scorer;
+  private int docBase;
+
+  /**
+   * Create a new SinglePassGroupingCollector
+   * @param groupField      the {@link SortedDocValues} field to group by
+   * @param maxDocsPerGroup the maximum number of docs to collect for each group
+   */
+  public SinglePassGroupingCollector(String groupField, int maxDocsPerGroup) {
+    if (maxDocsPerGroup < 1) {
+      throw new IllegalArgumentException("maxDocsPerGroup must be >= 1 (got " + maxDocsPerGroup + ")");
+    }
+    // the heaps of the null group and of at least one other group must fit in a single array
+    if (maxDocsPerGroup > ArrayUtil.MAX_ARRAY_LENGTH / 2) {
+      throw new IllegalArgumentException("maxDocsPerGroup must be <= " + (ArrayUtil.MAX_ARRAY_LENGTH / 2) + " (got " + maxDocsPerGroup + ")");
+    }
+    this.groupField = groupField;
+    this.maxDocsPerGroup = maxDocsPerGroup;
+    final int nullSlot = newSlot();
+    assert nullSlot == NULL_SLOT;
+  }
+
+  @Override
+  public ScoreMode scoreMode() {
+    return ScoreMode.COMPLETE;
+  }
+
+  @Override
+  public void setScorer(Scorable scorer) throws IOException {
+    this.scorer = scorer;
+  }
+
+  @Override
+  protected void doSetNextReader(LeafReaderContext context) throws IOException {
+    resolvePendingGroups();
+    docValues = DocValues.getSorted(context.reader(), groupField);
+    docBase = context.docBase;
+  }
+
+  @Override
+  public void collect(int doc) throws IOException {
+    totalHitCount++;
+    int slot;
+    if (docValues.advanceExact(doc)) {
+      final int ord = docValues.ordValue();
+      slot = ordToSlot.get(ord);
+      if (slot == -1) {
+        slot = newSlot();
+        ordToSlot.put(ord, slot);
+        if (numPending == pendingOrdsAndSlots.length) {
+          pendingOrdsAndSlots = ArrayUtil.grow(pendingOrdsAndSlots, numPending + 1);
+        }
+        pendingOrdsAndSlots[numPending++] = ((long) ord << 32) | slot;
+      }
+    } else {
+      slot = NULL_SLOT;
+    }
+    collect(slot, scorer.score(), docBase + doc);
+  }
+
+  /** Looks up the values of the groups of the current segment, in ord order, and merges groups that already existed. */
+  private void resolvePendingGroups() throws IOException {
+    if (numPending == 0) {
+      return;
+    }
+    Arrays.sort(pendingOrdsAndSlots, 0, numPending);
+    for (int i = 0; i < numPending; i++) {
+      final int ord = (int) (pendingOrdsAndSlots[i] >>> 32);
+      final int slot = (int) pendingOrdsAndSlots[i];
+      int id = groupValues.add(docValues.lookupOrd(ord));
+      if (id >= 0) {
+        if (id == idToSlot.length) {
+          idToSlot = ArrayUtil.grow(idToSlot, id + 1);
+        }
+        idToSlot[id] = slot;
+        slotToId[slot] = id;
+      } else {
+        id = -1 - id;
+        mergeSlot(slot, this, idToSlot[id]);
+        releaseSlot(slot);
+      }
+    }
+    numPending = 0;
+    ordToSlot.clear();
+  }
+
+  /** Returns the total number of collected hits. */
+  public int getTotalHitCount() {
+    return totalHitCount;
+  }
+
+  /** Returns the number of unique groups of the collected hits. */
+  public int getGroupCount() throws IOException {
+    resolvePendingGroups();
+    return groupValues.size() + (groupHitCounts[NULL_SLOT] > 0 ? 1 : 0);
+  }
+
+  /** Returns the unique groups of the collected hits, {@code null} stands for documents without a value. */
+  public Collection<BytesRef> getGroups() throws IOException {
+    List<BytesRef> groups = new ArrayList<>(getGroupCount());
+    if (groupHitCounts[NULL_SLOT] > 0) {
+      groups.add(null);
+    }
+    for (int id = 0; id < groupValues.size(); id++) {
+      groups.add(BytesRef.deepCopyOf(groupValues.get(id, new BytesRef())));
+    }
+    return groups;
+  }
+
+  private BytesRef groupValue(int slot, BytesRef scratch) {
+    return slot == NULL_SLOT ? null : groupValues.get(slotToId[slot], scratch);
+  }
+
+  private int newSlot() {
+    if (numFreeSlots > 0) {
+      return freeSlots[--numFreeSlots];
+    }
+    final int maxSlots = ArrayUtil.MAX_ARRAY_LENGTH / maxDocsPerGroup;
+    if (numSlots >= maxSlots) {
+      throw new IllegalStateException("Cannot collect more than " + (maxSlots - 1) + " groups with maxDocsPerGroup=" + maxDocsPerGroup);
+    }
+    final int slot = numSlots++;
+    if (groupHitCounts.length < numSlots) {
+      final int newLength = ArrayUtil.oversize(numSlots, Integer.BYTES);
+      final int newHeapLength = Math.min(newLength, maxSlots) * maxDocsPerGroup;
+      slotToId = ArrayUtil.growExact(slotToId, newLength);
+      groupHitCounts = ArrayUtil.growExact(groupHitCounts, newLength);
+      groupMaxScores = ArrayUtil.growExact(groupMaxScores, newLength);
+      groupTopDocs = ArrayUtil.growExact(groupTopDocs, newLength);
+      heapSizes = ArrayUtil.growExact(heapSizes, newLength);
+      heapScores = ArrayUtil.growExact(heapScores, newHeapLength);
+      heapDocs = ArrayUtil.growExact(heapDocs, newHeapLength);
+    }
+    slotToId[slot] = -1;
+    return slot;
+  }
+
+  private void releaseSlot(int slot) {
+    groupHitCounts[slot] = 0;
+    heapSizes[slot] = 0;
+    slotToId[slot] = -1;
+    if (numFreeSlots == freeSlots.length) {
+      freeSlots = ArrayUtil.grow(freeSlots, numFreeSlots + 1);
+    }
+    freeSlots[numFreeSlots++] = slot;
+  }
+
+  // true if (score1, doc1) sorts after (score2, doc2): by descending score, then ascending doc
+  private static boolean lessCompetitive(float score1, int doc1, float score2, int doc2) {
+    return score1 < score2 || (score1 == score2 && doc1 > doc2);
+  }
+
+  private void collect(int slot, float score, int doc) {
+    if (groupHitCounts[slot]++ == 0 || lessCompetitive(groupMaxScores[slot], groupTopDocs[slot], score, doc)) {
+      groupMaxScores[slot] = score;
+      groupTopDocs[slot] = doc;
+    }
+    offer(slot, score, doc);
+  }
+
+  /** Adds the hits of {@code fromSlot} of {@code from} to {@code slot}. */
+  private void mergeSlot(int fromSlot, SinglePassGroupingCollector from, int slot) {
+    if (groupHitCounts[slot] == 0
+        || lessCompetitive(groupMaxScores[slot], groupTopDocs[slot], from.groupMaxScores[fromSlot], from.groupTopDocs[fromSlot])) {
+      groupMaxScores[slot] = from.groupMaxScores[fromSlot];
+      groupTopDocs[slot] = from.groupTopDocs[fromSlot];
+    }
+    groupHitCounts[slot] += from.groupHitCounts[fromSlot];
+    final int fromBase = fromSlot * maxDocsPerGroup;
+    for (int i = 0; i < from.heapSizes[fromSlot]; i++) {
+      offer(slot, from.heapScores[fromBase + i], from.heapDocs[fromBase + i]);
+    }
+  }
+
+  private void offer(int slot, float score, int doc) {
+    final int base = slot * maxDocsPerGroup;
+    final int size = heapSizes[slot];
+    if (size < maxDocsPerGroup) {
+      heapSizes[slot] = size + 1;
+      upHeap(base, size, score, doc);
+    } else if (lessCompetitive(heapScores[base], heapDocs[base], score, doc)) {
+      downHeap(base, size, score, doc);
+    }
+  }
+
+  private void upHeap(int base, int i, float score, int doc) {
+    while (i > 0) {
+      final int parent = (i - 1) >>> 1;
+      if (lessCompetitive(score, doc, heapScores[base + parent], heapDocs[base + parent]) == false) {
+        break;
+      }
+      heapScores[base + i] = heapScores[base + parent];
+      heapDocs[base + i] = heapDocs[base + parent];
+      i = parent;
+    }
+    heapScores[base + i] = score;
+    heapDocs[base + i] = doc;
+  }
+
+  // replaces the least competitive entry of the heap
+  private void downHeap(int base, int size, float score, int doc) {
+    int i = 0;
+    while (true) {
+      int child = 2 * i + 1;
+      if (child >= size) {
+        break;
+      }
+      if (child + 1 < size && lessCompetitive(heapScores[base + child + 1], heapDocs[base + child + 1], heapScores[base + child], heapDocs[base + child])) {
+        child++;
+      }
+      if (lessCompetitive(heapScores[base + child], heapDocs[base + child], score, doc) == false) {
+        break;
+      }
+      heapScores[base + i] = heapScores[base + child];
+      heapDocs[base + i] = heapDocs[base + child];
+      i = child;
+    }
+    heapScores[base + i] = score;
+    heapDocs[base + i] = doc;
+  }
+
+  /** Adds the groups and documents collected by {@code other}, for instance on another slice of the index. */
+  public void merge(SinglePassGroupingCollector other) throws IOException {
+    if (maxDocsPerGroup != other.maxDocsPerGroup) {
+      throw new IllegalArgumentException("maxDocsPerGroup differs: " + maxDocsPerGroup + " != " + other.maxDocsPerGroup);
+    }
+    resolvePendingGroups();
+    other.resolvePendingGroups();
+    totalHitCount += other.totalHitCount;
+    BytesRef scratch = new BytesRef();
+    for (int otherSlot = 0; otherSlot < other.numSlots; otherSlot++) {
+      if (other.groupHitCounts[otherSlot] == 0) {
+        continue;
+      }
+      final int slot;
+      if (otherSlot == NULL_SLOT) {
+        slot = NULL_SLOT;
+      } else {
+        int id = groupValues.add(other.groupValue(otherSlot, scratch));
+        if (id >= 0) {
+          slot = newSlot();
+          if (id == idToSlot.length) {
+            idToSlot = ArrayUtil.grow(idToSlot, id + 1);
+          }
+          idToSlot[id] = slot;
+          slotToId[slot] = id;
+        } else {
+          slot = idToSlot[-1 - id];
+        }
+      }
+      mergeSlot(otherSlot, other, slot);
+    }
+  }
+
+  /**
+   * Returns the top groups, starting from {@code groupOffset}, and their top documents, starting from
+   * {@code withinGroupOffset}. This returns null if the number of unique groups is &lt;= groupOffset.
+   */
+  public TopGroups<BytesRef> getTopGroups(int groupOffset, int topNGroups, int withinGroupOffset) throws IOException {
+    if (groupOffset < 0) {
+      throw new IllegalArgumentException("groupOffset must be >= 0 (got " + groupOffset + ")");
+    }
+    if (topNGroups < 1) {
+      throw new IllegalArgumentException("topNGroups must be >= 1 (got " + topNGroups + ")");
+    }
+    resolvePendingGroups();
+    final int queueSize = (int) Math.min(numSlots, (long) groupOffset + topNGroups);
+    PriorityQueue<Integer> queue = new PriorityQueue<Integer>(queueSize) {
+      @Override
+      protected boolean lessThan(Integer a, Integer b) {
+        return lessCompetitive(groupMaxScores[a], groupTopDocs[a], groupMaxScores[b], groupTopDocs[b]);
+      }
+    };
+    for (int slot = 0; slot < numSlots; slot++) {
+      if (groupHitCounts[slot] > 0) {
+        queue.insertWithOverflow(slot);
+      }
+    }
+    if (queue.size() <= groupOffset) {
+      return null;
+    }
+
+    @SuppressWarnings({"unchecked","rawtypes"})
+    final GroupDocs<BytesRef>[] groupDocs = new GroupDocs[queue.size() - groupOffset];
+    int totalGroupedHitCount = 0;
+    float maxScore = Float.MIN_VALUE;
+    // the queue pops the least competitive group first
+    for (int i = queue.size() - 1; i >= groupOffset; i--) {
+      final int slot = queue.pop();
+      final ScoreDoc[] scoreDocs = sortedDocs(slot);
+      final float groupMaxScore = groupMaxScores[slot];
+      final BytesRef groupValue = slot == NULL_SLOT ? null : BytesRef.deepCopyOf(groupValue(slot, new BytesRef()));
+      groupDocs[i - groupOffset] = new GroupDocs<>(Float.NaN,
+          groupMaxScore,
+          new TotalHits(groupHitCounts[slot], TotalHits.Relation.EQUAL_TO),
+          withinGroupOffset >= scoreDocs.length ? new ScoreDoc[0] : ArrayUtil.copyOfSubArray(scoreDocs, withinGroupOffset, scoreDocs.length),
+          groupValue,
+          new Object[] { groupMaxScore });
+      totalGroupedHitCount += groupHitCounts[slot];
+      maxScore = Math.max(maxScore, groupMaxScore);
+    }
+    return new TopGroups<>(Sort.RELEVANCE.getSort(), Sort.RELEVANCE.getSort(),
+        totalHitCount, totalGroupedHitCount, groupDocs, maxScore);
+  }
+
+  private ScoreDoc[] sortedDocs(int slot) {
+    final int base = slot * maxDocsPerGroup;
+    final ScoreDoc[] scoreDocs = new ScoreDoc[heapSizes[slot]];
+    for (int i = 0; i < scoreDocs.length; i++) {
+      scoreDocs[i] = new ScoreDoc(heapDocs[base + i], heapScores[base + i]);
+    }
+    Arrays.sort(scoreDocs, (a, b) -> {
+      if (a.score != b.score) {
+        return Float.compare(b.score, a.score);
+      }
+      return Integer.compare(a.doc, b.doc);
+    });
+    return scoreDocs;
+  }
+
+  /** Maps the ordinals of the current segment to group slots. */
+  private static class OrdToSlotMap {
+
+    private int[] keys = new int[16];
+    private int[] values = new int[16];
+    private int size;
+    private int mask = keys.length - 1;
+
+    OrdToSlotMap() {
+      Arrays.fill(keys, -1);
+    }
+
+    void clear() {
+      Arrays.fill(keys, -1);
+      size = 0;
+    }
+
+    private static int hash(int ord) {
+      return ord * 0x9E3779B9;
+    }
+
+    /** Returns the slot of the given ordinal, or -1 if it is not mapped yet. */
+    int get(int ord) {
+      for (int i = hash(ord) & mask; ; i = (i + 1) & mask) {
+        final int key = keys[i];
+        if (key == ord) {
+          return values[i];
+        } else if (key == -1) {
+          return -1;
+        }
+      }
+    }
+
+    void put(int ord, int slot) {
+      if (size >= keys.length >>> 1) {
+        rehash();
+      }
+      int i = hash(ord) & mask;
+      while (keys[i] != -1) {
+        i = (i + 1) & mask;
+      }
+      keys[i] = ord;
+      values[i] = slot;
+      size++;
+    }
+
+    private void rehash() {
+      final int[] oldKeys = keys;
+      final int[] oldValues = values;
+      keys = new int[oldKeys.length << 1];
+      values = new int[oldValues.length << 1];
+      Arrays.fill(keys, -1);
+      mask = keys.length - 1;
+      size = 0;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldKeys[i] != -1) {
+          put(oldKeys[i], oldValues[i]);
+        }
+      }
+    }
+  }
+}
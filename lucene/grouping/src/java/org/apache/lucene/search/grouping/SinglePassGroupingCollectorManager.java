@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search.grouping;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * A {@link CollectorManager} that runs a {@link SinglePassGroupingCollector} per slice of an
+ * {@link org.apache.lucene.search.IndexSearcher} and merges their groups.
+ *
+ * @lucene.experimental
+ */
+public class SinglePassGroupingCollectorManager implements CollectorManager<SinglePassGroupingCollector, TopGroups<BytesRef>> {
+
+  private final String groupField;
+  private final int groupOffset;
+  private final int topNGroups;
+  private final int withinGroupOffset;
+  private final int maxDocsPerGroup;
+
+  private SinglePassGroupingCollector merged;
+
+  /**
+   * Create a new SinglePassGroupingCollectorManager
+   * @param groupField        the {@link org.apache.lucene.index.SortedDocValues} field to group by
+   * @param groupOffset       the offset in the top groups
+   * @param topNGroups        how many top groups to return from the offset
+   * @param withinGroupOffset the offset within each group to start returning documents
+   * @param maxDocsPerGroup   the maximum number of docs to collect for each group, including the offset
+   */
+  public SinglePassGroupingCollectorManager(String groupField, int groupOffset, int topNGroups, int withinGroupOffset, int maxDocsPerGroup) {
+    this.groupField = groupField;
+    this.groupOffset = groupOffset;
+    this.topNGroups = topNGroups;
+    this.withinGroupOffset = withinGroupOffset;
+    this.maxDocsPerGroup = maxDocsPerGroup;
+  }
+
+  @Override
+  public SinglePassGroupingCollector newCollector() {
+    return new SinglePassGroupingCollector(groupField, maxDocsPerGroup);
+  }
+
+  /**
+   * Returns the top groups, see {@link SinglePassGroupingCollector#getTopGroups(int, int, int)}.
+   */
+  @Override
+  public TopGroups<BytesRef> reduce(Collection<SinglePassGroupingCollector> collectors) throws IOException {
+    Iterator<SinglePassGroupingCollector> it = collectors.iterator();
+    SinglePassGroupingCollector merged = it.next();
+    while (it.hasNext()) {
+      merged.merge(it.next());
+    }
+    this.merged = merged;
+    return merged.getTopGroups(groupOffset, topNGroups, withinGroupOffset);
+  }
+
+  /**
+   * Returns the number of unique groups of the hits of the last search with this manager, or -1
+   * if it has not been used yet.
+   */
+  public int getTotalGroupCount() throws IOException {
+    return merged == null ? -1 : merged.getGroupCount();
+  }
+
+  /**
+   * Returns the unique groups of the hits of the last search with this manager, or null if it has
+   * not been used yet.
+   */
+  public Collection<BytesRef> getAllGroups() throws IOException {
+    return merged == null ? null : merged.getGroups();
+  }
+}
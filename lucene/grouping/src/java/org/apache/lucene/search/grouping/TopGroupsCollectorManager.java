@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search.grouping;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.Sort;
+
+/**
+ * A {@link CollectorManager} that runs a {@link TopGroupsCollector} per slice of an
+ * {@link org.apache.lucene.search.IndexSearcher} and merges the documents of each group with
+ * {@link TopGroups#merge}, so that the second pass can be executed concurrently.
+ *
+ * @param <T> the type of the group value
+ *
+ * @lucene.experimental
+ */
+public class TopGroupsCollectorManager<T> implements CollectorManager<TopGroupsCollector<T>, TopGroups<T>> {
+
+  private final Supplier<GroupSelector<T>> groupSelectorFactory;
+  private final Collection<SearchGroup<T>> groups;
+  private final Sort groupSort;
+  private final Sort withinGroupSort;
+  private final int withinGroupOffset;
+  private final int maxDocsPerGroup;
+  private final boolean getMaxScores;
+
+  /**
+   * Create a new TopGroupsCollectorManager
+   * @param groupSelectorFactory creates a new GroupSelector for each collector, since they are stateful
+   * @param groups               the groups to collect TopDocs for
+   * @param groupSort            the order in which groups are returned
+   * @param withinGroupSort      the order in which documents are sorted in each group
+   * @param withinGroupOffset    the offset within each group to start returning documents
+   * @param maxDocsPerGroup      the maximum number of docs to collect for each group, including the offset
+   * @param getMaxScores         if true, record the maximum score for each group
+   */
+  public TopGroupsCollectorManager(Supplier<GroupSelector<T>> groupSelectorFactory, Collection<SearchGroup<T>> groups,
+                                   Sort groupSort, Sort withinGroupSort, int withinGroupOffset, int maxDocsPerGroup,
+                                   boolean getMaxScores) {
+    if (groups.isEmpty()) {
+      throw new IllegalArgumentException("no groups to collect (groups is empty)");
+    }
+    this.groupSelectorFactory = Objects.requireNonNull(groupSelectorFactory);
+    this.groups = groups;
+    this.groupSort = Objects.requireNonNull(groupSort);
+    this.withinGroupSort = Objects.requireNonNull(withinGroupSort);
+    this.withinGroupOffset = withinGroupOffset;
+    this.maxDocsPerGroup = maxDocsPerGroup;
+    this.getMaxScores = getMaxScores;
+  }
+
+  @Override
+  public TopGroupsCollector<T> newCollector() {
+    return new TopGroupsCollector<>(groupSelectorFactory.get(), groups, groupSort, withinGroupSort, maxDocsPerGroup, getMaxScores);
+  }
+
+  @Override
+  public TopGroups<T> reduce(Collection<TopGroupsCollector<T>> collectors) throws IOException {
+    if (collectors.size() == 1) {
+      return collectors.iterator().next().getTopGroups(withinGroupOffset);
+    }
+    @SuppressWarnings({"unchecked","rawtypes"})
+    final TopGroups<T>[] shardGroups = new TopGroups[collectors.size()];
+    int i = 0;
+    for (TopGroupsCollector<T> collector : collectors) {
+      shardGroups[i++] = collector.getTopGroups(0);
+    }
+    return TopGroups.merge(shardGroups, groupSort, withinGroupSort, withinGroupOffset,
+        maxDocsPerGroup - withinGroupOffset, TopGroups.ScoreMergeMode.None);
+  }
+}
@@ -23,6 +23,7 @@ import org.apache.lucene.document.FieldType;
 import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queries.function.ValueSource;
@@ -30,11 +31,14 @@ import org.apache.lucene.queries.function.valuesource.BytesRefFieldSource;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.similarities.BM25Similarity;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
 import org.apache.lucene.util.mutable.MutableValueStr;
 
 import java.util.ArrayList;
@@ -244,4 +248,81 @@ public class GroupingSearchTest extends LuceneTestCase {
     indexSearcher.getIndexReader().close();
     dir.close();
   }
+
+  public void testSinglePassAndConcurrentSearch() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    int numGroups = TestUtil.nextInt(random(), 1, 100);
+    int numDocs = atLeast(500);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      StringBuilder content = new StringBuilder();
+      for (int j = random().nextInt(10); j >= 0; j--) {
+        content.append(random().nextBoolean() ? "foo " : "bar ");
+        content.append("w").append(random().nextInt(5)).append(' ');
+      }
+      doc.add(new TextField("content", content.toString(), Field.Store.NO));
+      if (random().nextInt(20) != 0) {
+        doc.add(new SortedDocValuesField("group", new BytesRef("g" + random().nextInt(numGroups))));
+      }
+      doc.add(new SortedDocValuesField("sort", new BytesRef("s" + random().nextInt(50))));
+      w.addDocument(doc);
+    }
+    IndexReader reader = w.getReader();
+    w.close();
+    // may search concurrently:
+    IndexSearcher searcher = newSearcher(reader);
+    // the expected results come from a sequential two-pass search
+    IndexSearcher sequentialSearcher = new IndexSearcher(reader);
+    sequentialSearcher.setSimilarity(searcher.getSimilarity());
+
+    for (int iter = 0; iter < 20; iter++) {
+      Query query = new TermQuery(new Term("content", random().nextBoolean() ? "foo" : "w" + random().nextInt(5)));
+      int groupOffset = random().nextInt(5);
+      int groupLimit = TestUtil.nextInt(random(), 1, 20);
+      boolean relevance = random().nextBoolean();
+      GroupingSearch groupingSearch = new GroupingSearch("group")
+          .setGroupDocsOffset(random().nextInt(3))
+          .setGroupDocsLimit(TestUtil.nextInt(random(), 1, 5))
+          .setAllGroups(random().nextBoolean());
+      if (relevance == false) {
+        groupingSearch.setGroupSort(new Sort(new SortField("sort", SortField.Type.STRING), SortField.FIELD_SCORE));
+        groupingSearch.setSortWithinGroup(new Sort(new SortField("sort", SortField.Type.STRING, true), SortField.FIELD_DOC));
+      }
+
+      TopGroups<BytesRef> expected = groupingSearch.search(sequentialSearcher, query, groupOffset, groupLimit);
+      int expectedGroupCount = groupingSearch.getAllMatchingGroups().size();
+      groupingSearch.setSinglePass(random().nextBoolean());
+      TopGroups<BytesRef> actual = groupingSearch.search(searcher, query, groupOffset, groupLimit);
+      assertEquals(expectedGroupCount, groupingSearch.getAllMatchingGroups().size());
+
+      assertEquals(expected.totalHitCount, actual.totalHitCount);
+      assertEquals(expected.totalGroupedHitCount, actual.totalGroupedHitCount);
+      assertEquals(expected.totalGroupCount, actual.totalGroupCount);
+      assertEquals(expected.groups.length, actual.groups.length);
+      for (int i = 0; i < expected.groups.length; i++) {
+        GroupDocs<BytesRef> expectedGroup = expected.groups[i];
+        GroupDocs<BytesRef> actualGroup = actual.groups[i];
+        assertEquals(expectedGroup.groupValue, actualGroup.groupValue);
+        assertArrayEquals(expectedGroup.groupSortValues, actualGroup.groupSortValues);
+        assertEquals(expectedGroup.totalHits, actualGroup.totalHits);
+        assertEquals(expectedGroup.scoreDocs.length, actualGroup.scoreDocs.length);
+        for (int j = 0; j < expectedGroup.scoreDocs.length; j++) {
+          assertEquals(expectedGroup.scoreDocs[j].doc, actualGroup.scoreDocs[j].doc);
+          assertEquals(expectedGroup.scoreDocs[j].score, actualGroup.scoreDocs[j].score, 0f);
+        }
+      }
+    }
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testSinglePassTooManyDocsPerGroup() {
+    IllegalArgumentException e = expectThrows(IllegalArgumentException.class,
+        () -> new SinglePassGroupingCollector("group", Integer.MAX_VALUE));
+    assertTrue(e.getMessage().startsWith("maxDocsPerGroup must be <= "));
+    expectThrows(IllegalArgumentException.class,
+        () -> new SinglePassGroupingCollector("group", ArrayUtil.MAX_ARRAY_LENGTH / 2 + 1));
+  }
 }
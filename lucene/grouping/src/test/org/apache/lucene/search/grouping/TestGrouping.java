@@ -190,6 +190,28 @@ public class TestGrouping extends LuceneTestCase {
     dir.close();
   }
 
+  public void testMergeWithoutMaxScores() {
+    final Sort docSort = new Sort(new SortField("sort", SortField.Type.INT));
+    final int numShards = TestUtil.nextInt(random(), 1, 5);
+    @SuppressWarnings({"unchecked","rawtypes"})
+    final TopGroups<BytesRef>[] shards = new TopGroups[numShards];
+    for (int shardIDX = 0; shardIDX < numShards; shardIDX++) {
+      @SuppressWarnings({"unchecked","rawtypes"})
+      final GroupDocs<BytesRef>[] groups = new GroupDocs[] {
+          new GroupDocs<>(Float.NaN, Float.NaN, new TotalHits(1, TotalHits.Relation.EQUAL_TO),
+              new ScoreDoc[] {new FieldDoc(shardIDX, Float.NaN, new Object[] {shardIDX})},
+              new BytesRef("group"), new Object[] {new BytesRef("group")})
+      };
+      shards[shardIDX] = new TopGroups<>(Sort.INDEXORDER.getSort(), docSort.getSort(), 1, 1, groups, Float.NaN);
+    }
+
+    final TopGroups<BytesRef> merged = TopGroups.merge(shards, Sort.INDEXORDER, docSort, 0, numShards, TopGroups.ScoreMergeMode.None);
+    assertEquals(1, merged.groups.length);
+    assertEquals(numShards, merged.groups[0].scoreDocs.length);
+    assertTrue(Float.isNaN(merged.groups[0].maxScore));
+    assertTrue(Float.isNaN(merged.maxScore));
+  }
+
   private void addGroupField(Document doc, String groupField, String value) {
     doc.add(new SortedDocValuesField(groupField, new BytesRef(value)));
   }
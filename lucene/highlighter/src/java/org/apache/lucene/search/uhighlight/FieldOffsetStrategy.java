@@ -22,6 +22,7 @@ import java.util.List;
 
 import org.apache.lucene.index.FilterLeafReader;
 import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.PostingsEnum;
 import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
@@ -29,6 +30,7 @@ import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Matches;
 import org.apache.lucene.search.MatchesIterator;
 import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Weight;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.CharsRefBuilder;
 import org.apache.lucene.util.automaton.CharacterRunAutomaton;
@@ -108,8 +110,16 @@ public abstract class FieldOffsetStrategy {
   }
 
   protected void createOffsetsEnumsWeightMatcher(LeafReader _leafReader, int docId, List<OffsetsEnum> results) throws IOException {
+    LeafReader leafReader = remapFieldsForWeightMatcher(_leafReader);
+    addMatchesOffsetsEnums(createWeightMatcher(leafReader), leafReader.getContext(), docId, results);
+  }
+
+  /**
+   * Wrap the reader so that fields accepted by the field matcher are read from the field we are highlighting.
+   */
+  protected LeafReader remapFieldsForWeightMatcher(LeafReader _leafReader) {
     // remap fieldMatcher/requireFieldMatch fields to the field we are highlighting
-    LeafReader leafReader = new FilterLeafReader(_leafReader) {
+    return new FilterLeafReader(_leafReader) {
       @Override
       public Terms terms(String field) throws IOException {
         if (components.getFieldMatcher().test(field)) {
@@ -131,11 +141,25 @@ public abstract class FieldOffsetStrategy {
         return null;
       }
     };
+  }
+
+  /**
+   * Create a {@link Weight} for the query on a reader returned by {@link #remapFieldsForWeightMatcher}.
+   * The weight may be reused for several documents of this reader.
+   */
+  protected Weight createWeightMatcher(LeafReader leafReader) throws IOException {
     IndexSearcher indexSearcher = new IndexSearcher(leafReader);
     indexSearcher.setQueryCache(null);
-    Matches matches = indexSearcher.rewrite(components.getQuery())
-        .createWeight(indexSearcher, ScoreMode.COMPLETE_NO_SCORES, 1.0f)
-        .matches(leafReader.getContext(), docId);
+    return indexSearcher.rewrite(components.getQuery())
+        .createWeight(indexSearcher, ScoreMode.COMPLETE_NO_SCORES, 1.0f);
+  }
+
+  /**
+   * Add an {@link OffsetsEnum} per highlighted field that matches the document,
+   * using the context of the reader that the weight was created on.
+   */
+  protected void addMatchesOffsetsEnums(Weight weight, LeafReaderContext context, int docId, List<OffsetsEnum> results) throws IOException {
+    Matches matches = weight.matches(context, docId);
     if (matches == null) {
       return; // doc doesn't match
     }
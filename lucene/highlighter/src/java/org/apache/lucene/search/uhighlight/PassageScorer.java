@@ -16,9 +16,7 @@
  */
 package org.apache.lucene.search.uhighlight;
 
-import java.util.Arrays;
-
-import org.apache.lucene.util.BytesRefHash;
+import org.apache.lucene.util.BytesRef;
 
 /**
  * Ranks passages found by {@link UnifiedHighlighter}.
@@ -117,24 +115,27 @@ public class PassageScorer {
 
   public float score(Passage passage, int contentLength) {
     float score = 0;
-    BytesRefHash termsHash = new BytesRefHash();
     int hitCount = passage.getNumMatches();
-    int[] termFreqsInPassage = new int[hitCount]; // maximum size
+    // passages have few distinct terms, so a linear scan is cheaper than hashing
+    BytesRef[] terms = new BytesRef[hitCount]; // maximum size
+    int[] termFreqsInPassage = new int[hitCount];
     int[] termFreqsInDoc = new int[hitCount];
-    Arrays.fill(termFreqsInPassage, 0);
+    int numTerms = 0;
 
-    for (int i = 0; i < passage.getNumMatches(); i++) {
-      int termIndex = termsHash.add(passage.getMatchTerms()[i]);
-      if (termIndex < 0) {
-        termIndex = -(termIndex + 1);
+    for (int i = 0; i < hitCount; i++) {
+      BytesRef term = passage.getMatchTerms()[i];
+      int termIndex = 0;
+      while (termIndex < numTerms && terms[termIndex] != term && terms[termIndex].equals(term) == false) {
+        termIndex++;
       }
-      else {
+      if (termIndex == numTerms) {
+        terms[numTerms++] = term;
         termFreqsInDoc[termIndex] = passage.getMatchTermFreqsInDoc()[i];
       }
       termFreqsInPassage[termIndex]++;
     }
 
-    for (int i = 0; i < termsHash.size(); i++) {
+    for (int i = 0; i < numTerms; i++) {
       score += tf(termFreqsInPassage[i], passage.getLength()) * weight(contentLength, termFreqsInDoc[i]);
     }
     score *= norm(passage.getStartOffset());
@@ -69,6 +69,7 @@ public class PhraseHelper {
 
   private final String fieldName;
   private final Set<BytesRef> positionInsensitiveTerms; // (TermQuery terms)
+  private final BytesRef[] sortedPositionInsensitiveTerms;
   private final Set<SpanQuery> spanQueries;
   private final boolean willRewrite;
   private final Predicate<String> fieldMatcher;
@@ -178,6 +179,8 @@ public class PhraseHelper {
     }; // calling the constructor triggered the extraction/visiting we want.  Hacky; yes.
 
     willRewrite = mustRewriteHolder[0];
+    sortedPositionInsensitiveTerms = positionInsensitiveTerms.toArray(new BytesRef[positionInsensitiveTerms.size()]);
+    Arrays.sort(sortedPositionInsensitiveTerms);
   }
 
   public Set<SpanQuery> getSpanQueries() {
@@ -200,11 +203,10 @@ public class PhraseHelper {
     return willRewrite;
   }
 
-  /** Returns the terms that are position-insensitive (sorted). */
+  /** Returns the terms that are position-insensitive (sorted). The same array is returned on every call, so
+   * that postings pulled for these terms can be reused across documents; callers must not modify it. */
   public BytesRef[] getAllPositionInsensitiveTerms() {
-    BytesRef[] result = positionInsensitiveTerms.toArray(new BytesRef[positionInsensitiveTerms.size()]);
-    Arrays.sort(result);
-    return result;
+    return sortedPositionInsensitiveTerms;
   }
 
   /** Given the internal SpanQueries, produce a number of OffsetsEnum into the {@code results} param. */
@@ -17,18 +17,41 @@
 package org.apache.lucene.search.uhighlight;
 
 import java.io.IOException;
+import java.util.List;
 
 import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.BytesRef;
 
 /**
  * Uses offsets in postings -- {@link IndexOptions#DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS}.  This
  * does not support multi-term queries; the highlighter will fallback on analysis for that.
+ * <p>
+ * Documents are expected to be highlighted in increasing order of doc ID, like
+ * {@link UnifiedHighlighter} does. Terms are then seeked once per segment and their
+ * postings are advanced from one document to the next, and the weight that
+ * computes matches is created once per segment too. Instances are not thread-safe.
  *
  * @lucene.internal
  */
 public class PostingsOffsetStrategy extends FieldOffsetStrategy {
 
+  // postings of the terms of the segment that is being highlighted
+  private Terms termsIndex;
+  private BytesRef[] termsPulled;
+  private PostingsEnum[] termsPostings; // parallel to termsPulled, null if the term doesn't exist
+  private int lastDoc = -1;
+
+  // weight that computes matches for the segment that is being highlighted
+  private LeafReader weightMatcherReader;
+  private LeafReaderContext weightMatcherContext; // of the remapped reader
+  private Weight weightMatcher;
+
   public PostingsOffsetStrategy(UHComponents components) {
     super(components);
   }
@@ -39,6 +62,53 @@ public class PostingsOffsetStrategy extends FieldOffsetStrategy {
   }
 
 
+  @Override
+  protected void createOffsetsEnumsForTerms(BytesRef[] sourceTerms, Terms termsIndex, int doc, List<OffsetsEnum> results) throws IOException {
+    if (termsIndex != this.termsIndex || sourceTerms != termsPulled || doc <= lastDoc) {
+      // new segment, or documents are not in order: pull postings again
+      termsPostings = new PostingsEnum[sourceTerms.length];
+      TermsEnum termsEnum = termsIndex.iterator();//does not return null
+      for (int i = 0; i < sourceTerms.length; i++) {
+        if (termsEnum.seekExact(sourceTerms[i])) {
+          PostingsEnum postingsEnum = termsEnum.postings(null, PostingsEnum.OFFSETS);
+          if (postingsEnum == null) {
+            // no offsets or positions available
+            throw new IllegalArgumentException("field '" + getField() + "' was indexed without offsets, cannot highlight");
+          }
+          termsPostings[i] = postingsEnum;
+        }
+      }
+      this.termsIndex = termsIndex;
+      termsPulled = sourceTerms;
+    }
+    lastDoc = doc;
+
+    for (int i = 0; i < termsPostings.length; i++) {
+      PostingsEnum postingsEnum = termsPostings[i];
+      if (postingsEnum == null) {
+        continue;
+      }
+      int postingsDoc = postingsEnum.docID();
+      if (postingsDoc < doc) {
+        postingsDoc = postingsEnum.advance(doc);
+      }
+      if (postingsDoc == doc) { // now it's positioned, although may be exhausted
+        results.add(new OffsetsEnum.OfPostings(sourceTerms[i], postingsEnum));
+      }
+    }
+  }
+
+  @Override
+  protected void createOffsetsEnumsWeightMatcher(LeafReader leafReader, int docId, List<OffsetsEnum> results) throws IOException {
+    if (leafReader != weightMatcherReader) {
+      LeafReader remapped = remapFieldsForWeightMatcher(leafReader);
+      weightMatcher = createWeightMatcher(remapped);
+      weightMatcherContext = remapped.getContext();
+      weightMatcherReader = leafReader;
+    }
+    addMatchesOffsetsEnums(weightMatcher, weightMatcherContext, docId, results);
+  }
+
   @Override
   public UnifiedHighlighter.OffsetSource getOffsetSource() {
     return UnifiedHighlighter.OffsetSource.POSTINGS;
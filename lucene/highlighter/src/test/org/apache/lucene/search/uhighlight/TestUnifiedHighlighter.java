@@ -27,6 +27,7 @@ import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 
 import com.carrotsearch.randomizedtesting.annotations.ParametersFactory;
@@ -36,10 +37,14 @@ import org.apache.lucene.analysis.MockTokenizer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.FieldType;
+import org.apache.lucene.index.FilterLeafReader;
 import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.DocIdSetIterator;
@@ -54,7 +59,9 @@ import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.uhighlight.UnifiedHighlighter.HighlightFlag;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.automaton.CharacterRunAutomaton;
 import org.junit.After;
 import org.junit.Before;
 
@@ -153,6 +160,137 @@ public class TestUnifiedHighlighter extends LuceneTestCase {
     ir.close();
   }
 
+  public void testManyDocsPerSegment() throws Exception {
+    RandomIndexWriter iw = new RandomIndexWriter(random(), dir, indexAnalyzer);
+
+    Field body = new Field("body", "", fieldType);
+    Document doc = new Document();
+    doc.add(body);
+
+    final int numDocs = atLeast(20);
+    String[] expected = new String[numDocs];
+    for (int i = 0; i < numDocs; i++) {
+      String text = "Document number " + i + " mentions";
+      String highlighted = text;
+      if (i % 2 == 0) {
+        text += " alpha";
+        highlighted += " <b>alpha</b>";
+      }
+      if (i % 3 == 0) {
+        text += " beta";
+        highlighted += " <b>beta</b>";
+      }
+      body.setStringValue(text + ".");
+      iw.addDocument(doc);
+      expected[i] = highlighted + ".";
+    }
+
+    IndexReader ir = iw.getReader();
+    iw.close();
+
+    IndexSearcher searcher = newSearcher(ir);
+    UnifiedHighlighter highlighter = randomUnifiedHighlighter(searcher, indexAnalyzer);
+    Query query = new BooleanQuery.Builder()
+        .add(new TermQuery(new Term("body", "alpha")), BooleanClause.Occur.SHOULD)
+        .add(new TermQuery(new Term("body", "beta")), BooleanClause.Occur.SHOULD)
+        .build();
+    TopDocs topDocs = searcher.search(query, numDocs, Sort.INDEXORDER);
+    String snippets[] = highlighter.highlight("body", query, topDocs);
+    assertEquals(topDocs.scoreDocs.length, snippets.length);
+    for (int i = 0; i < snippets.length; i++) {
+      assertEquals(expected[topDocs.scoreDocs[i].doc], snippets[i]);
+    }
+
+    // docs that do not match, out of order
+    int[] docIds = new int[numDocs];
+    for (int i = 0; i < numDocs; i++) {
+      docIds[i] = numDocs - 1 - i;
+    }
+    int[] maxPassages = new int[] { 1 };
+    snippets = highlighter.highlightFields(new String[] { "body" }, query, docIds, maxPassages).get("body");
+    for (int i = 0; i < numDocs; i++) {
+      assertEquals(expected[docIds[i]], snippets[i]);
+    }
+
+    ir.close();
+  }
+
+  public void testPhraseQueryReusesPostings() throws Exception {
+    RandomIndexWriter iw = new RandomIndexWriter(random(), dir, indexAnalyzer);
+    for (String text : new String[] { "alpha beta gamma", "beta gamma alpha" }) {
+      Document doc = new Document();
+      doc.add(new Field("body", text, UHTestHelper.postingsType));
+      iw.addDocument(doc);
+    }
+    iw.forceMerge(1);
+    IndexReader ir = iw.getReader();
+    iw.close();
+
+    // counts how many times "alpha" is looked up in the terms dictionary
+    final BytesRef alpha = new BytesRef("alpha");
+    final AtomicInteger alphaSeeks = new AtomicInteger();
+    LeafReader leafReader = new FilterLeafReader(getOnlyLeafReader(ir)) {
+      Terms terms;
+
+      @Override
+      public Terms terms(String field) throws IOException {
+        if (terms == null) {
+          terms = new FilterTerms(super.terms(field)) {
+            @Override
+            public TermsEnum iterator() throws IOException {
+              return new FilterTermsEnum(super.iterator()) {
+                @Override
+                public boolean seekExact(BytesRef text) throws IOException {
+                  if (text.equals(alpha)) {
+                    alphaSeeks.incrementAndGet();
+                  }
+                  return super.seekExact(text);
+                }
+              };
+            }
+          };
+        }
+        return terms;
+      }
+
+      @Override
+      public CacheHelper getCoreCacheHelper() {
+        return null;
+      }
+
+      @Override
+      public CacheHelper getReaderCacheHelper() {
+        return null;
+      }
+    };
+
+    Query query = new BooleanQuery.Builder()
+        .add(new TermQuery(new Term("body", "alpha")), BooleanClause.Occur.SHOULD)
+        .add(new PhraseQuery("body", "beta", "gamma"), BooleanClause.Occur.SHOULD)
+        .build();
+    Predicate<String> fieldMatcher = "body"::equals;
+    PhraseHelper phraseHelper = new PhraseHelper(query, "body", fieldMatcher, spanQuery -> null, q -> null, true);
+    assertTrue(phraseHelper.hasPositionSensitivity());
+    BytesRef[] terms = new BytesRef[] { alpha, new BytesRef("beta"), new BytesRef("gamma") };
+    UHComponents components = new UHComponents("body", fieldMatcher, query, terms, phraseHelper,
+        new CharacterRunAutomaton[0], EnumSet.of(HighlightFlag.PHRASES));
+    PostingsOffsetStrategy strategy = new PostingsOffsetStrategy(components);
+
+    for (int doc = 0; doc < 2; doc++) {
+      try (OffsetsEnum offsetsEnum = strategy.getOffsetsEnum(leafReader, doc, null)) {
+        int numMatches = 0;
+        while (offsetsEnum.nextPosition()) {
+          numMatches++;
+        }
+        assertEquals(3, numMatches);
+      }
+    }
+    // the postings of "alpha" were pulled for the first document and reused for the second one
+    assertEquals(1, alphaSeeks.get());
+
+    ir.close();
+  }
+
   public void testFormatWithMatchExceedingContentLength2() throws Exception {
 
     String bodyText = "123 TEST 01234 TEST";
@@ -47,6 +47,7 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Scorable;
 import org.apache.lucene.search.SimpleCollector;
 import org.apache.lucene.search.join.DocValuesTermsCollector.Function;
+import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.BytesRef;
 
 /**
@@ -513,4 +514,38 @@ public final class JoinUtil {
         rewrittenFromQuery, min, max, searcher.getTopReaderContext().id());
   }
 
+  /**
+   * A query time join that keeps the join values on disk, for joins with too many join values to be held on heap.
+   * <p>
+   * The join values of the documents that match {@code fromQuery} are collected right away, using the executor of
+   * {@code fromSearcher} if it has one, and written as sorted runs to temporary files in {@code tempDir}. Use
+   * {@link OfflineJoin#createQuery(String)} to get a query that matches the documents that have any of these values
+   * in a "to" field, possibly of another index, and close the returned {@link OfflineJoin} once this query is not
+   * needed anymore in order to delete the temporary files.
+   * <p>
+   * Memory considerations: {@link DocValuesType#SORTED} and {@link DocValuesType#SORTED_SET} from fields need one
+   * bit per unique value of the segment being collected, {@link DocValuesType#BINARY} from fields buffer up to
+   * {@code ramBufferMB} of join values per concurrently collected slice before writing them to disk.
+   *
+   * @param fromField          The from field to join from, with {@link DocValuesType#SORTED}, {@link DocValuesType#SORTED_SET}
+   *                           or {@link DocValuesType#BINARY} doc values
+   * @param fromQuery          The query to match documents on the from side
+   * @param fromSearcher       The searcher that executes the specified fromQuery
+   * @param tempDir            The directory to write temporary files to
+   * @param tempFileNamePrefix The prefix of the temporary files
+   * @param ramBufferMB        How many MB of join values may be buffered on heap before being written to disk
+   * @return the collected join values
+   * @throws IOException If I/O related errors occur
+   */
+  public static OfflineJoin createOfflineJoin(String fromField,
+                                              Query fromQuery,
+                                              IndexSearcher fromSearcher,
+                                              Directory tempDir,
+                                              String tempFileNamePrefix,
+                                              double ramBufferMB) throws IOException {
+    OfflineJoin join = new OfflineJoin(tempDir, tempFileNamePrefix, ramBufferMB);
+    join.collect(fromField, fromSearcher.rewrite(fromQuery), fromSearcher);
+    return join;
+  }
+
 }
@@ -0,0 +1,517 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search.join;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.ByteBlockPool;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.BytesRefHash;
+import org.apache.lucene.util.Counter;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.LongBitSet;
+import org.apache.lucene.util.PriorityQueue;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.StringHelper;
+
+/**
+ * A query time join whose set of join values is kept on disk rather than on heap, for joins that match
+ * too many "from" documents for {@link JoinUtil#createJoinQuery(String, boolean, String, Query, IndexSearcher, ScoreMode)}.
+ * <p>
+ * The join values of the documents matching the "from" query are written to temporary files as sorted runs
+ * of unique terms:
+ * <ul>
+ *   <li>for {@link DocValuesType#SORTED} and {@link DocValuesType#SORTED_SET} fields, each segment marks the
+ *       ordinals that it sees in a bit set and writes their terms in ordinal order, so no terms are buffered at all;
+ *   <li>for {@link DocValuesType#BINARY} fields, terms are buffered in a hash table that is sorted and written
+ *       out every time it exceeds the RAM buffer.
+ * </ul>
+ * Runs are then merged into a single sorted file, and every segment on the "to" side intersects it with its
+ * terms dictionary in one merge-like pass. If the "from" searcher has an executor, its slices are collected
+ * concurrently, each with its own RAM buffer.
+ * <p>
+ * Create instances with {@link JoinUtil#createOfflineJoin}, use {@link #createQuery(String)} to get the
+ * "to" side query, and {@link #close()} this instance once that query is not needed anymore in order to
+ * delete the temporary files. Queries only match, they do not score.
+ *
+ * @lucene.experimental
+ */
+public final class OfflineJoin implements Closeable {
+
+  private static final String CODEC_NAME = "OfflineJoinTerms";
+  private static final int VERSION_START = 0;
+  private static final int VERSION_CURRENT = VERSION_START;
+
+  private final Directory tempDir;
+  private final String tempFileNamePrefix;
+  private final long ramBufferBytes;
+  private final byte[] id = StringHelper.randomId();
+
+  private final List<String> tempFiles = Collections.synchronizedList(new ArrayList<>());
+  private final List<Run> runs = Collections.synchronizedList(new ArrayList<>());
+  private final AtomicLong fromDocCount = new AtomicLong();
+  private final AtomicLong peakRamBytesUsed = new AtomicLong();
+
+  // the merged, de-duplicated terms:
+  private IndexInput termsIn;
+  private long termsStart, termsEnd;
+  private long termCount;
+
+  OfflineJoin(Directory tempDir, String tempFileNamePrefix, double ramBufferMB) {
+    if (ramBufferMB <= 0) {
+      throw new IllegalArgumentException("ramBufferMB must be > 0; got " + ramBufferMB);
+    }
+    this.tempDir = tempDir;
+    this.tempFileNamePrefix = tempFileNamePrefix;
+    this.ramBufferBytes = (long) (ramBufferMB * 1024 * 1024);
+  }
+
+  /** Collects the join values of the documents that match {@code fromQuery} and merges them. */
+  void collect(String fromField, Query fromQuery, IndexSearcher fromSearcher) throws IOException {
+    final List<RunCollector> collectors = Collections.synchronizedList(new ArrayList<>());
+    boolean success = false;
+    try {
+      fromSearcher.search(fromQuery, new CollectorManager<RunCollector, Void>() {
+        @Override
+        public RunCollector newCollector() {
+          RunCollector collector = new RunCollector(fromField);
+          collectors.add(collector);
+          return collector;
+        }
+
+        @Override
+        public Void reduce(Collection<RunCollector> collectors) throws IOException {
+          IOException exc = null;
+          for (RunCollector collector : collectors) {
+            try {
+              collector.finish();
+            } catch (IOException e) {
+              exc = IOUtils.useOrSuppress(exc, e);
+            }
+          }
+          if (exc != null) {
+            throw exc;
+          }
+          return null;
+        }
+      });
+      mergeRuns();
+      success = true;
+    } finally {
+      if (success == false) {
+        // collectors still have open outputs if the search failed before reduce
+        synchronized (collectors) {
+          for (RunCollector collector : collectors) {
+            collector.abort();
+          }
+        }
+        IOUtils.closeWhileHandlingException(this);
+      }
+    }
+  }
+
+  /**
+   * Returns a query that matches documents that have at least one of the collected join values in {@code toField}.
+   * This query may be executed concurrently and as many times as needed until this instance is closed.
+   */
+  public Query createQuery(String toField) {
+    return new OfflineTermsQuery(toField, this);
+  }
+
+  /** Returns the number of "from" documents whose join values were collected. */
+  public long getFromDocCount() {
+    return fromDocCount.get();
+  }
+
+  /** Returns the number of unique join values. */
+  public long getTermCount() {
+    return termCount;
+  }
+
+  /** Returns the number of sorted runs that were written before being merged. */
+  public int getRunCount() {
+    return runs.size();
+  }
+
+  /** Returns the number of bytes that the unique join values take on disk. */
+  public long getTermsBytes() {
+    return termsEnd - termsStart;
+  }
+
+  /** Returns the maximum number of bytes of heap that a single collector used to buffer or mark join values. */
+  public long getPeakRamBytesUsed() {
+    return peakRamBytesUsed.get();
+  }
+
+  /** Returns a new input over the sorted unique join values, positioned on the first one, or null if there are none. */
+  IndexInput termsInput() throws IOException {
+    if (termCount == 0) {
+      return null;
+    }
+    if (termsIn == null) {
+      throw new IllegalStateException("this OfflineJoin is closed");
+    }
+    IndexInput in = termsIn.clone();
+    in.seek(termsStart);
+    return in;
+  }
+
+  /** File pointer at which the sorted unique join values end. */
+  long termsEnd() {
+    return termsEnd;
+  }
+
+  /** Deletes the temporary files, queries created from this instance may not be used anymore. */
+  @Override
+  public void close() throws IOException {
+    try {
+      IOUtils.close(termsIn);
+    } finally {
+      termsIn = null;
+      IOUtils.deleteFilesIgnoringExceptions(tempDir, tempFiles);
+      tempFiles.clear();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "OfflineJoin(fromDocs=" + getFromDocCount() + " terms=" + termCount + " runs=" + runs.size()
+        + " bytes=" + getTermsBytes() + " peakRamBytesUsed=" + getPeakRamBytesUsed() + ")";
+  }
+
+  private IndexOutput createTempOutput() throws IOException {
+    IndexOutput out = tempDir.createTempOutput(tempFileNamePrefix, "join", IOContext.DEFAULT);
+    tempFiles.add(out.getName());
+    boolean success = false;
+    try {
+      CodecUtil.writeIndexHeader(out, CODEC_NAME, VERSION_CURRENT, id, "");
+      success = true;
+    } finally {
+      if (success == false) {
+        IOUtils.closeWhileHandlingException(out);
+      }
+    }
+    return out;
+  }
+
+  /** Opens a temporary file and verifies its header and checksum. */
+  private IndexInput openTempInput(String fileName) throws IOException {
+    IndexInput in = tempDir.openInput(fileName, IOContext.READ);
+    boolean success = false;
+    try {
+      CodecUtil.checkIndexHeader(in, CODEC_NAME, VERSION_START, VERSION_CURRENT, id, "");
+      CodecUtil.checksumEntireFile(in);
+      success = true;
+    } finally {
+      if (success == false) {
+        IOUtils.closeWhileHandlingException(in);
+      }
+    }
+    return in;
+  }
+
+  private void updatePeakRamBytesUsed(long bytes) {
+    peakRamBytesUsed.accumulateAndGet(bytes, Math::max);
+  }
+
+  static void writeTerm(DataOutput out, BytesRef term) throws IOException {
+    out.writeVInt(term.length);
+    out.writeBytes(term.bytes, term.offset, term.length);
+  }
+
+  static void readTerm(DataInput in, BytesRefBuilder term) throws IOException {
+    int length = in.readVInt();
+    term.grow(length);
+    term.setLength(length);
+    in.readBytes(term.bytes(), 0, length);
+  }
+
+  /** Merges all runs into a single sorted run of unique terms. */
+  private void mergeRuns() throws IOException {
+    if (runs.isEmpty()) {
+      return;
+    }
+
+    final String fileName;
+    if (runs.size() == 1) {
+      Run run = runs.get(0);
+      fileName = run.fileName;
+      termsStart = run.start;
+      termsEnd = run.end;
+      termCount = run.termCount;
+    } else {
+      Map<String,IndexInput> inputs = new HashMap<>();
+      try {
+        PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(runs.size()) {
+          @Override
+          protected boolean lessThan(RunReader a, RunReader b) {
+            return a.current.get().compareTo(b.current.get()) < 0;
+          }
+        };
+        for (Run run : runs) {
+          IndexInput in = inputs.get(run.fileName);
+          if (in == null) {
+            in = openTempInput(run.fileName);
+            inputs.put(run.fileName, in);
+          }
+          RunReader reader = new RunReader(in.clone(), run);
+          if (reader.next()) {
+            queue.add(reader);
+          }
+        }
+
+        try (IndexOutput out = createTempOutput()) {
+          termsStart = out.getFilePointer();
+          BytesRefBuilder last = new BytesRefBuilder();
+          boolean first = true;
+          while (queue.size() > 0) {
+            RunReader top = queue.top();
+            BytesRef term = top.current.get();
+            if (first || term.equals(last.get()) == false) {
+              writeTerm(out, term);
+              last.copyBytes(term);
+              first = false;
+              termCount++;
+            }
+            if (top.next()) {
+              queue.updateTop();
+            } else {
+              queue.pop();
+            }
+          }
+          termsEnd = out.getFilePointer();
+          CodecUtil.writeFooter(out);
+          fileName = out.getName();
+        }
+      } finally {
+        IOUtils.close(inputs.values());
+      }
+    }
+
+    termsIn = openTempInput(fileName);
+  }
+
+  /** A sorted run of unique terms within a temporary file. */
+  private static class Run {
+    final String fileName;
+    final long start, end;
+    final long termCount;
+
+    Run(String fileName, long start, long end, long termCount) {
+      this.fileName = fileName;
+      this.start = start;
+      this.end = end;
+      this.termCount = termCount;
+    }
+  }
+
+  private static class RunReader {
+    final IndexInput in;
+    final long end;
+    final BytesRefBuilder current = new BytesRefBuilder();
+
+    RunReader(IndexInput in, Run run) throws IOException {
+      this.in = in;
+      this.end = run.end;
+      in.seek(run.start);
+    }
+
+    boolean next() throws IOException {
+      if (in.getFilePointer() >= end) {
+        return false;
+      }
+      readTerm(in, current);
+      return true;
+    }
+  }
+
+  /** Writes the join values of the documents of a single slice to sorted runs. */
+  private class RunCollector extends SimpleCollector {
+
+    private final String field;
+    private IndexOutput out;
+    private long runStart;
+    private long runTermCount;
+    private long docCount;
+
+    // SORTED and SORTED_SET fields: ordinals of the current segment
+    private SortedSetDocValues ordValues;
+    private LongBitSet ords;
+
+    // BINARY fields: terms buffered across segments
+    private BinaryDocValues binaryValues;
+    private Counter bytesUsed;
+    private BytesRefHash terms;
+
+    RunCollector(String field) {
+      this.field = field;
+    }
+
+    @Override
+    public org.apache.lucene.search.ScoreMode scoreMode() {
+      return org.apache.lucene.search.ScoreMode.COMPLETE_NO_SCORES;
+    }
+
+    @Override
+    protected void doSetNextReader(LeafReaderContext context) throws IOException {
+      flushOrds();
+      ordValues = null;
+      binaryValues = null;
+
+      FieldInfo fieldInfo = context.reader().getFieldInfos().fieldInfo(field);
+      if (fieldInfo == null) {
+        return;
+      }
+      switch (fieldInfo.getDocValuesType()) {
+        case SORTED:
+        case SORTED_SET:
+          ordValues = DocValues.getSortedSet(context.reader(), field);
+          ords = new LongBitSet(Math.max(1, ordValues.getValueCount()));
+          updatePeakRamBytesUsed(RamUsageEstimator.sizeOf(ords.getBits()));
+          break;
+        case BINARY:
+          binaryValues = DocValues.getBinary(context.reader(), field);
+          if (terms == null) {
+            bytesUsed = Counter.newCounter();
+            terms = new BytesRefHash(new ByteBlockPool(new ByteBlockPool.DirectTrackingAllocator(bytesUsed)),
+                BytesRefHash.DEFAULT_CAPACITY, new BytesRefHash.DirectBytesStartArray(BytesRefHash.DEFAULT_CAPACITY, bytesUsed));
+          }
+          break;
+        case NONE:
+          break;
+        default:
+          throw new IllegalStateException("unexpected doc values type " + fieldInfo.getDocValuesType() + " for field \"" + field + "\", expected SORTED, SORTED_SET or BINARY");
+      }
+    }
+
+    @Override
+    public void collect(int doc) throws IOException {
+      if (ordValues != null) {
+        if (ordValues.advanceExact(doc)) {
+          docCount++;
+          for (long ord = ordValues.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = ordValues.nextOrd()) {
+            ords.set(ord);
+          }
+        }
+      } else if (binaryValues != null) {
+        if (binaryValues.advanceExact(doc)) {
+          docCount++;
+          terms.add(binaryValues.binaryValue());
+          // the ids array of the hash is not tracked by the counter:
+          long ramBytesUsed = bytesUsed.get() + (long) terms.size() * 2 * Integer.BYTES;
+          if (ramBytesUsed > ramBufferBytes) {
+            updatePeakRamBytesUsed(ramBytesUsed);
+            flushTerms();
+          }
+        }
+      }
+    }
+
+    /** Writes the terms of the ordinals that have been seen in the current segment. */
+    private void flushOrds() throws IOException {
+      if (ordValues == null) {
+        return;
+      }
+      if (ords.cardinality() > 0) {
+        startRun();
+        for (long ord = ords.nextSetBit(0); ord != -1; ord = ord + 1 < ords.length() ? ords.nextSetBit(ord + 1) : -1) {
+          writeTerm(out, ordValues.lookupOrd(ord));
+          runTermCount++;
+        }
+        endRun();
+      }
+      ords = null;
+    }
+
+    /** Sorts and writes the buffered terms. */
+    private void flushTerms() throws IOException {
+      if (terms == null || terms.size() == 0) {
+        return;
+      }
+      updatePeakRamBytesUsed(bytesUsed.get() + (long) terms.size() * 2 * Integer.BYTES);
+      startRun();
+      BytesRef scratch = new BytesRef();
+      int[] sorted = terms.sort();
+      for (int i = 0; i < terms.size(); i++) {
+        writeTerm(out, terms.get(sorted[i], scratch));
+        runTermCount++;
+      }
+      endRun();
+      terms.clear();
+      terms.reinit();
+    }
+
+    private void startRun() throws IOException {
+      if (out == null) {
+        out = createTempOutput();
+      }
+      runStart = out.getFilePointer();
+      runTermCount = 0;
+    }
+
+    private void endRun() {
+      runs.add(new Run(out.getName(), runStart, out.getFilePointer(), runTermCount));
+    }
+
+    void finish() throws IOException {
+      try {
+        flushOrds();
+        flushTerms();
+        if (out != null) {
+          CodecUtil.writeFooter(out);
+        }
+      } finally {
+        fromDocCount.addAndGet(docCount);
+        IndexOutput out = this.out;
+        this.out = null;
+        IOUtils.close(out);
+      }
+    }
+
+    /** Closes the output of this collector, if any, after a failure. */
+    void abort() {
+      IOUtils.closeWhileHandlingException(out);
+      out = null;
+    }
+  }
+}
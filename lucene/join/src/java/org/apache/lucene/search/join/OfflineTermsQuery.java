@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search.join;
+
+import java.io.IOException;
+import java.util.Objects;
+
+import org.apache.lucene.index.FilteredTermsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.MultiTermQuery;
+import org.apache.lucene.search.QueryVisitor;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.util.AttributeSource;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+
+/**
+ * A query that matches documents that have one or more of the sorted terms of an {@link OfflineJoin} in the
+ * specified field. Terms are streamed from disk and intersected with the terms dictionary of each segment.
+ *
+ * @lucene.experimental
+ */
+class OfflineTermsQuery extends MultiTermQuery {
+
+  private final OfflineJoin join;
+
+  OfflineTermsQuery(String toField, OfflineJoin join) {
+    super(toField);
+    this.join = join;
+  }
+
+  @Override
+  public void visit(QueryVisitor visitor) {
+    if (visitor.acceptField(field)) {
+      visitor.visitLeaf(this);
+    }
+  }
+
+  @Override
+  protected TermsEnum getTermsEnum(Terms terms, AttributeSource atts) throws IOException {
+    IndexInput in = join.termsInput();
+    if (in == null) {
+      return TermsEnum.EMPTY;
+    }
+    return new SortedTermsStreamTermsEnum(terms.iterator(), in, join.termsEnd());
+  }
+
+  @Override
+  public String toString(String field) {
+    return "OfflineTermsQuery{" +
+        "field=" + this.field +
+        " terms=" + join.getTermCount() +
+        '}';
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    } if (!super.equals(obj)) {
+      return false;
+    } if (getClass() != obj.getClass()) {
+      return false;
+    }
+
+    OfflineTermsQuery other = (OfflineTermsQuery) obj;
+    return Objects.equals(field, other.field) &&
+        join == other.join;
+  }
+
+  @Override
+  public int hashCode() {
+    return classHash() + Objects.hash(field, System.identityHashCode(join));
+  }
+
+  /**
+   * Leapfrogs between a stream of sorted terms and a terms dictionary: the terms dictionary seeks to the
+   * next term of the stream, and the stream is read forward up to the current term of the terms dictionary.
+   */
+  private static class SortedTermsStreamTermsEnum extends FilteredTermsEnum {
+
+    private final IndexInput in;
+    private final long end;
+    private final BytesRefBuilder current = new BytesRefBuilder();
+    private boolean seekPending;
+
+    SortedTermsStreamTermsEnum(TermsEnum tenum, IndexInput in, long end) throws IOException {
+      super(tenum);
+      this.in = in;
+      this.end = end;
+      seekPending = next(in);
+    }
+
+    private boolean next(IndexInput in) throws IOException {
+      if (in.getFilePointer() >= end) {
+        return false;
+      }
+      OfflineJoin.readTerm(in, current);
+      return true;
+    }
+
+    @Override
+    protected BytesRef nextSeekTerm(BytesRef currentTerm) throws IOException {
+      if (seekPending) {
+        seekPending = false;
+        return current.get();
+      }
+      return null;
+    }
+
+    @Override
+    protected AcceptStatus accept(BytesRef term) throws IOException {
+      int cmp;
+      while ((cmp = current.get().compareTo(term)) < 0) {
+        if (next(in) == false) {
+          return AcceptStatus.END;
+        }
+      }
+      if (cmp == 0) {
+        if (next(in) == false) {
+          return AcceptStatus.YES;
+        }
+        seekPending = true;
+        return AcceptStatus.YES_AND_SEEK;
+      }
+      seekPending = true;
+      return AcceptStatus.NO_AND_SEEK;
+    }
+  }
+}
@@ -36,6 +36,7 @@ import com.carrotsearch.randomizedtesting.generators.RandomNumbers;
 import com.carrotsearch.randomizedtesting.generators.RandomPicks;
 import org.apache.lucene.analysis.MockAnalyzer;
 import org.apache.lucene.analysis.MockTokenizer;
+import org.apache.lucene.document.BinaryDocValuesField;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.DoubleDocValuesField;
 import org.apache.lucene.document.DoublePoint;
@@ -55,6 +56,7 @@ import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.MultiTerms;
@@ -74,6 +76,7 @@ import org.apache.lucene.util.BitSet;
 import org.apache.lucene.util.BitSetIterator;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.LuceneTestCase;
 import org.apache.lucene.util.TestUtil;
 import org.apache.lucene.util.packed.PackedInts;
@@ -1159,6 +1162,100 @@ public class TestJoinUtil extends LuceneTestCase {
     }
   }
 
+  public void testOfflineJoin() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setMaxBufferedDocs(TestUtil.nextInt(random(), 50, 500));
+    iwc.setMergePolicy(NoMergePolicy.INSTANCE);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    int numKeys = TestUtil.nextInt(random(), 1, 3000);
+    int numDocs = atLeast(2000);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(new StringField("tag", "t" + random().nextInt(5), Field.Store.NO));
+      for (int j = random().nextInt(3); j > 0; j--) {
+        doc.add(new SortedSetDocValuesField("from_mv", new BytesRef("k" + random().nextInt(numKeys))));
+      }
+      if (random().nextBoolean()) {
+        doc.add(new BinaryDocValuesField("from_sv", new BytesRef("k" + random().nextInt(numKeys))));
+      }
+      for (int j = random().nextInt(3); j > 0; j--) {
+        doc.add(new StringField("to", "k" + random().nextInt(numKeys), Field.Store.NO));
+      }
+      w.addDocument(doc);
+    }
+    DirectoryReader reader = DirectoryReader.open(w);
+    w.close();
+    IndexSearcher searcher = newSearcher(reader);
+    Directory tempDir = newDirectory();
+
+    for (boolean multipleValuesPerDocument : new boolean[] {false, true}) {
+      String fromField = multipleValuesPerDocument ? "from_mv" : "from_sv";
+      Query fromQuery = new TermQuery(new Term("tag", "t" + random().nextInt(5)));
+      Query expected = JoinUtil.createJoinQuery(fromField, multipleValuesPerDocument, "to", fromQuery, searcher, ScoreMode.None);
+      // a tiny buffer forces binary values to be spilled to many runs
+      double ramBufferMB = random().nextBoolean() ? 0.001 : 16;
+      try (OfflineJoin join = JoinUtil.createOfflineJoin(fromField, fromQuery, searcher, tempDir, "join", ramBufferMB)) {
+        assertTrue(join.getRunCount() > 0);
+        Query actual = join.createQuery("to");
+        assertEquals(actual, join.createQuery("to"));
+        assertEquals(searcher.count(new BooleanQuery.Builder()
+            .add(fromQuery, BooleanClause.Occur.MUST)
+            .add(new DocValuesFieldExistsQuery(fromField), BooleanClause.Occur.FILTER)
+            .build()), join.getFromDocCount());
+
+        TopDocs expectedDocs = searcher.search(expected, reader.maxDoc());
+        TopDocs actualDocs = searcher.search(actual, reader.maxDoc());
+        assertEquals(expectedDocs.totalHits.value, actualDocs.totalHits.value);
+        Set<Integer> expectedIds = new HashSet<>();
+        for (ScoreDoc scoreDoc : expectedDocs.scoreDocs) {
+          expectedIds.add(scoreDoc.doc);
+        }
+        for (ScoreDoc scoreDoc : actualDocs.scoreDocs) {
+          assertTrue(expectedIds.contains(scoreDoc.doc));
+        }
+      }
+      assertEquals(0, tempDir.listAll().length);
+    }
+
+    IOUtils.close(reader, dir, tempDir);
+  }
+
+  public void testOfflineJoinFailureClosesTempFiles() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setMergePolicy(NoMergePolicy.INSTANCE);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    for (int i = 0; i < 4; i++) {
+      for (int j = 0; j < 10; j++) {
+        Document doc = new Document();
+        doc.add(new SortedSetDocValuesField("from", new BytesRef("k" + random().nextInt(100))));
+        w.addDocument(doc);
+      }
+      w.commit();
+    }
+    DirectoryReader reader = DirectoryReader.open(w);
+    w.close();
+    assertEquals(4, reader.leaves().size());
+    // fails after the first segment of each slice has been collected, so runs have been written
+    IndexSearcher searcher = new IndexSearcher(reader) {
+      @Override
+      protected void search(List<LeafReaderContext> leaves, Weight weight, Collector collector) throws IOException {
+        super.search(leaves.subList(0, 1), weight, collector);
+        super.search(leaves.subList(1, leaves.size()), weight, collector);
+        throw new IOException("boom");
+      }
+    };
+    Directory tempDir = newDirectory();
+
+    IOException expected = expectThrows(IOException.class,
+        () -> JoinUtil.createOfflineJoin("from", new MatchAllDocsQuery(), searcher, tempDir, "join", 16));
+    assertEquals("boom", expected.getMessage());
+    assertEquals(0, tempDir.listAll().length);
+
+    IOUtils.close(reader, dir, tempDir);
+  }
+
   @Test
   @Slow
   public void testSingleValueRandomJoin() throws Exception {
@@ -0,0 +1,549 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index.memory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryVisitor;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.ThreadInterruptedException;
+
+/**
+ * Matches batches of documents against a set of registered queries, also
+ * known as percolation or reverse search.
+ * <p>
+ * Queries are analyzed when they are {@link #register registered}: the
+ * terms that a document must contain for the query to match are extracted
+ * and indexed, so that {@link #match} only runs the queries that may match
+ * a document of the batch. Queries that cannot be described by terms, like
+ * range queries, are always run.
+ * <p>
+ * Each document of a batch is indexed into a {@link MemoryIndex} that is
+ * reused across batches, and every candidate query is run once against
+ * all documents of the batch. If an {@link ExecutorService} is provided,
+ * candidate queries are run in parallel.
+ * <p>
+ * Queries may be registered and unregistered concurrently with calls to
+ * {@link #match}, but calls to {@link #match} are serialized.
+ * 
+ * @lucene.experimental
+ */
+public final class BatchPercolator {
+
+  /** Number of candidate queries that are run by a single task. */
+  private static final int QUERIES_PER_TASK = 128;
+
+  /** Bytes that each {@link MemoryIndex} keeps after it is reset. */
+  private static final long MAX_REUSED_BYTES = 64 * 1024;
+
+  private final Analyzer analyzer;
+  private final ExecutorService executor;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  // guarded by lock
+  private final Map<String, RegisteredQuery> queries = new HashMap<>();
+  // guarded by lock, field -> term -> queries that may match documents that contain the term
+  private final Map<String, Map<BytesRef, Set<RegisteredQuery>>> termIndex = new HashMap<>();
+  // guarded by lock, queries that may match any document
+  private final Set<RegisteredQuery> anyTermQueries = new HashSet<>();
+
+  // guarded by this
+  private final List<MemoryIndex> memoryIndexes = new ArrayList<>();
+
+  /**
+   * Creates a new percolator.
+   * @param analyzer analyzer used to index documents
+   * @param executor executor used to run queries in parallel, or {@code null} to run them in the current thread
+   */
+  public BatchPercolator(Analyzer analyzer, ExecutorService executor) {
+    this.analyzer = analyzer;
+    this.executor = executor;
+  }
+
+  /** Registers a query under the given id, replacing the query that was registered under that id, if any. */
+  public void register(String id, Query query) {
+    // analyze outside of the lock
+    RegisteredQuery registeredQuery = new RegisteredQuery(id, query, extractTerms(query));
+    lock.writeLock().lock();
+    try {
+      RegisteredQuery previous = queries.put(id, registeredQuery);
+      if (previous != null) {
+        removeFromIndex(previous);
+      }
+      if (registeredQuery.terms == null) {
+        anyTermQueries.add(registeredQuery);
+      } else {
+        for (Term term : registeredQuery.terms) {
+          termIndex.computeIfAbsent(term.field(), f -> new HashMap<>())
+              .computeIfAbsent(term.bytes(), t -> new HashSet<>())
+              .add(registeredQuery);
+        }
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Unregisters the query with the given id, and returns whether such a query was registered. */
+  public boolean unregister(String id) {
+    lock.writeLock().lock();
+    try {
+      RegisteredQuery previous = queries.remove(id);
+      if (previous == null) {
+        return false;
+      }
+      removeFromIndex(previous);
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void removeFromIndex(RegisteredQuery registeredQuery) {
+    if (registeredQuery.terms == null) {
+      anyTermQueries.remove(registeredQuery);
+      return;
+    }
+    for (Term term : registeredQuery.terms) {
+      Map<BytesRef, Set<RegisteredQuery>> fieldIndex = termIndex.get(term.field());
+      Set<RegisteredQuery> termQueries = fieldIndex.get(term.bytes());
+      termQueries.remove(registeredQuery);
+      if (termQueries.isEmpty()) {
+        fieldIndex.remove(term.bytes());
+        if (fieldIndex.isEmpty()) {
+          termIndex.remove(term.field());
+        }
+      }
+    }
+  }
+
+  /** Returns the number of registered queries. */
+  public int getQueryCount() {
+    lock.readLock().lock();
+    try {
+      return queries.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns metrics of the query that is registered under the given id,
+   * or {@code null} if no query is registered under this id.
+   */
+  public QueryMetrics getMetrics(String id) {
+    lock.readLock().lock();
+    try {
+      RegisteredQuery registeredQuery = queries.get(id);
+      return registeredQuery == null ? null : registeredQuery.metrics;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the registered queries that match each of the given documents.
+   */
+  public synchronized Matches match(List<? extends Iterable<? extends IndexableField>> documents) throws IOException {
+    if (documents.isEmpty()) {
+      return new Matches(Collections.emptyList(), 0);
+    }
+    while (memoryIndexes.size() < documents.size()) {
+      memoryIndexes.add(new MemoryIndex(false, false, MAX_REUSED_BYTES));
+    }
+    IndexReader[] readers = new IndexReader[documents.size()];
+    for (int i = 0; i < documents.size(); ++i) {
+      MemoryIndex memoryIndex = memoryIndexes.get(i);
+      memoryIndex.reset();
+      for (IndexableField field : documents.get(i)) {
+        memoryIndex.addField(field, analyzer);
+      }
+      // so that it can be searched from several threads
+      memoryIndex.freeze();
+      readers[i] = memoryIndex.createSearcher().getIndexReader();
+    }
+
+    try (MultiReader reader = new MultiReader(readers, false)) {
+      final List<RegisteredQuery> candidates = getCandidates(reader);
+      final IndexSearcher searcher = new IndexSearcher(reader);
+      searcher.setQueryCache(null);
+
+      final List<List<String>> matches = new ArrayList<>(documents.size());
+      for (int i = 0; i < documents.size(); ++i) {
+        matches.add(new ArrayList<>());
+      }
+      if (executor == null || candidates.size() <= QUERIES_PER_TASK) {
+        runQueries(searcher, candidates, matches);
+      } else {
+        final List<Future<List<List<String>>>> futures = new ArrayList<>();
+        for (int start = 0; start < candidates.size(); start += QUERIES_PER_TASK) {
+          final List<RegisteredQuery> slice = candidates.subList(start, Math.min(start + QUERIES_PER_TASK, candidates.size()));
+          futures.add(executor.submit(() -> {
+            List<List<String>> sliceMatches = new ArrayList<>(documents.size());
+            for (int i = 0; i < documents.size(); ++i) {
+              sliceMatches.add(new ArrayList<>());
+            }
+            runQueries(searcher, slice, sliceMatches);
+            return sliceMatches;
+          }));
+        }
+        // wait for all tasks, even after a failure, so that no task still
+        // searches the memory indexes when they get reused by the next batch
+        Throwable failure = null;
+        boolean interrupted = false;
+        for (Future<List<List<String>>> future : futures) {
+          while (true) {
+            try {
+              List<List<String>> sliceMatches = future.get();
+              for (int i = 0; i < sliceMatches.size(); ++i) {
+                matches.get(i).addAll(sliceMatches.get(i));
+              }
+              break;
+            } catch (InterruptedException e) {
+              interrupted = true;
+            } catch (ExecutionException e) {
+              failure = IOUtils.useOrSuppress(failure, e.getCause());
+              break;
+            }
+          }
+        }
+        if (interrupted) {
+          ThreadInterruptedException e = new ThreadInterruptedException(new InterruptedException());
+          if (failure != null) {
+            e.addSuppressed(failure);
+          }
+          throw e;
+        }
+        if (failure != null) {
+          throw IOUtils.rethrowAlways(failure);
+        }
+      }
+
+      List<Set<String>> matchingQueries = new ArrayList<>(matches.size());
+      for (List<String> docMatches : matches) {
+        matchingQueries.add(Collections.unmodifiableSet(new LinkedHashSet<>(docMatches)));
+      }
+      return new Matches(Collections.unmodifiableList(matchingQueries), candidates.size());
+    }
+  }
+
+  /** Returns the queries that may match a document of the batch. */
+  private List<RegisteredQuery> getCandidates(IndexReader reader) throws IOException {
+    lock.readLock().lock();
+    try {
+      Set<RegisteredQuery> candidates = new HashSet<>(anyTermQueries);
+      for (LeafReaderContext context : reader.leaves()) {
+        LeafReader leafReader = context.reader();
+        for (Map.Entry<String, Map<BytesRef, Set<RegisteredQuery>>> entry : termIndex.entrySet()) {
+          Terms terms = leafReader.terms(entry.getKey());
+          if (terms == null) {
+            continue;
+          }
+          Map<BytesRef, Set<RegisteredQuery>> fieldIndex = entry.getValue();
+          // documents only have a few terms per field, so iterate them rather
+          // than the terms of the registered queries
+          TermsEnum termsEnum = terms.iterator();
+          for (BytesRef term = termsEnum.next(); term != null; term = termsEnum.next()) {
+            Set<RegisteredQuery> termQueries = fieldIndex.get(term);
+            if (termQueries != null) {
+              candidates.addAll(termQueries);
+            }
+          }
+        }
+      }
+      return new ArrayList<>(candidates);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private static void runQueries(IndexSearcher searcher, List<RegisteredQuery> queries, List<List<String>> matches) throws IOException {
+    MatchCollector collector = new MatchCollector();
+    for (RegisteredQuery registeredQuery : queries) {
+      collector.matches.clear();
+      long start = System.nanoTime();
+      searcher.search(registeredQuery.query, collector);
+      registeredQuery.metrics.record(System.nanoTime() - start, collector.matches.size());
+      for (int doc : collector.matches) {
+        matches.get(doc).add(registeredQuery.id);
+      }
+    }
+  }
+
+  private static class MatchCollector extends SimpleCollector {
+
+    final List<Integer> matches = new ArrayList<>();
+    private int docBase;
+
+    @Override
+    protected void doSetNextReader(LeafReaderContext context) throws IOException {
+      docBase = context.docBase;
+    }
+
+    @Override
+    public void collect(int doc) throws IOException {
+      matches.add(docBase + doc);
+    }
+
+    @Override
+    public ScoreMode scoreMode() {
+      return ScoreMode.COMPLETE_NO_SCORES;
+    }
+  }
+
+  /**
+   * Returns terms of which a document must contain at least one for
+   * {@code query} to match, or {@code null} if the query may match
+   * documents that contain none of its terms.
+   */
+  static Set<Term> extractTerms(Query query) {
+    TermExtractor extractor = new TermExtractor(false);
+    query.visit(extractor);
+    return extractor.extract();
+  }
+
+  /**
+   * Collects the terms of the clauses of a conjunction or of a disjunction
+   * of queries.
+   */
+  private static class TermExtractor extends QueryVisitor {
+
+    /** Whether a document only needs to match one of the visited clauses, rather than all of them. */
+    private final boolean disjunction;
+    /** Each entry holds the terms of a query that needs one of them to match. */
+    private final List<Set<Term>> termSets = new ArrayList<>();
+    private final List<TermExtractor> children = new ArrayList<>();
+    /** Whether a visited query can't be described by terms. */
+    private boolean hasLeaf;
+
+    TermExtractor(boolean disjunction) {
+      this.disjunction = disjunction;
+    }
+
+    @Override
+    public void consumeTerms(Query query, Term... terms) {
+      termSets.add(new HashSet<>(Arrays.asList(terms)));
+    }
+
+    @Override
+    public void visitLeaf(Query query) {
+      hasLeaf = true;
+    }
+
+    @Override
+    public QueryVisitor getSubVisitor(BooleanClause.Occur occur, Query parent) {
+      final TermExtractor child;
+      switch (occur) {
+        case MUST_NOT:
+          return EMPTY_VISITOR;
+        case SHOULD:
+          if (parent instanceof BooleanQuery && hasRequiredClauses((BooleanQuery) parent)) {
+            // optional clauses don't restrict the documents that match
+            return EMPTY_VISITOR;
+          }
+          child = new TermExtractor(true);
+          break;
+        default:
+          child = new TermExtractor(false);
+          break;
+      }
+      children.add(child);
+      return child;
+    }
+
+    private static boolean hasRequiredClauses(BooleanQuery query) {
+      if (query.getMinimumNumberShouldMatch() > 0) {
+        return false;
+      }
+      for (BooleanClause clause : query) {
+        if (clause.isRequired()) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    Set<Term> extract() {
+      if (disjunction) {
+        // any of the clauses may match
+        if (hasLeaf) {
+          return null;
+        }
+        Set<Term> union = new HashSet<>();
+        for (Set<Term> terms : termSets) {
+          union.addAll(terms);
+        }
+        for (TermExtractor child : children) {
+          Set<Term> terms = child.extract();
+          if (terms == null) {
+            return null;
+          }
+          union.addAll(terms);
+        }
+        return union.isEmpty() ? null : union;
+      } else {
+        // all clauses must match, so the terms of any of them are enough:
+        // pick the clause with the fewest terms, and the longest terms on ties
+        Set<Term> best = null;
+        for (Set<Term> terms : termSets) {
+          best = better(best, terms);
+        }
+        for (TermExtractor child : children) {
+          best = better(best, child.extract());
+        }
+        return best;
+      }
+    }
+
+    private static Set<Term> better(Set<Term> best, Set<Term> candidate) {
+      if (candidate == null || candidate.isEmpty()) {
+        return best;
+      }
+      if (best == null || candidate.size() < best.size()
+          || (candidate.size() == best.size() && totalLength(candidate) > totalLength(best))) {
+        return candidate;
+      }
+      return best;
+    }
+
+    private static long totalLength(Set<Term> terms) {
+      long length = 0;
+      for (Term term : terms) {
+        length += term.bytes().length;
+      }
+      return length;
+    }
+  }
+
+  private static final class RegisteredQuery {
+
+    final String id;
+    final Query query;
+    /** Terms of which a document must contain at least one for the query to match, or null if unknown. */
+    final Set<Term> terms;
+    final QueryMetrics metrics = new QueryMetrics();
+
+    RegisteredQuery(String id, Query query, Set<Term> terms) {
+      this.id = id;
+      this.query = query;
+      this.terms = terms;
+    }
+  }
+
+  /** Documents of a batch that registered queries matched. */
+  public static final class Matches {
+
+    private final List<Set<String>> matchingQueries;
+    private final int candidateCount;
+
+    Matches(List<Set<String>> matchingQueries, int candidateCount) {
+      this.matchingQueries = matchingQueries;
+      this.candidateCount = candidateCount;
+    }
+
+    /** Returns the number of documents of the batch. */
+    public int getDocumentCount() {
+      return matchingQueries.size();
+    }
+
+    /** Returns the ids of the queries that matched the document at index {@code doc} of the batch. */
+    public Set<String> getMatchingQueries(int doc) {
+      return matchingQueries.get(doc);
+    }
+
+    /** Returns the number of queries that were run against the batch after pre-filtering. */
+    public int getCandidateCount() {
+      return candidateCount;
+    }
+  }
+
+  /** Metrics of a registered query. */
+  public static final class QueryMetrics {
+
+    private final LongAdder evaluationCount = new LongAdder();
+    private final LongAdder matchCount = new LongAdder();
+    private final LongAdder totalTimeNanos = new LongAdder();
+    private final LongAccumulator maxTimeNanos = new LongAccumulator(Math::max, 0);
+
+    QueryMetrics() {}
+
+    void record(long timeNanos, int matches) {
+      evaluationCount.increment();
+      matchCount.add(matches);
+      totalTimeNanos.add(timeNanos);
+      maxTimeNanos.accumulate(timeNanos);
+    }
+
+    /** Returns the number of batches that the query was run against. */
+    public long getEvaluationCount() {
+      return evaluationCount.sum();
+    }
+
+    /** Returns the number of documents that the query matched. */
+    public long getMatchCount() {
+      return matchCount.sum();
+    }
+
+    /** Returns the total time spent running the query, in nanoseconds. */
+    public long getTotalTimeNanos() {
+      return totalTimeNanos.sum();
+    }
+
+    /** Returns the longest time spent running the query against a batch, in nanoseconds. */
+    public long getMaxTimeNanos() {
+      return maxTimeNanos.get();
+    }
+
+    @Override
+    public String toString() {
+      return "QueryMetrics(evaluations=" + getEvaluationCount() + ", matches=" + getMatchCount()
+          + ", totalTimeNanos=" + getTotalTimeNanos() + ", maxTimeNanos=" + getMaxTimeNanos() + ")";
+    }
+  }
+}
@@ -0,0 +1,300 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index.memory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.DisjunctionMaxQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryVisitor;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
+import org.apache.lucene.util.TestUtil;
+import org.apache.lucene.util.ThreadInterruptedException;
+
+public class TestBatchPercolator extends LuceneTestCase {
+
+  private static final String[] FIELDS = new String[] {"title", "body"};
+
+  public void testExtractTerms() {
+    Term a = new Term("body", "a"), b = new Term("body", "b"), c = new Term("body", "c"), d = new Term("body", "d");
+    assertEquals(Collections.singleton(a), BatchPercolator.extractTerms(new TermQuery(a)));
+
+    // conjunction: one of the clauses is enough
+    BooleanQuery.Builder builder = new BooleanQuery.Builder();
+    builder.add(new TermQuery(a), Occur.MUST);
+    builder.add(new BooleanQuery.Builder()
+        .add(new TermQuery(b), Occur.SHOULD)
+        .add(new TermQuery(c), Occur.SHOULD)
+        .build(), Occur.FILTER);
+    builder.add(new TermQuery(d), Occur.SHOULD);
+    assertEquals(Collections.singleton(a), BatchPercolator.extractTerms(builder.build()));
+
+    // disjunction: all clauses are needed
+    Query query = new DisjunctionMaxQuery(Arrays.asList(new TermQuery(a), new BoostQuery(new TermQuery(b), 2)), 0);
+    assertEquals(new HashSet<>(Arrays.asList(a, b)), BatchPercolator.extractTerms(query));
+
+    // clauses that are not terms
+    assertNull(BatchPercolator.extractTerms(new MatchAllDocsQuery()));
+    query = new BooleanQuery.Builder()
+        .add(new TermQuery(a), Occur.SHOULD)
+        .add(new PrefixQuery(b), Occur.SHOULD)
+        .build();
+    assertNull(BatchPercolator.extractTerms(query));
+    query = new BooleanQuery.Builder()
+        .add(new PrefixQuery(a), Occur.MUST)
+        .add(new TermQuery(b), Occur.MUST_NOT)
+        .build();
+    assertNull(BatchPercolator.extractTerms(query));
+    query = new BooleanQuery.Builder()
+        .add(new PrefixQuery(a), Occur.MUST)
+        .add(new ConstantScoreQuery(new PhraseQuery("body", "c", "d")), Occur.MUST)
+        .build();
+    assertEquals(new HashSet<>(Arrays.asList(c, d)), BatchPercolator.extractTerms(query));
+  }
+
+  public void testRandom() throws Exception {
+    Analyzer analyzer = new MockAnalyzer(random());
+    ExecutorService executor = null;
+    if (random().nextBoolean()) {
+      executor = new ThreadPoolExecutor(1, 4, 0L, TimeUnit.MILLISECONDS,
+          new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("TestBatchPercolator"));
+    }
+    try {
+      BatchPercolator percolator = new BatchPercolator(analyzer, executor);
+      Map<String, Query> queries = new HashMap<>();
+      int numQueries = atLeast(500);
+      for (int i = 0; i < numQueries; ++i) {
+        String id = Integer.toString(random().nextInt(numQueries));
+        if (random().nextInt(10) == 0) {
+          assertEquals(queries.remove(id) != null, percolator.unregister(id));
+        } else {
+          Query query = randomQuery(0);
+          queries.put(id, query);
+          percolator.register(id, query);
+        }
+      }
+      assertEquals(queries.size(), percolator.getQueryCount());
+
+      int numBatches = atLeast(5);
+      for (int batch = 0; batch < numBatches; ++batch) {
+        List<Document> documents = new ArrayList<>();
+        int numDocs = random().nextInt(10);
+        for (int i = 0; i < numDocs; ++i) {
+          documents.add(randomDocument());
+        }
+        BatchPercolator.Matches matches = percolator.match(documents);
+        assertEquals(numDocs, matches.getDocumentCount());
+        assertTrue(matches.getCandidateCount() <= queries.size());
+        for (int i = 0; i < numDocs; ++i) {
+          IndexSearcher searcher = MemoryIndex.fromDocument(documents.get(i), analyzer).createSearcher();
+          Set<String> expected = new HashSet<>();
+          for (Map.Entry<String, Query> entry : queries.entrySet()) {
+            if (searcher.count(entry.getValue()) > 0) {
+              expected.add(entry.getKey());
+            }
+          }
+          assertEquals(expected, matches.getMatchingQueries(i));
+        }
+      }
+    } finally {
+      if (executor != null) {
+        executor.shutdown();
+      }
+    }
+  }
+
+  public void testMetrics() throws Exception {
+    Analyzer analyzer = new MockAnalyzer(random());
+    BatchPercolator percolator = new BatchPercolator(analyzer, null);
+    percolator.register("foo", new TermQuery(new Term("body", "foo")));
+    percolator.register("bar", new TermQuery(new Term("body", "bar")));
+    assertNull(percolator.getMetrics("baz"));
+
+    Document doc1 = new Document();
+    doc1.add(new TextField("body", "foo", Field.Store.NO));
+    Document doc2 = new Document();
+    doc2.add(new TextField("body", "foo quux", Field.Store.NO));
+    BatchPercolator.Matches matches = percolator.match(Arrays.asList(doc1, doc2));
+    // bar was filtered out
+    assertEquals(1, matches.getCandidateCount());
+    assertEquals(Collections.singleton("foo"), matches.getMatchingQueries(0));
+    assertEquals(Collections.singleton("foo"), matches.getMatchingQueries(1));
+
+    BatchPercolator.QueryMetrics metrics = percolator.getMetrics("foo");
+    assertEquals(1, metrics.getEvaluationCount());
+    assertEquals(2, metrics.getMatchCount());
+    assertTrue(metrics.getMaxTimeNanos() <= metrics.getTotalTimeNanos());
+    assertEquals(0, percolator.getMetrics("bar").getEvaluationCount());
+  }
+
+  public void testFailingSliceWaitsForOtherSlices() throws Exception {
+    ExecutorService executor = new ThreadPoolExecutor(1, 4, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("TestBatchPercolator"));
+    try {
+      BatchPercolator percolator = new BatchPercolator(new MockAnalyzer(random()), executor);
+      AtomicInteger running = new AtomicInteger();
+      int numQueries = 1000;
+      for (int i = 0; i < numQueries; ++i) {
+        percolator.register(Integer.toString(i), new SlowQuery(i, i == 5, running));
+      }
+      Document doc = new Document();
+      doc.add(new TextField("body", "foo", Field.Store.NO));
+
+      IOException e = expectThrows(IOException.class, () -> percolator.match(Arrays.asList(doc, doc)));
+      assertEquals("boom", e.getMessage());
+      // no slice may still be searching the memory indexes
+      assertEquals(0, running.get());
+
+      percolator.unregister("5");
+      BatchPercolator.Matches matches = percolator.match(Arrays.asList(doc, doc));
+      assertEquals(numQueries - 1, matches.getMatchingQueries(0).size());
+      assertEquals(numQueries - 1, matches.getMatchingQueries(1).size());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /** Matches all documents, slowly, or fails. */
+  private static class SlowQuery extends Query {
+    private final int id;
+    private final boolean fail;
+    private final AtomicInteger running;
+
+    SlowQuery(int id, boolean fail, AtomicInteger running) {
+      this.id = id;
+      this.fail = fail;
+      this.running = running;
+    }
+
+    @Override
+    public Weight createWeight(IndexSearcher searcher, ScoreMode scoreMode, float boost) throws IOException {
+      if (fail) {
+        throw new IOException("boom");
+      }
+      running.incrementAndGet();
+      try {
+        Thread.sleep(1);
+      } catch (InterruptedException e) {
+        throw new ThreadInterruptedException(e);
+      } finally {
+        running.decrementAndGet();
+      }
+      return new MatchAllDocsQuery().createWeight(searcher, scoreMode, boost);
+    }
+
+    @Override
+    public void visit(QueryVisitor visitor) {
+      visitor.visitLeaf(this);
+    }
+
+    @Override
+    public String toString(String field) {
+      return "SlowQuery(" + id + ")";
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return sameClassAs(other) && id == ((SlowQuery) other).id;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * classHash() + id;
+    }
+  }
+
+  private static Document randomDocument() {
+    Document doc = new Document();
+    for (String field : FIELDS) {
+      StringBuilder text = new StringBuilder();
+      int numTerms = random().nextInt(6);
+      for (int i = 0; i < numTerms; ++i) {
+        text.append(randomTerm()).append(' ');
+      }
+      doc.add(new TextField(field, text.toString(), Field.Store.NO));
+    }
+    return doc;
+  }
+
+  private static String randomTerm() {
+    return Character.toString((char) TestUtil.nextInt(random(), 'a', 'l'));
+  }
+
+  private static Query randomQuery(int depth) {
+    String field = FIELDS[random().nextInt(FIELDS.length)];
+    switch (random().nextInt(depth > 2 ? 3 : 9)) {
+      case 0:
+      case 1:
+      case 2:
+        return new TermQuery(new Term(field, randomTerm()));
+      case 3:
+        return new PhraseQuery(field, randomTerm(), randomTerm());
+      case 4:
+        return random().nextBoolean() ? new PrefixQuery(new Term(field, randomTerm())) : new MatchAllDocsQuery();
+      case 5:
+        return new BoostQuery(randomQuery(depth + 1), 2);
+      case 6:
+        return new DisjunctionMaxQuery(Arrays.asList(randomQuery(depth + 1), randomQuery(depth + 1)), 0);
+      default:
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        int numClauses = TestUtil.nextInt(random(), 1, 4);
+        int numShould = 0;
+        for (int i = 0; i < numClauses; ++i) {
+          Occur occur = Occur.values()[random().nextInt(Occur.values().length)];
+          if (occur == Occur.SHOULD) {
+            numShould++;
+          }
+          builder.add(randomQuery(depth + 1), occur);
+        }
+        if (numShould > 1 && random().nextBoolean()) {
+          builder.setMinimumNumberShouldMatch(TestUtil.nextInt(random(), 1, numShould));
+        }
+        return builder.build();
+    }
+  }
+}
@@ -25,14 +25,15 @@ import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.DoubleValues;
 import org.apache.lucene.search.DoubleValuesSource;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.Explanation;
-import org.apache.lucene.search.FilterScorer;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Matches;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.QueryVisitor;
 import org.apache.lucene.search.ScoreMode;
 import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.TwoPhaseIterator;
 import org.apache.lucene.search.Weight;
 
 /**
@@ -41,6 +42,12 @@ import org.apache.lucene.search.Weight;
  *
  * If the DoubleValuesSource doesn't return a value for a particular document,
  * then that document will be given a score of 0.
+ *
+ * When only the top hits are needed, documents that can't be competitive are
+ * skipped based on the {@link DoubleValues#getMaxValue(int) maximum values}
+ * of the source. Sources may declare such bounds with
+ * {@link DoubleValuesSource#withMaxValue(DoubleValuesSource, double)}, and the
+ * maximum values of the wrapped query's scores are used when boosting by value.
  */
 public final class FunctionScoreQuery extends Query {
 
@@ -108,7 +115,7 @@ public final class FunctionScoreQuery extends Query {
     Weight inner = in.createWeight(searcher, scoreMode.needsScores() && source.needsScores() ? scoreMode : ScoreMode.COMPLETE_NO_SCORES, 1f);
     if (scoreMode.needsScores() == false)
       return inner;
-    return new FunctionScoreWeight(this, inner, source.rewrite(searcher), boost);
+    return new FunctionScoreWeight(this, inner, source.rewrite(searcher), boost, scoreMode);
   }
 
   @Override
@@ -148,12 +155,14 @@ public final class FunctionScoreQuery extends Query {
     final Weight inner;
     final DoubleValuesSource valueSource;
     final float boost;
+    final ScoreMode scoreMode;
 
-    FunctionScoreWeight(Query query, Weight inner, DoubleValuesSource valueSource, float boost) {
+    FunctionScoreWeight(Query query, Weight inner, DoubleValuesSource valueSource, float boost, ScoreMode scoreMode) {
       super(query);
       this.inner = inner;
       this.valueSource = valueSource;
       this.boost = boost;
+      this.scoreMode = scoreMode;
     }
 
     @Override
@@ -209,23 +218,17 @@ public final class FunctionScoreQuery extends Query {
       if (in == null)
         return null;
       DoubleValues scores = valueSource.getValues(context, DoubleValuesSource.fromScorer(in));
-      return new FilterScorer(in) {
-        @Override
-        public float score() throws IOException {
-          if (scores.advanceExact(docID())) {
-            double factor = scores.doubleValue();
-            if (factor >= 0) {
-              return (float) (factor * boost);
-            }
-          }
-          // default: missing value, negative value or NaN
-          return 0;
-        }
-        @Override
-        public float getMaxScore(int upTo) throws IOException {
-          return Float.POSITIVE_INFINITY;
-        }
-      };
+      if (scoreMode != ScoreMode.TOP_SCORES) {
+        return new FunctionScorer(this, in, scores, boost, false, 0);
+      }
+      // If scores are multiplied by a bounded factor, then the wrapped scorer
+      // can skip documents whose score is not competitive even with the
+      // highest factor
+      double maxFactor = 0;
+      if (scores instanceof MultiplicativeBoostValues) {
+        maxFactor = ((MultiplicativeBoostValues) scores).boostValues.getMaxValue(DocIdSetIterator.NO_MORE_DOCS) * boost;
+      }
+      return new FunctionScorer(this, in, scores, boost, true, maxFactor);
     }
 
     @Override
@@ -245,18 +248,7 @@ public final class FunctionScoreQuery extends Query {
 
     @Override
     public DoubleValues getValues(LeafReaderContext ctx, DoubleValues scores) throws IOException {
-      DoubleValues in = DoubleValues.withDefault(boost.getValues(ctx, scores), 1);
-      return new DoubleValues() {
-        @Override
-        public double doubleValue() throws IOException {
-          return scores.doubleValue() * in.doubleValue();
-        }
-
-        @Override
-        public boolean advanceExact(int doc) throws IOException {
-          return in.advanceExact(doc);
-        }
-      };
+      return new MultiplicativeBoostValues(scores, DoubleValues.withDefault(boost.getValues(ctx, scores), 1));
     }
 
     @Override
@@ -306,6 +298,42 @@ public final class FunctionScoreQuery extends Query {
     }
   }
 
+  private static class MultiplicativeBoostValues extends DoubleValues {
+
+    final DoubleValues scores;
+    final DoubleValues boostValues;
+
+    MultiplicativeBoostValues(DoubleValues scores, DoubleValues boostValues) {
+      this.scores = scores;
+      this.boostValues = boostValues;
+    }
+
+    @Override
+    public double doubleValue() throws IOException {
+      return scores.doubleValue() * boostValues.doubleValue();
+    }
+
+    @Override
+    public boolean advanceExact(int doc) throws IOException {
+      return boostValues.advanceExact(doc);
+    }
+
+    @Override
+    public int advanceShallow(int target) throws IOException {
+      return Math.min(scores.advanceShallow(target), boostValues.advanceShallow(target));
+    }
+
+    @Override
+    public double getMaxValue(int upTo) throws IOException {
+      final double maxBoost = boostValues.getMaxValue(upTo);
+      if (maxBoost <= 0) {
+        // scores are non-negative, so the product is never positive
+        return 0;
+      }
+      return scores.getMaxValue(upTo) * maxBoost;
+    }
+  }
+
   private static class QueryBoostValuesSource extends DoubleValuesSource {
 
     private final DoubleValuesSource query;
@@ -329,6 +357,11 @@ public final class FunctionScoreQuery extends Query {
         public boolean advanceExact(int doc) throws IOException {
           return in.advanceExact(doc);
         }
+
+        @Override
+        public double getMaxValue(int upTo) {
+          return boost;
+        }
       }, 1);
     }
 
@@ -375,4 +408,159 @@ public final class FunctionScoreQuery extends Query {
       return Explanation.match(boost, "Matched boosting query " + query.toString());
     }
   }
+
+  private static class FunctionScorer extends Scorer {
+
+    private final Scorer in;
+    private final DoubleValues scores;
+    private final float boost;
+    private final double maxFactor;
+    private final DocIdSetIterator iterator;
+    private final TwoPhaseIterator twoPhaseIterator;
+    private float minCompetitiveScore;
+    private int upTo = -1;
+
+    /**
+     * @param skipNonCompetitive whether to skip blocks of documents that are not
+     *        competitive, only useful with {@link ScoreMode#TOP_SCORES}
+     * @param maxFactor if positive, an upper bound of the factor that scores of
+     *        the wrapped scorer are multiplied by
+     */
+    FunctionScorer(Weight weight, Scorer in, DoubleValues scores, float boost, boolean skipNonCompetitive, double maxFactor) {
+      super(weight);
+      this.in = in;
+      this.scores = scores;
+      this.boost = boost;
+      this.maxFactor = maxFactor;
+      TwoPhaseIterator inTwoPhase = in.twoPhaseIterator();
+      if (skipNonCompetitive == false) {
+        iterator = in.iterator();
+        twoPhaseIterator = inTwoPhase;
+      } else if (inTwoPhase == null) {
+        iterator = new SkippingIterator(in.iterator());
+        twoPhaseIterator = null;
+      } else {
+        twoPhaseIterator = new TwoPhaseIterator(new SkippingIterator(inTwoPhase.approximation())) {
+          @Override
+          public boolean matches() throws IOException {
+            return inTwoPhase.matches();
+          }
+
+          @Override
+          public float matchCost() {
+            return inTwoPhase.matchCost();
+          }
+        };
+        iterator = TwoPhaseIterator.asDocIdSetIterator(twoPhaseIterator);
+      }
+    }
+
+    @Override
+    public float score() throws IOException {
+      if (scores.advanceExact(docID())) {
+        double factor = scores.doubleValue();
+        if (factor >= 0) {
+          return (float) (factor * boost);
+        }
+      }
+      // default: missing value, negative value or NaN
+      return 0;
+    }
+
+    @Override
+    public int docID() {
+      return in.docID();
+    }
+
+    @Override
+    public DocIdSetIterator iterator() {
+      return iterator;
+    }
+
+    @Override
+    public TwoPhaseIterator twoPhaseIterator() {
+      return twoPhaseIterator;
+    }
+
+    @Override
+    public int advanceShallow(int target) throws IOException {
+      return scores.advanceShallow(target);
+    }
+
+    @Override
+    public float getMaxScore(int upTo) throws IOException {
+      final double maxValue = scores.getMaxValue(upTo) * boost;
+      if (Double.isNaN(maxValue)) {
+        return Float.POSITIVE_INFINITY;
+      }
+      // casting is monotonic, so this is also an upper bound of the scores as floats
+      return (float) Math.max(maxValue, 0);
+    }
+
+    @Override
+    public void setMinCompetitiveScore(float minScore) throws IOException {
+      if (minScore > minCompetitiveScore) {
+        minCompetitiveScore = minScore;
+        // force the current block to be checked again
+        upTo = -1;
+        if (maxFactor > 0 && Double.isFinite(maxFactor)) {
+          // step down a few ulps to account for rounding errors when multiplying scores
+          float innerMinScore = (float) (minScore / maxFactor);
+          for (int i = 0; i < 3; ++i) {
+            innerMinScore = Math.nextDown(innerMinScore);
+          }
+          if (innerMinScore > 0) {
+            in.setMinCompetitiveScore(innerMinScore);
+          }
+        }
+      }
+    }
+
+    /** Return the first target that is greater than or equal to {@code target}
+     *  and that belongs to a block that may contain competitive documents. */
+    private int advanceTarget(int target) throws IOException {
+      if (target <= upTo || target == DocIdSetIterator.NO_MORE_DOCS) {
+        // the current block is competitive
+        return target;
+      }
+      upTo = advanceShallow(target);
+      while (getMaxScore(upTo) < minCompetitiveScore) {
+        if (upTo == DocIdSetIterator.NO_MORE_DOCS) {
+          return DocIdSetIterator.NO_MORE_DOCS;
+        }
+        target = upTo + 1;
+        upTo = advanceShallow(target);
+      }
+      return target;
+    }
+
+    private class SkippingIterator extends DocIdSetIterator {
+
+      private final DocIdSetIterator in;
+
+      SkippingIterator(DocIdSetIterator in) {
+        this.in = in;
+      }
+
+      @Override
+      public int docID() {
+        return in.docID();
+      }
+
+      @Override
+      public int nextDoc() throws IOException {
+        return advance(in.docID() + 1);
+      }
+
+      @Override
+      public int advance(int target) throws IOException {
+        return in.advance(advanceTarget(target));
+      }
+
+      @Override
+      public long cost() {
+        return in.cost();
+      }
+    }
+  }
 }
@@ -15,7 +15,7 @@
  * limitations under the License.
  */
 
-package org.apache.lucene.search.intervals;
+package org.apache.lucene.queries.intervals;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -112,25 +112,25 @@ class BlockIntervalsSource extends ConjunctionIntervalsSource {
 
     @Override
     public int nextInterval() throws IOException {
-      if (subIterators.get(0).nextInterval() == IntervalIterator.NO_MORE_INTERVALS)
+      if (subIterators[0].nextInterval() == IntervalIterator.NO_MORE_INTERVALS)
         return start = end = IntervalIterator.NO_MORE_INTERVALS;
       int i = 1;
-      while (i < subIterators.size()) {
-        while (subIterators.get(i).start() <= subIterators.get(i - 1).end()) {
-          if (subIterators.get(i).nextInterval() == IntervalIterator.NO_MORE_INTERVALS)
+      while (i < subIterators.length) {
+        while (subIterators[i].start() <= subIterators[i - 1].end()) {
+          if (subIterators[i].nextInterval() == IntervalIterator.NO_MORE_INTERVALS)
             return start = end = IntervalIterator.NO_MORE_INTERVALS;
         }
-        if (subIterators.get(i).start() == subIterators.get(i - 1).end() + 1) {
+        if (subIterators[i].start() == subIterators[i - 1].end() + 1) {
           i = i + 1;
         }
         else {
-          if (subIterators.get(0).nextInterval() == IntervalIterator.NO_MORE_INTERVALS)
+          if (subIterators[0].nextInterval() == IntervalIterator.NO_MORE_INTERVALS)
             return start = end = IntervalIterator.NO_MORE_INTERVALS;
           i = 1;
         }
       }
-      start = subIterators.get(0).start();
-      end = subIterators.get(subIterators.size() - 1).end();
+      start = subIterators[0].start();
+      end = subIterators[subIterators.length - 1].end();
       return start;
     }
 
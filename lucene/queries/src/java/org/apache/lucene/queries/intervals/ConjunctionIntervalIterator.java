@@ -15,7 +15,7 @@
  * limitations under the License.
  */
 
-package org.apache.lucene.search.intervals;
+package org.apache.lucene.queries.intervals;
 
 import java.io.IOException;
 import java.util.List;
@@ -25,12 +25,12 @@ import org.apache.lucene.search.DocIdSetIterator;
 abstract class ConjunctionIntervalIterator extends IntervalIterator {
 
   final DocIdSetIterator approximation;
-  final List<IntervalIterator> subIterators;
+  final IntervalIterator[] subIterators;
   final float cost;
 
   ConjunctionIntervalIterator(List<IntervalIterator> subIterators) {
     this.approximation = ConjunctionDISI.intersectIterators(subIterators);
-    this.subIterators = subIterators;
+    this.subIterators = subIterators.toArray(new IntervalIterator[0]);
     float costsum = 0;
     for (IntervalIterator it : subIterators) {
       costsum += it.matchCost();
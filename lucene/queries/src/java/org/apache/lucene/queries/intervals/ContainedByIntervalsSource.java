@@ -15,7 +15,7 @@
  * limitations under the License.
  */
 
-package org.apache.lucene.search.intervals;
+package org.apache.lucene.queries.intervals;
 
 import java.io.IOException;
 import java.util.Arrays;
@@ -14,7 +14,7 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-package org.apache.lucene.search.intervals;
+package org.apache.lucene.queries.intervals;
 
 
 import java.util.Arrays;
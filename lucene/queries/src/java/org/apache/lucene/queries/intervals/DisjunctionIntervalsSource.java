@@ -15,7 +15,7 @@
  * limitations under the License.
  */
 
-package org.apache.lucene.search.intervals;
+package org.apache.lucene.queries.intervals;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -192,9 +192,11 @@ class DisjunctionIntervalsSource extends IntervalsSource {
       }
       int start = current.start(), end = current.end();
       while (intervalQueue.size() > 0 && contains(intervalQueue.top(), start, end)) {
-        IntervalIterator it = intervalQueue.pop();
-        if (it != null && it.nextInterval() != NO_MORE_INTERVALS) {
-          intervalQueue.add(it);
+        IntervalIterator it = intervalQueue.top();
+        if (it.nextInterval() != NO_MORE_INTERVALS) {
+          intervalQueue.updateTop();
+        } else {
+          intervalQueue.pop();
         }
       }
       if (intervalQueue.size() == 0) {
@@ -15,12 +15,21 @@
  * limitations under the License.
  */
 
-package org.apache.lucene.search.intervals;
+package org.apache.lucene.queries.intervals;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 
+import org.apache.lucene.index.ImpactsEnum;
+import org.apache.lucene.index.ImpactsSource;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.Explanation;
 import org.apache.lucene.search.FilterMatchesIterator;
 import org.apache.lucene.search.IndexSearcher;
@@ -31,6 +40,7 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.search.QueryVisitor;
 import org.apache.lucene.search.ScoreMode;
 import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.SynonymQuery;
 import org.apache.lucene.search.Weight;
 
 /**
@@ -57,6 +67,11 @@ import org.apache.lucene.search.Weight;
  *
  * Scores are bounded to between 0 and 1.  For higher contributions, wrap the query
  * in a {@link org.apache.lucene.search.BoostQuery}
+ *
+ * When only the top hits are needed, the sloppy frequency of a document is
+ * bounded by the sum of the frequencies of the terms of the source, so the
+ * impacts of these terms give upper bounds of scores per block of documents,
+ * which parent queries may use to skip non-competitive documents.
  */
 public final class IntervalQuery extends Query {
 
@@ -144,11 +159,53 @@ public final class IntervalQuery extends Query {
 
     final ScoreMode scoreMode;
     final float boost;
+    final List<Term> terms; // null if the source cannot bound its number of intervals
 
     public IntervalWeight(Query query, float boost, ScoreMode scoreMode) {
       super(query);
       this.scoreMode = scoreMode;
       this.boost = boost;
+      this.terms = scoreMode == ScoreMode.TOP_SCORES ? collectTerms() : null;
+    }
+
+    private List<Term> collectTerms() {
+      // terms are kept with their multiplicity so that the sum of their
+      // frequencies is an upper bound of the number of intervals
+      List<Term> terms = new ArrayList<>();
+      boolean[] bounded = new boolean[] { true };
+      intervalsSource.visit(field, new QueryVisitor() {
+        @Override
+        public void consumeTerms(Query query, Term... ts) {
+          for (Term t : ts) {
+            terms.add(t);
+          }
+        }
+        @Override
+        public void visitLeaf(Query query) {
+          bounded[0] = false;
+        }
+      });
+      return bounded[0] ? terms : null;
+    }
+
+    private ImpactsSource impacts(LeafReaderContext context) throws IOException {
+      List<ImpactsEnum> impacts = new ArrayList<>();
+      for (Term term : terms) {
+        Terms t = context.reader().terms(term.field());
+        if (t == null) {
+          continue;
+        }
+        TermsEnum te = t.iterator();
+        if (te.seekExact(term.bytes())) {
+          impacts.add(te.impacts(PostingsEnum.FREQS));
+        }
+      }
+      if (impacts.isEmpty()) {
+        return null;
+      }
+      float[] boosts = new float[impacts.size()];
+      Arrays.fill(boosts, 1f);
+      return SynonymQuery.mergeImpacts(impacts.toArray(new ImpactsEnum[0]), boosts);
     }
 
     @Override
@@ -185,7 +242,8 @@ public final class IntervalQuery extends Query {
       IntervalIterator intervals = intervalsSource.intervals(field, context);
       if (intervals == null)
         return null;
-      return new IntervalScorer(this, intervals, intervalsSource.minExtent(), boost, scoreFunction);
+      ImpactsSource impacts = terms == null ? null : impacts(context);
+      return new IntervalScorer(this, intervals, impacts, intervalsSource.minExtent(), boost, scoreFunction);
     }
 
     @Override
@@ -15,11 +15,13 @@
  * limitations under the License.
  */
 
-package org.apache.lucene.search.intervals;
+package org.apache.lucene.queries.intervals;
 
 import java.io.IOException;
 
+import org.apache.lucene.index.ImpactsSource;
 import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.ImpactsDISI;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.TwoPhaseIterator;
 import org.apache.lucene.search.Weight;
@@ -31,16 +33,22 @@ class IntervalScorer extends Scorer {
   private final Similarity.SimScorer simScorer;
   private final float boost;
   private final int minExtent;
+  private final ImpactsDISI impactsDisi; // only used for max scores, null if not bounded
 
   private float freq;
   private int lastScoredDoc = -1;
 
-  IntervalScorer(Weight weight, IntervalIterator intervals, int minExtent, float boost, IntervalScoreFunction scoreFunction) {
+  IntervalScorer(Weight weight, IntervalIterator intervals, ImpactsSource impacts, int minExtent, float boost, IntervalScoreFunction scoreFunction) {
     super(weight);
     this.intervals = intervals;
     this.minExtent = minExtent;
     this.boost = boost;
     this.simScorer = scoreFunction.scorer(boost);
+    // the sloppy frequency is at most the number of intervals, which is at most
+    // the sum of the frequencies of the terms, and scores only depend on freq.
+    // These bounds are only exposed to parent scorers: they are too loose to skip
+    // blocks on their own, so the approximation does not consult them.
+    this.impactsDisi = impacts == null ? null : new ImpactsDISI(intervals, impacts, simScorer);
   }
 
   @Override
@@ -92,8 +100,19 @@ class IntervalScorer extends Scorer {
   }
 
   @Override
-  public float getMaxScore(int upTo) {
-    return boost;
+  public int advanceShallow(int target) throws IOException {
+    if (impactsDisi == null) {
+      return super.advanceShallow(target);
+    }
+    return impactsDisi.advanceShallow(target);
+  }
+
+  @Override
+  public float getMaxScore(int upTo) throws IOException {
+    if (impactsDisi == null) {
+      return boost;
+    }
+    return Math.min(boost, impactsDisi.getMaxScore(upTo));
   }
 
 }
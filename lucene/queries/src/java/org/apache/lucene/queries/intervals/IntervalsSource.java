@@ -15,7 +15,7 @@
  * limitations under the License.
  */
 
-package org.apache.lucene.search.intervals;
+package org.apache.lucene.queries.intervals;
 
 import java.io.IOException;
 import java.util.Collection;
@@ -57,6 +57,12 @@ public abstract class IntervalsSource {
 
   /**
    * Expert: visit the tree of sources
+   *
+   * Sources must report the terms that they read through
+   * {@link QueryVisitor#consumeTerms}, or call {@link QueryVisitor#visitLeaf}
+   * if they cannot list them. {@link IntervalQuery} relies on this to compute
+   * upper bounds of scores, assuming that a source never returns more intervals
+   * in a document than the sum of the frequencies of the terms it reports.
    */
   public abstract void visit(String field, QueryVisitor visitor);
 
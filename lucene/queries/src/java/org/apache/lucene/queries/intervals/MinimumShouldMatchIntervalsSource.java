@@ -15,7 +15,7 @@
  * limitations under the License.
  */
 
-package org.apache.lucene.search.intervals;
+package org.apache.lucene.queries.intervals;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -182,7 +182,7 @@ class MinimumShouldMatchIntervalsSource extends IntervalsSource {
       this.backgroundQueue = new PriorityQueue<IntervalIterator>(subs.size()) {
         @Override
         protected boolean lessThan(IntervalIterator a, IntervalIterator b) {
-          return a.end() < b.end() || (a.end() == b.end() && a.start() >= b.start());
+          return endsBefore(a, b);
         }
       };
     }
@@ -228,13 +228,13 @@ class MinimumShouldMatchIntervalsSource extends IntervalsSource {
     public int nextInterval() throws IOException {
       // first, find a matching interval beyond the current start
       while (this.proximityQueue.size() == minShouldMatch && proximityQueue.top().start() == start) {
-        IntervalIterator it = proximityQueue.pop();
-        if (it != null && it.nextInterval() != IntervalIterator.NO_MORE_INTERVALS) {
-          backgroundQueue.add(it);
-          IntervalIterator next = backgroundQueue.pop();
-          assert next != null;  // it's just been added!
-          proximityQueue.add(next);
+        IntervalIterator it = proximityQueue.top();
+        if (it.nextInterval() != IntervalIterator.NO_MORE_INTERVALS) {
+          IntervalIterator next = swapWithBackground(it);
+          proximityQueue.updateTop(next);
           updateRightExtreme(next);
+        } else {
+          proximityQueue.pop();
         }
       }
       if (this.proximityQueue.size() < minShouldMatch)
@@ -246,16 +246,18 @@ class MinimumShouldMatchIntervalsSource extends IntervalsSource {
         end = queueEnd;
         if (proximityQueue.top().end() == end)
           return start;
-        lead = proximityQueue.pop();
-        if (lead != null) {
-          if (lead.nextInterval() != NO_MORE_INTERVALS) {
-            backgroundQueue.add(lead);
-          }
-          IntervalIterator next = backgroundQueue.pop();
-          if (next != null) {
-            proximityQueue.add(next);
-            updateRightExtreme(next);
-          }
+        lead = proximityQueue.top();
+        final IntervalIterator next;
+        if (lead.nextInterval() != NO_MORE_INTERVALS) {
+          next = swapWithBackground(lead);
+        } else {
+          next = backgroundQueue.pop();
+        }
+        if (next != null) {
+          proximityQueue.updateTop(next);
+          updateRightExtreme(next);
+        } else {
+          proximityQueue.pop();
         }
       } while (this.proximityQueue.size() == minShouldMatch && end == queueEnd);
       return start;
@@ -294,6 +296,25 @@ class MinimumShouldMatchIntervalsSource extends IntervalsSource {
       start = end = -1;
     }
 
+    /**
+     * Add {@code it} to the background queue and return the iterator that
+     * ends first in the background queue. This is equivalent to
+     * {@code backgroundQueue.add(it); return backgroundQueue.pop();} but
+     * only requires at most one traversal of the heap.
+     */
+    private IntervalIterator swapWithBackground(IntervalIterator it) {
+      if (backgroundQueue.size() == 0 || endsBefore(it, backgroundQueue.top())) {
+        return it;
+      }
+      IntervalIterator next = backgroundQueue.top();
+      backgroundQueue.updateTop(it);
+      return next;
+    }
+
+    private static boolean endsBefore(IntervalIterator a, IntervalIterator b) {
+      return a.end() < b.end() || (a.end() == b.end() && a.start() >= b.start());
+    }
+
     private void updateRightExtreme(IntervalIterator it) {
       int itEnd = it.end();
       if (itEnd > queueEnd) {
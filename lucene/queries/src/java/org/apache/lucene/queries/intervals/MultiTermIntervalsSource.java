@@ -15,7 +15,7 @@
  * limitations under the License.
  */
 
-package org.apache.lucene.search.intervals;
+package org.apache.lucene.queries.intervals;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -91,7 +91,9 @@ class MultiTermIntervalsSource extends IntervalsSource {
 
   @Override
   public void visit(String field, QueryVisitor visitor) {
-
+    if (visitor.acceptField(field)) {
+      visitor.visitLeaf(new IntervalQuery(field, this));
+    }
   }
 
   @Override
@@ -15,7 +15,7 @@
  * limitations under the License.
  */
 
-package org.apache.lucene.search.intervals;
+package org.apache.lucene.queries.intervals;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -112,42 +112,42 @@ class OrderedIntervalsSource extends ConjunctionIntervalsSource {
       i = 1;
       while (true) {
         while (true) {
-          if (subIterators.get(i - 1).end() >= b)
+          if (subIterators[i - 1].end() >= b)
             return start;
-          if (i == subIterators.size() || subIterators.get(i).start() > subIterators.get(i - 1).end())
+          if (i == subIterators.length || subIterators[i].start() > subIterators[i - 1].end())
             break;
           do {
-            if (subIterators.get(i).end() >= b || subIterators.get(i).nextInterval() == IntervalIterator.NO_MORE_INTERVALS)
+            if (subIterators[i].end() >= b || subIterators[i].nextInterval() == IntervalIterator.NO_MORE_INTERVALS)
               return start;
           }
-          while (subIterators.get(i).start() <= subIterators.get(i - 1).end());
+          while (subIterators[i].start() <= subIterators[i - 1].end());
           i++;
         }
-        start = subIterators.get(0).start();
+        start = subIterators[0].start();
         if (start == NO_MORE_INTERVALS) {
           return end = NO_MORE_INTERVALS;
         }
-        firstEnd = subIterators.get(0).end();
-        end = subIterators.get(subIterators.size() - 1).end();
-        b = subIterators.get(subIterators.size() - 1).start();
+        firstEnd = subIterators[0].end();
+        end = subIterators[subIterators.length - 1].end();
+        b = subIterators[subIterators.length - 1].start();
         i = 1;
-        if (subIterators.get(0).nextInterval() == IntervalIterator.NO_MORE_INTERVALS)
+        if (subIterators[0].nextInterval() == IntervalIterator.NO_MORE_INTERVALS)
           return start;
       }
     }
 
     @Override
     public int gaps() {
-      int gaps = subIterators.get(1).start() - firstEnd - 1;
-      for (int i = 2; i < subIterators.size(); i++) {
-        gaps += (subIterators.get(i).start() - subIterators.get(i - 1).end() - 1);
+      int gaps = subIterators[1].start() - firstEnd - 1;
+      for (int i = 2; i < subIterators.length; i++) {
+        gaps += (subIterators[i].start() - subIterators[i - 1].end() - 1);
       }
       return gaps;
     }
 
     @Override
     protected void reset() throws IOException {
-      subIterators.get(0).nextInterval();
+      subIterators[0].nextInterval();
       i = 1;
       start = end = firstEnd = -1;
     }
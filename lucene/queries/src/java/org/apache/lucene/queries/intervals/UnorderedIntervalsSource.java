@@ -15,7 +15,7 @@
  * limitations under the License.
  */
 
-package org.apache.lucene.search.intervals;
+package org.apache.lucene.queries.intervals;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -97,7 +97,6 @@ class UnorderedIntervalsSource extends ConjunctionIntervalsSource {
   private static class UnorderedIntervalIterator extends ConjunctionIntervalIterator {
 
     private final PriorityQueue<IntervalIterator> queue;
-    private final IntervalIterator[] subIterators;
     private final int[] innerPositions;
     private final boolean allowOverlaps;
 
@@ -111,13 +110,8 @@ class UnorderedIntervalsSource extends ConjunctionIntervalsSource {
           return a.start() < b.start() || (a.start() == b.start() && a.end() >= b.end());
         }
       };
-      this.subIterators = new IntervalIterator[subIterators.size()];
       this.innerPositions = new int[subIterators.size() * 2];
       this.allowOverlaps = allowOverlaps;
-
-      for (int i = 0; i < subIterators.size(); i++) {
-        this.subIterators[i] = subIterators.get(i);
-      }
     }
 
     @Override
@@ -141,16 +135,22 @@ class UnorderedIntervalsSource extends ConjunctionIntervalsSource {
     public int nextInterval() throws IOException {
       // first, find a matching interval
       while (this.queue.size() == subIterators.length && queue.top().start() == start) {
-        IntervalIterator it = queue.pop();
-        if (it != null && it.nextInterval() != IntervalIterator.NO_MORE_INTERVALS) {
+        // advance the top iterator in place rather than popping it and adding
+        // it back, which saves a full traversal of the heap
+        IntervalIterator it = queue.top();
+        if (it.nextInterval() != IntervalIterator.NO_MORE_INTERVALS) {
           if (allowOverlaps == false) {
-            while (hasOverlaps(it)) {
-              if (it.nextInterval() == IntervalIterator.NO_MORE_INTERVALS)
+            while (hasOverlaps(it, subIterators.length)) {
+              if (it.nextInterval() == IntervalIterator.NO_MORE_INTERVALS) {
+                queue.pop();
                 return start = end = IntervalIterator.NO_MORE_INTERVALS;
+              }
             }
           }
-          queue.add(it);
+          queue.updateTop();
           updateRightExtreme(it);
+        } else {
+          queue.pop();
         }
       }
       if (this.queue.size() < subIterators.length)
@@ -162,17 +162,20 @@ class UnorderedIntervalsSource extends ConjunctionIntervalsSource {
         end = queueEnd;
         if (queue.top().end() == end)
           return start;
-        IntervalIterator it = queue.pop();
-        if (it != null && it.nextInterval() != IntervalIterator.NO_MORE_INTERVALS) {
+        IntervalIterator it = queue.top();
+        if (it.nextInterval() != IntervalIterator.NO_MORE_INTERVALS) {
           if (allowOverlaps == false) {
-            while (hasOverlaps(it)) {
+            while (hasOverlaps(it, subIterators.length)) {
               if (it.nextInterval() == IntervalIterator.NO_MORE_INTERVALS) {
+                queue.pop();
                 return start;
               }
             }
           }
-          queue.add(it);
+          queue.updateTop();
           updateRightExtreme(it);
+        } else {
+          queue.pop();
         }
       } while (this.queue.size() == subIterators.length && end == queueEnd);
       return start;
@@ -202,12 +205,13 @@ class UnorderedIntervalsSource extends ConjunctionIntervalsSource {
     protected void reset() throws IOException {
       queueEnd = start = end = -1;
       this.queue.clear();
-      loop: for (IntervalIterator it : subIterators) {
+      loop: for (int i = 0; i < subIterators.length; i++) {
+        IntervalIterator it = subIterators[i];
         if (it.nextInterval() == NO_MORE_INTERVALS) {
           break;
         }
         if (allowOverlaps == false) {
-          while (hasOverlaps(it)) {
+          while (hasOverlaps(it, i)) {
             if (it.nextInterval() == NO_MORE_INTERVALS) {
               break loop;
             }
@@ -218,18 +222,29 @@ class UnorderedIntervalsSource extends ConjunctionIntervalsSource {
       }
     }
 
-    private boolean hasOverlaps(IntervalIterator candidate) {
-      for (IntervalIterator it : queue) {
-        if (it.start() < candidate.start()) {
-          if (it.end() >= candidate.start()) {
+    /**
+     * Check whether {@code candidate} overlaps with any of the first
+     * {@code numIterators} sub iterators other than itself. These are the
+     * iterators that are in the queue.
+     */
+    private boolean hasOverlaps(IntervalIterator candidate, int numIterators) {
+      final int candidateStart = candidate.start();
+      final int candidateEnd = candidate.end();
+      for (int i = 0; i < numIterators; i++) {
+        IntervalIterator it = subIterators[i];
+        if (it == candidate) {
+          continue;
+        }
+        if (it.start() < candidateStart) {
+          if (it.end() >= candidateStart) {
             return true;
           }
           continue;
         }
-        if (it.start() == candidate.start()) {
+        if (it.start() == candidateStart) {
           return true;
         }
-        if (it.start() <= candidate.end()) {
+        if (it.start() <= candidateEnd) {
           return true;
         }
       }
@@ -20,17 +20,21 @@ package org.apache.lucene.queries.function;
 import java.io.IOException;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
 import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.TextField;
 import org.apache.lucene.expressions.Expression;
 import org.apache.lucene.expressions.SimpleBindings;
 import org.apache.lucene.expressions.js.JavascriptCompiler;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.CheckHits;
 import org.apache.lucene.search.DoubleValuesSource;
 import org.apache.lucene.search.Explanation;
 import org.apache.lucene.search.IndexSearcher;
@@ -39,6 +43,8 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.search.QueryUtils;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.search.TotalHits;
 import org.apache.lucene.store.Directory;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -244,4 +250,50 @@ public class TestFunctionScoreQuery extends FunctionTestSetup {
 
   }
 
+  public void testTopScoresWithBoundedValues() throws IOException {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    int numDocs = atLeast(1000);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      StringBuilder text = new StringBuilder();
+      int freq = random().nextInt(3);
+      for (int j = 0; j < freq; ++j) {
+        text.append("a ");
+      }
+      if (random().nextBoolean()) {
+        text.append("b");
+      }
+      doc.add(new TextField("text", text.toString(), Field.Store.NO));
+      if (random().nextInt(10) != 0) {
+        doc.add(new NumericDocValuesField("pop", random().nextInt(10) == 0 ? 10 : random().nextInt(10)));
+      }
+      w.addDocument(doc);
+    }
+    IndexReader reader = w.getReader();
+    w.close();
+    IndexSearcher searcher = newSearcher(reader);
+
+    DoubleValuesSource pop = DoubleValuesSource.withMaxValue(DoubleValuesSource.fromLongField("pop"), 10);
+    Query boostByValue = FunctionScoreQuery.boostByValue(new TermQuery(new Term("text", "a")), pop);
+    CheckHits.checkTopScores(random(), boostByValue, searcher);
+    Query replaceScore = new FunctionScoreQuery(new TermQuery(new Term("text", "a")), pop);
+    CheckHits.checkTopScores(random(), replaceScore, searcher);
+    Query disjunction = new BooleanQuery.Builder()
+        .add(boostByValue, BooleanClause.Occur.SHOULD)
+        .add(FunctionScoreQuery.boostByValue(new TermQuery(new Term("text", "b")), pop), BooleanClause.Occur.SHOULD)
+        .build();
+    CheckHits.checkTopScores(random(), disjunction, searcher);
+
+    // documents are skipped once the top hits all have the maximum value
+    TopScoreDocCollector collector = TopScoreDocCollector.create(1, null, 1);
+    searcher.search(new FunctionScoreQuery(new MatchAllDocsQuery(), pop), collector);
+    TopDocs topDocs = collector.topDocs();
+    assertEquals(10, topDocs.scoreDocs[0].score, 0f);
+    assertEquals(TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO, topDocs.totalHits.relation);
+
+    reader.close();
+    dir.close();
+  }
+
 }
@@ -15,11 +15,11 @@
  * limitations under the License.
  */
 
-package org.apache.lucene.search.intervals;
+package org.apache.lucene.queries.intervals;
 
 import org.apache.lucene.util.LuceneTestCase;
 
-import static org.apache.lucene.search.intervals.Intervals.*;
+import static org.apache.lucene.queries.intervals.Intervals.*;
 
 public class TestDisjunctionRewrites extends LuceneTestCase {
 
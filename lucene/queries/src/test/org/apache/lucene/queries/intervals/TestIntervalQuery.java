@@ -15,11 +15,12 @@
  * limitations under the License.
  */
 
-package org.apache.lucene.search.intervals;
+package org.apache.lucene.queries.intervals;
 
 import java.io.IOException;
 
 import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.analysis.MockTokenizer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.index.IndexReader;
@@ -289,4 +290,62 @@ public class TestIntervalQuery extends LuceneTestCase {
     expectThrows(IllegalArgumentException.class, () -> new IntervalQuery(field, source, 1, -1f));
   }
 
+  public void testRandomTopScores() throws IOException {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, newIndexWriterConfig(new MockAnalyzer(random(), MockTokenizer.WHITESPACE, false)));
+    String[] terms = new String[] { "a", "b", "c", "d", "e" };
+    int numDocs = atLeast(1000);
+    for (int i = 0; i < numDocs; i++) {
+      StringBuilder text = new StringBuilder();
+      int length = 1 + random().nextInt(random().nextBoolean() ? 5 : 30);
+      for (int j = 0; j < length; j++) {
+        text.append(terms[random().nextInt(terms.length)]).append(' ');
+      }
+      Document doc = new Document();
+      doc.add(newTextField(field, text.toString(), Field.Store.NO));
+      w.addDocument(doc);
+    }
+    IndexReader r = w.getReader();
+    w.close();
+    IndexSearcher s = newSearcher(r);
+
+    for (int iter = 0; iter < 50; iter++) {
+      IntervalsSource source = randomSource(terms, 0);
+      CheckHits.checkTopScores(random(), new IntervalQuery(field, source), s);
+      CheckHits.checkTopScores(random(), new IntervalQuery(field, source, 1 + random().nextInt(5), 1 + random().nextFloat()), s);
+    }
+    // prefixes cannot bound their number of intervals
+    CheckHits.checkTopScores(random(), new IntervalQuery(field,
+        Intervals.ordered(Intervals.prefix("a"), Intervals.term("b"))), s);
+
+    r.close();
+    dir.close();
+  }
+
+  private static IntervalsSource randomSource(String[] terms, int depth) {
+    if (depth >= 2 || random().nextInt(3) == 0) {
+      return Intervals.term(terms[random().nextInt(terms.length)]);
+    }
+    IntervalsSource a = randomSource(terms, depth + 1);
+    IntervalsSource b = randomSource(terms, depth + 1);
+    switch (random().nextInt(8)) {
+      case 0:
+        return Intervals.or(a, b);
+      case 1:
+        return Intervals.ordered(a, b);
+      case 2:
+        return Intervals.unordered(a, b);
+      case 3:
+        return Intervals.phrase(a, b);
+      case 4:
+        return Intervals.maxwidth(3 + random().nextInt(5), Intervals.unordered(a, b));
+      case 5:
+        return Intervals.containedBy(a, b);
+      case 6:
+        return Intervals.notContaining(a, b);
+      default:
+        return Intervals.atLeast(2, a, b, randomSource(terms, depth + 1));
+    }
+  }
+
 }
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.hnsw;
+
+import java.io.IOException;
+
+import org.apache.lucene.document.VectorSimilarityFunction;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+
+import static org.apache.lucene.search.DocIdSetIterator.NO_MORE_DOCS;
+
+/**
+ * A Hierarchical Navigable Small World graph, see
+ * <a href="https://arxiv.org/abs/1603.09320">Efficient and robust approximate nearest neighbor
+ * search using Hierarchical Navigable Small World graphs</a>. Nodes are the ordinals of vectors,
+ * level 0 contains all nodes and every upper level contains a subset of the nodes of the level
+ * below it. Searches start from the entry node on the top level and greedily move towards the
+ * query vector level after level.
+ */
+abstract class HnswGraph {
+
+  /** Random access to vectors by ordinal. */
+  interface RandomAccessVectors {
+
+    /** Number of vectors. */
+    int size();
+
+    /** Dimension of vectors. */
+    int dimension();
+
+    /** Return the vector with the given ordinal. The returned array may be
+     *  reused by the next call to this method. */
+    float[] vectorValue(int ord) throws IOException;
+  }
+
+  /** Position this graph on the neighbors of the given node on the given level. */
+  abstract void seek(int level, int node) throws IOException;
+
+  /** Return the next neighbor of the current node, or {@link org.apache.lucene.search.DocIdSetIterator#NO_MORE_DOCS}. */
+  abstract int nextNeighbor() throws IOException;
+
+  /** Return the number of levels of this graph. */
+  abstract int numLevels();
+
+  /** Return the node that searches start from on the top level. */
+  abstract int entryNode();
+
+  /**
+   * Search for the {@code topK} nearest neighbors of {@code query}.
+   * @param query the query vector
+   * @param topK the number of neighbors to return
+   * @param numCandidates number of candidates to explore on level 0, at least {@code topK}, the
+   *        higher the better the recall but the slower the search
+   * @param vectors the vectors of the graph
+   * @param similarityFunction the similarity function that the graph was built with
+   * @param graph the graph
+   * @param acceptOrds ordinals that may be returned, or {@code null} if all ordinals are accepted
+   * @param visitedLimit stop the search and {@link NeighborQueue#markIncomplete() mark results as
+   *        incomplete} after having visited this many nodes
+   * @return a queue whose top is the least similar of the returned neighbors
+   */
+  static NeighborQueue search(float[] query, int topK, int numCandidates, RandomAccessVectors vectors,
+                              VectorSimilarityFunction similarityFunction, HnswGraph graph,
+                              Bits acceptOrds, int visitedLimit) throws IOException {
+    final int size = vectors.size();
+    final FixedBitSet visited = new FixedBitSet(size);
+    int[] eps = new int[] { graph.entryNode() };
+    int numVisited = 0;
+    for (int level = graph.numLevels() - 1; level >= 1; --level) {
+      NeighborQueue results = searchLevel(query, 1, level, eps, vectors, similarityFunction, graph, null, visitedLimit - numVisited, visited);
+      numVisited += results.visitedCount();
+      if (results.incomplete()) {
+        results.setVisitedCount(numVisited);
+        return results;
+      }
+      eps[0] = results.topNode();
+      visited.clear(0, size);
+    }
+    NeighborQueue results = searchLevel(query, Math.max(topK, numCandidates), 0, eps, vectors, similarityFunction, graph,
+        acceptOrds, visitedLimit - numVisited, visited);
+    results.setVisitedCount(numVisited + results.visitedCount());
+    while (results.size() > topK) {
+      results.pop();
+    }
+    return results;
+  }
+
+  /**
+   * Search a single level of the graph, starting from the given entry points.
+   * @return a queue of the {@code topK} nearest accepted neighbors whose top is the least similar one
+   */
+  static NeighborQueue searchLevel(float[] query, int topK, int level, int[] eps, RandomAccessVectors vectors,
+                                   VectorSimilarityFunction similarityFunction, HnswGraph graph,
+                                   Bits acceptOrds, int visitedLimit, FixedBitSet visited) throws IOException {
+    final NeighborQueue results = new NeighborQueue(topK, false);
+    final NeighborQueue candidates = new NeighborQueue(topK, true);
+    int numVisited = 0;
+    for (int ep : eps) {
+      if (visited.getAndSet(ep)) {
+        continue;
+      }
+      if (numVisited >= visitedLimit) {
+        results.markIncomplete();
+        break;
+      }
+      final float score = similarityFunction.compare(query, vectors.vectorValue(ep));
+      numVisited++;
+      candidates.add(ep, score);
+      if (acceptOrds == null || acceptOrds.get(ep)) {
+        results.insertWithOverflow(ep, score, topK);
+      }
+    }
+
+    // the similarity that new candidates need to beat in order to be collected
+    float minAcceptedSimilarity = results.size() >= topK ? results.topScore() : Float.NEGATIVE_INFINITY;
+    while (candidates.size() > 0 && results.incomplete() == false) {
+      if (candidates.topScore() < minAcceptedSimilarity) {
+        // the best candidate is worse than the worst result: no better result can be found
+        break;
+      }
+      final int node = candidates.pop();
+      graph.seek(level, node);
+      for (int friend = graph.nextNeighbor(); friend != NO_MORE_DOCS; friend = graph.nextNeighbor()) {
+        if (visited.getAndSet(friend)) {
+          continue;
+        }
+        if (numVisited >= visitedLimit) {
+          results.markIncomplete();
+          break;
+        }
+        final float score = similarityFunction.compare(query, vectors.vectorValue(friend));
+        numVisited++;
+        if (score >= minAcceptedSimilarity) {
+          candidates.add(friend, score);
+          if ((acceptOrds == null || acceptOrds.get(friend))
+              && results.insertWithOverflow(friend, score, topK)
+              && results.size() >= topK) {
+            minAcceptedSimilarity = results.topScore();
+          }
+        }
+      }
+    }
+    results.setVisitedCount(numVisited);
+    return results;
+  }
+}
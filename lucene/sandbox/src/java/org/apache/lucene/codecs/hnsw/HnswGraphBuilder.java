@@ -0,0 +1,298 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.hnsw;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.lucene.document.VectorSimilarityFunction;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.FixedBitSet;
+
+import static org.apache.lucene.search.DocIdSetIterator.NO_MORE_DOCS;
+
+/**
+ * Builds a {@link HnswGraph} on heap by adding vectors one after the other in
+ * the order of their ordinals.
+ */
+final class HnswGraphBuilder {
+
+  /** Default random seed, so that graphs are reproducible. */
+  static final long DEFAULT_RAND_SEED = 42;
+
+  private final HnswGraph.RandomAccessVectors vectors;
+  private final VectorSimilarityFunction similarityFunction;
+  private final int maxConn;
+  private final int beamWidth;
+  private final double ml;
+  private final Random random;
+  private final OnHeapHnswGraph graph;
+  private final FixedBitSet visited;
+
+  /**
+   * Sole constructor.
+   * @param vectors the vectors to index, which must not reuse arrays across calls to
+   *        {@link HnswGraph.RandomAccessVectors#vectorValue(int)}
+   * @param similarityFunction the similarity function
+   * @param maxConn maximum number of connections of a node on upper levels, nodes of level 0 have
+   *        up to twice as many connections
+   * @param beamWidth number of candidates that are explored when inserting a node
+   * @param seed seed for the random generation of node levels
+   */
+  HnswGraphBuilder(HnswGraph.RandomAccessVectors vectors, VectorSimilarityFunction similarityFunction,
+                   int maxConn, int beamWidth, long seed) {
+    if (maxConn <= 1) {
+      throw new IllegalArgumentException("maxConn must be > 1, got " + maxConn);
+    }
+    if (beamWidth <= 0) {
+      throw new IllegalArgumentException("beamWidth must be > 0, got " + beamWidth);
+    }
+    this.vectors = vectors;
+    this.similarityFunction = similarityFunction;
+    this.maxConn = maxConn;
+    this.beamWidth = beamWidth;
+    // the normalization factor for level generation that the paper recommends
+    this.ml = 1 / Math.log(maxConn);
+    this.random = new Random(seed);
+    this.graph = new OnHeapHnswGraph(vectors.size(), maxConn);
+    this.visited = new FixedBitSet(Math.max(1, vectors.size()));
+  }
+
+  /** Add all vectors to the graph and return it. */
+  OnHeapHnswGraph build() throws IOException {
+    for (int node = 0; node < vectors.size(); ++node) {
+      addGraphNode(node);
+    }
+    return graph;
+  }
+
+  private void addGraphNode(int node) throws IOException {
+    final int nodeLevel = randomLevel();
+    final int curMaxLevel = graph.numLevels() - 1;
+    graph.addNode(node, nodeLevel);
+    if (node == 0) {
+      graph.entryNode = node;
+      return;
+    }
+
+    final float[] value = vectors.vectorValue(node);
+    int[] eps = new int[] { graph.entryNode };
+    // greedily move towards the new node on levels that it doesn't belong to
+    for (int level = curMaxLevel; level > nodeLevel; --level) {
+      visited.clear(0, vectors.size());
+      NeighborQueue candidates = HnswGraph.searchLevel(value, 1, level, eps, vectors, similarityFunction, graph, null, Integer.MAX_VALUE, visited);
+      eps = new int[] { candidates.topNode() };
+    }
+    // then connect it to its nearest neighbors on the other levels
+    for (int level = Math.min(nodeLevel, curMaxLevel); level >= 0; --level) {
+      visited.clear(0, vectors.size());
+      NeighborQueue candidates = HnswGraph.searchLevel(value, beamWidth, level, eps, vectors, similarityFunction, graph, null, Integer.MAX_VALUE, visited);
+      eps = candidates.nodes();
+      addDiverseNeighbors(level, node, candidates);
+    }
+    if (nodeLevel > curMaxLevel) {
+      graph.entryNode = node;
+    }
+  }
+
+  private int randomLevel() {
+    double randDouble;
+    do {
+      randDouble = random.nextDouble(); // avoid 0 value, as log(0) is undefined
+    } while (randDouble == 0.0);
+    return (int) (-Math.log(randDouble) * ml);
+  }
+
+  private int maxConn(int level) {
+    return level == 0 ? maxConn * 2 : maxConn;
+  }
+
+  /* Connect the node to the most similar candidates that are more similar to it than to any
+   * neighbor that has already been selected, which keeps the graph navigable when data is
+   * clustered. Then add the reverse connections, and prune neighbors that end up with too many
+   * connections. */
+  private void addDiverseNeighbors(int level, int node, NeighborQueue candidates) throws IOException {
+    final int maxConnOnLevel = maxConn(level);
+    // candidates pop in increasing order of similarity
+    final int numCandidates = candidates.size();
+    final NeighborArray sorted = new NeighborArray(numCandidates);
+    for (int i = numCandidates - 1; i >= 0; --i) {
+      final float score = candidates.topScore();
+      sorted.nodes[i] = candidates.pop();
+      sorted.scores[i] = score;
+    }
+    sorted.size = numCandidates;
+
+    final NeighborArray neighbors = graph.getNeighbors(level, node);
+    selectDiverse(sorted, maxConnOnLevel, neighbors);
+    for (int i = 0; i < neighbors.size; ++i) {
+      final int neighbor = neighbors.nodes[i];
+      final NeighborArray neighborsOfNeighbor = graph.getNeighbors(level, neighbor);
+      neighborsOfNeighbor.insertSorted(node, neighbors.scores[i]);
+      if (neighborsOfNeighbor.size > maxConnOnLevel) {
+        final NeighborArray pruned = new NeighborArray(neighborsOfNeighbor.size);
+        selectDiverse(neighborsOfNeighbor, maxConnOnLevel, pruned);
+        neighborsOfNeighbor.copyFrom(pruned);
+      }
+    }
+  }
+
+  /** Select up to {@code max} diverse neighbors among {@code sorted}, which must be sorted by
+   *  decreasing similarity, and fill remaining slots with the most similar pruned candidates. */
+  private void selectDiverse(NeighborArray sorted, int max, NeighborArray selected) throws IOException {
+    final boolean[] isSelected = new boolean[sorted.size];
+    for (int i = 0; i < sorted.size && selected.size < max; ++i) {
+      if (isDiverse(sorted.nodes[i], sorted.scores[i], selected)) {
+        selected.append(sorted.nodes[i], sorted.scores[i]);
+        isSelected[i] = true;
+      }
+    }
+    for (int i = 0; i < sorted.size && selected.size < max; ++i) {
+      if (isSelected[i] == false) {
+        selected.insertSorted(sorted.nodes[i], sorted.scores[i]);
+      }
+    }
+  }
+
+  private boolean isDiverse(int candidate, float score, NeighborArray selected) throws IOException {
+    final float[] candidateVector = vectors.vectorValue(candidate);
+    for (int i = 0; i < selected.size; ++i) {
+      if (similarityFunction.compare(candidateVector, vectors.vectorValue(selected.nodes[i])) >= score) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Neighbors of a node, sorted by decreasing similarity. */
+  static final class NeighborArray {
+    int[] nodes;
+    float[] scores;
+    int size;
+
+    NeighborArray(int capacity) {
+      nodes = new int[Math.max(1, capacity)];
+      scores = new float[Math.max(1, capacity)];
+    }
+
+    void append(int node, float score) {
+      if (size == nodes.length) {
+        nodes = ArrayUtil.grow(nodes, size + 1);
+        scores = ArrayUtil.growExact(scores, nodes.length);
+      }
+      nodes[size] = node;
+      scores[size] = score;
+      size++;
+    }
+
+    void insertSorted(int node, float score) {
+      append(node, score);
+      int i = size - 1;
+      while (i > 0 && scores[i - 1] < score) {
+        nodes[i] = nodes[i - 1];
+        scores[i] = scores[i - 1];
+        i--;
+      }
+      nodes[i] = node;
+      scores[i] = score;
+    }
+
+    void copyFrom(NeighborArray other) {
+      size = 0;
+      for (int i = 0; i < other.size; ++i) {
+        append(other.nodes[i], other.scores[i]);
+      }
+    }
+  }
+
+  /** A {@link HnswGraph} that is stored on heap, used while building. */
+  static final class OnHeapHnswGraph extends HnswGraph {
+
+    private final int maxConn;
+    // neighbors on level 0, by node
+    private final NeighborArray[] level0;
+    // nodes on upper levels, in increasing order, and their neighbors
+    private final List<List<Integer>> upperLevelNodes = new ArrayList<>();
+    private final List<Map<Integer, NeighborArray>> upperLevelNeighbors = new ArrayList<>();
+    int entryNode;
+
+    private NeighborArray current;
+    private int upto;
+
+    OnHeapHnswGraph(int size, int maxConn) {
+      this.maxConn = maxConn;
+      this.level0 = new NeighborArray[size];
+    }
+
+    void addNode(int node, int level) {
+      level0[node] = new NeighborArray(maxConn * 2 + 1);
+      for (int l = 1; l <= level; ++l) {
+        while (upperLevelNodes.size() < l) {
+          upperLevelNodes.add(new ArrayList<>());
+          upperLevelNeighbors.add(new HashMap<>());
+        }
+        upperLevelNodes.get(l - 1).add(node);
+        upperLevelNeighbors.get(l - 1).put(node, new NeighborArray(maxConn + 1));
+      }
+    }
+
+    NeighborArray getNeighbors(int level, int node) {
+      if (level == 0) {
+        return level0[node];
+      }
+      return upperLevelNeighbors.get(level - 1).get(node);
+    }
+
+    /** Return the nodes on the given level, in increasing order. */
+    List<Integer> getNodesOnLevel(int level) {
+      assert level > 0;
+      return upperLevelNodes.get(level - 1);
+    }
+
+    int size() {
+      return level0.length;
+    }
+
+    @Override
+    void seek(int level, int node) {
+      current = getNeighbors(level, node);
+      upto = 0;
+    }
+
+    @Override
+    int nextNeighbor() {
+      if (upto == current.size) {
+        return NO_MORE_DOCS;
+      }
+      return current.nodes[upto++];
+    }
+
+    @Override
+    int numLevels() {
+      return upperLevelNodes.size() + 1;
+    }
+
+    @Override
+    int entryNode() {
+      return entryNode;
+    }
+  }
+}
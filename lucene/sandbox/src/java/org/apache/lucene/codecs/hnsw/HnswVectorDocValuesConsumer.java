@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.hnsw;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.DocValuesConsumer;
+import org.apache.lucene.codecs.DocValuesProducer;
+import org.apache.lucene.document.VectorField;
+import org.apache.lucene.document.VectorSimilarityFunction;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+
+/** writer for {@link HnswVectorDocValuesFormat} */
+final class HnswVectorDocValuesConsumer extends DocValuesConsumer implements Closeable {
+
+  private final VectorSimilarityFunction similarityFunction;
+  private final int maxConn;
+  private final int beamWidth;
+  private IndexOutput data, meta;
+
+  HnswVectorDocValuesConsumer(SegmentWriteState state, VectorSimilarityFunction similarityFunction, int maxConn, int beamWidth) throws IOException {
+    this.similarityFunction = similarityFunction;
+    this.maxConn = maxConn;
+    this.beamWidth = beamWidth;
+    boolean success = false;
+    try {
+      String dataName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, HnswVectorDocValuesFormat.DATA_EXTENSION);
+      data = state.directory.createOutput(dataName, state.context);
+      CodecUtil.writeIndexHeader(data, HnswVectorDocValuesFormat.DATA_CODEC, HnswVectorDocValuesFormat.VERSION_CURRENT, state.segmentInfo.getId(), state.segmentSuffix);
+      String metaName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, HnswVectorDocValuesFormat.META_EXTENSION);
+      meta = state.directory.createOutput(metaName, state.context);
+      CodecUtil.writeIndexHeader(meta, HnswVectorDocValuesFormat.META_CODEC, HnswVectorDocValuesFormat.VERSION_CURRENT, state.segmentInfo.getId(), state.segmentSuffix);
+      success = true;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(this);
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    boolean success = false;
+    try {
+      if (meta != null) {
+        meta.writeInt(-1); // write EOF marker
+        CodecUtil.writeFooter(meta); // write checksum
+      }
+      if (data != null) {
+        CodecUtil.writeFooter(data); // write checksum
+      }
+      success = true;
+    } finally {
+      if (success) {
+        IOUtils.close(data, meta);
+      } else {
+        IOUtils.closeWhileHandlingException(data, meta);
+      }
+      meta = data = null;
+    }
+  }
+
+  @Override
+  public void addBinaryField(FieldInfo field, DocValuesProducer valuesProducer) throws IOException {
+    // the graph needs random access to vectors, so load them all on heap
+    final List<float[]> vectors = new ArrayList<>();
+    int[] docs = new int[16];
+    int dimension = -1;
+    BinaryDocValues values = valuesProducer.getBinary(field);
+    for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
+      BytesRef bytes = values.binaryValue();
+      if (dimension == -1) {
+        if (bytes.length == 0 || bytes.length % Float.BYTES != 0 || bytes.length / Float.BYTES > VectorField.MAX_DIMENSIONS) {
+          throw new IllegalArgumentException("field=\"" + field.name + "\": invalid vector of " + bytes.length + " bytes, is it a VectorField?");
+        }
+        dimension = bytes.length / Float.BYTES;
+      } else if (bytes.length != dimension * Float.BYTES) {
+        throw new IllegalArgumentException("field=\"" + field.name + "\": all vectors must have the same dimension, expected "
+            + dimension + " but got " + (bytes.length / Float.BYTES) + " for doc=" + doc);
+      }
+      final float[] vector = new float[dimension];
+      VectorField.decode(bytes, vector);
+      docs = ArrayUtil.grow(docs, vectors.size() + 1);
+      docs[vectors.size()] = doc;
+      vectors.add(vector);
+    }
+
+    final int size = vectors.size();
+    final HnswGraph.RandomAccessVectors randomAccessVectors = new HnswGraph.RandomAccessVectors() {
+      @Override
+      public int size() {
+        return size;
+      }
+
+      @Override
+      public int dimension() {
+        return vectors.isEmpty() ? 0 : vectors.get(0).length;
+      }
+
+      @Override
+      public float[] vectorValue(int ord) {
+        return vectors.get(ord);
+      }
+    };
+    final HnswGraphBuilder.OnHeapHnswGraph graph = new HnswGraphBuilder(randomAccessVectors, similarityFunction,
+        maxConn, beamWidth, HnswGraphBuilder.DEFAULT_RAND_SEED).build();
+
+    meta.writeInt(field.number);
+    meta.writeByte((byte) similarityFunction.ordinal());
+    meta.writeVInt(Math.max(dimension, 0));
+    meta.writeVInt(size);
+    meta.writeVInt(maxConn);
+
+    final long vectorsOffset = data.getFilePointer();
+    for (float[] vector : vectors) {
+      for (float v : vector) {
+        data.writeInt(Float.floatToIntBits(v));
+      }
+    }
+    final long docsOffset = data.getFilePointer();
+    for (int i = 0; i < size; ++i) {
+      data.writeInt(docs[i]);
+    }
+
+    final long graphOffset = data.getFilePointer();
+    if (size > 0) {
+      for (int node = 0; node < size; ++node) {
+        writeNeighbors(graph.getNeighbors(0, node), maxConn * 2);
+      }
+      for (int level = 1; level < graph.numLevels(); ++level) {
+        for (int node : graph.getNodesOnLevel(level)) {
+          writeNeighbors(graph.getNeighbors(level, node), maxConn);
+        }
+      }
+    }
+    final long graphLength = data.getFilePointer() - graphOffset;
+
+    meta.writeVInt(size == 0 ? 0 : graph.numLevels());
+    meta.writeVInt(size == 0 ? 0 : graph.entryNode());
+    meta.writeLong(vectorsOffset);
+    meta.writeLong(docsOffset);
+    meta.writeLong(graphOffset);
+    meta.writeLong(graphLength);
+    for (int level = 1; level < graph.numLevels(); ++level) {
+      List<Integer> nodes = graph.getNodesOnLevel(level);
+      meta.writeVInt(nodes.size());
+      int previous = 0;
+      for (int node : nodes) {
+        meta.writeVInt(node - previous);
+        previous = node;
+      }
+    }
+  }
+
+  private void writeNeighbors(HnswGraphBuilder.NeighborArray neighbors, int maxConnOnLevel) throws IOException {
+    assert neighbors.size <= maxConnOnLevel;
+    data.writeInt(neighbors.size);
+    for (int i = 0; i < neighbors.size; ++i) {
+      data.writeInt(neighbors.nodes[i]);
+    }
+    for (int i = neighbors.size; i < maxConnOnLevel; ++i) {
+      data.writeInt(0);
+    }
+  }
+
+  @Override
+  public void addNumericField(FieldInfo field, DocValuesProducer valuesProducer) throws IOException {
+    throw new UnsupportedOperationException("field=\"" + field.name + "\": " + HnswVectorDocValuesFormat.class.getSimpleName() + " only supports binary doc values");
+  }
+
+  @Override
+  public void addSortedField(FieldInfo field, DocValuesProducer valuesProducer) throws IOException {
+    throw new UnsupportedOperationException("field=\"" + field.name + "\": " + HnswVectorDocValuesFormat.class.getSimpleName() + " only supports binary doc values");
+  }
+
+  @Override
+  public void addSortedNumericField(FieldInfo field, DocValuesProducer valuesProducer) throws IOException {
+    throw new UnsupportedOperationException("field=\"" + field.name + "\": " + HnswVectorDocValuesFormat.class.getSimpleName() + " only supports binary doc values");
+  }
+
+  @Override
+  public void addSortedSetField(FieldInfo field, DocValuesProducer valuesProducer) throws IOException {
+    throw new UnsupportedOperationException("field=\"" + field.name + "\": " + HnswVectorDocValuesFormat.class.getSimpleName() + " only supports binary doc values");
+  }
+}
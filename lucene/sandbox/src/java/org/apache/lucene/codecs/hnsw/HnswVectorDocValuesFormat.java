@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.hnsw;
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.DocValuesConsumer;
+import org.apache.lucene.codecs.DocValuesFormat;
+import org.apache.lucene.codecs.DocValuesProducer;
+import org.apache.lucene.codecs.perfield.PerFieldDocValuesFormat;
+import org.apache.lucene.document.VectorField;
+import org.apache.lucene.document.VectorSimilarityFunction;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.store.DataOutput;
+
+/**
+ * A doc values format for {@link VectorField vector fields} that indexes vectors
+ * in a Hierarchical Navigable Small World (HNSW) graph in order to find nearest
+ * neighbors in logarithmic time. This format only supports binary doc values
+ * that hold vectors: it should be configured for vector fields only, via
+ * {@link PerFieldDocValuesFormat}. Graphs are built when segments are flushed,
+ * and rebuilt from the vectors of the merged segments on merge.
+ * <p>
+ * Files:
+ * <ol>
+ *   <li><tt>.vem</tt>: metadata</li>
+ *   <li><tt>.vec</tt>: vectors, documents and graphs</li>
+ * </ol>
+ * <p>
+ * The metadata file stores, for every field:
+ * <ul>
+ *   <li>FieldNumber --&gt; {@link DataOutput#writeInt Int32}, -1 marks the end of fields</li>
+ *   <li>SimilarityFunction --&gt; {@link DataOutput#writeByte Byte}, the ordinal of the {@link VectorSimilarityFunction}</li>
+ *   <li>Dimension, Size, MaxConn, NumLevels, EntryNode --&gt; {@link DataOutput#writeVInt VInt}</li>
+ *   <li>VectorsOffset, DocsOffset, GraphOffset, GraphLength --&gt; {@link DataOutput#writeLong Int64}</li>
+ *   <li>For every level above 0, the number of nodes on this level as a
+ *       {@link DataOutput#writeVInt VInt} followed by the delta-encoded nodes as
+ *       {@link DataOutput#writeVInt VInts}</li>
+ * </ul>
+ * The data file stores, for every field, all vectors in the order of their
+ * ordinals as {@link DataOutput#writeInt Int32} float bits, followed by the
+ * doc ID of every ordinal as an {@link DataOutput#writeInt Int32}, followed by
+ * graph levels. Every level stores a fixed-size slot per node that consists of
+ * the number of neighbors and the neighbors, as {@link DataOutput#writeInt
+ * Int32s}, which gives random access to the neighbors of any node. Slots can
+ * hold up to 2*MaxConn neighbors on level 0 and MaxConn neighbors on upper
+ * levels.
+ * @lucene.experimental
+ */
+public final class HnswVectorDocValuesFormat extends DocValuesFormat {
+
+  static final String DATA_CODEC = "HnswVectorDocValuesData";
+  static final String DATA_EXTENSION = "vec";
+  static final String META_CODEC = "HnswVectorDocValuesMetadata";
+  static final String META_EXTENSION = "vem";
+  static final int VERSION_START = 0;
+  static final int VERSION_CURRENT = VERSION_START;
+
+  /** Default maximum number of connections per node on upper levels. */
+  public static final int DEFAULT_MAX_CONN = 16;
+  /** Default number of candidates that are explored when inserting a node. */
+  public static final int DEFAULT_BEAM_WIDTH = 100;
+
+  private final VectorSimilarityFunction similarityFunction;
+  private final int maxConn;
+  private final int beamWidth;
+
+  /** Create a format that compares vectors with the {@link VectorSimilarityFunction#COSINE cosine} and default parameters. */
+  public HnswVectorDocValuesFormat() {
+    this(VectorSimilarityFunction.COSINE, DEFAULT_MAX_CONN, DEFAULT_BEAM_WIDTH);
+  }
+
+  /**
+   * Create a format with the given parameters.
+   * @param similarityFunction how to compare vectors, the same function should be used at search time
+   * @param maxConn maximum number of connections per node on upper levels, and half the maximum
+   *        number of connections on level 0: higher values give better recall at the expense of
+   *        index size and search speed
+   * @param beamWidth number of candidates that are explored when inserting a node: higher values
+   *        give better graphs at the expense of indexing speed
+   */
+  public HnswVectorDocValuesFormat(VectorSimilarityFunction similarityFunction, int maxConn, int beamWidth) {
+    super("HnswVector");
+    if (maxConn <= 1 || maxConn > 512) {
+      throw new IllegalArgumentException("maxConn must be in [2, 512], got " + maxConn);
+    }
+    if (beamWidth <= 0) {
+      throw new IllegalArgumentException("beamWidth must be > 0, got " + beamWidth);
+    }
+    this.similarityFunction = similarityFunction;
+    this.maxConn = maxConn;
+    this.beamWidth = beamWidth;
+  }
+
+  @Override
+  public DocValuesConsumer fieldsConsumer(SegmentWriteState state) throws IOException {
+    return new HnswVectorDocValuesConsumer(state, similarityFunction, maxConn, beamWidth);
+  }
+
+  @Override
+  public DocValuesProducer fieldsProducer(SegmentReadState state) throws IOException {
+    return new HnswVectorDocValuesProducer(state);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(similarity=" + similarityFunction + ",maxConn=" + maxConn + ",beamWidth=" + beamWidth + ")";
+  }
+}
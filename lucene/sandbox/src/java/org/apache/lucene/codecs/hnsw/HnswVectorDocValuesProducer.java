@@ -0,0 +1,473 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.hnsw;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.DocValuesProducer;
+import org.apache.lucene.document.VectorSimilarityFunction;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.store.ChecksumIndexInput;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.RandomAccessInput;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.RamUsageEstimator;
+
+import static org.apache.lucene.search.DocIdSetIterator.NO_MORE_DOCS;
+
+/** reader for {@link HnswVectorDocValuesFormat} */
+final class HnswVectorDocValuesProducer extends DocValuesProducer implements Closeable {
+
+  private final Map<String,FieldEntry> fields = new HashMap<>();
+  private long ramBytesUsed;
+  private final IndexInput data;
+
+  HnswVectorDocValuesProducer(SegmentReadState state) throws IOException {
+    String metaName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, HnswVectorDocValuesFormat.META_EXTENSION);
+    ramBytesUsed = RamUsageEstimator.shallowSizeOfInstance(getClass());
+
+    int version = -1;
+
+    // read in the entries from the metadata file.
+    try (ChecksumIndexInput in = state.directory.openChecksumInput(metaName, state.context)) {
+      Throwable priorE = null;
+      try {
+        version = CodecUtil.checkIndexHeader(in, HnswVectorDocValuesFormat.META_CODEC,
+                                        HnswVectorDocValuesFormat.VERSION_START,
+                                        HnswVectorDocValuesFormat.VERSION_CURRENT,
+                                        state.segmentInfo.getId(),
+                                        state.segmentSuffix);
+        readFields(in, state.fieldInfos);
+      } catch (Throwable exception) {
+        priorE = exception;
+      } finally {
+        CodecUtil.checkFooter(in, priorE);
+      }
+    }
+
+    String dataName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, HnswVectorDocValuesFormat.DATA_EXTENSION);
+    this.data = state.directory.openInput(dataName, state.context);
+    boolean success = false;
+    try {
+      final int version2 = CodecUtil.checkIndexHeader(data, HnswVectorDocValuesFormat.DATA_CODEC,
+                                                 HnswVectorDocValuesFormat.VERSION_START,
+                                                 HnswVectorDocValuesFormat.VERSION_CURRENT,
+                                                 state.segmentInfo.getId(),
+                                                 state.segmentSuffix);
+      if (version != version2) {
+        throw new CorruptIndexException("Format versions mismatch: meta=" + version + ", data=" + version2, data);
+      }
+
+      // NOTE: data file is too costly to verify checksum against all the bytes on open,
+      // but for now we at least verify proper structure of the checksum footer: which looks
+      // for FOOTER_MAGIC + algorithmID. This is cheap and can detect some forms of corruption
+      // such as file truncation.
+      CodecUtil.retrieveChecksum(data);
+
+      success = true;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(this.data);
+      }
+    }
+  }
+
+  private void readFields(ChecksumIndexInput meta, FieldInfos infos) throws IOException {
+    for (int fieldNumber = meta.readInt(); fieldNumber != -1; fieldNumber = meta.readInt()) {
+      FieldInfo info = infos.fieldInfo(fieldNumber);
+      if (info == null) {
+        throw new CorruptIndexException("Invalid field number: " + fieldNumber, meta);
+      }
+      FieldEntry entry = readField(meta);
+      fields.put(info.name, entry);
+      ramBytesUsed += entry.ramBytesUsed();
+    }
+  }
+
+  private static FieldEntry readField(ChecksumIndexInput meta) throws IOException {
+    FieldEntry entry = new FieldEntry();
+    final int similarityFunction = meta.readByte();
+    if (similarityFunction < 0 || similarityFunction >= VectorSimilarityFunction.values().length) {
+      throw new CorruptIndexException("Invalid similarity function: " + similarityFunction, meta);
+    }
+    entry.similarityFunction = VectorSimilarityFunction.values()[similarityFunction];
+    entry.dimension = meta.readVInt();
+    entry.size = meta.readVInt();
+    entry.maxConn = meta.readVInt();
+    entry.numLevels = meta.readVInt();
+    entry.entryNode = meta.readVInt();
+    entry.vectorsOffset = meta.readLong();
+    entry.docsOffset = meta.readLong();
+    entry.graphOffset = meta.readLong();
+    entry.graphLength = meta.readLong();
+    entry.levelNodes = new int[Math.max(entry.numLevels, 1)][];
+    entry.levelOffsets = new long[entry.levelNodes.length];
+    long offset = (long) entry.size * (1 + entry.maxConn * 2) * Integer.BYTES;
+    for (int level = 1; level < entry.numLevels; ++level) {
+      final int numNodes = meta.readVInt();
+      final int[] nodes = new int[numNodes];
+      int node = 0;
+      for (int i = 0; i < numNodes; ++i) {
+        node += meta.readVInt();
+        nodes[i] = node;
+      }
+      entry.levelNodes[level] = nodes;
+      entry.levelOffsets[level] = offset;
+      offset += (long) numNodes * (1 + entry.maxConn) * Integer.BYTES;
+    }
+    if (offset != entry.graphLength) {
+      throw new CorruptIndexException("Graph length mismatch: expected " + offset + " but got " + entry.graphLength, meta);
+    }
+    return entry;
+  }
+
+  private static class FieldEntry {
+    VectorSimilarityFunction similarityFunction;
+    int dimension;
+    int size;
+    int maxConn;
+    int numLevels;
+    int entryNode;
+    long vectorsOffset;
+    long docsOffset;
+    long graphOffset;
+    long graphLength;
+    int[][] levelNodes;
+    long[] levelOffsets;
+
+    long ramBytesUsed() {
+      long bytes = RamUsageEstimator.shallowSizeOfInstance(FieldEntry.class) + RamUsageEstimator.sizeOf(levelOffsets);
+      for (int[] nodes : levelNodes) {
+        if (nodes != null) {
+          bytes += RamUsageEstimator.sizeOf(nodes);
+        }
+      }
+      return bytes;
+    }
+  }
+
+  @Override
+  public BinaryDocValues getBinary(FieldInfo field) throws IOException {
+    FieldEntry entry = fields.get(field.name);
+    if (entry == null) {
+      throw new IllegalArgumentException("field=\"" + field.name + "\" was not indexed with " + HnswVectorDocValuesFormat.class.getSimpleName());
+    }
+    final long vectorBytes = (long) entry.dimension * Float.BYTES;
+    return new HnswVectorDocValues(entry,
+        data.slice("vectors", entry.vectorsOffset, vectorBytes * entry.size),
+        data.randomAccessSlice(entry.docsOffset, (long) entry.size * Integer.BYTES),
+        data.randomAccessSlice(entry.graphOffset, entry.graphLength));
+  }
+
+  /** Vectors by ordinal, read from disk. */
+  private static final class OffHeapVectors implements HnswGraph.RandomAccessVectors {
+    private final FieldEntry entry;
+    private final IndexInput vectorsData;
+    private final byte[] bytes;
+    private final FloatBuffer floatBuffer;
+    private final float[] value;
+
+    OffHeapVectors(FieldEntry entry, IndexInput vectorsData) {
+      this.entry = entry;
+      this.vectorsData = vectorsData;
+      this.bytes = new byte[entry.dimension * Float.BYTES];
+      this.floatBuffer = ByteBuffer.wrap(bytes).asFloatBuffer();
+      this.value = new float[entry.dimension];
+    }
+
+    @Override
+    public int size() {
+      return entry.size;
+    }
+
+    @Override
+    public int dimension() {
+      return entry.dimension;
+    }
+
+    @Override
+    public float[] vectorValue(int ord) throws IOException {
+      readBytes(ord);
+      floatBuffer.position(0);
+      floatBuffer.get(value);
+      return value;
+    }
+
+    void readBytes(int ord) throws IOException {
+      vectorsData.seek((long) ord * bytes.length);
+      vectorsData.readBytes(bytes, 0, bytes.length);
+    }
+  }
+
+  /** A graph whose neighbor lists are read from disk. */
+  private static final class OffHeapHnswGraph extends HnswGraph {
+    private final FieldEntry entry;
+    private final RandomAccessInput graphData;
+    private long position;
+    private int numNeighbors;
+    private int upto;
+
+    OffHeapHnswGraph(FieldEntry entry, RandomAccessInput graphData) {
+      this.entry = entry;
+      this.graphData = graphData;
+    }
+
+    @Override
+    void seek(int level, int node) throws IOException {
+      final long slot;
+      final int maxConnOnLevel;
+      if (level == 0) {
+        slot = node;
+        maxConnOnLevel = entry.maxConn * 2;
+      } else {
+        slot = Arrays.binarySearch(entry.levelNodes[level], node);
+        assert slot >= 0 : "node " + node + " is not on level " + level;
+        maxConnOnLevel = entry.maxConn;
+      }
+      position = entry.levelOffsets[level] + slot * (1 + maxConnOnLevel) * Integer.BYTES;
+      numNeighbors = graphData.readInt(position);
+      upto = 0;
+    }
+
+    @Override
+    int nextNeighbor() throws IOException {
+      if (upto == numNeighbors) {
+        return NO_MORE_DOCS;
+      }
+      upto++;
+      return graphData.readInt(position + (long) upto * Integer.BYTES);
+    }
+
+    @Override
+    int numLevels() {
+      return entry.numLevels;
+    }
+
+    @Override
+    int entryNode() {
+      return entry.entryNode;
+    }
+  }
+
+  private static final class HnswVectorDocValues extends VectorDocValues {
+    private final FieldEntry entry;
+    private final IndexInput vectorsData;
+    private final RandomAccessInput docs;
+    private final RandomAccessInput graphData;
+    private final OffHeapVectors vectors;
+    private final BytesRef binaryValue;
+    private int ord = -1;
+    private int doc = -1;
+
+    HnswVectorDocValues(FieldEntry entry, IndexInput vectorsData, RandomAccessInput docs, RandomAccessInput graphData) {
+      this.entry = entry;
+      this.vectorsData = vectorsData;
+      this.docs = docs;
+      this.graphData = graphData;
+      this.vectors = new OffHeapVectors(entry, vectorsData);
+      this.binaryValue = new BytesRef(vectors.bytes);
+    }
+
+    @Override
+    public int docID() {
+      return doc;
+    }
+
+    @Override
+    public int nextDoc() throws IOException {
+      return advanceToOrd(ord + 1);
+    }
+
+    @Override
+    public int advance(int target) throws IOException {
+      // exponential search followed by a binary search for the first ordinal whose doc is >= target
+      int lo = ord + 1;
+      int step = 1;
+      int hi = lo;
+      while (hi < entry.size && docs.readInt((long) hi * Integer.BYTES) < target) {
+        lo = hi + 1;
+        hi += step;
+        step <<= 1;
+      }
+      hi = Math.min(hi, entry.size);
+      while (lo < hi) {
+        final int mid = (lo + hi) >>> 1;
+        if (docs.readInt((long) mid * Integer.BYTES) < target) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+      return advanceToOrd(lo);
+    }
+
+    private int advanceToOrd(int target) throws IOException {
+      ord = target;
+      if (ord >= entry.size) {
+        ord = entry.size;
+        return doc = NO_MORE_DOCS;
+      }
+      return doc = docs.readInt((long) ord * Integer.BYTES);
+    }
+
+    @Override
+    public boolean advanceExact(int target) throws IOException {
+      if (target == doc && ord >= 0 && ord < entry.size && docs.readInt((long) ord * Integer.BYTES) == target) {
+        // already positioned on this doc
+        return true;
+      }
+      if (advance(target) == target) {
+        return true;
+      }
+      // step back so that the next call to nextDoc or advance returns the doc we landed on
+      ord--;
+      doc = target;
+      return false;
+    }
+
+    @Override
+    public long cost() {
+      return entry.size;
+    }
+
+    @Override
+    public BytesRef binaryValue() throws IOException {
+      vectors.readBytes(ord);
+      return binaryValue;
+    }
+
+    @Override
+    public int dimension() {
+      return entry.dimension;
+    }
+
+    @Override
+    public VectorSimilarityFunction similarityFunction() {
+      return entry.similarityFunction;
+    }
+
+    @Override
+    public float[] vectorValue() throws IOException {
+      return vectors.vectorValue(ord);
+    }
+
+    @Override
+    public TopDocs search(float[] target, int k, int numCandidates, Bits acceptDocs, int visitedLimit) throws IOException {
+      if (target.length != entry.dimension) {
+        throw new IllegalArgumentException("vector query dimension: " + target.length + " differs from field dimension: " + entry.dimension);
+      }
+      if (entry.size == 0 || k <= 0) {
+        return new TopDocs(new TotalHits(0, TotalHits.Relation.EQUAL_TO), new ScoreDoc[0]);
+      }
+      // use separate inputs so that searching doesn't move this iterator
+      final OffHeapVectors searchVectors = new OffHeapVectors(entry, vectorsData.clone());
+      final HnswGraph graph = new OffHeapHnswGraph(entry, graphData);
+      final Bits acceptOrds;
+      if (acceptDocs == null) {
+        acceptOrds = null;
+      } else {
+        acceptOrds = new Bits() {
+          @Override
+          public boolean get(int index) {
+            try {
+              return acceptDocs.get(docs.readInt((long) index * Integer.BYTES));
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          }
+
+          @Override
+          public int length() {
+            return entry.size;
+          }
+        };
+      }
+      final NeighborQueue results = HnswGraph.search(target, k, numCandidates, searchVectors,
+          entry.similarityFunction, graph, acceptOrds, visitedLimit);
+      final ScoreDoc[] scoreDocs = new ScoreDoc[results.size()];
+      for (int i = scoreDocs.length - 1; i >= 0; --i) {
+        final float score = results.topScore();
+        final int node = results.pop();
+        scoreDocs[i] = new ScoreDoc(docs.readInt((long) node * Integer.BYTES), score);
+      }
+      final TotalHits.Relation relation = results.incomplete() ? TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO : TotalHits.Relation.EQUAL_TO;
+      return new TopDocs(new TotalHits(results.visitedCount(), relation), scoreDocs);
+    }
+  }
+
+  @Override
+  public NumericDocValues getNumeric(FieldInfo field) throws IOException {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public SortedDocValues getSorted(FieldInfo field) throws IOException {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public SortedNumericDocValues getSortedNumeric(FieldInfo field) throws IOException {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public SortedSetDocValues getSortedSet(FieldInfo field) throws IOException {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void checkIntegrity() throws IOException {
+    CodecUtil.checksumEntireFile(data);
+  }
+
+  @Override
+  public void close() throws IOException {
+    data.close();
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return ramBytesUsed;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(fields=" + fields.size() + ")";
+  }
+}
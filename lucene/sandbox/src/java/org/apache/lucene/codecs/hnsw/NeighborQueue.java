@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.hnsw;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.NumericUtils;
+
+/**
+ * A priority queue of graph nodes and their scores. Entries are encoded into
+ * longs so that the queue doesn't need to allocate objects: the score in the
+ * upper 32 bits and the node in the lower 32 bits. Depending on {@code maxHeap},
+ * the top of the queue is either the node with the highest score or the node
+ * with the lowest score. Ties are broken in favor of lower node IDs.
+ */
+final class NeighborQueue {
+
+  private final boolean maxHeap;
+  private long[] heap; // 1-based
+  private int size;
+  private int visitedCount;
+  private boolean incomplete;
+
+  NeighborQueue(int initialSize, boolean maxHeap) {
+    this.maxHeap = maxHeap;
+    this.heap = new long[Math.max(initialSize, 1) + 1];
+  }
+
+  private long encode(int node, float score) {
+    // invert the node so that lower nodes compare greater, ie. they win ties
+    final long encoded = (((long) NumericUtils.floatToSortableInt(score)) << 32) | (0xFFFFFFFFL & ~node);
+    return maxHeap ? -encoded : encoded;
+  }
+
+  private long decode(long heapValue) {
+    return maxHeap ? -heapValue : heapValue;
+  }
+
+  /** Number of entries of this queue. */
+  int size() {
+    return size;
+  }
+
+  /** Add a new entry. */
+  void add(int node, float score) {
+    if (size + 1 == heap.length) {
+      heap = ArrayUtil.grow(heap, size + 2);
+    }
+    heap[++size] = encode(node, score);
+    upHeap(size);
+  }
+
+  /**
+   * Add a new entry if the queue has less than {@code maxSize} entries, or
+   * replace the top entry if the new entry compares better than it. Returns
+   * {@code true} if the entry was added.
+   */
+  boolean insertWithOverflow(int node, float score, int maxSize) {
+    if (size < maxSize) {
+      add(node, score);
+      return true;
+    }
+    final long encoded = encode(node, score);
+    if (encoded > heap[1]) {
+      heap[1] = encoded;
+      downHeap(1);
+      return true;
+    }
+    return false;
+  }
+
+  /** Remove the top entry and return its node. */
+  int pop() {
+    assert size > 0;
+    final long top = heap[1];
+    heap[1] = heap[size--];
+    downHeap(1);
+    return decodeNode(decode(top));
+  }
+
+  /** Return the node of the top entry. */
+  int topNode() {
+    return decodeNode(decode(heap[1]));
+  }
+
+  /** Return the score of the top entry. */
+  float topScore() {
+    return decodeScore(decode(heap[1]));
+  }
+
+  /** Copy nodes of this queue, in no particular order. */
+  int[] nodes() {
+    final int[] nodes = new int[size];
+    for (int i = 0; i < size; ++i) {
+      nodes[i] = decodeNode(decode(heap[i + 1]));
+    }
+    return nodes;
+  }
+
+  /** Remove all entries. */
+  void clear() {
+    size = 0;
+    visitedCount = 0;
+    incomplete = false;
+  }
+
+  int visitedCount() {
+    return visitedCount;
+  }
+
+  void setVisitedCount(int visitedCount) {
+    this.visitedCount = visitedCount;
+  }
+
+  /** Whether the search stopped early because it visited too many nodes. */
+  boolean incomplete() {
+    return incomplete;
+  }
+
+  void markIncomplete() {
+    incomplete = true;
+  }
+
+  private static int decodeNode(long encoded) {
+    return ~((int) encoded);
+  }
+
+  private static float decodeScore(long encoded) {
+    return NumericUtils.sortableIntToFloat((int) (encoded >> 32));
+  }
+
+  // min-heap on the encoded values: maxHeap is implemented by negating them
+  private void upHeap(int i) {
+    final long value = heap[i];
+    int j = i >>> 1;
+    while (j > 0 && value < heap[j]) {
+      heap[i] = heap[j];
+      i = j;
+      j = j >>> 1;
+    }
+    heap[i] = value;
+  }
+
+  private void downHeap(int i) {
+    final long value = heap[i];
+    int j = i << 1;
+    int k = j + 1;
+    if (k <= size && heap[k] < heap[j]) {
+      j = k;
+    }
+    while (j <= size && heap[j] < value) {
+      heap[i] = heap[j];
+      i = j;
+      j = i << 1;
+      k = j + 1;
+      if (k <= size && heap[k] < heap[j]) {
+        j = k;
+      }
+    }
+    heap[i] = value;
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.hnsw;
+
+import java.io.IOException;
+
+import org.apache.lucene.document.VectorField;
+import org.apache.lucene.document.VectorSimilarityFunction;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.util.Bits;
+
+/**
+ * {@link BinaryDocValues} of a {@link VectorField} that has been indexed with
+ * the {@link HnswVectorDocValuesFormat}, and which can be searched for nearest
+ * neighbors.
+ * @lucene.experimental
+ */
+public abstract class VectorDocValues extends BinaryDocValues {
+
+  /** Sole constructor. */
+  protected VectorDocValues() {}
+
+  /** Return the dimension of vectors. */
+  public abstract int dimension();
+
+  /** Return the similarity function that the graph was built with. */
+  public abstract VectorSimilarityFunction similarityFunction();
+
+  /** Return the vector of the current document. The returned array may be
+   *  reused across calls. */
+  public abstract float[] vectorValue() throws IOException;
+
+  /**
+   * Return the {@code k} documents whose vectors are the most similar to
+   * {@code target} according to {@link #similarityFunction()}. This search is
+   * approximate: it may miss some of the true nearest neighbors. It doesn't
+   * change the position of this iterator.
+   * @param target the query vector
+   * @param k the number of documents to return
+   * @param numCandidates the number of candidates to explore: higher values
+   *        give better recall but slower searches
+   * @param acceptDocs documents that may be returned, or {@code null} if all documents may be returned
+   * @param visitedLimit maximum number of vectors to compare with the target,
+   *        if the search needs to compare more vectors, it stops and the
+   *        {@link TopDocs#totalHits total hits} relation is
+   *        {@link TotalHits.Relation#GREATER_THAN_OR_EQUAL_TO}
+   * @return the nearest documents by decreasing similarity, whose
+   *        {@link TopDocs#totalHits total hits} is the number of compared vectors
+   */
+  public abstract TopDocs search(float[] target, int k, int numCandidates, Bits acceptDocs, int visitedLimit) throws IOException;
+}
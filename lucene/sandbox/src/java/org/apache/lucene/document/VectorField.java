@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.document;
+
+import org.apache.lucene.codecs.hnsw.HnswVectorDocValuesFormat;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.search.KnnVectorQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * A dense vector of floats that is indexed as a binary doc value.
+ * <p>
+ * Every document may have at most one vector per field, and all vectors of a
+ * field must have the same dimension. Nearest neighbors of a query vector can
+ * be found with {@link #newNearestNeighborQuery}. This is efficient if the
+ * field is configured to use the {@link HnswVectorDocValuesFormat}, which
+ * indexes vectors in a graph, and falls back to an exhaustive search
+ * otherwise.
+ * @lucene.experimental
+ */
+public final class VectorField extends Field {
+
+  /** Type for a vector field: binary doc values. */
+  public static final FieldType TYPE = new FieldType();
+  static {
+    TYPE.setDocValuesType(DocValuesType.BINARY);
+    TYPE.freeze();
+  }
+
+  /** Maximum number of dimensions of a vector. */
+  public static final int MAX_DIMENSIONS = 1024;
+
+  /**
+   * Create a new vector field.
+   * @param name field name
+   * @param vector the vector, which is copied
+   * @throws IllegalArgumentException if the field name is null or the
+   *         vector is empty or has more than {@link #MAX_DIMENSIONS} dimensions.
+   */
+  public VectorField(String name, float[] vector) {
+    super(name, TYPE);
+    fieldsData = encode(vector);
+  }
+
+  /** Change the value of this field. */
+  public void setVectorValue(float[] vector) {
+    fieldsData = encode(vector);
+  }
+
+  /** Encode a vector into the bytes that are stored in doc values. */
+  public static BytesRef encode(float[] vector) {
+    if (vector.length == 0) {
+      throw new IllegalArgumentException("vectors must have at least one dimension");
+    }
+    if (vector.length > MAX_DIMENSIONS) {
+      throw new IllegalArgumentException("vectors must have at most " + MAX_DIMENSIONS + " dimensions, got " + vector.length);
+    }
+    final byte[] bytes = new byte[vector.length * Float.BYTES];
+    for (int i = 0, j = 0; i < vector.length; ++i) {
+      final float v = vector[i];
+      if (Float.isFinite(v) == false) {
+        throw new IllegalArgumentException("vector values must be finite, got " + v + " at index " + i);
+      }
+      final int bits = Float.floatToIntBits(v);
+      bytes[j++] = (byte) (bits >>> 24);
+      bytes[j++] = (byte) (bits >>> 16);
+      bytes[j++] = (byte) (bits >>> 8);
+      bytes[j++] = (byte) bits;
+    }
+    return new BytesRef(bytes);
+  }
+
+  /** Decode a vector that has been encoded with {@link #encode(float[])}
+   *  into {@code vector}, whose length must be the dimension of the vector. */
+  public static void decode(BytesRef bytes, float[] vector) {
+    if (bytes.length != vector.length * Float.BYTES) {
+      throw new IllegalArgumentException("Expected a vector of dimension " + vector.length + " but got " + bytes.length + " bytes");
+    }
+    for (int i = 0, j = bytes.offset; i < vector.length; ++i, j += Float.BYTES) {
+      final int bits = ((bytes.bytes[j] & 0xFF) << 24) | ((bytes.bytes[j + 1] & 0xFF) << 16)
+          | ((bytes.bytes[j + 2] & 0xFF) << 8) | (bytes.bytes[j + 3] & 0xFF);
+      vector[i] = Float.intBitsToFloat(bits);
+    }
+  }
+
+  /** Decode a vector that has been encoded with {@link #encode(float[])}. */
+  public static float[] decode(BytesRef bytes) {
+    if (bytes.length == 0 || bytes.length % Float.BYTES != 0) {
+      throw new IllegalArgumentException("Invalid encoded vector length: " + bytes.length);
+    }
+    final float[] vector = new float[bytes.length / Float.BYTES];
+    decode(bytes, vector);
+    return vector;
+  }
+
+  /**
+   * Create a query that returns the {@code k} documents whose vectors are the
+   * most similar to {@code target}, scored by their similarity.
+   * @see KnnVectorQuery
+   */
+  public static Query newNearestNeighborQuery(String field, float[] target, int k, VectorSimilarityFunction similarityFunction) {
+    return new KnnVectorQuery(field, target, k, similarityFunction);
+  }
+}
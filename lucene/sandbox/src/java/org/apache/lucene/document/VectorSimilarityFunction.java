@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.document;
+
+/**
+ * Similarity functions between two {@link VectorField vectors}. All of them
+ * return non-negative scores where a higher score means that vectors are more
+ * similar, so that they can be used as scores directly.
+ * @lucene.experimental
+ */
+public enum VectorSimilarityFunction {
+
+  /** Euclidean distance, scored as {@code 1 / (1 + squareDistance)}. */
+  EUCLIDEAN {
+    @Override
+    public float compare(float[] v1, float[] v2) {
+      float squareDistance = 0;
+      for (int i = 0; i < v1.length; ++i) {
+        float diff = v1[i] - v2[i];
+        squareDistance += diff * diff;
+      }
+      return 1 / (1 + squareDistance);
+    }
+  },
+
+  /** Dot product, scored as {@code (1 + dotProduct) / 2}. This is only
+   *  meaningful if all vectors, including the query vector, have a unit
+   *  length, in which case it is equivalent to {@link #COSINE} but cheaper
+   *  to compute. */
+  DOT_PRODUCT {
+    @Override
+    public float compare(float[] v1, float[] v2) {
+      return Math.max((1 + dotProduct(v1, v2)) / 2, 0);
+    }
+  },
+
+  /** Cosine similarity, scored as {@code (1 + cosine) / 2}. */
+  COSINE {
+    @Override
+    public float compare(float[] v1, float[] v2) {
+      float dot = 0, norm1 = 0, norm2 = 0;
+      for (int i = 0; i < v1.length; ++i) {
+        dot += v1[i] * v2[i];
+        norm1 += v1[i] * v1[i];
+        norm2 += v2[i] * v2[i];
+      }
+      if (norm1 == 0 || norm2 == 0) {
+        // the cosine of the null vector is undefined, consider it orthogonal to all vectors
+        return 0.5f;
+      }
+      final double cosine = dot / Math.sqrt((double) norm1 * norm2);
+      return (float) Math.max((1 + cosine) / 2, 0);
+    }
+  };
+
+  /** Return the similarity score of two vectors that have the same dimension. */
+  public abstract float compare(float[] v1, float[] v2);
+
+  private static float dotProduct(float[] v1, float[] v2) {
+    float dot = 0;
+    for (int i = 0; i < v1.length; ++i) {
+      dot += v1[i] * v2[i];
+    }
+    return dot;
+  }
+}
@@ -27,6 +27,9 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 
+import org.apache.lucene.index.Impact;
+import org.apache.lucene.index.Impacts;
+import org.apache.lucene.index.ImpactsEnum;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.PostingsEnum;
@@ -193,13 +196,36 @@ public final class BM25FQuery extends Query {
 
   @Override
   public int hashCode() {
-    return 31 * classHash() + Arrays.hashCode(terms);
+    int h = classHash();
+    h = 31 * h + Arrays.hashCode(terms);
+    for (FieldAndWeight fieldAndWeight : fieldAndWeights.values()) {
+      h = 31 * h + fieldAndWeight.field.hashCode();
+      h = 31 * h + Float.hashCode(fieldAndWeight.weight);
+    }
+    h = 31 * h + Float.hashCode(similarity.getK1());
+    h = 31 * h + Float.hashCode(similarity.getB());
+    return h;
   }
 
   @Override
   public boolean equals(Object other) {
     return sameClassAs(other) &&
-        Arrays.equals(terms, ((BM25FQuery) other).terms);
+        equalsTo((BM25FQuery) other);
+  }
+
+  private boolean equalsTo(BM25FQuery other) {
+    if (Arrays.equals(terms, other.terms) == false
+        || fieldAndWeights.keySet().equals(other.fieldAndWeights.keySet()) == false
+        || Float.compare(similarity.getK1(), other.similarity.getK1()) != 0
+        || Float.compare(similarity.getB(), other.similarity.getB()) != 0) {
+      return false;
+    }
+    for (FieldAndWeight fieldAndWeight : fieldAndWeights.values()) {
+      if (Float.compare(fieldAndWeight.weight, other.fieldAndWeights.get(fieldAndWeight.field).weight) != 0) {
+        return false;
+      }
+    }
+    return true;
   }
 
   @Override
@@ -254,6 +280,7 @@ public final class BM25FQuery extends Query {
 
   class BM25FWeight extends Weight {
     private final IndexSearcher searcher;
+    private final ScoreMode scoreMode;
     private final TermStates termStates[];
     private final Similarity.SimScorer simWeight;
 
@@ -261,6 +288,7 @@ public final class BM25FQuery extends Query {
       super(query);
       assert scoreMode.needsScores();
       this.searcher = searcher;
+      this.scoreMode = scoreMode;
       long docFreq = 0;
       long totalTermFreq = 0;
       termStates = new TermStates[fieldTerms.length];
@@ -334,6 +362,7 @@ public final class BM25FQuery extends Query {
 
     @Override
     public Scorer scorer(LeafReaderContext context) throws IOException {
+      final boolean topScores = scoreMode == ScoreMode.TOP_SCORES;
       List<PostingsEnum> iterators = new ArrayList<>();
       List<FieldAndWeight> fields = new ArrayList<>();
       for (int i = 0; i < fieldTerms.length; i++) {
@@ -341,7 +370,9 @@ public final class BM25FQuery extends Query {
         if (state != null) {
           TermsEnum termsEnum = context.reader().terms(fieldTerms[i].field()).iterator();
           termsEnum.seekExact(fieldTerms[i].bytes(), state);
-          PostingsEnum postingsEnum = termsEnum.postings(null, PostingsEnum.FREQS);
+          PostingsEnum postingsEnum = topScores
+              ? termsEnum.impacts(PostingsEnum.FREQS)
+              : termsEnum.postings(null, PostingsEnum.FREQS);
           iterators.add(postingsEnum);
           fields.add(fieldAndWeights.get(fieldTerms[i].field()));
         }
@@ -355,21 +386,28 @@ public final class BM25FQuery extends Query {
       if (iterators.size() == 1) {
         final LeafSimScorer scoringSimScorer =
             new LeafSimScorer(simWeight, context.reader(), fields.get(0).field, true);
+        if (topScores) {
+          return new TermScorer(this, (ImpactsEnum) iterators.get(0), scoringSimScorer);
+        }
         return new TermScorer(this, iterators.get(0), scoringSimScorer);
       }
       final MultiNormsLeafSimScorer scoringSimScorer =
-          new MultiNormsLeafSimScorer(simWeight, context.reader(), fields, true);
+          new MultiNormsLeafSimScorer(simWeight, context.reader(), fieldAndWeights.values(), true);
       LeafSimScorer nonScoringSimScorer = new LeafSimScorer(simWeight, context.reader(), "pseudo_field", false);
       // we use termscorers + disjunction as an impl detail
       DisiPriorityQueue queue = new DisiPriorityQueue(iterators.size());
+      List<WeightedDisiWrapper> wrappers = new ArrayList<>(iterators.size());
       for (int i = 0; i < iterators.size(); i++) {
-        float weight = fields.get(i).weight;
-        queue.add(new WeightedDisiWrapper(new TermScorer(this, iterators.get(i), nonScoringSimScorer), weight));
+        // sub scorers never skip documents: impacts are combined across fields by the BM25FScorer
+        WeightedDisiWrapper wrapper = new WeightedDisiWrapper(
+            new TermScorer(this, iterators.get(i), nonScoringSimScorer), iterators.get(i), fields.get(i));
+        queue.add(wrapper);
+        wrappers.add(wrapper);
       }
       // Even though it is called approximation, it is accurate since none of
       // the sub iterators are two-phase iterators.
       DocIdSetIterator iterator = new DisjunctionDISIApproximation(queue);
-      return new BM25FScorer(this, queue, iterator, scoringSimScorer);
+      return new BM25FScorer(this, queue, iterator, scoringSimScorer, topScores ? wrappers : null);
     }
 
     @Override
@@ -379,28 +417,66 @@ public final class BM25FQuery extends Query {
   }
 
   private static class WeightedDisiWrapper extends DisiWrapper {
-    final float weight;
+    final PostingsEnum postingsEnum;
+    final FieldAndWeight field;
 
-    WeightedDisiWrapper(Scorer scorer, float weight) {
+    WeightedDisiWrapper(Scorer scorer, PostingsEnum postingsEnum, FieldAndWeight field) {
       super(scorer);
-      this.weight = weight;
+      this.postingsEnum = postingsEnum;
+      this.field = field;
     }
 
     float freq() throws IOException {
-      return weight * ((PostingsEnum) iterator).freq();
+      return field.weight * postingsEnum.freq();
     }
   }
 
   private static class BM25FScorer extends Scorer {
+    // above this number of fields, scores are not bounded per combination of fields
+    private static final int MAX_FIELDS_FOR_COMBINATIONS = 8;
+
     private final DisiPriorityQueue queue;
     private final DocIdSetIterator iterator;
     private final MultiNormsLeafSimScorer simScorer;
-
-    BM25FScorer(Weight weight, DisiPriorityQueue queue, DocIdSetIterator iterator, MultiNormsLeafSimScorer simScorer) {
+    // only set when top scores are requested
+    private final List<WeightedDisiWrapper> impactsWrappers;
+    private final SkippingIterator skippingIterator;
+    // the index of the field of each wrapper
+    private final int[] fieldOrds;
+    // the factor the length of the field of each wrapper is multiplied by in the combined length
+    private final float[] lengthWeights;
+    private final double[] fieldMaxFreqs;
+    private final float[] fieldMinLengths;
+    private int maxScoreUpTo = -1;
+    private float maxScore;
+
+    BM25FScorer(Weight weight, DisiPriorityQueue queue, DocIdSetIterator iterator, MultiNormsLeafSimScorer simScorer,
+        List<WeightedDisiWrapper> impactsWrappers) {
       super(weight);
       this.queue = queue;
-      this.iterator = iterator;
       this.simScorer = simScorer;
+      this.impactsWrappers = impactsWrappers;
+      if (impactsWrappers == null) {
+        this.skippingIterator = null;
+        this.iterator = iterator;
+        this.fieldOrds = null;
+        this.lengthWeights = null;
+        this.fieldMaxFreqs = null;
+        this.fieldMinLengths = null;
+      } else {
+        this.skippingIterator = new SkippingIterator(iterator);
+        this.iterator = skippingIterator;
+        this.fieldOrds = new int[impactsWrappers.size()];
+        this.lengthWeights = new float[impactsWrappers.size()];
+        Map<String, Integer> ords = new HashMap<>();
+        for (int i = 0; i < fieldOrds.length; ++i) {
+          FieldAndWeight field = impactsWrappers.get(i).field;
+          fieldOrds[i] = ords.computeIfAbsent(field.field, f -> ords.size());
+          lengthWeights[i] = simScorer.lengthWeight(field);
+        }
+        this.fieldMaxFreqs = new double[ords.size()];
+        this.fieldMinLengths = new float[ords.size()];
+      }
     }
 
     @Override
@@ -430,9 +506,199 @@ public final class BM25FQuery extends Query {
       return iterator;
     }
 
+    @Override
+    public int advanceShallow(int target) throws IOException {
+      if (impactsWrappers == null) {
+        return super.advanceShallow(target);
+      }
+      int upTo = DocIdSetIterator.NO_MORE_DOCS;
+      for (WeightedDisiWrapper w : impactsWrappers) {
+        ImpactsEnum impactsEnum = (ImpactsEnum) w.postingsEnum;
+        if (impactsEnum.docID() <= target) {
+          impactsEnum.advanceShallow(target);
+          upTo = Math.min(upTo, impactsEnum.getImpacts().getDocIdUpTo(0));
+        } else if (impactsEnum.docID() < DocIdSetIterator.NO_MORE_DOCS) {
+          upTo = Math.min(upTo, impactsEnum.docID() - 1);
+        }
+      }
+      return upTo;
+    }
+
     @Override
     public float getMaxScore(int upTo) throws IOException {
-      return Float.POSITIVE_INFINITY;
+      if (impactsWrappers == null) {
+        return Float.POSITIVE_INFINITY;
+      }
+      // the max score is often requested several times for the same block
+      if (upTo != maxScoreUpTo) {
+        maxScore = computeMaxScore(upTo);
+        maxScoreUpTo = upTo;
+      }
+      return maxScore;
+    }
+
+    /**
+     * Combine impacts across fields. For each field, the frequency of a
+     * document can't be greater than the weighted sum of the maximum
+     * frequencies of the terms of this field, and its length can't be less
+     * than the minimum length of documents that contain one of these terms.
+     * The frequency and length of a document are sums of these per-field
+     * values over the fields that match, so the maximum score is computed
+     * over all combinations of matching fields.
+     */
+    private float computeMaxScore(int upTo) throws IOException {
+      Arrays.fill(fieldMaxFreqs, 0);
+      Arrays.fill(fieldMinLengths, Float.POSITIVE_INFINITY);
+      for (int i = 0; i < impactsWrappers.size(); ++i) {
+        WeightedDisiWrapper w = impactsWrappers.get(i);
+        ImpactsEnum impactsEnum = (ImpactsEnum) w.postingsEnum;
+        if (impactsEnum.docID() > upTo) {
+          continue;
+        }
+        Impacts impacts = impactsEnum.getImpacts();
+        int level = 0;
+        final int numLevels = impacts.numLevels();
+        while (level < numLevels && impacts.getDocIdUpTo(level) < upTo) {
+          level++;
+        }
+        final int field = fieldOrds[i];
+        if (level == numLevels) {
+          // no information about the frequencies of this term
+          fieldMaxFreqs[field] = Double.POSITIVE_INFINITY;
+          fieldMinLengths[field] = 0;
+          continue;
+        }
+        int maxFreq = 0;
+        int minNorm = 0xFF;
+        for (Impact impact : impacts.getImpacts(level)) {
+          maxFreq = Math.max(maxFreq, impact.freq);
+          // decoded lengths increase with the unsigned value of norms
+          minNorm = Math.min(minNorm, ((byte) impact.norm) & 0xFF);
+        }
+        final float minLength = lengthWeights[i] * MultiNormsLeafSimScorer.decodeLength(minNorm);
+        fieldMaxFreqs[field] += (double) w.field.weight * maxFreq;
+        fieldMinLengths[field] = Math.min(fieldMinLengths[field], minLength);
+      }
+
+      final int numFields = fieldMaxFreqs.length;
+      if (numFields > MAX_FIELDS_FOR_COMBINATIONS) {
+        // too many combinations, use the max frequency and the min length across all fields
+        double maxFreq = 0;
+        float minLength = Float.POSITIVE_INFINITY;
+        for (int field = 0; field < numFields; ++field) {
+          if (fieldMinLengths[field] != Float.POSITIVE_INFINITY) {
+            maxFreq += fieldMaxFreqs[field];
+            minLength = Math.min(minLength, fieldMinLengths[field]);
+          }
+        }
+        return maxScore(maxFreq, minLength);
+      }
+      float maxScore = 0;
+      for (int mask = 1; mask < (1 << numFields); ++mask) {
+        double maxFreq = 0;
+        float minLength = 0;
+        boolean matches = true;
+        for (int field = 0; field < numFields && matches; ++field) {
+          if ((mask & (1 << field)) != 0) {
+            matches = fieldMinLengths[field] != Float.POSITIVE_INFINITY;
+            maxFreq += fieldMaxFreqs[field];
+            minLength += fieldMinLengths[field];
+          }
+        }
+        if (matches) {
+          maxScore = Math.max(maxScore, maxScore(maxFreq, minLength));
+        }
+      }
+      return maxScore;
+    }
+
+    private float maxScore(double maxFreq, float minLength) {
+      if (minLength == Float.POSITIVE_INFINITY) {
+        // no term has documents up to upTo
+        return 0;
+      }
+      // go to the next float to account for rounding errors when summing up frequencies
+      final float freq = Math.nextUp((float) Math.min(maxFreq, Integer.MAX_VALUE));
+      return simScorer.getMaxScore(freq, minLength);
+    }
+
+    @Override
+    public void setMinCompetitiveScore(float minScore) {
+      if (skippingIterator != null) {
+        skippingIterator.setMinCompetitiveScore(minScore);
+      }
+    }
+
+    /**
+     * Skips blocks of documents that are not competitive. Combined impacts
+     * are expensive to compute and they are not always selective, so checks
+     * get less frequent as long as they find competitive blocks.
+     */
+    private class SkippingIterator extends DocIdSetIterator {
+      // maximum number of blocks that are not checked after a check that didn't skip
+      private static final int MAX_UNCHECKED_BLOCKS = 16;
+
+      private final DocIdSetIterator in;
+      private float minCompetitiveScore;
+      // documents up to this doc ID are not checked
+      private int upTo = -1;
+      private int failedChecks;
+
+      SkippingIterator(DocIdSetIterator in) {
+        this.in = in;
+      }
+
+      void setMinCompetitiveScore(float minScore) {
+        if (minScore > minCompetitiveScore) {
+          minCompetitiveScore = minScore;
+          // check the current block again
+          upTo = -1;
+          failedChecks = 0;
+        }
+      }
+
+      private int advanceTarget(int target) throws IOException {
+        if (target <= upTo || minCompetitiveScore == 0) {
+          return target;
+        }
+        while (true) {
+          upTo = advanceShallow(target);
+          if (getMaxScore(upTo) >= minCompetitiveScore) {
+            if (upTo != NO_MORE_DOCS) {
+              failedChecks = Math.min(failedChecks + 1, MAX_UNCHECKED_BLOCKS);
+              // don't check the next blocks, assuming they have the same size
+              long uncheckedUpTo = upTo + (long) (upTo - target + 1) * (failedChecks - 1);
+              upTo = (int) Math.min(uncheckedUpTo, NO_MORE_DOCS - 1);
+            }
+            return target;
+          }
+          failedChecks = 0;
+          if (upTo == NO_MORE_DOCS) {
+            return NO_MORE_DOCS;
+          }
+          target = upTo + 1;
+        }
+      }
+
+      @Override
+      public int docID() {
+        return in.docID();
+      }
+
+      @Override
+      public int nextDoc() throws IOException {
+        return advance(in.docID() + 1);
+      }
+
+      @Override
+      public int advance(int target) throws IOException {
+        return in.advance(advanceTarget(target));
+      }
+
+      @Override
+      public long cost() {
+        return in.cost();
+      }
     }
   }
-}
\ No newline at end of file
+}
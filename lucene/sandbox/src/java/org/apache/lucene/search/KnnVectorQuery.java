@@ -0,0 +1,408 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+import org.apache.lucene.codecs.hnsw.HnswVectorDocValuesFormat;
+import org.apache.lucene.codecs.hnsw.VectorDocValues;
+import org.apache.lucene.document.VectorField;
+import org.apache.lucene.document.VectorSimilarityFunction;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexReaderContext;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.util.BitSet;
+import org.apache.lucene.util.BitSetIterator;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.PriorityQueue;
+
+/**
+ * Finds the {@code k} documents whose {@link VectorField vectors} are the
+ * most similar to a target vector, optionally among the documents that match
+ * a filter. Matching documents are scored by their similarity with the target.
+ * <p>
+ * The search runs when the query is rewritten. Segments whose field uses the
+ * {@link HnswVectorDocValuesFormat} with the same similarity function are
+ * searched approximately through their graph, other segments are searched
+ * exhaustively. Segments are also searched exhaustively when the filter is so
+ * selective that following the graph would compare more vectors than the
+ * filter matches.
+ * <p>
+ * The rewritten query can be used as a clause of a {@link BooleanQuery}, for
+ * instance to combine nearest-neighbor and text scores.
+ * @lucene.experimental
+ */
+public class KnnVectorQuery extends Query {
+
+  private final String field;
+  private final float[] target;
+  private final int k;
+  private final VectorSimilarityFunction similarityFunction;
+  private final Query filter;
+  private final int numCandidates;
+
+  /**
+   * Find the {@code k} nearest documents to {@code target}.
+   * @param field a {@link VectorField vector field}
+   * @param target the target vector
+   * @param k the number of documents to return
+   * @param similarityFunction the similarity function to compare vectors with
+   */
+  public KnnVectorQuery(String field, float[] target, int k, VectorSimilarityFunction similarityFunction) {
+    this(field, target, k, similarityFunction, null, k);
+  }
+
+  /**
+   * Find the {@code k} nearest documents to {@code target} that match {@code filter}.
+   * @param field a {@link VectorField vector field}
+   * @param target the target vector
+   * @param k the number of documents to return
+   * @param similarityFunction the similarity function to compare vectors with
+   * @param filter a filter on documents, or {@code null} to consider all documents
+   * @param numCandidates the number of candidates to explore per segment when searching graphs,
+   *        which must be at least {@code k}: higher values give better recall at the expense of speed
+   */
+  public KnnVectorQuery(String field, float[] target, int k, VectorSimilarityFunction similarityFunction, Query filter, int numCandidates) {
+    this.field = Objects.requireNonNull(field, "field");
+    this.target = VectorField.decode(VectorField.encode(target)); // validates and copies
+    if (k < 1) {
+      throw new IllegalArgumentException("k must be at least 1, got: " + k);
+    }
+    if (numCandidates < k) {
+      throw new IllegalArgumentException("numCandidates must be at least k=" + k + ", got: " + numCandidates);
+    }
+    this.k = k;
+    this.similarityFunction = Objects.requireNonNull(similarityFunction, "similarityFunction");
+    this.filter = filter;
+    this.numCandidates = numCandidates;
+  }
+
+  @Override
+  public Query rewrite(IndexReader reader) throws IOException {
+    Weight filterWeight = null;
+    if (filter != null) {
+      IndexSearcher searcher = new IndexSearcher(reader);
+      searcher.setQueryCache(null);
+      filterWeight = searcher.createWeight(searcher.rewrite(filter), ScoreMode.COMPLETE_NO_SCORES, 1f);
+    }
+
+    final List<LeafReaderContext> leaves = reader.leaves();
+    final TopDocs[] perLeafResults = new TopDocs[leaves.size()];
+    for (LeafReaderContext ctx : leaves) {
+      TopDocs results = searchLeaf(ctx, filterWeight);
+      for (ScoreDoc scoreDoc : results.scoreDocs) {
+        scoreDoc.doc += ctx.docBase;
+      }
+      perLeafResults[ctx.ord] = results;
+    }
+    TopDocs topK = TopDocs.merge(k, perLeafResults);
+    if (topK.scoreDocs.length == 0) {
+      return new MatchNoDocsQuery();
+    }
+    return createRewrittenQuery(reader, topK);
+  }
+
+  private TopDocs searchLeaf(LeafReaderContext ctx, Weight filterWeight) throws IOException {
+    final BinaryDocValues values = ctx.reader().getBinaryDocValues(field);
+    if (values == null) {
+      return emptyTopDocs();
+    }
+
+    final Bits liveDocs = ctx.reader().getLiveDocs();
+    final int maxDoc = ctx.reader().maxDoc();
+    final BitSet acceptDocs;
+    final int cost;
+    if (filterWeight == null) {
+      acceptDocs = null;
+      cost = ctx.reader().numDocs();
+    } else {
+      Scorer scorer = filterWeight.scorer(ctx);
+      if (scorer == null) {
+        return emptyTopDocs();
+      }
+      acceptDocs = createBitSet(scorer.iterator(), liveDocs, maxDoc);
+      cost = acceptDocs.cardinality();
+      if (cost == 0) {
+        return emptyTopDocs();
+      }
+    }
+
+    if (values instanceof VectorDocValues && ((VectorDocValues) values).similarityFunction() == similarityFunction) {
+      final Bits accept = acceptDocs == null ? liveDocs : acceptDocs;
+      final TopDocs results = ((VectorDocValues) values).search(target, k, numCandidates, accept, cost);
+      if (results.totalHits.relation == TotalHits.Relation.EQUAL_TO) {
+        return results;
+      }
+      // the graph search compared more vectors than the filter matches, an exhaustive search is cheaper
+    }
+
+    final DocIdSetIterator docs;
+    if (acceptDocs == null) {
+      docs = values;
+    } else {
+      docs = ConjunctionDISI.intersectIterators(Arrays.asList(values, new BitSetIterator(acceptDocs, cost)));
+    }
+    return exactSearch(values, docs, acceptDocs == null ? liveDocs : null);
+  }
+
+  private static BitSet createBitSet(DocIdSetIterator iterator, Bits liveDocs, int maxDoc) throws IOException {
+    if (liveDocs == null) {
+      return BitSet.of(iterator, maxDoc);
+    }
+    final FixedBitSet bitSet = new FixedBitSet(maxDoc);
+    for (int doc = iterator.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = iterator.nextDoc()) {
+      if (liveDocs.get(doc)) {
+        bitSet.set(doc);
+      }
+    }
+    return bitSet;
+  }
+
+  // Compare the target with the vector of every document of the iterator, which must be positioned on the same docs as values
+  private TopDocs exactSearch(BinaryDocValues values, DocIdSetIterator docs, Bits liveDocs) throws IOException {
+    final PriorityQueue<ScoreDoc> queue = new PriorityQueue<ScoreDoc>(k) {
+      @Override
+      protected boolean lessThan(ScoreDoc a, ScoreDoc b) {
+        if (a.score == b.score) {
+          return a.doc > b.doc;
+        }
+        return a.score < b.score;
+      }
+    };
+    final float[] vector = new float[target.length];
+    int count = 0;
+    ScoreDoc spare = null;
+    for (int doc = docs.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = docs.nextDoc()) {
+      if (liveDocs != null && liveDocs.get(doc) == false) {
+        continue;
+      }
+      VectorField.decode(values.binaryValue(), vector);
+      count++;
+      final float score = similarityFunction.compare(target, vector);
+      if (spare == null) {
+        spare = new ScoreDoc(doc, score);
+      } else {
+        spare.doc = doc;
+        spare.score = score;
+      }
+      spare = queue.insertWithOverflow(spare);
+    }
+    final ScoreDoc[] scoreDocs = new ScoreDoc[queue.size()];
+    for (int i = scoreDocs.length - 1; i >= 0; --i) {
+      scoreDocs[i] = queue.pop();
+    }
+    return new TopDocs(new TotalHits(count, TotalHits.Relation.EQUAL_TO), scoreDocs);
+  }
+
+  private static TopDocs emptyTopDocs() {
+    return new TopDocs(new TotalHits(0, TotalHits.Relation.EQUAL_TO), new ScoreDoc[0]);
+  }
+
+  private static Query createRewrittenQuery(IndexReader reader, TopDocs topK) {
+    final ScoreDoc[] scoreDocs = topK.scoreDocs.clone();
+    Arrays.sort(scoreDocs, Comparator.comparingInt(scoreDoc -> scoreDoc.doc));
+    final int[] docs = new int[scoreDocs.length];
+    final float[] scores = new float[scoreDocs.length];
+    for (int i = 0; i < scoreDocs.length; ++i) {
+      docs[i] = scoreDocs[i].doc;
+      scores[i] = scoreDocs[i].score;
+    }
+    final List<LeafReaderContext> leaves = reader.leaves();
+    final int[] segmentStarts = new int[leaves.size() + 1];
+    for (LeafReaderContext ctx : leaves) {
+      // index of the first result of the next segment
+      int index = Arrays.binarySearch(docs, ctx.docBase + ctx.reader().maxDoc());
+      segmentStarts[ctx.ord + 1] = index < 0 ? -1 - index : index;
+    }
+    return new DocAndScoreQuery(docs, scores, segmentStarts, reader.getContext());
+  }
+
+  @Override
+  public void visit(QueryVisitor visitor) {
+    if (visitor.acceptField(field)) {
+      visitor.visitLeaf(this);
+    }
+  }
+
+  @Override
+  public String toString(String field) {
+    return getClass().getSimpleName() + ":" + this.field + "[" + target[0] + ",...][" + k + "]"
+        + (filter == null ? "" : "[" + filter + "]");
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (sameClassAs(other) == false) {
+      return false;
+    }
+    KnnVectorQuery that = (KnnVectorQuery) other;
+    return field.equals(that.field)
+        && Arrays.equals(target, that.target)
+        && k == that.k
+        && similarityFunction == that.similarityFunction
+        && Objects.equals(filter, that.filter)
+        && numCandidates == that.numCandidates;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(classHash(), field, Arrays.hashCode(target), k, similarityFunction, filter, numCandidates);
+  }
+
+  /** A query that matches a fixed set of documents with pre-computed scores, the result of rewriting a {@link KnnVectorQuery}. */
+  static final class DocAndScoreQuery extends Query {
+
+    private final int[] docs;
+    private final float[] scores;
+    private final int[] segmentStarts;
+    private final IndexReaderContext readerContext;
+
+    /**
+     * @param docs global doc IDs, in increasing order
+     * @param scores the score of each doc
+     * @param segmentStarts the index in docs of the first doc of each segment, plus the total number of docs
+     * @param readerContext the context of the reader that doc IDs refer to
+     */
+    DocAndScoreQuery(int[] docs, float[] scores, int[] segmentStarts, IndexReaderContext readerContext) {
+      this.docs = docs;
+      this.scores = scores;
+      this.segmentStarts = segmentStarts;
+      this.readerContext = readerContext;
+    }
+
+    @Override
+    public Weight createWeight(IndexSearcher searcher, ScoreMode scoreMode, float boost) throws IOException {
+      if (searcher.getTopReaderContext() != readerContext) {
+        throw new IllegalStateException("This query was rewritten against a different reader than the one it is executed against");
+      }
+      return new Weight(this) {
+        @Override
+        public Explanation explain(LeafReaderContext context, int doc) {
+          int found = Arrays.binarySearch(docs, segmentStarts[context.ord], segmentStarts[context.ord + 1], doc + context.docBase);
+          if (found < 0) {
+            return Explanation.noMatch("not in top " + docs.length);
+          }
+          return Explanation.match(scores[found] * boost, "within top " + docs.length);
+        }
+
+        @Override
+        public Scorer scorer(LeafReaderContext context) {
+          final int start = segmentStarts[context.ord];
+          final int end = segmentStarts[context.ord + 1];
+          if (start == end) {
+            return null;
+          }
+          return new Scorer(this) {
+            int upTo = start - 1;
+
+            @Override
+            public DocIdSetIterator iterator() {
+              return new DocIdSetIterator() {
+                @Override
+                public int docID() {
+                  return currentDocId();
+                }
+
+                @Override
+                public int nextDoc() {
+                  upTo++;
+                  return docID();
+                }
+
+                @Override
+                public int advance(int target) throws IOException {
+                  return slowAdvance(target);
+                }
+
+                @Override
+                public long cost() {
+                  return end - start;
+                }
+              };
+            }
+
+            private int currentDocId() {
+              if (upTo < start) {
+                return -1;
+              }
+              if (upTo >= end) {
+                return DocIdSetIterator.NO_MORE_DOCS;
+              }
+              return docs[upTo] - context.docBase;
+            }
+
+            @Override
+            public int docID() {
+              return currentDocId();
+            }
+
+            @Override
+            public float getMaxScore(int upTo) {
+              float maxScore = 0;
+              for (int i = start; i < end; ++i) {
+                maxScore = Math.max(maxScore, scores[i]);
+              }
+              return maxScore * boost;
+            }
+
+            @Override
+            public float score() {
+              return scores[upTo] * boost;
+            }
+          };
+        }
+
+        @Override
+        public boolean isCacheable(LeafReaderContext ctx) {
+          return true;
+        }
+      };
+    }
+
+    @Override
+    public void visit(QueryVisitor visitor) {
+      visitor.visitLeaf(this);
+    }
+
+    @Override
+    public String toString(String field) {
+      return getClass().getSimpleName() + "[" + docs.length + " docs]";
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (sameClassAs(other) == false) {
+        return false;
+      }
+      DocAndScoreQuery that = (DocAndScoreQuery) other;
+      return readerContext == that.readerContext
+          && Arrays.equals(docs, that.docs)
+          && Arrays.equals(scores, that.scores);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(classHash(), readerContext.hashCode(), Arrays.hashCode(docs), Arrays.hashCode(scores));
+    }
+  }
+}
@@ -19,8 +19,10 @@ package org.apache.lucene.search;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.NumericDocValues;
@@ -46,6 +48,10 @@ final class MultiNormsLeafSimScorer {
 
   private final SimScorer scorer;
   private final NumericDocValues norms;
+  // fields that have norms
+  private final Set<String> normFieldNames = new HashSet<>();
+  // whether lengths of fields are multiplied by their weight
+  private final boolean weightedLengths;
 
   /**
    * Sole constructor: Score documents of {@code reader} with {@code scorer}.
@@ -61,8 +67,10 @@ final class MultiNormsLeafSimScorer {
         if (norms != null) {
           normsList.add(norms);
           weightList.add(field.weight);
+          normFieldNames.add(field.field);
         }
       }
+      weightedLengths = normsList.size() > 1;
       if (normsList.isEmpty()) {
         norms = null;
       } else if (normsList.size() == 1) {
@@ -77,14 +85,17 @@ final class MultiNormsLeafSimScorer {
       }
     } else {
       norms = null;
+      weightedLengths = false;
     }
   }
 
   private long getNormValue(int doc) throws IOException {
     if (norms != null) {
-      boolean found = norms.advanceExact(doc);
-      assert found;
-      return norms.longValue();
+      if (norms.advanceExact(doc)) {
+        return norms.longValue();
+      }
+      // the document has no value for the only field that has norms
+      return 0L;
     } else {
       return 1L; // default norm
     }
@@ -97,6 +108,36 @@ final class MultiNormsLeafSimScorer {
     return scorer.score(freq, getNormValue(doc));
   }
 
+  /**
+   * Return the factor that the length of {@code field} is multiplied by when
+   * computing the combined length of a document, or 0 if the field has no
+   * norms and doesn't contribute to the combined length.
+   */
+  float lengthWeight(FieldAndWeight field) {
+    if (normFieldNames.contains(field.field) == false) {
+      return 0;
+    }
+    return weightedLengths ? field.weight : 1f;
+  }
+
+  /** Decode the length that is encoded in a norm. */
+  static float decodeLength(long norm) {
+    return LENGTH_TABLE[((byte) norm) & 0xFF];
+  }
+
+  /**
+   * Return an upper bound of the score of documents whose frequency is less
+   * than or equal to {@code maxFreq} and whose combined length is greater than
+   * or equal to {@code minLength}.
+   */
+  float getMaxScore(float maxFreq, float minLength) {
+    if (norms == null) {
+      return scorer.score(maxFreq, 1L);
+    }
+    // lengths are rounded to the nearest integer, and encoding is monotonic
+    return scorer.score(maxFreq, SmallFloat.intToByte4((int) minLength));
+  }
+
   /** Explain the score for the provided document assuming the given term document frequency.
    *  This method must be called on non-decreasing sequences of doc ids.
    *  @see SimScorer#explain(Explanation, long) */
@@ -124,9 +165,10 @@ final class MultiNormsLeafSimScorer {
     public boolean advanceExact(int target) throws IOException {
       float normValue = 0;
       for (int i = 0; i < normsArr.length; i++) {
-        boolean found = normsArr[i].advanceExact(target);
-        assert found;
-        normValue += weightArr[i] * LENGTH_TABLE[(byte) normsArr[i].longValue()];
+        // documents that have no value for a field have a length of 0 for this field
+        if (normsArr[i].advanceExact(target)) {
+          normValue += weightArr[i] * LENGTH_TABLE[((byte) normsArr[i].longValue()) & 0xFF];
+        }
       }
       current = SmallFloat.intToByte4(Math.round(normValue));
       return true;
@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.hnsw;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.VectorField;
+import org.apache.lucene.document.VectorSimilarityFunction;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestHnswVectorDocValuesFormat extends LuceneTestCase {
+
+  private static IndexWriterConfig newConfig(VectorSimilarityFunction similarityFunction) {
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(TestUtil.alwaysDocValuesFormat(new HnswVectorDocValuesFormat(similarityFunction, TestUtil.nextInt(random(), 2, 32), TestUtil.nextInt(random(), 10, 100))));
+    return iwc;
+  }
+
+  private static float[] randomVector(int dim) {
+    float[] v = new float[dim];
+    for (int i = 0; i < dim; ++i) {
+      v[i] = random().nextFloat() * 2 - 1;
+    }
+    return v;
+  }
+
+  public void testIllegalArguments() {
+    expectThrows(IllegalArgumentException.class, () -> new HnswVectorDocValuesFormat(VectorSimilarityFunction.EUCLIDEAN, 1, 100));
+    expectThrows(IllegalArgumentException.class, () -> new HnswVectorDocValuesFormat(VectorSimilarityFunction.EUCLIDEAN, 16, 0));
+    expectThrows(IllegalArgumentException.class, () -> new VectorField("f", new float[0]));
+    expectThrows(IllegalArgumentException.class, () -> new VectorField("f", new float[] { Float.NaN }));
+  }
+
+  public void testDocValues() throws IOException {
+    final int dim = TestUtil.nextInt(random(), 1, 20);
+    final int numDocs = atLeast(200);
+    float[][] vectors = new float[numDocs][];
+    try (Directory dir = newDirectory();
+        IndexWriter w = new IndexWriter(dir, newConfig(VectorSimilarityFunction.EUCLIDEAN))) {
+      for (int i = 0; i < numDocs; ++i) {
+        Document doc = new Document();
+        if (random().nextInt(5) != 0) {
+          vectors[i] = randomVector(dim);
+          doc.add(new VectorField("vector", vectors[i]));
+        }
+        w.addDocument(doc);
+      }
+      w.forceMerge(1);
+      try (DirectoryReader reader = DirectoryReader.open(w)) {
+        LeafReader leafReader = getOnlyLeafReader(reader);
+        BinaryDocValues values = leafReader.getBinaryDocValues("vector");
+        assertTrue(values instanceof VectorDocValues);
+        VectorDocValues vectorValues = (VectorDocValues) values;
+        assertEquals(dim, vectorValues.dimension());
+        assertEquals(VectorSimilarityFunction.EUCLIDEAN, vectorValues.similarityFunction());
+        for (int i = 0; i < numDocs; ++i) {
+          if (vectors[i] != null) {
+            assertEquals(i, vectorValues.nextDoc());
+            assertArrayEquals(vectors[i], vectorValues.vectorValue(), 0f);
+            assertArrayEquals(vectors[i], VectorField.decode(vectorValues.binaryValue()), 0f);
+          }
+        }
+        assertEquals(DocIdSetIterator.NO_MORE_DOCS, vectorValues.nextDoc());
+
+        vectorValues = (VectorDocValues) leafReader.getBinaryDocValues("vector");
+        for (int i = 0; i < numDocs; i += TestUtil.nextInt(random(), 1, 10)) {
+          assertEquals(vectors[i] != null, vectorValues.advanceExact(i));
+          if (vectors[i] != null) {
+            assertArrayEquals(vectors[i], vectorValues.vectorValue(), 0f);
+          }
+        }
+      }
+    }
+  }
+
+  public void testSearchRecall() throws IOException {
+    for (VectorSimilarityFunction similarityFunction : VectorSimilarityFunction.values()) {
+      doTestSearchRecall(similarityFunction);
+    }
+  }
+
+  private void doTestSearchRecall(VectorSimilarityFunction similarityFunction) throws IOException {
+    final int dim = TestUtil.nextInt(random(), 2, 16);
+    final int numDocs = atLeast(500);
+    float[][] vectors = new float[numDocs][];
+    try (Directory dir = newDirectory();
+        IndexWriter w = new IndexWriter(dir, newConfig(similarityFunction))) {
+      for (int i = 0; i < numDocs; ++i) {
+        vectors[i] = randomVector(dim);
+        if (similarityFunction == VectorSimilarityFunction.DOT_PRODUCT) {
+          normalize(vectors[i]);
+        }
+        Document doc = new Document();
+        doc.add(new StringField("id", Integer.toString(i), Field.Store.YES));
+        doc.add(new VectorField("vector", vectors[i]));
+        w.addDocument(doc);
+        if (rarely()) {
+          w.commit();
+        }
+      }
+      // deletes must be honored by the graph search
+      Set<Integer> deleted = new HashSet<>();
+      for (int i = 0; i < numDocs; i += TestUtil.nextInt(random(), 5, 20)) {
+        w.deleteDocuments(new Term("id", Integer.toString(i)));
+        deleted.add(i);
+      }
+      w.forceMerge(1);
+      try (DirectoryReader reader = DirectoryReader.open(w)) {
+        LeafReader leafReader = getOnlyLeafReader(reader);
+        Bits liveDocs = leafReader.getLiveDocs();
+        int[] docToId = new int[leafReader.maxDoc()];
+        for (int doc = 0; doc < leafReader.maxDoc(); ++doc) {
+          docToId[doc] = Integer.parseInt(leafReader.document(doc).get("id"));
+        }
+
+        final int k = 10;
+        int numQueries = 20;
+        int found = 0;
+        for (int q = 0; q < numQueries; ++q) {
+          float[] target = randomVector(dim);
+          if (similarityFunction == VectorSimilarityFunction.DOT_PRODUCT) {
+            normalize(target);
+          }
+          VectorDocValues values = (VectorDocValues) leafReader.getBinaryDocValues("vector");
+          TopDocs topDocs = values.search(target, k, 100, liveDocs, Integer.MAX_VALUE);
+          assertEquals(k, topDocs.scoreDocs.length);
+          assertEquals(TotalHits.Relation.EQUAL_TO, topDocs.totalHits.relation);
+          Set<Integer> expected = new HashSet<>(Arrays.asList(exactTopK(vectors, deleted, target, k, similarityFunction)));
+          float previousScore = Float.POSITIVE_INFINITY;
+          for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+            int id = docToId[scoreDoc.doc];
+            assertFalse(deleted.contains(id));
+            assertEquals(similarityFunction.compare(target, vectors[id]), scoreDoc.score, 0f);
+            assertTrue(scoreDoc.score <= previousScore);
+            previousScore = scoreDoc.score;
+            if (expected.contains(id)) {
+              found++;
+            }
+          }
+        }
+        double recall = (double) found / (numQueries * k);
+        assertTrue("recall=" + recall, recall >= 0.8);
+      }
+    }
+  }
+
+  public void testVisitedLimit() throws IOException {
+    final int dim = 4;
+    final int numDocs = 1000;
+    try (Directory dir = newDirectory();
+        IndexWriter w = new IndexWriter(dir, newConfig(VectorSimilarityFunction.EUCLIDEAN))) {
+      for (int i = 0; i < numDocs; ++i) {
+        Document doc = new Document();
+        doc.add(new VectorField("vector", randomVector(dim)));
+        w.addDocument(doc);
+      }
+      w.forceMerge(1);
+      try (DirectoryReader reader = DirectoryReader.open(w)) {
+        VectorDocValues values = (VectorDocValues) getOnlyLeafReader(reader).getBinaryDocValues("vector");
+        TopDocs topDocs = values.search(randomVector(dim), 10, 100, null, 10);
+        assertEquals(TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO, topDocs.totalHits.relation);
+        assertTrue(topDocs.totalHits.value <= 10);
+      }
+    }
+  }
+
+  private static Integer[] exactTopK(float[][] vectors, Set<Integer> deleted, float[] target, int k, VectorSimilarityFunction similarityFunction) {
+    Integer[] ids = new Integer[vectors.length];
+    for (int i = 0; i < ids.length; ++i) {
+      ids[i] = i;
+    }
+    Arrays.sort(ids, (a, b) -> Float.compare(similarityFunction.compare(target, vectors[b]), similarityFunction.compare(target, vectors[a])));
+    return Arrays.stream(ids).filter(id -> deleted.contains(id) == false).limit(k).toArray(Integer[]::new);
+  }
+
+  private static void normalize(float[] v) {
+    double norm = 0;
+    for (float f : v) {
+      norm += f * f;
+    }
+    norm = Math.sqrt(norm);
+    for (int i = 0; i < v.length; ++i) {
+      v[i] /= norm;
+    }
+  }
+}
@@ -27,6 +27,7 @@ import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.similarities.BM25Similarity;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.BytesRef;
@@ -64,6 +65,34 @@ public class TestBM25FQuery extends LuceneTestCase {
     assertEquals(actual, query);
   }
 
+  public void testEquals() {
+    BM25FQuery q1 = new BM25FQuery.Builder()
+        .addField("foo", 1f)
+        .addField("bar", 2f)
+        .addTerm(new BytesRef("baz"))
+        .build();
+    BM25FQuery q2 = new BM25FQuery.Builder()
+        .addField("foo", 1f)
+        .addField("bar", 2f)
+        .addTerm(new BytesRef("baz"))
+        .build();
+    QueryUtils.checkEqual(q1, q2);
+
+    BM25FQuery q3 = new BM25FQuery.Builder()
+        .addField("foo", 1f)
+        .addField("bar", 3f)
+        .addTerm(new BytesRef("baz"))
+        .build();
+    QueryUtils.checkUnequal(q1, q3);
+
+    BM25FQuery q4 = new BM25FQuery.Builder(1.5f, 0.75f)
+        .addField("foo", 1f)
+        .addField("bar", 2f)
+        .addTerm(new BytesRef("baz"))
+        .build();
+    QueryUtils.checkUnequal(q1, q4);
+  }
+
   public void testToString() {
     assertEquals("BM25F(()())", new BM25FQuery.Builder().build().toString());
     BM25FQuery.Builder builder = new BM25FQuery.Builder();
@@ -166,4 +195,58 @@ public class TestBM25FQuery extends LuceneTestCase {
     w.close();
     dir.close();
   }
+
+  public void testRandomTopScores() throws IOException {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, new MockAnalyzer(random()));
+    int numDocs = atLeast(1000); // make sure some terms have skip data
+    String[] terms = new String[] { "foo", "bar", "baz" };
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      for (String field : new String[] { "a", "b", "c" }) {
+        if (random().nextInt(4) == 0) {
+          // some documents don't have all fields
+          continue;
+        }
+        StringBuilder builder = new StringBuilder();
+        int length = 1 + random().nextInt(20);
+        for (int j = 0; j < length; j++) {
+          // make the first term more frequent than the others
+          builder.append(terms[Math.min(random().nextInt(5), terms.length - 1)]).append(' ');
+        }
+        doc.add(new TextField(field, builder.toString(), Store.NO));
+      }
+      w.addDocument(doc);
+    }
+    IndexReader reader = w.getReader();
+    w.close();
+    IndexSearcher searcher = newSearcher(reader);
+    searcher.setSimilarity(new BM25Similarity());
+    for (int iter = 0; iter < 10; iter++) {
+      BM25FQuery.Builder builder = new BM25FQuery.Builder();
+      builder.addField("a", 1 + random().nextInt(3));
+      builder.addField("b", 1 + random().nextInt(3));
+      if (random().nextBoolean()) {
+        builder.addField("c");
+      }
+      builder.addTerm(new BytesRef(terms[random().nextInt(terms.length)]));
+      if (random().nextBoolean()) {
+        builder.addTerm(new BytesRef(terms[random().nextInt(terms.length)]));
+      }
+      Query query = builder.build();
+      CheckHits.checkTopScores(random(), query, searcher);
+
+      query = new BooleanQuery.Builder()
+          .add(query, Occur.SHOULD)
+          .add(new BM25FQuery.Builder()
+              .addField("a")
+              .addField("c", 2)
+              .addTerm(new BytesRef(terms[random().nextInt(terms.length)]))
+              .build(), Occur.SHOULD)
+          .build();
+      CheckHits.checkTopScores(random(), query, searcher);
+    }
+    reader.close();
+    dir.close();
+  }
 }
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.hnsw.HnswVectorDocValuesFormat;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.VectorField;
+import org.apache.lucene.document.VectorSimilarityFunction;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestKnnVectorQuery extends LuceneTestCase {
+
+  private static final VectorSimilarityFunction SIM = VectorSimilarityFunction.EUCLIDEAN;
+
+  private RandomIndexWriter newWriter(Directory dir, boolean useGraph) throws IOException {
+    if (useGraph) {
+      return new RandomIndexWriter(random(), dir,
+          newIndexWriterConfig().setCodec(TestUtil.alwaysDocValuesFormat(new HnswVectorDocValuesFormat(SIM, 16, 100))));
+    } else {
+      return new RandomIndexWriter(random(), dir);
+    }
+  }
+
+  public void testEquals() {
+    Query q1 = new KnnVectorQuery("f", new float[] { 1, 2 }, 10, SIM);
+    QueryUtils.checkEqual(q1, new KnnVectorQuery("f", new float[] { 1, 2 }, 10, SIM));
+    QueryUtils.checkUnequal(q1, new KnnVectorQuery("g", new float[] { 1, 2 }, 10, SIM));
+    QueryUtils.checkUnequal(q1, new KnnVectorQuery("f", new float[] { 1, 3 }, 10, SIM));
+    QueryUtils.checkUnequal(q1, new KnnVectorQuery("f", new float[] { 1, 2 }, 11, SIM));
+    QueryUtils.checkUnequal(q1, new KnnVectorQuery("f", new float[] { 1, 2 }, 10, VectorSimilarityFunction.COSINE));
+    QueryUtils.checkUnequal(q1, new KnnVectorQuery("f", new float[] { 1, 2 }, 10, SIM, new MatchAllDocsQuery(), 10));
+    QueryUtils.checkUnequal(q1, new KnnVectorQuery("f", new float[] { 1, 2 }, 10, SIM, null, 20));
+  }
+
+  public void testIllegalArguments() {
+    expectThrows(IllegalArgumentException.class, () -> new KnnVectorQuery("f", new float[] { 1 }, 0, SIM));
+    expectThrows(IllegalArgumentException.class, () -> new KnnVectorQuery("f", new float[] { 1 }, 10, SIM, null, 5));
+    expectThrows(IllegalArgumentException.class, () -> new KnnVectorQuery("f", new float[0], 10, SIM));
+  }
+
+  public void testEmptyIndex() throws IOException {
+    try (Directory dir = newDirectory();
+        RandomIndexWriter w = newWriter(dir, random().nextBoolean())) {
+      w.addDocument(new Document());
+      try (IndexReader reader = w.getReader()) {
+        IndexSearcher searcher = newSearcher(reader);
+        Query query = new KnnVectorQuery("f", new float[] { 1, 2 }, 10, SIM);
+        assertEquals(0, searcher.count(query));
+        assertTrue(searcher.rewrite(query) instanceof MatchNoDocsQuery);
+      }
+    }
+  }
+
+  public void testFindsNearest() throws IOException {
+    doTestFindsNearest(true);
+    doTestFindsNearest(false);
+  }
+
+  private void doTestFindsNearest(boolean useGraph) throws IOException {
+    try (Directory dir = newDirectory();
+        RandomIndexWriter w = newWriter(dir, useGraph)) {
+      // points on a line, the nearest neighbors of x are the points closest to x
+      final int numDocs = atLeast(100);
+      for (int i = 0; i < numDocs; ++i) {
+        Document doc = new Document();
+        doc.add(new StringField("id", Integer.toString(i), Field.Store.YES));
+        doc.add(new StringField("parity", i % 2 == 0 ? "even" : "odd", Field.Store.NO));
+        doc.add(new VectorField("vector", new float[] { i, 0 }));
+        w.addDocument(doc);
+      }
+      w.deleteDocuments(new Term("id", "41"));
+      try (IndexReader reader = w.getReader()) {
+        IndexSearcher searcher = newSearcher(reader);
+
+        TopDocs topDocs = searcher.search(new KnnVectorQuery("vector", new float[] { 40.2f, 0 }, 3, SIM, null, 50), 10);
+        assertEquals(3, topDocs.scoreDocs.length);
+        assertEquals("40", searcher.doc(topDocs.scoreDocs[0].doc).get("id"));
+        assertEquals("39", searcher.doc(topDocs.scoreDocs[1].doc).get("id"));
+        assertEquals("42", searcher.doc(topDocs.scoreDocs[2].doc).get("id"));
+        assertEquals(SIM.compare(new float[] { 40.2f, 0 }, new float[] { 40, 0 }), topDocs.scoreDocs[0].score, 1e-5f);
+
+        Query filter = new TermQuery(new Term("parity", "odd"));
+        topDocs = searcher.search(new KnnVectorQuery("vector", new float[] { 40.2f, 0 }, 2, SIM, filter, 50), 10);
+        assertEquals(2, topDocs.scoreDocs.length);
+        assertEquals("39", searcher.doc(topDocs.scoreDocs[0].doc).get("id"));
+        assertEquals("43", searcher.doc(topDocs.scoreDocs[1].doc).get("id"));
+
+        // combined with another query
+        BooleanQuery bq = new BooleanQuery.Builder()
+            .add(new KnnVectorQuery("vector", new float[] { 40.2f, 0 }, 5, SIM, null, 50), BooleanClause.Occur.MUST)
+            .add(new TermQuery(new Term("parity", "even")), BooleanClause.Occur.FILTER)
+            .build();
+        topDocs = searcher.search(bq, 10);
+        assertEquals(3, topDocs.scoreDocs.length);
+        assertEquals("40", searcher.doc(topDocs.scoreDocs[0].doc).get("id"));
+        assertEquals("42", searcher.doc(topDocs.scoreDocs[1].doc).get("id"));
+        assertEquals("38", searcher.doc(topDocs.scoreDocs[2].doc).get("id"));
+      }
+    }
+  }
+
+  public void testExplain() throws IOException {
+    try (Directory dir = newDirectory();
+        RandomIndexWriter w = newWriter(dir, random().nextBoolean())) {
+      for (int i = 0; i < 10; ++i) {
+        Document doc = new Document();
+        doc.add(new VectorField("vector", new float[] { i, i }));
+        w.addDocument(doc);
+      }
+      try (IndexReader reader = w.getReader()) {
+        IndexSearcher searcher = newSearcher(reader);
+        Query query = new KnnVectorQuery("vector", new float[] { 3, 3 }, 4, SIM);
+        TopDocs topDocs = searcher.search(query, 10);
+        assertEquals(4, topDocs.scoreDocs.length);
+        for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+          Explanation explanation = searcher.explain(query, scoreDoc.doc);
+          assertTrue(explanation.isMatch());
+          assertEquals(scoreDoc.score, explanation.getValue().floatValue(), 0f);
+        }
+      }
+    }
+  }
+}
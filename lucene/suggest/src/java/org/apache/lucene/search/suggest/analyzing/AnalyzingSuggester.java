@@ -37,6 +37,7 @@ import org.apache.lucene.store.DataInput;
 import org.apache.lucene.store.DataOutput;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.IndexOutput;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Accountables;
@@ -56,6 +57,7 @@ import org.apache.lucene.util.fst.Builder;
 import org.apache.lucene.util.fst.ByteSequenceOutputs;
 import org.apache.lucene.util.fst.FST.BytesReader;
 import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.OffHeapFSTStore;
 import org.apache.lucene.util.fst.PairOutputs.Pair;
 import org.apache.lucene.util.fst.PairOutputs;
 import org.apache.lucene.util.fst.PositiveIntOutputs;
@@ -613,6 +615,23 @@ public class AnalyzingSuggester extends Lookup implements Accountable {
     return true;
   }
 
+  /**
+   * Loads a suggester that was stored with {@link #store(DataOutput)}. If
+   * {@code offHeap} is true, the FST is not copied to the heap but read
+   * from {@code input} at lookup time, so {@code input} must stay open for
+   * as long as this suggester is used.
+   */
+  public boolean load(IndexInput input, boolean offHeap) throws IOException {
+    if (offHeap == false) {
+      return load(input);
+    }
+    count = input.readVLong();
+    this.fst = new FST<>(input, new PairOutputs<>(PositiveIntOutputs.getSingleton(), ByteSequenceOutputs.getSingleton()), new OffHeapFSTStore());
+    maxAnalyzedPathsForOneInput = input.readVInt();
+    hasPayloads = input.readByte() == 1;
+    return true;
+  }
+
   private LookupResult getLookupResult(Long output1, BytesRef output2, CharsRefBuilder spare) {
     LookupResult result;
     if (hasPayloads) {
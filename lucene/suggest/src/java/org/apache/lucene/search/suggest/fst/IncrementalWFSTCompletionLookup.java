@@ -0,0 +1,398 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search.suggest.fst;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.search.suggest.Lookup;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.Accountables;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+
+/**
+ * A {@link WFSTCompletionLookup} that can be updated incrementally and that
+ * keeps its FSTs off-heap.
+ * <p>
+ * {@link #build(InputIterator)} builds the main FST from a full dictionary
+ * and {@link #addDelta(InputIterator)} adds a smaller FST for entries that
+ * were added or whose weight changed since then. Lookups merge the results
+ * of all FSTs, and an entry of a delta replaces the entries with the same
+ * key in the main FST and in older deltas. Rebuilding the main FST removes
+ * all deltas.
+ * <p>
+ * Inputs are sorted with the {@link org.apache.lucene.util.OfflineSorter},
+ * and FSTs are written to files in the directory that is passed to the
+ * constructor and read from there at lookup time rather than being loaded
+ * on the heap, so that the heap only holds the FST that is being built.
+ * Builds may run in a background thread while other threads look up
+ * suggestions: they keep using the previous FSTs until the build is
+ * complete. Files of FSTs that are no longer used are deleted once all
+ * lookups using them are done.
+ * 
+ * @lucene.experimental
+ */
+public final class IncrementalWFSTCompletionLookup extends Lookup implements Closeable {
+
+  private final Directory dir;
+  private final String fileNamePrefix;
+  private final boolean exactFirst;
+  private final Object buildLock = new Object();
+
+  /** The current FSTs, or null if this suggester is closed. */
+  private volatile Snapshot current = new Snapshot(null, Collections.emptyList());
+
+  /**
+   * Calls {@link #IncrementalWFSTCompletionLookup(Directory,String,boolean) IncrementalWFSTCompletionLookup(dir,fileNamePrefix,true)}
+   */
+  public IncrementalWFSTCompletionLookup(Directory dir, String fileNamePrefix) {
+    this(dir, fileNamePrefix, true);
+  }
+
+  /**
+   * Creates a new suggester.
+   *
+   * @param dir directory where inputs are sorted and FSTs are stored
+   * @param fileNamePrefix prefix of the names of the files that this suggester creates
+   * @param exactFirst <code>true</code> if suggestions that match the 
+   *        prefix exactly should always be returned first, regardless
+   *        of score.
+   */
+  public IncrementalWFSTCompletionLookup(Directory dir, String fileNamePrefix, boolean exactFirst) {
+    this.dir = dir;
+    this.fileNamePrefix = fileNamePrefix;
+    this.exactFirst = exactFirst;
+  }
+
+  /**
+   * Builds the main FST from a full dictionary and removes all deltas.
+   */
+  @Override
+  public void build(InputIterator iterator) throws IOException {
+    synchronized (buildLock) {
+      Segment main = buildSegment(iterator);
+      swap(new Snapshot(main, Collections.emptyList()));
+    }
+  }
+
+  /**
+   * Adds a delta dictionary. Its entries replace the entries with the same
+   * keys of previous dictionaries.
+   */
+  public void addDelta(InputIterator iterator) throws IOException {
+    synchronized (buildLock) {
+      Segment delta = buildSegment(iterator);
+      if (delta == null) {
+        return;
+      }
+      Snapshot previous = ensureOpen();
+      List<Segment> deltas = new ArrayList<>(previous.deltas.size() + 1);
+      deltas.add(delta); // newest first
+      deltas.addAll(previous.deltas);
+      swap(new Snapshot(previous.main, deltas));
+    }
+  }
+
+  /** Returns the number of deltas that have been added since the main FST was built. */
+  public int getDeltaCount() {
+    return ensureOpen().deltas.size();
+  }
+
+  private Segment buildSegment(InputIterator iterator) throws IOException {
+    WFSTCompletionLookup lookup = new WFSTCompletionLookup(dir, fileNamePrefix, false);
+    lookup.build(iterator);
+    if (lookup.getCount() == 0) {
+      return null;
+    }
+    String fileName = null;
+    IndexInput in = null;
+    boolean success = false;
+    try {
+      try (IndexOutput out = dir.createTempOutput(fileNamePrefix, "fst", IOContext.DEFAULT)) {
+        fileName = out.getName();
+        lookup.store(out);
+      }
+      // the on-heap FST is garbage from now on
+      lookup = null;
+      in = dir.openInput(fileName, IOContext.READ);
+      WFSTCompletionLookup offHeapLookup = new WFSTCompletionLookup(dir, fileNamePrefix, false);
+      offHeapLookup.load(in, true);
+      Segment segment = new Segment(fileName, in, offHeapLookup);
+      success = true;
+      return segment;
+    } finally {
+      if (success == false) {
+        IOUtils.closeWhileHandlingException(in);
+        if (fileName != null) {
+          IOUtils.deleteFilesIgnoringExceptions(dir, fileName);
+        }
+      }
+    }
+  }
+
+  private void swap(Snapshot snapshot) throws IOException {
+    Snapshot previous = ensureOpen();
+    current = snapshot;
+    previous.decRef();
+  }
+
+  private Snapshot ensureOpen() {
+    Snapshot snapshot = current;
+    if (snapshot == null) {
+      throw new AlreadyClosedException("this suggester is closed");
+    }
+    return snapshot;
+  }
+
+  private Snapshot acquire() {
+    while (true) {
+      Snapshot snapshot = ensureOpen();
+      if (snapshot.tryIncRef()) {
+        return snapshot;
+      }
+      // a build swapped the snapshot concurrently, retry
+    }
+  }
+
+  @Override
+  public List<LookupResult> lookup(CharSequence key, Set<BytesRef> contexts, boolean onlyMorePopular, int num) throws IOException {
+    if (contexts != null) {
+      throw new IllegalArgumentException("this suggester doesn't support contexts");
+    }
+    if (onlyMorePopular) {
+      throw new IllegalArgumentException("this suggester only works with onlyMorePopular=false");
+    }
+    Snapshot snapshot = acquire();
+    try {
+      return snapshot.lookup(key, num);
+    } finally {
+      snapshot.decRef();
+    }
+  }
+
+  /**
+   * Returns the weight associated with an input string,
+   * or null if it does not exist.
+   */
+  public Object get(CharSequence key) throws IOException {
+    Snapshot snapshot = acquire();
+    try {
+      return snapshot.get(key, snapshot.segments.size());
+    } finally {
+      snapshot.decRef();
+    }
+  }
+
+  /** This suggester keeps its FSTs in its directory, so this method does nothing and returns false. */
+  @Override
+  public boolean store(DataOutput output) throws IOException {
+    return false;
+  }
+
+  /** This suggester keeps its FSTs in its directory, so this method does nothing and returns false. */
+  @Override
+  public boolean load(DataInput input) throws IOException {
+    return false;
+  }
+
+  /**
+   * Returns the number of entries that the main FST and the deltas were
+   * built with. Entries that are in several of them are counted several times.
+   */
+  @Override
+  public long getCount() throws IOException {
+    long count = 0;
+    for (Segment segment : ensureOpen().segments) {
+      count += segment.lookup.getCount();
+    }
+    return count;
+  }
+
+  /** Returns heap usage of this suggester, which excludes the FSTs. */
+  @Override
+  public long ramBytesUsed() {
+    Snapshot snapshot = current;
+    long bytes = 0;
+    if (snapshot != null) {
+      for (Segment segment : snapshot.segments) {
+        bytes += segment.lookup.ramBytesUsed();
+      }
+    }
+    return bytes;
+  }
+
+  @Override
+  public Collection<Accountable> getChildResources() {
+    Snapshot snapshot = current;
+    if (snapshot == null) {
+      return Collections.emptyList();
+    }
+    List<Accountable> resources = new ArrayList<>();
+    for (Segment segment : snapshot.segments) {
+      resources.add(Accountables.namedAccountable(segment.fileName, segment.lookup));
+    }
+    return Collections.unmodifiableList(resources);
+  }
+
+  /** Closes this suggester. Files are deleted once pending lookups are done. */
+  @Override
+  public void close() throws IOException {
+    synchronized (buildLock) {
+      Snapshot snapshot = current;
+      if (snapshot != null) {
+        current = null;
+        snapshot.decRef();
+      }
+    }
+  }
+
+  /** A FST that is stored in a file, and whose file is deleted when it is not referenced anymore. */
+  private final class Segment {
+
+    final String fileName;
+    final IndexInput in;
+    final WFSTCompletionLookup lookup;
+    final AtomicInteger refCount = new AtomicInteger(0);
+
+    Segment(String fileName, IndexInput in, WFSTCompletionLookup lookup) {
+      this.fileName = fileName;
+      this.in = in;
+      this.lookup = lookup;
+    }
+
+    void incRef() {
+      refCount.incrementAndGet();
+    }
+
+    void decRef() throws IOException {
+      if (refCount.decrementAndGet() == 0) {
+        try {
+          in.close();
+        } finally {
+          IOUtils.deleteFilesIgnoringExceptions(dir, fileName);
+        }
+      }
+    }
+  }
+
+  /** An immutable set of FSTs. */
+  private final class Snapshot {
+
+    final Segment main;
+    final List<Segment> deltas;
+    /** Deltas, newest first, followed by the main FST. */
+    final List<Segment> segments;
+    final AtomicInteger refCount = new AtomicInteger(1);
+
+    Snapshot(Segment main, List<Segment> deltas) {
+      this.main = main;
+      this.deltas = deltas;
+      List<Segment> segments = new ArrayList<>(deltas);
+      if (main != null) {
+        segments.add(main);
+      }
+      this.segments = Collections.unmodifiableList(segments);
+      for (Segment segment : segments) {
+        segment.incRef();
+      }
+    }
+
+    boolean tryIncRef() {
+      int count;
+      while ((count = refCount.get()) > 0) {
+        if (refCount.compareAndSet(count, count + 1)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    void decRef() throws IOException {
+      if (refCount.decrementAndGet() == 0) {
+        IOUtils.applyToAll(segments, Segment::decRef);
+      }
+    }
+
+    /** Returns the weight of {@code key} in the newest of the first {@code numSegments} segments that contains it. */
+    Object get(CharSequence key, int numSegments) {
+      for (int i = 0; i < numSegments; ++i) {
+        Object weight = segments.get(i).lookup.get(key);
+        if (weight != null) {
+          return weight;
+        }
+      }
+      return null;
+    }
+
+    List<LookupResult> lookup(CharSequence key, int num) throws IOException {
+      List<LookupResult> results = new ArrayList<>(num);
+      String exactKey = null;
+      if (exactFirst) {
+        Object weight = get(key, segments.size());
+        if (weight != null) {
+          exactKey = key.toString();
+          results.add(new LookupResult(exactKey, ((Number) weight).longValue()));
+          if (--num == 0) {
+            return results;
+          }
+        }
+      }
+
+      LookupPriorityQueue queue = new LookupPriorityQueue(num);
+      for (int i = 0; i < segments.size(); ++i) {
+        WFSTCompletionLookup lookup = segments.get(i).lookup;
+        // entries of this segment that are shadowed by newer segments are
+        // skipped, so ask for more completions until we have enough
+        for (int n = num; ; n *= 2) {
+          List<LookupResult> completions = lookup.lookup(key, null, false, n);
+          List<LookupResult> accepted = new ArrayList<>(Math.min(n, completions.size()));
+          for (LookupResult completion : completions) {
+            String completionKey = completion.key.toString();
+            if (completionKey.equals(exactKey) == false && get(completionKey, i) == null) {
+              accepted.add(completion);
+            }
+          }
+          if (accepted.size() >= num || completions.size() < n) {
+            for (LookupResult completion : accepted) {
+              queue.insertWithOverflow(completion);
+            }
+            break;
+          }
+        }
+      }
+      for (LookupResult result : queue.getResults()) {
+        results.add(result);
+      }
+      return results;
+    }
+  }
+}
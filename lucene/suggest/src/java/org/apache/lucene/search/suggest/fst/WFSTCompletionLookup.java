@@ -32,6 +32,7 @@ import org.apache.lucene.store.ByteArrayDataOutput;
 import org.apache.lucene.store.DataInput;
 import org.apache.lucene.store.DataOutput;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Accountables;
 import org.apache.lucene.util.ArrayUtil;
@@ -44,6 +45,7 @@ import org.apache.lucene.util.fst.Builder;
 import org.apache.lucene.util.fst.FST;
 import org.apache.lucene.util.fst.FST.Arc;
 import org.apache.lucene.util.fst.FST.BytesReader;
+import org.apache.lucene.util.fst.OffHeapFSTStore;
 import org.apache.lucene.util.fst.PositiveIntOutputs;
 import org.apache.lucene.util.fst.Util;
 import org.apache.lucene.util.fst.Util.Result;
@@ -152,6 +154,21 @@ public class WFSTCompletionLookup extends Lookup implements Accountable {
     return true;
   }
 
+  /**
+   * Loads a suggester that was stored with {@link #store(DataOutput)}. If
+   * {@code offHeap} is true, the FST is not copied to the heap but read
+   * from {@code input} at lookup time, so {@code input} must stay open for
+   * as long as this suggester is used.
+   */
+  public boolean load(IndexInput input, boolean offHeap) throws IOException {
+    if (offHeap == false) {
+      return load(input);
+    }
+    count = input.readVLong();
+    this.fst = new FST<>(input, PositiveIntOutputs.getSingleton(), new OffHeapFSTStore());
+    return true;
+  }
+
   @Override
   public List<LookupResult> lookup(CharSequence key, Set<BytesRef> contexts, boolean onlyMorePopular, int num) {
     if (contexts != null) {
@@ -52,6 +52,9 @@ import org.apache.lucene.search.suggest.Input;
 import org.apache.lucene.search.suggest.InputArrayIterator;
 import org.apache.lucene.search.suggest.Lookup.LookupResult;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.LineFileDocs;
@@ -278,6 +281,36 @@ public class AnalyzingSuggesterTest extends LuceneTestCase {
     IOUtils.close(standard, tempDir);
   }
 
+  public void testOffHeap() throws Exception {
+    Input keys[] = new Input[] {
+        new Input("foo", 50),
+        new Input("bar", 10),
+        new Input("barbar", 12),
+        new Input("barbara", 6)
+    };
+    Analyzer analyzer = new MockAnalyzer(random(), MockTokenizer.KEYWORD, false);
+    Directory tempDir = getDirectory();
+    AnalyzingSuggester suggester = new AnalyzingSuggester(tempDir, "suggest", analyzer);
+    suggester.build(new InputArrayIterator(keys));
+    try (IndexOutput out = tempDir.createOutput("suggester", IOContext.DEFAULT)) {
+      suggester.store(out);
+      out.writeInt(42);
+    }
+
+    try (IndexInput in = tempDir.openInput("suggester", IOContext.READ)) {
+      AnalyzingSuggester offHeap = new AnalyzingSuggester(tempDir, "suggest", analyzer);
+      assertTrue(offHeap.load(in, true));
+      // the input is positioned after the FST
+      assertEquals(42, in.readInt());
+      assertTrue(offHeap.ramBytesUsed() < suggester.ramBytesUsed());
+      assertEquals(suggester.getCount(), offHeap.getCount());
+      for (String prefix : new String[] {"b", "ba", "bar", "f", "z"}) {
+        assertEquals(suggester.lookup(prefix, false, 3).toString(), offHeap.lookup(prefix, false, 3).toString());
+      }
+    }
+    IOUtils.close(analyzer, tempDir);
+  }
+
   public void testNoSeps() throws Exception {
     Input[] keys = new Input[] {
       new Input("ab cd", 0),
@@ -21,7 +21,11 @@ import java.util.*;
 import org.apache.lucene.search.suggest.Input;
 import org.apache.lucene.search.suggest.InputArrayIterator;
 import org.apache.lucene.search.suggest.Lookup.LookupResult;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.LuceneTestCase;
 import org.apache.lucene.util.TestUtil;
@@ -233,6 +237,92 @@ public class WFSTCompletionTest extends LuceneTestCase {
     tempDir.close();
   }
 
+  public void testOffHeap() throws Exception {
+    Input keys[] = new Input[] {
+        new Input("foo", 50),
+        new Input("bar", 10),
+        new Input("barbar", 12),
+        new Input("barbara", 6)
+    };
+    Directory dir = getDirectory();
+    WFSTCompletionLookup suggester = new WFSTCompletionLookup(dir, "wfst");
+    suggester.build(new InputArrayIterator(keys));
+    try (IndexOutput out = dir.createOutput("suggester", IOContext.DEFAULT)) {
+      suggester.store(out);
+      out.writeInt(42);
+    }
+
+    try (IndexInput in = dir.openInput("suggester", IOContext.READ)) {
+      WFSTCompletionLookup offHeap = new WFSTCompletionLookup(dir, "wfst");
+      assertTrue(offHeap.load(in, true));
+      // the input is positioned after the FST
+      assertEquals(42, in.readInt());
+      assertTrue(offHeap.ramBytesUsed() < suggester.ramBytesUsed());
+      assertEquals(suggester.getCount(), offHeap.getCount());
+      for (String prefix : new String[] {"", "b", "ba", "bar", "f", "z"}) {
+        assertEquals(suggester.lookup(prefix, false, 3).toString(), offHeap.lookup(prefix, false, 3).toString());
+      }
+      assertEquals(12, offHeap.get("barbar"));
+      assertNull(offHeap.get("barb"));
+    }
+    dir.close();
+  }
+
+  public void testIncremental() throws Exception {
+    Directory dir = getDirectory();
+    boolean exactFirst = random().nextBoolean();
+    IncrementalWFSTCompletionLookup suggester = new IncrementalWFSTCompletionLookup(dir, "incremental", exactFirst);
+    assertEquals(0, suggester.lookup("a", false, 3).size());
+
+    Map<String,Long> expected = new HashMap<>();
+    // distinct weights so that the order of suggestions is well defined
+    Set<Long> weights = new HashSet<>();
+    int iters = atLeast(5);
+    for (int iter = 0; iter < iters; iter++) {
+      Map<String,Long> batch = new HashMap<>();
+      int numEntries = random().nextInt(100);
+      for (int i = 0; i < numEntries; i++) {
+        long weight = TestUtil.nextInt(random(), 0, 1000000);
+        if (weights.add(weight)) {
+          batch.put(TestUtil.randomSimpleStringRange(random(), 'a', 'd', 5), weight);
+        }
+      }
+      List<Input> inputs = new ArrayList<>();
+      for (Map.Entry<String,Long> entry : batch.entrySet()) {
+        inputs.add(new Input(entry.getKey(), entry.getValue()));
+      }
+      if (iter == 0 || random().nextInt(4) == 0) {
+        suggester.build(new InputArrayIterator(inputs));
+        expected.clear();
+        assertEquals(0, suggester.getDeltaCount());
+      } else {
+        suggester.addDelta(new InputArrayIterator(inputs));
+      }
+      expected.putAll(batch);
+
+      List<Input> all = new ArrayList<>();
+      for (Map.Entry<String,Long> entry : expected.entrySet()) {
+        all.add(new Input(entry.getKey(), entry.getValue()));
+      }
+      WFSTCompletionLookup reference = new WFSTCompletionLookup(dir, "reference", exactFirst);
+      reference.build(new InputArrayIterator(all));
+      for (int i = 0; i < 20; i++) {
+        String prefix = TestUtil.randomSimpleStringRange(random(), 'a', 'd', 3);
+        int num = TestUtil.nextInt(random(), 1, 10);
+        assertEquals(reference.lookup(prefix, false, num).toString(), suggester.lookup(prefix, false, num).toString());
+        assertEquals(expected.containsKey(prefix) ? expected.get(prefix).intValue() : null, suggester.get(prefix));
+      }
+    }
+
+    suggester.close();
+    // all FST files have been removed
+    for (String file : dir.listAll()) {
+      assertFalse(file, file.startsWith("incremental"));
+    }
+    expectThrows(AlreadyClosedException.class, () -> suggester.lookup("a", false, 1));
+    dir.close();
+  }
+
   private Directory getDirectory() {     
     return newDirectory();
   }
@@ -998,6 +998,26 @@ public class AssertingLeafReader extends FilterLeafReader {
       return ord;
     }
 
+    @Override
+    public int nextOrds(long[] ords, int offset, int length) throws IOException {
+      assertThread("Sorted set doc values", creationThread);
+      assert lastOrd != NO_MORE_ORDS;
+      assert exists;
+      assert offset >= 0 && length >= 0 && offset + length <= ords.length;
+      int count = in.nextOrds(ords, offset, length);
+      assert count >= 0 && count <= length;
+      for (int i = 0; i < count; ++i) {
+        long ord = ords[offset + i];
+        assert ord >= 0 && ord < valueCount;
+        assert ord > lastOrd;
+        lastOrd = ord;
+      }
+      if (count < length) {
+        lastOrd = NO_MORE_ORDS;
+      }
+      return count;
+    }
+
     @Override
     public BytesRef lookupOrd(long ord) throws IOException {
       assertThread("Sorted set doc values", creationThread);